@@ -17,10 +17,14 @@ package com.dattack.naming;  // NOPMD by cvarela
 
 import org.apache.commons.lang.StringUtils;
 
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.naming.Binding;
 import javax.naming.CannotProceedException;
 import javax.naming.CompoundName;
@@ -46,13 +50,17 @@ import javax.naming.OperationNotSupportedException;
 @SuppressWarnings("PMD.AvoidDuplicateLiterals")
 public abstract class AbstractContext implements Cloneable, Context {  // NOPMD by cvarela
 
+    private static final AtomicReferenceFieldUpdater<AbstractContext, ContextEnvironment> ENV_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(AbstractContext.class, ContextEnvironment.class, "env");
+
     private final NameParser nameParser;
+    private final transient Lock closeLock = new ReentrantLock();
     private transient volatile boolean closed;
-    // the environment properties
-    private Hashtable<Object, Object> env; // NOPMD by cvarela on 8/02/16 22:32
+    // the environment properties (immutable snapshot shared with the subcontexts, copy-on-write)
+    private volatile ContextEnvironment env; // NOPMD by cvarela on 8/02/16 22:32
     private Name nameInNamespace;
     // the direct subcontext
-    private Hashtable<Name, Context> subContexts = new Hashtable<>();   // NOPMD by cvarela
+    private Map<Name, Context> subContexts = new ConcurrentHashMap<>();   // NOPMD by cvarela
 
     // the binded table
     private transient Map<Name, Object> objectTable = new ConcurrentHashMap<>();
@@ -62,13 +70,13 @@ public abstract class AbstractContext implements Cloneable, Context {  // NOPMD
     }
 
     protected AbstractContext(final Map<?, ?> env) throws NamingException {
+        this(ContextEnvironment.of(env));
+    }
 
-        this.env = new Hashtable<>();
-        if (env != null) {
-            this.env.putAll(env);
-        }
+    private AbstractContext(final ContextEnvironment env) throws NamingException {
+        this.env = env;
         this.closed = false;
-        nameParser = new DefaultNameParser(this);
+        nameParser = env.getNameParser();
         nameInNamespace = nameParser.parse("");
     }
 
@@ -83,7 +91,13 @@ public abstract class AbstractContext implements Cloneable, Context {  // NOPMD
 
     @Override
     public Object addToEnvironment(final String name, final Object object) {
-        return this.env.put(name, object);
+        ContextEnvironment current;
+        ContextEnvironment next;
+        do {
+            current = this.env;
+            next = current.with(name, object);
+        } while (current != next && !ENV_UPDATER.compareAndSet(this, current, next)); // NOPMD
+        return current.get(name);
     }
 
     @Override
@@ -131,7 +145,8 @@ public abstract class AbstractContext implements Cloneable, Context {  // NOPMD
 
         if (!closed) {
 
-            synchronized (this) {
+            closeLock.lock();
+            try {
                 if (closed) {
                     return;
                 }
@@ -144,7 +159,9 @@ public abstract class AbstractContext implements Cloneable, Context {  // NOPMD
                 this.objectTable.clear();
                 this.objectTable = null; //NOPMD
                 this.subContexts = null; //NOPMD
-                this.env = null; //NOPMD
+                this.env = ContextEnvironment.EMPTY;
+            } finally {
+                closeLock.unlock();
             }
         }
     }
@@ -216,14 +233,8 @@ public abstract class AbstractContext implements Cloneable, Context {  // NOPMD
     @Override
     @SuppressWarnings("PMD.ReplaceHashtableWithMap")
     public Hashtable<?, ?> getEnvironment() { //NOPMD
-
-        Hashtable<?, ?> result;
-        if (this.env == null) {
-            result = new Hashtable<String, Object>();
-        } else {
-            result = (Hashtable<?, ?>) this.env.clone(); //NOPMD
-        }
-        return result;
+        // read-only view, as stated by the Context contract the caller should not make any changes to it
+        return this.env.toHashtable();
     }
 
     @Override
@@ -411,12 +422,14 @@ public abstract class AbstractContext implements Cloneable, Context {  // NOPMD
     }
 
     @Override
-    @SuppressWarnings("PMD.OnlyOneReturn")
     public Object removeFromEnvironment(final String name) {
-        if (this.env == null) {
-            return null;
-        }
-        return this.env.remove(name);
+        ContextEnvironment current;
+        ContextEnvironment next;
+        do {
+            current = this.env;
+            next = current.without(name);
+        } while (current != next && !ENV_UPDATER.compareAndSet(this, current, next)); // NOPMD
+        return current.get(name);
     }
 
     @Override
@@ -477,9 +490,8 @@ public abstract class AbstractContext implements Cloneable, Context {  // NOPMD
      *
      * @return the subcontexts of this context.
      */
-    @SuppressWarnings("unchecked")
     protected Map<Name, Object> getSubContexts() {
-        return (Map<Name, Object>) subContexts.clone();
+        return new HashMap<>(subContexts);
     }
 
     private boolean isNameAlreadyBound(final Name name) {
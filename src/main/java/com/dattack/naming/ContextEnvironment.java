@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import javax.naming.NameParser;
+import javax.naming.NamingException;
+
+/**
+ * Immutable snapshot of the environment properties of a naming context. A snapshot is shared by a context and all the
+ * subcontexts created from it, together with the {@link NameParser} built from it. Modifications are performed with
+ * copy-on-write semantics: {@link #with(String, Object)} and {@link #without(String)} return a new snapshot only when
+ * the content actually changes.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+@SuppressWarnings("PMD.ReplaceHashtableWithMap")
+final class ContextEnvironment {
+
+    /* default */ static final ContextEnvironment EMPTY = new ContextEnvironment(Collections.emptyMap(), null);
+
+    private static final String SYNTAX_PREFIX = "jndi.syntax.";
+
+    private final Map<Object, Object> properties;
+    private final NameParser nameParser;
+    private transient volatile Hashtable<Object, Object> table;
+
+    private ContextEnvironment(final Map<Object, Object> properties, final NameParser nameParser) {
+        this.properties = properties;
+        this.nameParser = Objects.isNull(nameParser) ? new DefaultNameParser(properties) : nameParser;
+    }
+
+    /**
+     * Creates a new snapshot containing a copy of the given properties.
+     *
+     * @param environment the environment properties, may be <code>null</code>
+     * @return the snapshot
+     */
+    /* default */ static ContextEnvironment of(final Map<?, ?> environment) {
+        if (Objects.isNull(environment) || environment.isEmpty()) {
+            return EMPTY;
+        }
+        final Map<Object, Object> copy = new HashMap<>(environment.size() * 2);
+        environment.forEach((key, value) -> copy.put(Objects.requireNonNull(key), Objects.requireNonNull(value)));
+        return new ContextEnvironment(Collections.unmodifiableMap(copy), null);
+    }
+
+    /* default */ boolean containsKey(final Object key) {
+        return properties.containsKey(key);
+    }
+
+    /* default */ Object get(final Object key) {
+        return properties.get(key);
+    }
+
+    /* default */ NameParser getNameParser() {
+        return nameParser;
+    }
+
+    /**
+     * Returns a read-only <code>Hashtable</code> view of this snapshot. The view is created the first time it is
+     * requested and then reused.
+     *
+     * @return a read-only <code>Hashtable</code> containing the environment properties
+     */
+    /* default */ Hashtable<?, ?> toHashtable() {
+        Hashtable<Object, Object> result = table;
+        if (Objects.isNull(result)) {
+            result = new ReadOnlyHashtable(properties);
+            table = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a snapshot in which the property <code>key</code> has the value <code>value</code>.
+     *
+     * @param key the property name
+     * @param value the property value
+     * @return this snapshot if the property already has that value, or a new snapshot otherwise
+     */
+    /* default */ ContextEnvironment with(final String key, final Object value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        if (value.equals(properties.get(key))) {
+            return this;
+        }
+        final Map<Object, Object> copy = new HashMap<>(properties);
+        copy.put(key, value);
+        return new ContextEnvironment(Collections.unmodifiableMap(copy), reuseNameParser(key));
+    }
+
+    /**
+     * Returns a snapshot that does not contain the property <code>key</code>.
+     *
+     * @param key the property name
+     * @return this snapshot if the property does not exist, or a new snapshot otherwise
+     */
+    /* default */ ContextEnvironment without(final String key) {
+        if (!properties.containsKey(key)) {
+            return this;
+        }
+        final Map<Object, Object> copy = new HashMap<>(properties);
+        copy.remove(key);
+        return new ContextEnvironment(Collections.unmodifiableMap(copy), reuseNameParser(key));
+    }
+
+    private NameParser reuseNameParser(final String key) {
+        // the name parser only depends on the 'jndi.syntax.*' properties
+        return key.startsWith(SYNTAX_PREFIX) ? null : nameParser;
+    }
+
+    /**
+     * A <code>Hashtable</code> that rejects any modification.
+     */
+    @SuppressWarnings({ "PMD.ReplaceHashtableWithMap", "PMD.TooManyMethods" })
+    private static final class ReadOnlyHashtable extends Hashtable<Object, Object> {
+
+        private static final long serialVersionUID = -3624781226339528914L;
+
+        /* default */ ReadOnlyHashtable(final Map<Object, Object> properties) {
+            super(Math.max(properties.size() * 2, 11));
+            properties.forEach(super::put);
+        }
+
+        @Override
+        public synchronized void clear() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @SuppressWarnings("PMD.ProperCloneImplementation")
+        public synchronized Object clone() {
+            return new Hashtable<>(this);
+        }
+
+        @Override
+        public synchronized Object compute(final Object key,
+            final BiFunction<? super Object, ? super Object, ?> remappingFunction)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized Object computeIfAbsent(final Object key,
+            final Function<? super Object, ?> mappingFunction)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized Object computeIfPresent(final Object key,
+            final BiFunction<? super Object, ? super Object, ?> remappingFunction)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Set<Map.Entry<Object, Object>> entrySet() {
+            return Collections.unmodifiableSet(super.entrySet());
+        }
+
+        @Override
+        public Set<Object> keySet() {
+            return Collections.unmodifiableSet(super.keySet());
+        }
+
+        @Override
+        public synchronized Object merge(final Object key, final Object value,
+            final BiFunction<? super Object, ? super Object, ?> remappingFunction)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized Object put(final Object key, final Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized void putAll(final Map<?, ?> map) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized Object putIfAbsent(final Object key, final Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized Object remove(final Object key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized boolean remove(final Object key, final Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized Object replace(final Object key, final Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized boolean replace(final Object key, final Object oldValue, final Object newValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized void replaceAll(final BiFunction<? super Object, ? super Object, ?> function) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<Object> values() {
+            return Collections.unmodifiableCollection(super.values());
+        }
+    }
+}
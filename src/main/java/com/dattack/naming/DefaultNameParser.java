@@ -15,10 +15,10 @@
  */
 package com.dattack.naming;
 
+import java.util.Map;
 import java.util.Properties;
 
 import javax.naming.CompoundName;
-import javax.naming.Context;
 import javax.naming.Name;
 import javax.naming.NameParser;
 import javax.naming.NamingException;
@@ -35,9 +35,9 @@ class DefaultNameParser implements NameParser {
 
     private final transient Properties properties;
 
-    /* default */ DefaultNameParser(final Context parent) throws NamingException {
+    /* default */ DefaultNameParser(final Map<?, ?> environment) {
         this.properties = new Properties();
-        properties.putAll(parent.getEnvironment());
+        properties.putAll(environment);
     }
 
     @Override
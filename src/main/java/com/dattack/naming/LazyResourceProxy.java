@@ -19,6 +19,8 @@ import com.dattack.naming.loader.factory.ResourceFactory;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.naming.NamingException;
 
 /**
@@ -32,6 +34,7 @@ public class LazyResourceProxy {
     private final transient ResourceFactory<?> factory;
     private final transient String jndiName;
     private final transient Properties properties;
+    private final transient Lock lock;
     private transient volatile Object obj;
 
     /**
@@ -45,10 +48,13 @@ public class LazyResourceProxy {
         this.factory = factory;
         this.jndiName = jndiName;
         this.properties = properties;
+        this.lock = new ReentrantLock();
     }
 
     /**
-     * Returns the initialized underlying object.
+     * Returns the initialized underlying object. The object is created under a <code>java.util.concurrent</code> lock
+     * rather than a monitor, so a virtual thread waiting for another one that is opening connections is unmounted
+     * instead of pinning its carrier thread.
      *
      * @return the initialized underlying object
      *
@@ -57,10 +63,13 @@ public class LazyResourceProxy {
     public Object getObject() throws NamingException {
 
         if (Objects.isNull(obj)) {
-            synchronized (this) {
+            lock.lock();
+            try {
                 if (Objects.isNull(obj)) {
                     obj = factory.getObjectInstance(jndiName, properties);
                 }
+            } finally {
+                lock.unlock();
             }
         }
         return obj;
@@ -29,24 +29,78 @@ public class CommonConstants {
 
     public static final String PRIVATE_KEY_FILENAME = "privateKey";
     public static final String GLOBAL_PRIVATE_KEY_FILENAME = "globalPrivateKey";
+    public static final String DECRYPT_CACHE_SIZE_KEY = "decryptCacheSize";
+    public static final String NAMED_STATEMENT_CACHE_SIZE_KEY = "namedStatementCacheSize";
     public static final String DRIVER_KEY = "driverClassName";
     public static final String URL_KEY = "url";
+    public static final String URLS_KEY = "urls";
+    public static final String HEALTH_CHECK_MILLIS_KEY = "healthCheckMillis";
     public static final String USERNAME_KEY = "username";
     public static final String PASSWORD_KEY = "password";
+    public static final String SECRET_REFRESH_KEY = "secretRefreshSeconds";
     public static final String ON_CONNECT_SCRIPT_KEY = "onConnectScript";
+    public static final String STATEMENT_CACHE_SIZE_KEY = "statementCacheSize";
+    public static final String PROXY_MODE_KEY = "proxyMode";
+    public static final String DEFAULT_FETCH_SIZE_KEY = "defaultFetchSize";
+    public static final String DEFAULT_MAX_ROWS_KEY = "defaultMaxRows";
+    public static final String DEFAULT_QUERY_TIMEOUT_KEY = "defaultQueryTimeoutSeconds";
+    public static final String BATCH_SIZE_KEY = "batchSize";
+    public static final String BATCH_MAX_BYTES_KEY = "batchMaxBytes";
+    public static final String BATCH_MAX_DELAY_MILLIS_KEY = "batchMaxDelayMillis";
+    public static final String RESULT_CACHE_PATTERN_KEY = "resultCachePattern";
+    public static final String RESULT_CACHE_TTL_MILLIS_KEY = "resultCacheTtlMillis";
+    public static final String RESULT_CACHE_MAX_ENTRIES_KEY = "resultCacheMaxEntries";
+    public static final String RESULT_CACHE_MAX_ROWS_KEY = "resultCacheMaxRows";
+    public static final String METRICS_ENABLED_KEY = "metricsEnabled";
+    public static final String SLOW_QUERY_MILLIS_KEY = "slowQueryMillis";
+    public static final String SLOW_QUERY_LOGS_PER_SECOND_KEY = "slowQueryLogsPerSecond";
+    public static final String LEAK_THRESHOLD_MILLIS_KEY = "leakThresholdMillis";
+    public static final String LEAK_SAMPLE_PERCENT_KEY = "leakSamplePercent";
+    public static final String CIRCUIT_BREAKER_FAILURES_KEY = "circuitBreakerFailures";
+    public static final String CIRCUIT_BREAKER_PROBE_MILLIS_KEY = "circuitBreakerProbeMillis";
+    public static final String WARM_UP_KEY = "warmUp";
+    public static final String WARM_UP_CONCURRENCY_KEY = "warmUpConcurrency";
+    public static final String WARM_UP_QUERY_KEY = "warmUpQuery";
     public static final String DISABLE_POOL_KEY = "disablePool";
     public static final String DISABLE_ATOMIKOS_POOL_KEY = DISABLE_POOL_KEY + ".atomikos";
     public static final String DISABLE_DBCP_POOL_KEY = DISABLE_POOL_KEY + ".dbcp";
+    public static final String DISABLE_BUILTIN_POOL_KEY = DISABLE_POOL_KEY + ".builtin";
+    public static final String DISABLE_HIKARI_POOL_KEY = DISABLE_POOL_KEY + ".hikari";
+    public static final String POOL_ORDER_KEY = "poolOrder";
+    public static final String GLOBAL_POOL_ORDER_KEY = "globalPoolOrder";
     public static final String TYPE_KEY = "type";
     public static final String TYPE_DATASOURCE = "javax.sql.DataSource";
+    public static final String TYPE_ROUTING_DATASOURCE =
+        "com.dattack.naming.loader.factory.jdbc.routing.RoutingDataSource";
+    public static final String TYPE_SHARDED_DATASOURCE =
+        "com.dattack.naming.loader.factory.jdbc.routing.ShardedDataSource";
+    public static final String TYPE_HEDGING_DATASOURCE =
+        "com.dattack.naming.loader.factory.jdbc.routing.HedgingDataSource";
+    public static final String PRIMARY_KEY = "primary";
+    public static final String REPLICAS_KEY = "replicas";
+    public static final String SHARDS_KEY = "shards";
+    public static final String SHARD_MAP_KEY = "shardMap";
+    public static final String SHARD_RANGES_KEY = "shardRanges";
+    public static final String HEDGE_DELAY_MILLIS_KEY = "hedgeDelayMillis";
+    public static final String HEDGE_PERCENTILE_KEY = "hedgePercentile";
+    public static final String HEDGE_BUDGET_PERCENT_KEY = "hedgeBudgetPercent";
 
     public static final List<String> RESERVED_NAMES;
 
     static {
         List<String> list = new ArrayList<>();
-        Collections.addAll(list, DISABLE_POOL_KEY, DISABLE_ATOMIKOS_POOL_KEY, DISABLE_DBCP_POOL_KEY,
-                DRIVER_KEY, GLOBAL_PRIVATE_KEY_FILENAME, TYPE_KEY, TYPE_DATASOURCE, ON_CONNECT_SCRIPT_KEY, PASSWORD_KEY,
-                PRIVATE_KEY_FILENAME, URL_KEY, USERNAME_KEY);
+        Collections.addAll(list, BATCH_MAX_BYTES_KEY, BATCH_MAX_DELAY_MILLIS_KEY, BATCH_SIZE_KEY,
+                CIRCUIT_BREAKER_FAILURES_KEY, CIRCUIT_BREAKER_PROBE_MILLIS_KEY,
+                DECRYPT_CACHE_SIZE_KEY, DEFAULT_FETCH_SIZE_KEY, DEFAULT_MAX_ROWS_KEY, DEFAULT_QUERY_TIMEOUT_KEY,
+                DISABLE_POOL_KEY, DISABLE_ATOMIKOS_POOL_KEY,
+                DISABLE_BUILTIN_POOL_KEY, DISABLE_DBCP_POOL_KEY, DISABLE_HIKARI_POOL_KEY, DRIVER_KEY,
+                GLOBAL_POOL_ORDER_KEY, GLOBAL_PRIVATE_KEY_FILENAME, HEALTH_CHECK_MILLIS_KEY, LEAK_SAMPLE_PERCENT_KEY,
+                LEAK_THRESHOLD_MILLIS_KEY, METRICS_ENABLED_KEY,
+                NAMED_STATEMENT_CACHE_SIZE_KEY, TYPE_KEY, TYPE_DATASOURCE, ON_CONNECT_SCRIPT_KEY, PASSWORD_KEY,
+                POOL_ORDER_KEY, PRIVATE_KEY_FILENAME, PROXY_MODE_KEY, RESULT_CACHE_MAX_ENTRIES_KEY,
+                RESULT_CACHE_MAX_ROWS_KEY, RESULT_CACHE_PATTERN_KEY, RESULT_CACHE_TTL_MILLIS_KEY, SECRET_REFRESH_KEY,
+                SLOW_QUERY_LOGS_PER_SECOND_KEY, SLOW_QUERY_MILLIS_KEY, STATEMENT_CACHE_SIZE_KEY, URL_KEY,
+                URLS_KEY, USERNAME_KEY, WARM_UP_KEY, WARM_UP_CONCURRENCY_KEY, WARM_UP_QUERY_KEY);
         RESERVED_NAMES = Collections.unmodifiableList(list);
     }
 }
@@ -16,6 +16,9 @@
 package com.dattack.naming.loader;
 
 import com.dattack.naming.LazyResourceProxy;
+import com.dattack.naming.loader.factory.DataSourceFactory;
+import com.dattack.naming.loader.factory.DataSourceWarmUp;
+import com.dattack.naming.loader.factory.ResourceConfiguration;
 import com.dattack.naming.loader.factory.ResourceFactory;
 import com.dattack.naming.loader.factory.ResourceFactoryRegistry;
 import org.apache.commons.io.FilenameUtils;
@@ -26,7 +29,17 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.naming.Context;
 import javax.naming.NamingException;
 
@@ -35,6 +48,8 @@ import javax.naming.NamingException;
  * configuration directory and creates the necessary sub-contexts associated with the different subdirectories.  For
  * each one of them, it processes the .properties files that it finds and instance, using the factory corresponding to
  * the type of resource indicated in the configuration file, the object that later will bind into the JNDI register.
+ * The datasources configured with the <i>'warmUp'</i> property are created in parallel by {@link #warmUp()}, instead of
+ * the first time they are used.
  *
  * @author cvarela
  * @since 0.1
@@ -44,7 +59,9 @@ public final class NamingLoader {
     private static final String[] EXTENSIONS = new String[]{ "properties" };
     private static final Logger LOGGER = LoggerFactory.getLogger(NamingLoader.class);
 
-    private static void createAndBind(final Properties properties, final Context context,
+    private final Map<String, LazyResourceProxy> warmUpResources = new LinkedHashMap<>();
+
+    private void createAndBind(final Properties properties, final Context context,
         final String name) throws NamingException
     {
         final String type = properties.getProperty(CommonConstants.TYPE_KEY);
@@ -55,7 +72,12 @@ public final class NamingLoader {
         }
 
         final String jndiName = String.format("%s/%s", context.getNameInNamespace(), name);
-        final Object proxy = new LazyResourceProxy(factory, jndiName, properties);
+        final LazyResourceProxy proxy = new LazyResourceProxy(factory, jndiName, properties);
+        if (factory instanceof DataSourceFactory
+            && new ResourceConfiguration(properties).getBoolean(CommonConstants.WARM_UP_KEY, false))
+        {
+            warmUpResources.put(jndiName, proxy);
+        }
         LOGGER.debug("Binding object to '{}/{}' (type: '{}')", context.getNameInNamespace(), name, type);
         execBind(context, name, proxy);
     }
@@ -121,4 +143,52 @@ public final class NamingLoader {
             }
         }
     }
+
+    /**
+     * Creates in parallel the datasources loaded so far that are configured with the <i>'warmUp'</i> property, so that
+     * their pools are filled before the context is used. The number of datasources created at the same time is limited
+     * by the <i>'warmUpConcurrency'</i> environment variable or system property (see
+     * {@link DataSourceWarmUp#getConcurrency()}).
+     *
+     * @return the results of the warm-ups of the datasources created
+     */
+    public List<DataSourceWarmUp.Result> warmUp() {
+
+        if (warmUpResources.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final long start = System.nanoTime();
+        final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.min(DataSourceWarmUp.getConcurrency(), warmUpResources.size()));
+        try {
+            final List<Future<List<DataSourceWarmUp.Result>>> futures = new ArrayList<>(warmUpResources.size());
+            warmUpResources.values().forEach(proxy -> futures.add(executor.submit(
+                () -> DataSourceWarmUp.collectResults(proxy::getObject))));
+
+            int failures = 0;
+            final List<DataSourceWarmUp.Result> results = new ArrayList<>();
+            final List<String> jndiNames = new ArrayList<>(warmUpResources.keySet());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.addAll(futures.get(i).get());
+                } catch (final ExecutionException e) {
+                    failures++;
+                    LOGGER.warn("Unable to create the datasource '{}': {}", jndiNames.get(i),
+                                e.getCause().getMessage());
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            final long failedWarmUps = results.stream().filter(r -> !r.isSuccessful()).count();
+            LOGGER.info("Warm-up of {} datasources completed in {} ms ({} not created, {} warm-ups failed)",
+                        futures.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failures,
+                        failedWarmUps);
+            return results;
+        } finally {
+            executor.shutdown();
+            warmUpResources.clear();
+        }
+    }
 }
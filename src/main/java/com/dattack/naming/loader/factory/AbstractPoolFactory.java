@@ -25,13 +25,21 @@ import java.util.Properties;
 import javax.sql.DataSource;
 
 /**
- * An abstract factory to be extended by connection pool providers.
+ * An abstract factory to be extended by connection pool providers. Besides the built-in ones, the providers are
+ * discovered with {@link java.util.ServiceLoader} when they are declared in
+ * <code>META-INF/services/com.dattack.naming.loader.factory.AbstractPoolFactory</code> (see
+ * {@link PoolFactoryRegistry}).
  *
  * @author cvarela
  * @since 0.4
  */
 public abstract class AbstractPoolFactory {
 
+    /**
+     * The priority of the providers that do not set their own one.
+     */
+    public static final int DEFAULT_PRIORITY = 500;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractPoolFactory.class);
 
     private transient volatile boolean available;
@@ -51,10 +59,58 @@ public abstract class AbstractPoolFactory {
         return props;
     }
 
+    /**
+     * Returns the value of an integer property.
+     *
+     * @param properties   the properties
+     * @param key          the name of the property
+     * @param defaultValue the value returned when the property is not set
+     * @return the value of the property, or <code>defaultValue</code> if it is not set
+     */
+    protected static int getIntProperty(final Properties properties, final String key, final int defaultValue) {
+        final Object value = properties.get(key);
+        return Objects.isNull(value) ? defaultValue : Integer.parseInt(value.toString().trim());
+    }
+
+    /**
+     * Caps the minimum size of a pool at its maximum size. The warm-up holds all its connections at once, so it would
+     * wait for a connection beyond the maximum size until the borrow timeout, or forever if the pool has none.
+     *
+     * @param minimumSize the minimum size configured
+     * @param maximumSize the maximum size of the pool, or a non-positive value if it is unbounded
+     * @return the minimum size, not greater than the maximum size
+     */
+    protected static int capMinimumSize(final int minimumSize, final int maximumSize) {
+        return maximumSize > 0 ? Math.min(minimumSize, maximumSize) : minimumSize;
+    }
+
+    /**
+     * Checks whether a class can be loaded, without initializing it.
+     *
+     * @param className the fully qualified name of the class
+     * @return <code>true</code> if the class is available
+     */
+    protected static boolean isClassAvailable(final String className) {
+        try {
+            Class.forName(className, false, AbstractPoolFactory.class.getClassLoader());
+            return true;
+        } catch (final ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
     public abstract DataSource createDataSource(final DataSourceConfig dataSourceConfig);
 
     public abstract String getDriverKey();
 
+    /**
+     * Returns the short name that identifies this pool in the configuration (e.g. in the <i>'poolOrder'</i> and
+     * <i>'disablePool.&lt;name&gt;'</i> properties).
+     *
+     * @return the name of the pool
+     */
+    public abstract String getName();
+
     public abstract String getPasswordKey();
 
     public abstract String getPrefixKey();
@@ -73,6 +129,60 @@ public abstract class AbstractPoolFactory {
         return available;
     }
 
+    /**
+     * Returns the minimum number of connections that the pools created by this factory keep open with the given
+     * configuration. It is the number of connections opened in parallel when the pool is warmed up.
+     *
+     * @param dataSourceConfig the configuration of the pool
+     * @return the minimum number of connections of the pool
+     */
+    public int getMinimumSize(final DataSourceConfig dataSourceConfig) {
+        return 1;
+    }
+
+    /**
+     * Returns the priority of this pool: when no order is configured, the pools are tried from the lowest to the
+     * highest priority value.
+     *
+     * @return the priority of this pool
+     */
+    public int getPriority() {
+        return DEFAULT_PRIORITY;
+    }
+
+    /**
+     * Checks whether the pools created by this factory execute the on-connect statements of the configuration (see
+     * {@link DataSourceConfig#getOnConnectStatements()}) exactly once per physical connection. Otherwise, they are
+     * executed each time a connection is requested to the pool.
+     *
+     * @param dataSourceConfig the configuration of the pool
+     * @return <code>true</code> if the pool executes the on-connect statements
+     */
+    public boolean isOnConnectScriptSupported(final DataSourceConfig dataSourceConfig) {
+        return false;
+    }
+
+    /**
+     * Checks whether the datasources created by this factory wrap their connections with the proxies of this library,
+     * configured as set by {@link DataSourceConfig#getProxyOptions()}. Otherwise, the proxies are provided by a
+     * decorator of the datasource.
+     *
+     * @return <code>true</code> if the datasources created by this factory wrap their connections
+     */
+    public boolean isProxySupported() {
+        return false;
+    }
+
+    /**
+     * Checks whether the libraries required by this pool are available. It is evaluated only once, when the pool is
+     * registered.
+     *
+     * @return <code>true</code> if this pool can be used
+     */
+    public boolean isSupported() {
+        return true;
+    }
+
     protected Properties computeProperties(final DataSourceConfig dataSourceConfig) {
         final Properties poolProperties = new Properties();
         poolProperties.putAll(dataSourceConfig.getProperties());
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.jtoolbox.jdbc.AbstractDataSourceDecorator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+/**
+ * A datasource that stops requesting connections to the delegate after a number of consecutive failures, so that the
+ * threads of the application do not wait for the connection timeout while the database is unavailable. While the
+ * circuit is open, the connection requests fail immediately. Once the probe interval has elapsed, a single request is
+ * allowed through: the circuit is closed again if it succeeds, or remains open for another interval otherwise.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+/* default */ final class CircuitBreakerDataSource extends AbstractDataSourceDecorator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreakerDataSource.class);
+
+    private static final String SQL_STATE_CONNECTION_FAILURE = "08001";
+
+    private final String jndiName;
+    private final int failureThreshold;
+    private final long probeIntervalNanos;
+    private final AtomicInteger consecutiveFailures;
+    private final AtomicBoolean probing;
+    private volatile boolean open;
+    private volatile long nextProbeNanos;
+
+    /**
+     * Creates a new circuit breaker.
+     *
+     * @param delegate         the datasource that provides the connections
+     * @param jndiName         the JNDI name of the datasource, used in the log messages
+     * @param failureThreshold the number of consecutive failures that opens the circuit
+     * @param probeMillis      the time, in milliseconds, between two attempts to close the circuit
+     */
+    /* default */ CircuitBreakerDataSource(final DataSource delegate, final String jndiName,
+        final int failureThreshold, final long probeMillis)
+    {
+        super(delegate);
+        this.jndiName = jndiName;
+        this.failureThreshold = failureThreshold;
+        this.probeIntervalNanos = TimeUnit.MILLISECONDS.toNanos(probeMillis);
+        this.consecutiveFailures = new AtomicInteger();
+        this.probing = new AtomicBoolean();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        final boolean probe = acquirePermission();
+        boolean success = false;
+        try {
+            final Connection connection = getDelegate().getConnection();
+            success = true;
+            return connection;
+        } finally {
+            // any exception, not only a SQLException, must release the probe
+            onCompletion(probe, success);
+        }
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        final boolean probe = acquirePermission();
+        boolean success = false;
+        try {
+            final Connection connection = getDelegate().getConnection(username, password);
+            success = true;
+            return connection;
+        } finally {
+            // any exception, not only a SQLException, must release the probe
+            onCompletion(probe, success);
+        }
+    }
+
+    /**
+     * Checks whether the circuit is open.
+     *
+     * @return <code>true</code> if the connection requests are being rejected
+     */
+    /* default */ boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Checks whether a connection can be requested to the delegate.
+     *
+     * @return <code>true</code> if the request is the probe that decides whether to close the circuit
+     * @throws SQLTransientConnectionException if the circuit is open and the request is rejected
+     */
+    private boolean acquirePermission() throws SQLTransientConnectionException {
+        if (!open) {
+            return false;
+        }
+        if (System.nanoTime() - nextProbeNanos >= 0 && probing.compareAndSet(false, true)) {
+            LOGGER.debug("[{}] Circuit breaker open, probing the datasource", jndiName);
+            return true;
+        }
+        throw new SQLTransientConnectionException(String.format(
+            "[%s] Circuit breaker open after %d consecutive failures to obtain a connection", jndiName,
+            consecutiveFailures.get()), SQL_STATE_CONNECTION_FAILURE);
+    }
+
+    private void onCompletion(final boolean probe, final boolean success) {
+        if (success) {
+            onSuccess(probe);
+        } else {
+            onFailure(probe);
+        }
+    }
+
+    private void onFailure(final boolean probe) {
+        final int failures = consecutiveFailures.incrementAndGet();
+        if (probe) {
+            nextProbeNanos = System.nanoTime() + probeIntervalNanos;
+            probing.set(false);
+        } else if (failures >= failureThreshold && !open) {
+            // the time of the next probe must be visible before the circuit is seen open
+            nextProbeNanos = System.nanoTime() + probeIntervalNanos;
+            open = true;
+            LOGGER.warn("[{}] Circuit breaker open after {} consecutive failures to obtain a connection", jndiName,
+                        failures);
+        }
+    }
+
+    private void onSuccess(final boolean probe) {
+        consecutiveFailures.set(0);
+        if (probe) {
+            open = false;
+            probing.set(false);
+            LOGGER.info("[{}] Circuit breaker closed", jndiName);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.jtoolbox.jdbc.AbstractDataSourceDecorator;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+
+/**
+ * A DataSource that obtains every connection from its delegate using the current credentials, which can be replaced at
+ * any time. Used when the connections are not pooled.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class CredentialsDataSource extends AbstractDataSourceDecorator implements RotatableCredentials {
+
+    private transient volatile Credentials credentials;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param delegate the delegate datasource
+     * @param username the initial username
+     * @param password the initial password
+     */
+    public CredentialsDataSource(final DataSource delegate, final String username, final String password) {
+        super(delegate);
+        this.credentials = new Credentials(username, password);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        final Credentials current = credentials;
+        return getDelegate().getConnection(current.username, current.password);
+    }
+
+    @Override
+    public void updateCredentials(final String username, final String password) {
+        this.credentials = new Credentials(username, password);
+    }
+
+    private static final class Credentials {
+
+        private final String username;
+        private final String password;
+
+        /* default */ Credentials(final String username, final String password) {
+            this.username = username;
+            this.password = password;
+        }
+    }
+}
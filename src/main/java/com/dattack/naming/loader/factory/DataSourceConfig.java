@@ -15,6 +15,10 @@
  */
 package com.dattack.naming.loader.factory;
 
+import com.dattack.naming.loader.factory.jdbc.dbcp.ProxyOptions;
+
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -31,6 +35,9 @@ public final class DataSourceConfig {
     private transient String user;
     private transient String password;
     private transient Properties properties;
+    private transient List<String> onConnectStatements = Collections.emptyList();
+    private transient ProxyOptions proxyOptions = new ProxyOptions();
+    private transient boolean warmUp;
 
     public String getJndiName() {
         return jndiName;
@@ -77,6 +84,35 @@ public final class DataSourceConfig {
         return this;
     }
 
+    /**
+     * Returns the SQL statements to execute whenever a new physical connection is created.
+     *
+     * @return the SQL statements, never <code>null</code>
+     */
+    public List<String> getOnConnectStatements() {
+        return onConnectStatements;
+    }
+
+    public DataSourceConfig withOnConnectStatements(List<String> onConnectStatements) {
+        this.onConnectStatements = onConnectStatements;
+        return this;
+    }
+
+    /**
+     * Returns the options of the proxies that wrap the connections of the datasource (statement cache, proxy mode,
+     * metrics and slow-query log).
+     *
+     * @return the options of the proxies, never <code>null</code>
+     */
+    public ProxyOptions getProxyOptions() {
+        return proxyOptions;
+    }
+
+    public DataSourceConfig withProxyOptions(ProxyOptions proxyOptions) {
+        this.proxyOptions = proxyOptions;
+        return this;
+    }
+
     public Properties getProperties() {
         return properties;
     }
@@ -85,4 +121,19 @@ public final class DataSourceConfig {
         this.properties = properties;
         return this;
     }
+
+    /**
+     * Checks whether the minimum number of connections of the pool is opened in parallel once the datasource is
+     * created, so that the pool does not need to open them by itself.
+     *
+     * @return <code>true</code> if the pool is warmed up
+     */
+    public boolean isWarmUp() {
+        return warmUp;
+    }
+
+    public DataSourceConfig withWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+        return this;
+    }
 }
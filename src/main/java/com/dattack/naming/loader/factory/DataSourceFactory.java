@@ -15,28 +15,40 @@
  */
 package com.dattack.naming.loader.factory;
 
-import com.dattack.jtoolbox.commons.configuration.ConfigurationUtil;
 import com.dattack.jtoolbox.io.FilesystemUtils;
-import com.dattack.jtoolbox.jdbc.InitializableDataSource;
 import com.dattack.jtoolbox.jdbc.SimpleDataSource;
 import com.dattack.jtoolbox.security.DattackSecurityException;
-import com.dattack.jtoolbox.security.RsaUtils;
 import com.dattack.naming.loader.CommonConstants;
-import com.dattack.naming.loader.factory.jdbc.atomikos.AtomikosPoolFactory;
-import com.dattack.naming.loader.factory.jdbc.dbcp.DbcpPoolFactory;
+import com.dattack.naming.loader.factory.PrivateKeyCache.CachedPrivateKey;
+import com.dattack.naming.loader.factory.jdbc.ConnectionInitializer;
+import com.dattack.naming.loader.factory.jdbc.SqlScriptParser;
+import com.dattack.naming.loader.factory.jdbc.cache.ResultCache;
+import com.dattack.naming.loader.factory.jdbc.cache.ResultCacheDataSource;
+import com.dattack.naming.loader.factory.jdbc.dbcp.ProxyDataSource;
+import com.dattack.naming.loader.factory.jdbc.dbcp.ProxyMode;
+import com.dattack.naming.loader.factory.jdbc.dbcp.ProxyOptions;
+import com.dattack.naming.loader.factory.jdbc.metrics.MetricsRegistry;
+import com.dattack.naming.loader.factory.jdbc.metrics.SlowQueryLog;
+import com.dattack.naming.loader.factory.secret.Secret;
+import com.dattack.naming.loader.factory.secret.SecretManager;
 import org.apache.commons.configuration.AbstractConfiguration;
-import org.apache.commons.configuration.CompositeConfiguration;
-import org.apache.commons.configuration.MapConfiguration;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.charset.Charset;
-import java.security.PrivateKey;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import javax.naming.ConfigurationException;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
@@ -59,6 +71,32 @@ import javax.sql.DataSource;
  *      <li>the path to the file indicated in the <i>'globalPrivateKey'</i> property.</li>
  *      <li>the content of the <i>id_rsa</i> file</li>
  *  </ol>
+ *  <p>
+ *  Any of these properties can also reference a secret, as <strong>secret:</strong><i>provider</i>:<i>name</i> (see
+ *  {@link SecretManager}). When <i>'secretRefreshSeconds'</i> is set, the secrets referenced by the <i>username</i>
+ *  and <i>password</i> are refreshed periodically and the new credentials are used by the physical connections
+ *  created afterwards.
+ *  </p>
+ *  <p>
+ *  The connection pools are tried in the order set by the <i>'poolOrder'</i> property, or by the
+ *  <i>'globalPoolOrder'</i> property when the former is not set, as a comma-separated list of pool names (dbcp,
+ *  atomikos, hikari, builtin or the name of any other pool registered in {@link PoolFactoryRegistry}). By default,
+ *  all the available pools are tried in order of priority.
+ *  </p>
+ *  <p>
+ *  Instead of a single <i>url</i>, the indexed properties <i>'urls.1'</i>, <i>'urls.2'</i>, etc. may set several URLs
+ *  of the same database, in order of preference. A datasource is then created for each URL, and the connections are
+ *  requested to the first one that passes the health checks, executed every <i>'healthCheckMillis'</i> milliseconds
+ *  (see {@link FailoverDataSource}).
+ *  </p>
+ *  <p>
+ *  When the <i>'warmUp'</i> property is true, the minimum number of connections of the pool is opened in parallel as
+ *  soon as the datasource is created, and the datasource is validated (see {@link DataSourceWarmUp}).
+ *  </p>
+ *  <p>
+ *  When the <i>'resultCachePattern'</i> property is set, the results of the prepared queries whose SQL text matches
+ *  that regular expression are cached (see {@link ResultCacheDataSource}).
+ *  </p>
  *
  * @author cvarela
  * @since 0.1
@@ -67,8 +105,17 @@ public final class DataSourceFactory implements ResourceFactory<DataSource> {
 
     private static final String DEFAULT_PRIVATE_KEY = "id_rsa";
     private static final String ENCRYPT_PREFIX = "encrypt";
+    private static final int DEFAULT_SLOW_QUERY_LOGS_PER_SECOND = 10;
+    private static final long DEFAULT_CIRCUIT_BREAKER_PROBE_MILLIS = 5_000L;
+    private static final long DEFAULT_HEALTH_CHECK_MILLIS = 5_000L;
+    private static final double DEFAULT_LEAK_SAMPLE_PERCENT = 1.0;
+    private static final long DEFAULT_RESULT_CACHE_TTL_MILLIS = 60_000L;
+    private static final int DEFAULT_RESULT_CACHE_MAX_ENTRIES = 1000;
+    private static final int DEFAULT_RESULT_CACHE_MAX_ROWS = 1000;
     private static final Logger LOGGER = LoggerFactory.getLogger(DataSourceFactory.class);
 
+    private static volatile String defaultPrivateKeyFilename;
+
     private static String getMandatoryProperty(final AbstractConfiguration configuration,
         final String propertyName) throws ConfigurationException
     {
@@ -79,24 +126,117 @@ public final class DataSourceFactory implements ResourceFactory<DataSource> {
         return value;
     }
 
-    private static String decrypt(final String value, final PrivateKey privateKey,
+    private static String decrypt(final String value, final CachedPrivateKey privateKey,
         final String jndiName) throws DattackSecurityException, NullPointerException
     {
         String plainText;
         if (StringUtils.startsWithIgnoreCase(value, ENCRYPT_PREFIX)) {
             Objects.requireNonNull(privateKey, String.format(
                 "A private key is required to decrypt the datasource configuration (JNDI name: %s)", jndiName));
-            String encryptedValue = value.substring(ENCRYPT_PREFIX.length() + 1);
-            plainText =
-                new String(RsaUtils.decryptBase64(encryptedValue.getBytes(Charset.defaultCharset()), privateKey),
-                           Charset.defaultCharset());
+            plainText = privateKey.decrypt(value.substring(ENCRYPT_PREFIX.length() + 1));
         } else {
             plainText = value;
         }
         return plainText;
     }
 
-    private static PrivateKey getPrivateKey(final String jndiName, final AbstractConfiguration configuration) {
+    private static List<AbstractPoolFactory> getPoolFactories(final String jndiName,
+        final AbstractConfiguration configuration)
+    {
+        List<Object> names = configuration.getList(CommonConstants.POOL_ORDER_KEY);
+        if (names.isEmpty()) {
+            names = configuration.getList(CommonConstants.GLOBAL_POOL_ORDER_KEY);
+        }
+        if (names.isEmpty()) {
+            return PoolFactoryRegistry.getPoolFactories();
+        }
+
+        final List<AbstractPoolFactory> result = new ArrayList<>();
+        for (final Object value : names) {
+            for (final String name : value.toString().split(",")) {
+                final AbstractPoolFactory poolFactory = PoolFactoryRegistry.getPoolFactory(name.trim());
+                if (Objects.isNull(poolFactory)) {
+                    LOGGER.warn("[{}] Unknown or unavailable connection pool '{}'", jndiName, name.trim());
+                } else {
+                    result.add(poolFactory);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static ProxyMode getProxyMode(final AbstractConfiguration configuration) throws ConfigurationException {
+        final String value = configuration.getString(CommonConstants.PROXY_MODE_KEY);
+        try {
+            return ProxyMode.parse(value);
+        } catch (final IllegalArgumentException e) {
+            throw new ConfigurationException(String.format("Invalid value of property '%s': %s",
+                                                           CommonConstants.PROXY_MODE_KEY, value));
+        }
+    }
+
+    private static ProxyOptions getProxyOptions(final String jndiName, final AbstractConfiguration configuration)
+        throws ConfigurationException
+    {
+        final ProxyOptions proxyOptions = new ProxyOptions() //
+            .withStatementCacheSize(configuration.getInt(CommonConstants.STATEMENT_CACHE_SIZE_KEY, 0)) //
+            .withProxyMode(getProxyMode(configuration)) //
+            .withDefaultFetchSize(configuration.getInt(CommonConstants.DEFAULT_FETCH_SIZE_KEY, 0)) //
+            .withDefaultMaxRows(configuration.getInt(CommonConstants.DEFAULT_MAX_ROWS_KEY, 0)) //
+            .withDefaultQueryTimeoutSeconds(configuration.getInt(CommonConstants.DEFAULT_QUERY_TIMEOUT_KEY, 0));
+
+        if (configuration.containsKey(CommonConstants.BATCH_SIZE_KEY)
+            || configuration.containsKey(CommonConstants.BATCH_MAX_BYTES_KEY)
+            || configuration.containsKey(CommonConstants.BATCH_MAX_DELAY_MILLIS_KEY))
+        {
+            proxyOptions.withBatchLimits(
+                configuration.getInt(CommonConstants.BATCH_SIZE_KEY, ProxyOptions.DEFAULT_BATCH_SIZE),
+                configuration.getLong(CommonConstants.BATCH_MAX_BYTES_KEY, ProxyOptions.DEFAULT_BATCH_MAX_BYTES),
+                configuration.getLong(CommonConstants.BATCH_MAX_DELAY_MILLIS_KEY, 0L));
+        }
+
+        if (configuration.getBoolean(CommonConstants.METRICS_ENABLED_KEY, false)) {
+            proxyOptions.withMetrics(MetricsRegistry.getOrCreate(jndiName));
+        }
+
+        final long slowQueryMillis = configuration.getLong(CommonConstants.SLOW_QUERY_MILLIS_KEY, 0L);
+        if (slowQueryMillis > 0) {
+            proxyOptions.withSlowQueryLog(new SlowQueryLog(jndiName, slowQueryMillis,
+                configuration.getInt(CommonConstants.SLOW_QUERY_LOGS_PER_SECOND_KEY,
+                                     DEFAULT_SLOW_QUERY_LOGS_PER_SECOND)));
+        }
+
+        final long leakThresholdMillis = configuration.getLong(CommonConstants.LEAK_THRESHOLD_MILLIS_KEY, 0L);
+        if (leakThresholdMillis > 0) {
+            proxyOptions.withLeakDetector(MetricsRegistry.getOrCreateLeakDetector(jndiName, leakThresholdMillis,
+                configuration.getDouble(CommonConstants.LEAK_SAMPLE_PERCENT_KEY, DEFAULT_LEAK_SAMPLE_PERCENT)));
+        }
+        return proxyOptions;
+    }
+
+    private static String getDefaultPrivateKeyFilename() {
+        // the classpath is scanned only once
+        String filename = defaultPrivateKeyFilename;
+        if (Objects.isNull(filename)) {
+            filename = FilesystemUtils.locateFile(DEFAULT_PRIVATE_KEY).getAbsolutePath();
+            defaultPrivateKeyFilename = filename;
+        }
+        return filename;
+    }
+
+    private static String resolve(final String value, final CachedPrivateKey privateKey,
+        final String jndiName) throws DattackSecurityException, NamingException
+    {
+        String result = value;
+        if (SecretManager.isSecretReference(value)) {
+            result = SecretManager.getSecret(value, 0).getValue();
+        }
+        return decrypt(result, privateKey, jndiName);
+    }
+
+    private static CachedPrivateKey getPrivateKey(final String jndiName,
+        final AbstractConfiguration configuration)
+    {
 
         String keyFilename = configuration.getString(CommonConstants.PRIVATE_KEY_FILENAME);
 
@@ -105,12 +245,12 @@ public final class DataSourceFactory implements ResourceFactory<DataSource> {
         }
 
         if (keyFilename == null) {
-            keyFilename = FilesystemUtils.locateFile(DEFAULT_PRIVATE_KEY).getAbsolutePath();
+            keyFilename = getDefaultPrivateKeyFilename();
         }
 
         try {
             LOGGER.debug("[{}] Trying to load the private key '{}'", jndiName, keyFilename);
-            return RsaUtils.loadPrivateKey(keyFilename);
+            return PrivateKeyCache.getPrivateKey(keyFilename);
         } catch (DattackSecurityException e) {
             LOGGER.debug("[{}] Unable to load the private key '{}'", jndiName, keyFilename);
         }
@@ -122,77 +262,240 @@ public final class DataSourceFactory implements ResourceFactory<DataSource> {
 
         try {
 
-            final MapConfiguration mapConfiguration = new MapConfiguration(properties);
-            mapConfiguration.setDelimiterParsingDisabled(true);
+            final AbstractConfiguration configuration = new ResourceConfiguration(properties);
 
-            final CompositeConfiguration configuration = ConfigurationUtil.createEnvSystemConfiguration();
-            configuration.addConfiguration(mapConfiguration);
+            final CachedPrivateKey privateKey = getPrivateKey(jndiName, configuration);
 
-            final PrivateKey privateKey = getPrivateKey(jndiName, configuration);
+            final List<String> urls = getUrls(configuration);
+            DataSource dataSource;
+            if (urls.isEmpty()) {
+                dataSource = createDataSource(jndiName, properties, configuration, privateKey,
+                    resolve(getMandatoryProperty(configuration, CommonConstants.URL_KEY), privateKey, jndiName));
+            } else {
+                // one datasource per URL, used in order while they are healthy
+                final Map<String, DataSource> dataSources = new LinkedHashMap<>();
+                for (final String url : urls) {
+                    final String resolvedUrl = resolve(url, privateKey, jndiName);
+                    dataSources.put(resolvedUrl,
+                                    createDataSource(jndiName, properties, configuration, privateKey, resolvedUrl));
+                }
+                final long healthCheckMillis = configuration.getLong(CommonConstants.HEALTH_CHECK_MILLIS_KEY,
+                                                                     DEFAULT_HEALTH_CHECK_MILLIS);
+                if (healthCheckMillis <= 0) {
+                    throw new ConfigurationException(String.format("Invalid value of property '%s': %d",
+                        CommonConstants.HEALTH_CHECK_MILLIS_KEY, healthCheckMillis));
+                }
+                LOGGER.debug("[{}] Failover between {} datasources, health check every {} ms", jndiName,
+                             dataSources.size(), healthCheckMillis);
+                dataSource = new FailoverDataSource(jndiName, dataSources, healthCheckMillis);
+            }
 
-            DataSourceConfig dataSourceConfig = new DataSourceConfig().withJndiName(jndiName).withDriver(
-                    decrypt(getMandatoryProperty(configuration, CommonConstants.DRIVER_KEY), //
-                            privateKey, jndiName)) //
-                .withUrl(decrypt(getMandatoryProperty(configuration, CommonConstants.URL_KEY), //
-                                 privateKey, jndiName)) //
-                .withUser(decrypt(configuration.getString(CommonConstants.USERNAME_KEY), //
-                                  privateKey, jndiName)) //
-                .withPassword(decrypt(configuration.getString(CommonConstants.PASSWORD_KEY), //
-                                      privateKey, jndiName)) //
-                .withProperties(properties);
+            // fail fast while the database is unavailable, if a circuit breaker is configured
+            dataSource = decorateWithCircuitBreaker(jndiName, configuration, dataSource);
 
-            DataSource dataSource = null;
-            LOGGER.debug("[{}] Instantiating datasource '{}'@'{}'", jndiName, dataSourceConfig.getUser(),
-                         dataSourceConfig.getUrl());
+            // the cached results are returned even while the database is unavailable
+            return decorateWithResultCache(jndiName, configuration, dataSource);
+        } catch (final DattackSecurityException e) {
+            throw new SecurityConfigurationException(e);
+        }
+    }
 
-            if (!configuration.getBoolean(CommonConstants.DISABLE_POOL_KEY, false)) {
-                if (isDbcpEnabled(configuration)) {
-                    dataSource = DbcpPoolFactory.getInstance().createDataSource(dataSourceConfig);
-                }
+    /**
+     * Returns the URLs set with the indexed keys <i>urls.1</i>, <i>urls.2</i>, etc. in order of their index. A single
+     * key with a list of URLs cannot be used, as a JDBC URL may contain any separator (e.g. the commas of a multi-host
+     * URL such as <code>jdbc:postgresql://h1:5432,h2:5432/db</code>).
+     */
+    private static List<String> getUrls(final AbstractConfiguration configuration) throws ConfigurationException {
+        final Map<Integer, String> urls = new TreeMap<>();
+        final Iterator<String> keys = configuration.getKeys(CommonConstants.URLS_KEY);
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            final String index = key.substring(Math.min(key.length(), CommonConstants.URLS_KEY.length() + 1));
+            if (index.isEmpty() || !StringUtils.isNumeric(index)) {
+                throw new ConfigurationException(String.format(
+                    "Invalid property '%s': the URLs must be set with the indexed keys %s.1, %s.2, ...", key,
+                    CommonConstants.URLS_KEY, CommonConstants.URLS_KEY));
+            }
+            final String url = configuration.getString(key);
+            if (StringUtils.isNotBlank(url)) {
+                urls.put(Integer.valueOf(index), url.trim());
+            }
+        }
+        return new ArrayList<>(urls.values());
+    }
+
+    private DataSource createDataSource(final String jndiName, final Properties properties,
+        final AbstractConfiguration configuration, final CachedPrivateKey privateKey, final String url)
+        throws DattackSecurityException, NamingException
+    {
+        final DataSourceConfig dataSourceConfig = new DataSourceConfig().withJndiName(jndiName).withDriver(
+                resolve(getMandatoryProperty(configuration, CommonConstants.DRIVER_KEY), //
+                        privateKey, jndiName)) //
+            .withUrl(url) //
+            .withUser(resolve(configuration.getString(CommonConstants.USERNAME_KEY), //
+                              privateKey, jndiName)) //
+            .withPassword(resolve(configuration.getString(CommonConstants.PASSWORD_KEY), //
+                                  privateKey, jndiName)) //
+            .withProperties(properties) //
+            .withOnConnectStatements(
+                SqlScriptParser.split(configuration.getString(CommonConstants.ON_CONNECT_SCRIPT_KEY))) //
+            .withProxyOptions(getProxyOptions(jndiName, configuration)) //
+            .withWarmUp(configuration.getBoolean(CommonConstants.WARM_UP_KEY, false));
+
+        DataSource dataSource = null;
+        AbstractPoolFactory selectedPoolFactory = null;
+        LOGGER.debug("[{}] Instantiating datasource '{}'@'{}'", jndiName, dataSourceConfig.getUser(),
+                     dataSourceConfig.getUrl());
 
-                if (Objects.isNull(dataSource) && isAtomikosEnabled(configuration)) {
-                    dataSource = AtomikosPoolFactory.getInstance().createDataSource(dataSourceConfig);
+        if (!configuration.getBoolean(CommonConstants.DISABLE_POOL_KEY, false)) {
+            for (final AbstractPoolFactory poolFactory : getPoolFactories(jndiName, configuration)) {
+                if (isPoolEnabled(poolFactory, configuration)) {
+                    dataSource = poolFactory.createDataSource(dataSourceConfig);
+                    if (Objects.nonNull(dataSource)) {
+                        selectedPoolFactory = poolFactory;
+                        break;
+                    }
                 }
             }
+        }
 
-            if (Objects.isNull(dataSource)) {
-                LOGGER.debug("[{}] Connection pool disabled", jndiName);
-                dataSource = new SimpleDataSource(dataSourceConfig.getDriver(), dataSourceConfig.getUrl(),
-                                                  dataSourceConfig.getUser(), dataSourceConfig.getPassword());
-            }
+        if (Objects.isNull(dataSource)) {
+            LOGGER.debug("[{}] Connection pool disabled", jndiName);
+            dataSource = new SimpleDataSource(dataSourceConfig.getDriver(), dataSourceConfig.getUrl(),
+                                              dataSourceConfig.getUser(), dataSourceConfig.getPassword());
+        }
+
+        // refresh the credentials periodically, if they reference secrets
+        dataSource = decorateWithCredentialsRefresh(jndiName, configuration, privateKey, dataSourceConfig,
+                                                    dataSource);
 
-            // include on-connect script, if one exists
-            dataSource =
-                decorateWithOnConnectScript(jndiName, configuration.getString(CommonConstants.ON_CONNECT_SCRIPT_KEY),
-                                            dataSource);
+        // wrap the connections to cache the prepared statements and monitor the statements, if the pool does not
+        // do it by itself
+        if (dataSourceConfig.getProxyOptions().isWrappingRequired()
+            && (Objects.isNull(selectedPoolFactory) || !selectedPoolFactory.isProxySupported()))
+        {
+            dataSource = new ProxyDataSource(dataSource, dataSourceConfig.getProxyOptions());
+        }
+
+        // include on-connect script, if one exists and the pool does not execute it by itself
+        if (Objects.isNull(selectedPoolFactory)
+            || !selectedPoolFactory.isOnConnectScriptSupported(dataSourceConfig))
+        {
+            dataSource = decorateWithOnConnectScript(dataSourceConfig, dataSource);
+        }
+
+        // open the minimum number of connections of the pool in parallel, if the warm-up is enabled
+        if (dataSourceConfig.isWarmUp()) {
+            final int connections = Objects.isNull(selectedPoolFactory) ? 1
+                : selectedPoolFactory.getMinimumSize(dataSourceConfig);
+            DataSourceWarmUp.warmUp(jndiName, url, dataSource, Math.max(1, connections),
+                                    configuration.getString(CommonConstants.WARM_UP_QUERY_KEY));
+        }
+
+        LOGGER.info("[{}] Datasource '{}'@'{}': {}", jndiName, dataSourceConfig.getUser(),
+                    dataSourceConfig.getUrl(), dataSource.getClass());
+        return dataSource;
+    }
+
+    private static boolean isPoolEnabled(final AbstractPoolFactory poolFactory,
+        final AbstractConfiguration configuration)
+    {
+        return poolFactory.isAvailable() && !configuration.getBoolean(
+            CommonConstants.DISABLE_POOL_KEY + "." + poolFactory.getName(), false);
+    }
 
-            LOGGER.info("[{}] Datasource '{}'@'{}': {}", jndiName, dataSourceConfig.getUser(),
-                        dataSourceConfig.getUrl(), dataSource.getClass());
+    private DataSource decorateWithCredentialsRefresh(final String jndiName,
+        final AbstractConfiguration configuration, final CachedPrivateKey privateKey,
+        final DataSourceConfig dataSourceConfig, final DataSource dataSource) throws NamingException
+    {
+        final long refreshSeconds = configuration.getLong(CommonConstants.SECRET_REFRESH_KEY, 0L);
+        final String username = configuration.getString(CommonConstants.USERNAME_KEY);
+        final String password = configuration.getString(CommonConstants.PASSWORD_KEY);
+        if (refreshSeconds <= 0
+            || (!SecretManager.isSecretReference(username) && !SecretManager.isSecretReference(password)))
+        {
             return dataSource;
-        } catch (final DattackSecurityException e) {
-            throw new SecurityConfigurationException(e);
         }
+
+        DataSource result = dataSource;
+        if (result instanceof SimpleDataSource) {
+            result = new CredentialsDataSource(result, dataSourceConfig.getUser(), dataSourceConfig.getPassword());
+        }
+
+        if (!(result instanceof RotatableCredentials)) {
+            LOGGER.warn("[{}] Unable to refresh the credentials of a datasource of type {}", jndiName,
+                        result.getClass());
+            return result;
+        }
+
+        final RotatableCredentials rotatableCredentials = (RotatableCredentials) result;
+        final Consumer<String> listener = value -> {
+            try {
+                rotatableCredentials.updateCredentials(resolve(username, privateKey, jndiName),
+                                                       resolve(password, privateKey, jndiName));
+                LOGGER.info("[{}] Credentials updated", jndiName);
+            } catch (final DattackSecurityException | NamingException | SQLException e) {
+                LOGGER.warn("[{}] Unable to update the credentials: {}", jndiName, e.getMessage());
+            }
+        };
+
+        for (final String value : Arrays.asList(username, password)) {
+            if (SecretManager.isSecretReference(value)) {
+                final Secret secret = SecretManager.getSecret(value, refreshSeconds);
+                secret.addListener(listener);
+                LOGGER.debug("[{}] Refreshing secret '{}' every {} seconds", jndiName, secret, refreshSeconds);
+            }
+        }
+        return result;
     }
 
-    private boolean isAtomikosEnabled(final CompositeConfiguration configuration) {
-        return AtomikosPoolFactory.getInstance().isAvailable() && !configuration.getBoolean(
-            CommonConstants.DISABLE_ATOMIKOS_POOL_KEY, false);
+    private DataSource decorateWithCircuitBreaker(final String jndiName, final AbstractConfiguration configuration,
+        final DataSource dataSource)
+    {
+        final int failureThreshold = configuration.getInt(CommonConstants.CIRCUIT_BREAKER_FAILURES_KEY, 0);
+        if (failureThreshold <= 0) {
+            return dataSource;
+        }
+
+        final long probeMillis = configuration.getLong(CommonConstants.CIRCUIT_BREAKER_PROBE_MILLIS_KEY,
+                                                       DEFAULT_CIRCUIT_BREAKER_PROBE_MILLIS);
+        LOGGER.debug("[{}] Circuit breaker: {} consecutive failures, probe every {} ms", jndiName, failureThreshold,
+                     probeMillis);
+        return new CircuitBreakerDataSource(dataSource, jndiName, failureThreshold, probeMillis);
     }
 
-    private boolean isDbcpEnabled(final CompositeConfiguration configuration) {
-        return DbcpPoolFactory.getInstance().isAvailable() && !configuration.getBoolean(
-            CommonConstants.DISABLE_DBCP_POOL_KEY, false);
+    private DataSource decorateWithResultCache(final String jndiName, final AbstractConfiguration configuration,
+        final DataSource dataSource) throws ConfigurationException
+    {
+        final String pattern = configuration.getString(CommonConstants.RESULT_CACHE_PATTERN_KEY);
+        if (StringUtils.isBlank(pattern)) {
+            return dataSource;
+        }
+
+        final ResultCache cache;
+        try {
+            cache = new ResultCache(Pattern.compile(pattern),
+                configuration.getLong(CommonConstants.RESULT_CACHE_TTL_MILLIS_KEY, DEFAULT_RESULT_CACHE_TTL_MILLIS),
+                configuration.getInt(CommonConstants.RESULT_CACHE_MAX_ENTRIES_KEY, DEFAULT_RESULT_CACHE_MAX_ENTRIES),
+                configuration.getInt(CommonConstants.RESULT_CACHE_MAX_ROWS_KEY, DEFAULT_RESULT_CACHE_MAX_ROWS));
+        } catch (final PatternSyntaxException e) {
+            throw new ConfigurationException(String.format("Invalid value of property '%s': %s",
+                                                           CommonConstants.RESULT_CACHE_PATTERN_KEY, pattern));
+        }
+        LOGGER.debug("[{}] Result cache: {}", jndiName, cache);
+        return new ResultCacheDataSource(dataSource, cache);
     }
 
-    private DataSource decorateWithOnConnectScript(final String jndiName, final String script,
+    private DataSource decorateWithOnConnectScript(final DataSourceConfig dataSourceConfig,
         final DataSource dataSource)
     {
 
         DataSource result = dataSource;
-        if (StringUtils.isNotBlank(script)) {
-            final List<String> sqlStatements = Arrays.asList(script.split(";"));
-            LOGGER.debug("[{}] Commands to execute on connect: {}", jndiName, sqlStatements);
-            result = new InitializableDataSource(result, sqlStatements);
+        final List<String> sqlStatements = dataSourceConfig.getOnConnectStatements();
+        if (!sqlStatements.isEmpty()) {
+            LOGGER.debug("[{}] Commands to execute on connect: {}", dataSourceConfig.getJndiName(), sqlStatements);
+            result = new OnConnectScriptDataSource(result, new ConnectionInitializer(dataSourceConfig.getJndiName(),
+                dataSourceConfig.getUrl(), sqlStatements));
         }
         return result;
     }
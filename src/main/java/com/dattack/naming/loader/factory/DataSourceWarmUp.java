@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.naming.loader.CommonConstants;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+/**
+ * Pre-fills the connection pools at startup. The connections of each pool are opened in parallel by a process-wide
+ * executor, whose size (the <i>'warmUpConcurrency'</i> environment variable or system property, 8 by default) limits
+ * the number of connections being created at the same time by all the pools. Once opened, one of the connections is
+ * validated with the <i>'warmUpQuery'</i> of the resource, or with {@link Connection#isValid(int)} when it is not set,
+ * and then all of them are returned to the pool. The result of each warm-up is logged and, when it is executed by
+ * {@link #collectResults(Callable)}, returned to its caller.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class DataSourceWarmUp {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataSourceWarmUp.class);
+
+    private static final int DEFAULT_CONCURRENCY = 8;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    // the results of the warm-ups executed by the current thread, only while it runs collectResults()
+    private static final ThreadLocal<List<Result>> COLLECTED_RESULTS = new ThreadLocal<>();
+
+    private static volatile ExecutorService executor;
+
+    private DataSourceWarmUp() {
+        // static class
+    }
+
+    private static ExecutorService getExecutor() {
+        ExecutorService result = executor;
+        if (Objects.isNull(result)) {
+            synchronized (DataSourceWarmUp.class) {
+                result = executor;
+                if (Objects.isNull(result)) {
+                    result = Executors.newFixedThreadPool(getConcurrency(), runnable -> {
+                        final Thread thread = new Thread(runnable, "standalone-jndi-warm-up");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of warm-up tasks executed at the same time, set by the <i>'warmUpConcurrency'</i>
+     * environment variable or system property.
+     *
+     * @return the warm-up concurrency, at least 1
+     */
+    public static int getConcurrency() {
+        return Math.max(1, EnvSystemConfiguration.getInstance()
+            .getInt(CommonConstants.WARM_UP_CONCURRENCY_KEY, DEFAULT_CONCURRENCY));
+    }
+
+    /**
+     * Executes a task, typically the creation of a datasource, and returns the results of the warm-ups executed by it
+     * in the current thread.
+     *
+     * @param task the task to execute
+     * @return the results of the warm-ups, in order of completion
+     * @throws Exception if the task fails
+     */
+    @SuppressWarnings("PMD.SignatureDeclareThrowsException")
+    public static List<Result> collectResults(final Callable<?> task) throws Exception {
+        final List<Result> previous = COLLECTED_RESULTS.get();
+        final List<Result> results = new ArrayList<>();
+        COLLECTED_RESULTS.set(results);
+        try {
+            task.call();
+            return results;
+        } finally {
+            if (Objects.isNull(previous)) {
+                COLLECTED_RESULTS.remove();
+            } else {
+                COLLECTED_RESULTS.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Opens the given number of connections in parallel, validates one of them and returns all of them to the pool.
+     *
+     * @param jndiName        the JNDI name of the datasource
+     * @param url             the URL of the datasource, used in the report
+     * @param dataSource      the datasource to warm up
+     * @param connections     the number of connections to open
+     * @param validationQuery the query used to validate the datasource, or <code>null</code> to use
+     *                        {@link Connection#isValid(int)}
+     * @return the result of the warm-up
+     */
+    /* default */ static Result warmUp(final String jndiName, final String url, final DataSource dataSource,
+        final int connections, final String validationQuery)
+    {
+        final long start = System.nanoTime();
+        final List<Future<Connection>> futures = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            futures.add(getExecutor().submit(() -> dataSource.getConnection()));
+        }
+
+        final List<Connection> opened = new ArrayList<>(connections);
+        Exception failure = null;
+        for (final Future<Connection> future : futures) {
+            try {
+                opened.add(future.get());
+            } catch (final ExecutionException e) {
+                failure = addFailure(failure, e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = addFailure(failure, e);
+                break;
+            }
+        }
+
+        if (!opened.isEmpty()) {
+            try {
+                validate(opened.get(0), validationQuery);
+            } catch (final SQLException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+
+        for (final Connection connection : opened) {
+            try {
+                connection.close();
+            } catch (final SQLException e) {
+                LOGGER.debug("[{}] Unable to close connection: {}", jndiName, e.getMessage());
+            }
+        }
+
+        final Result result = new Result(jndiName, url, connections, opened.size(),
+                                         TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                                         Objects.isNull(failure) ? null : failure.toString());
+        if (result.isSuccessful()) {
+            LOGGER.info("[{}] Warm-up of '{}' completed: {} connections in {} ms", jndiName, url,
+                        result.getOpenedConnections(), result.getElapsedMillis());
+        } else {
+            LOGGER.warn("[{}] Warm-up of '{}' failed: {}/{} connections in {} ms: {}", jndiName, url,
+                        result.getOpenedConnections(), result.getRequestedConnections(), result.getElapsedMillis(),
+                        result.getFailure());
+        }
+        final List<Result> collected = COLLECTED_RESULTS.get();
+        if (Objects.nonNull(collected)) {
+            collected.add(result);
+        }
+        return result;
+    }
+
+    private static Exception addFailure(final Exception failure, final Exception e) {
+        if (Objects.isNull(failure)) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    private static void validate(final Connection connection, final String validationQuery) throws SQLException {
+        if (StringUtils.isBlank(validationQuery)) {
+            if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                throw new SQLException("Invalid connection");
+            }
+        } else {
+            try (Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(VALIDATION_TIMEOUT_SECONDS);
+                statement.execute(validationQuery);
+            }
+        }
+    }
+
+    /**
+     * The result of the warm-up of a datasource.
+     */
+    public static final class Result {
+
+        private final String jndiName;
+        private final String url;
+        private final int requestedConnections;
+        private final int openedConnections;
+        private final long elapsedMillis;
+        private final String failure;
+
+        /* default */ Result(final String jndiName, final String url, final int requestedConnections,
+            final int openedConnections, final long elapsedMillis, final String failure)
+        {
+            this.jndiName = jndiName;
+            this.url = url;
+            this.requestedConnections = requestedConnections;
+            this.openedConnections = openedConnections;
+            this.elapsedMillis = elapsedMillis;
+            this.failure = failure;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * Returns the description of the first error of the warm-up.
+         *
+         * @return the first error, or <code>null</code> if the warm-up succeeded
+         */
+        public String getFailure() {
+            return failure;
+        }
+
+        public String getJndiName() {
+            return jndiName;
+        }
+
+        public int getOpenedConnections() {
+            return openedConnections;
+        }
+
+        public int getRequestedConnections() {
+            return requestedConnections;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public boolean isSuccessful() {
+            return Objects.isNull(failure);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%s): %d/%d connections in %d ms%s", jndiName, url, openedConnections,
+                                 requestedConnections, elapsedMillis,
+                                 isSuccessful() ? "" : ", failure: " + failure);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.jtoolbox.commons.configuration.ConfigurationUtil;
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.configuration.CompositeConfiguration;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Read-only snapshot of the environment variables and the system properties. The snapshot is built once per
+ * {@link com.dattack.naming.loader.NamingLoader} run and shared by all the resources created afterwards, so that the
+ * environment is not copied again for every resource.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class EnvSystemConfiguration extends AbstractConfiguration {
+
+    private static volatile EnvSystemConfiguration instance;
+
+    private final Map<String, Object> properties;
+
+    private EnvSystemConfiguration(final Map<String, Object> properties) {
+        super();
+        this.properties = properties;
+        setDelimiterParsingDisabled(true);
+    }
+
+    /**
+     * Returns the shared snapshot, creating it if it does not exist yet.
+     *
+     * @return the shared snapshot
+     */
+    public static EnvSystemConfiguration getInstance() {
+        EnvSystemConfiguration result = instance;
+        if (Objects.isNull(result)) {
+            synchronized (EnvSystemConfiguration.class) {
+                result = instance;
+                if (Objects.isNull(result)) {
+                    result = create();
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Discards the shared snapshot and builds a new one from the current environment variables and system properties.
+     *
+     * @return the new shared snapshot
+     */
+    public static EnvSystemConfiguration reload() {
+        final EnvSystemConfiguration result = create();
+        instance = result;
+        return result;
+    }
+
+    private static EnvSystemConfiguration create() {
+        final CompositeConfiguration configuration = ConfigurationUtil.createEnvSystemConfiguration();
+        final Map<String, Object> map = new HashMap<>();
+        final Iterator<String> keys = configuration.getKeys();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            map.put(key, configuration.getProperty(key));
+        }
+        return new EnvSystemConfiguration(Collections.unmodifiableMap(map));
+    }
+
+    @Override
+    public boolean containsKey(final String key) {
+        return properties.containsKey(key);
+    }
+
+    @Override
+    public Iterator<String> getKeys() {
+        return properties.keySet().iterator();
+    }
+
+    @Override
+    public Object getProperty(final String key) {
+        return properties.get(key);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return properties.isEmpty();
+    }
+
+    @Override
+    protected void addPropertyDirect(final String key, final Object value) {
+        throw new UnsupportedOperationException("Read-only configuration");
+    }
+
+    @Override
+    protected void clearPropertyDirect(final String key) {
+        throw new UnsupportedOperationException("Read-only configuration");
+    }
+}
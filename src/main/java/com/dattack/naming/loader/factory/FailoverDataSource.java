@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.jtoolbox.jdbc.AbstractDataSourceDecorator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+/**
+ * A datasource that provides the connections of the first healthy datasource of an ordered list, one per URL of the
+ * same database. Each datasource is checked periodically in the background, so that a failover does not make the
+ * threads of the application wait for the connection timeout of an unavailable host. A datasource is also marked as
+ * unhealthy as soon as a connection request fails with a connection error (SQLSTATE class <code>08</code>), and the
+ * request is retried with the next healthy one; only the background checks mark it as healthy again. Other errors,
+ * such as a timeout waiting for a saturated pool, do not mark the datasource as unhealthy. The health checks of each
+ * failover datasource run on their own threads, one per datasource, so that a check blocked for the connect timeout
+ * of an unreachable host does not delay the checks of the other datasources.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+/* default */ final class FailoverDataSource extends AbstractDataSourceDecorator implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FailoverDataSource.class);
+
+    private static final String SQL_STATE_CONNECTION_FAILURE = "08001";
+    private static final String SQL_STATE_CONNECTION_CLASS = "08";
+    private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 5;
+
+    private final String jndiName;
+    private final List<Endpoint> endpoints;
+    private final ScheduledThreadPoolExecutor healthChecks;
+
+    /**
+     * Creates a new failover datasource and starts the health checks of its datasources.
+     *
+     * @param jndiName          the JNDI name of the datasource, used in the log messages
+     * @param dataSources       the datasources indexed by their URL, in order of preference
+     * @param healthCheckMillis the time, in milliseconds, between two health checks of each datasource
+     */
+    /* default */ FailoverDataSource(final String jndiName, final Map<String, DataSource> dataSources,
+        final long healthCheckMillis)
+    {
+        super(dataSources.values().iterator().next());
+        this.jndiName = jndiName;
+        final List<Endpoint> list = new ArrayList<>(dataSources.size());
+        dataSources.forEach((url, dataSource) -> list.add(new Endpoint(url, dataSource)));
+        this.endpoints = Collections.unmodifiableList(list);
+
+        // a check in progress never delays the next check of another datasource, as each one has a thread
+        this.healthChecks = new ScheduledThreadPoolExecutor(endpoints.size(), runnable -> {
+            final Thread thread = new Thread(runnable, "standalone-jndi-health-check-" + jndiName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (final Endpoint endpoint : endpoints) {
+            healthChecks.scheduleWithFixedDelay(() -> check(endpoint), healthCheckMillis, healthCheckMillis,
+                                                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the health checks of the datasources.
+     */
+    @Override
+    public void close() {
+        healthChecks.shutdownNow();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connect(null, null);
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        return connect(username, password);
+    }
+
+    /**
+     * Checks the health of all the datasources immediately.
+     */
+    /* default */ void checkHealth() {
+        endpoints.forEach(this::check);
+    }
+
+    /**
+     * Checks whether the datasource at the given position is healthy.
+     *
+     * @param index the position of the datasource
+     * @return <code>true</code> if the datasource is healthy
+     */
+    /* default */ boolean isHealthy(final int index) {
+        return endpoints.get(index).healthy;
+    }
+
+    private void check(final Endpoint endpoint) {
+        boolean healthy;
+        try (Connection connection = endpoint.dataSource.getConnection()) {
+            healthy = connection.isValid(HEALTH_CHECK_TIMEOUT_SECONDS);
+        } catch (final SQLException e) {
+            LOGGER.debug("[{}] Health check of '{}' failed: {}", jndiName, endpoint.url, e.getMessage());
+            // e.g. a saturated pool times out, but the database is still reachable
+            healthy = !isConnectionFailure(e);
+        }
+
+        if (healthy && !endpoint.healthy) {
+            LOGGER.info("[{}] Datasource '{}' is available again", jndiName, endpoint.url);
+        } else if (!healthy && endpoint.healthy) {
+            LOGGER.warn("[{}] Datasource '{}' is unavailable", jndiName, endpoint.url);
+        }
+        endpoint.healthy = healthy;
+    }
+
+    private Connection connect(final String username, final String password) throws SQLException {
+
+        SQLException failure = null;
+        for (final Endpoint endpoint : endpoints) {
+            if (endpoint.healthy) {
+                try {
+                    return endpoint.getConnection(username, password);
+                } catch (final SQLException e) {
+                    if (!isConnectionFailure(e)) {
+                        throw e;
+                    }
+                    LOGGER.warn("[{}] Unable to connect to '{}', failing over: {}", jndiName, endpoint.url,
+                                e.getMessage());
+                    endpoint.healthy = false;
+                    failure = addFailure(failure, e);
+                }
+            }
+        }
+
+        if (Objects.isNull(failure)) {
+            // no datasource is known to be healthy: the health checks may be stale, so all of them are tried
+            for (final Endpoint endpoint : endpoints) {
+                try {
+                    return endpoint.getConnection(username, password);
+                } catch (final SQLException e) {
+                    failure = addFailure(failure, e);
+                }
+            }
+        }
+
+        final SQLException exception = new SQLTransientConnectionException(String.format(
+            "[%s] Unable to connect to any of the %d datasources", jndiName, endpoints.size()),
+            SQL_STATE_CONNECTION_FAILURE);
+        exception.initCause(failure);
+        throw exception;
+    }
+
+    /**
+     * Checks whether an exception, or any of its causes, reports a connection error (SQLSTATE class <code>08</code>).
+     *
+     * @param exception the exception to check
+     * @return <code>true</code> if the database cannot be reached
+     */
+    private static boolean isConnectionFailure(final SQLException exception) {
+        for (Throwable cause = exception; Objects.nonNull(cause); cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                final String sqlState = ((SQLException) cause).getSQLState();
+                if (Objects.nonNull(sqlState) && sqlState.startsWith(SQL_STATE_CONNECTION_CLASS)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static SQLException addFailure(final SQLException failure, final SQLException e) {
+        if (Objects.isNull(failure)) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    /**
+     * A datasource of the list, together with the result of its last health check.
+     */
+    private static final class Endpoint {
+
+        private final String url;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+
+        /* default */ Endpoint(final String url, final DataSource dataSource) {
+            this.url = url;
+            this.dataSource = dataSource;
+            this.healthy = true;
+        }
+
+        /* default */ Connection getConnection(final String username, final String password) throws SQLException {
+            return Objects.isNull(username) && Objects.isNull(password) ? dataSource.getConnection()
+                : dataSource.getConnection(username, password);
+        }
+    }
+}
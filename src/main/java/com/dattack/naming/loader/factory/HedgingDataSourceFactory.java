@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.naming.loader.CommonConstants;
+import com.dattack.naming.loader.factory.jdbc.routing.HedgingDataSource;
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import javax.naming.ConfigurationException;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+/**
+ * A factory that composes other JNDI datasources into a {@link HedgingDataSource}. The properties are as follows:
+ * <ul>
+ * <li>replicas: a comma-separated list with the JNDI names of at least two equivalent datasources</li>
+ * <li>hedgeDelayMillis: the time to wait for a query before sending its hedge, until the percentile can be computed
+ * (20 by default)</li>
+ * <li>hedgePercentile: the percentile of the latency of the queries used as hedge delay (95 by default, 0 to always
+ * use <i>hedgeDelayMillis</i>)</li>
+ * <li>hedgeBudgetPercent: the maximum percentage of queries that can be hedged (5 by default)</li>
+ * </ul>
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class HedgingDataSourceFactory implements ResourceFactory<DataSource> {
+
+    private static final long DEFAULT_HEDGE_DELAY_MILLIS = 20L;
+    private static final double DEFAULT_HEDGE_PERCENTILE = 95;
+    private static final double DEFAULT_HEDGE_BUDGET_PERCENT = 5;
+    private static final Logger LOGGER = LoggerFactory.getLogger(HedgingDataSourceFactory.class);
+
+    @Override
+    public DataSource getObjectInstance(final String jndiName, final Properties properties) throws NamingException {
+
+        final AbstractConfiguration configuration = new ResourceConfiguration(properties);
+
+        // the context is not closed: the standalone initial context is shared by the whole process
+        final InitialContext context = new InitialContext();
+        final Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (final String name : StringUtils.split(configuration.getString(CommonConstants.REPLICAS_KEY, ""), ',')) {
+            if (StringUtils.isNotBlank(name)) {
+                replicas.put(name.trim(), RoutingDataSourceFactory.lookup(context, jndiName, name.trim()));
+            }
+        }
+        if (replicas.size() < 2) {
+            throw new ConfigurationException(String.format("Property '%s' must contain at least two JNDI names",
+                                                           CommonConstants.REPLICAS_KEY));
+        }
+
+        final DataSource dataSource = new HedgingDataSource(jndiName, replicas,
+            configuration.getLong(CommonConstants.HEDGE_DELAY_MILLIS_KEY, DEFAULT_HEDGE_DELAY_MILLIS),
+            configuration.getDouble(CommonConstants.HEDGE_PERCENTILE_KEY, DEFAULT_HEDGE_PERCENTILE),
+            configuration.getDouble(CommonConstants.HEDGE_BUDGET_PERCENT_KEY, DEFAULT_HEDGE_BUDGET_PERCENT));
+        LOGGER.info("[{}] Datasource: {}", jndiName, dataSource);
+        return dataSource;
+    }
+}
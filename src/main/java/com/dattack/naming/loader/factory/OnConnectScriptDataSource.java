@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.jtoolbox.jdbc.AbstractDataSourceDecorator;
+import com.dattack.naming.loader.factory.jdbc.ConnectionInitializer;
+import com.dattack.naming.loader.factory.jdbc.WeakIdentityKey;
+import com.dattack.naming.loader.factory.jdbc.dbcp.DbcpProxyConnection;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sql.DataSource;
+
+/**
+ * A datasource that executes the on-connect statements once per physical connection. It is used when there is no
+ * pool, so that each connection is a new physical connection, or when the pool cannot execute them by itself. The
+ * physical connections already initialized are tracked by identity, and weakly, so that those discarded by the pool
+ * can be collected.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+/* default */ final class OnConnectScriptDataSource extends AbstractDataSourceDecorator {
+
+    private final ConnectionInitializer initializer;
+    private final Set<WeakIdentityKey<Connection>> initialized;
+    private final ReferenceQueue<Connection> collected;
+
+    /* default */ OnConnectScriptDataSource(final DataSource delegate, final ConnectionInitializer initializer) {
+        super(delegate);
+        this.initializer = initializer;
+        this.initialized = ConcurrentHashMap.newKeySet();
+        this.collected = new ReferenceQueue<>();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return initialize(getDelegate().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        return initialize(getDelegate().getConnection(username, password));
+    }
+
+    @SuppressWarnings("PMD.CloseResource")
+    private Connection initialize(final Connection connection) throws SQLException {
+        try {
+            final Connection physicalConnection = DbcpProxyConnection.getPhysicalConnection(connection);
+            if (!initialized.contains(new WeakIdentityKey<>(physicalConnection))) {
+                initializer.initialize(connection);
+                removeCollected();
+                initialized.add(new WeakIdentityKey<>(physicalConnection, collected));
+            }
+            return connection;
+        } catch (final SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private void removeCollected() {
+        for (Reference<? extends Connection> key = collected.poll(); Objects.nonNull(key); key = collected.poll()) {
+            initialized.remove(key);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.naming.loader.factory.jdbc.atomikos.AtomikosPoolFactory;
+import com.dattack.naming.loader.factory.jdbc.dbcp.DbcpPoolFactory;
+import com.dattack.naming.loader.factory.jdbc.hikari.HikariPoolFactory;
+import com.dattack.naming.loader.factory.jdbc.pool.BuiltinPoolFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry containing the available connection pools. The built-in pools are registered first, followed by those
+ * discovered with {@link ServiceLoader}; the pools whose libraries are not available are discarded at that time.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+@SuppressWarnings("PMD.ClassNamingConventions")
+public final class PoolFactoryRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PoolFactoryRegistry.class);
+
+    private static final Map<String, AbstractPoolFactory> MAPPING = new ConcurrentHashMap<>();
+
+    private static volatile List<AbstractPoolFactory> sortedFactories = Collections.emptyList();
+
+    static {
+        // default pool list
+        register(DbcpPoolFactory.getInstance());
+        register(AtomikosPoolFactory.getInstance());
+        register(HikariPoolFactory.getInstance());
+        register(BuiltinPoolFactory.getInstance());
+        for (final AbstractPoolFactory factory : ServiceLoader.load(AbstractPoolFactory.class)) {
+            register(factory);
+        }
+    }
+
+    private PoolFactoryRegistry() {
+        // static class
+    }
+
+    /**
+     * Returns the pool with the given name.
+     *
+     * @param name the name of the pool, may be <code>null</code>
+     * @return the pool, or <code>null</code> if no one exists
+     */
+    @SuppressWarnings("PMD.OnlyOneReturn")
+    public static AbstractPoolFactory getPoolFactory(final String name) {
+        if (name == null) {
+            return null;
+        }
+        return MAPPING.get(name.toLowerCase());
+    }
+
+    /**
+     * Returns the available pools, sorted by priority.
+     *
+     * @return an unmodifiable list containing the available pools
+     */
+    public static List<AbstractPoolFactory> getPoolFactories() {
+        return sortedFactories;
+    }
+
+    /**
+     * Registers a pool, replacing any other pool with the same name. The pool is discarded if its libraries are not
+     * available.
+     *
+     * @param factory the pool to register
+     */
+    public static synchronized void register(final AbstractPoolFactory factory) {
+        if (!factory.isSupported()) {
+            LOGGER.debug("Connection pool '{}' not available", factory.getName());
+            return;
+        }
+        MAPPING.put(factory.getName().toLowerCase(), factory);
+        final List<AbstractPoolFactory> list = new ArrayList<>(MAPPING.values());
+        list.sort(Comparator.comparingInt(AbstractPoolFactory::getPriority)
+                      .thenComparing(AbstractPoolFactory::getName));
+        sortedFactories = Collections.unmodifiableList(list);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.jtoolbox.security.DattackSecurityException;
+import com.dattack.jtoolbox.security.RsaUtils;
+import com.dattack.naming.loader.CommonConstants;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide cache of the private keys used to decrypt the configuration of the resources. Each key is identified
+ * by the path of its file and is loaded again only when the modification time or the size of that file changes.
+ * Optionally, each key keeps a bounded LRU cache of the values it has decrypted, indexed by the digest of the
+ * encrypted value, so that the same secret shared by several resources is decrypted only once. The size of that cache
+ * is configured with the <i>'decryptCacheSize'</i> environment variable or system property (0, the default, disables
+ * it).
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class PrivateKeyCache {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final ConcurrentMap<String, CachedPrivateKey> CACHE = new ConcurrentHashMap<>();
+
+    private PrivateKeyCache() {
+        // static class
+    }
+
+    /**
+     * Returns the private key stored in the given file, loading it only if it is not cached or the file has changed.
+     *
+     * @param filename the path to the file containing the private key
+     * @return the private key
+     * @throws DattackSecurityException if the private key cannot be loaded
+     */
+    /* default */ static CachedPrivateKey getPrivateKey(final String filename) throws DattackSecurityException {
+
+        final File file = new File(filename);
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+
+        CachedPrivateKey cachedKey = CACHE.get(filename);
+        if (Objects.isNull(cachedKey) || !cachedKey.isSameFile(lastModified, length)) {
+            cachedKey = new CachedPrivateKey(RsaUtils.loadPrivateKey(filename), lastModified, length,
+                EnvSystemConfiguration.getInstance().getInt(CommonConstants.DECRYPT_CACHE_SIZE_KEY, 0));
+            CACHE.put(filename, cachedKey);
+        }
+        return cachedKey;
+    }
+
+    /**
+     * Removes all the cached private keys and decrypted values.
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * A private key loaded from a file, together with the values decrypted with it.
+     */
+    /* default */ static final class CachedPrivateKey {
+
+        private final PrivateKey privateKey;
+        private final long lastModified;
+        private final long length;
+        private final Map<String, String> decryptedValues;
+
+        private CachedPrivateKey(final PrivateKey privateKey, final long lastModified, final long length,
+            final int maxDecryptedValues)
+        {
+            this.privateKey = privateKey;
+            this.lastModified = lastModified;
+            this.length = length;
+            if (maxDecryptedValues > 0) {
+                this.decryptedValues = Collections.synchronizedMap(new LruMap(maxDecryptedValues));
+            } else {
+                this.decryptedValues = null; // NOPMD
+            }
+        }
+
+        private static String digest(final String value) {
+            try {
+                final MessageDigest messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+                return Base64.getEncoder().encodeToString(
+                    messageDigest.digest(value.getBytes(StandardCharsets.UTF_8)));
+            } catch (final NoSuchAlgorithmException e) {
+                // every implementation of the Java platform is required to support SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Decrypts a Base64-encoded value.
+         *
+         * @param encryptedValue the Base64-encoded value to decrypt
+         * @return the decrypted value
+         * @throws DattackSecurityException if the value cannot be decrypted
+         */
+        /* default */ String decrypt(final String encryptedValue) throws DattackSecurityException {
+
+            if (Objects.isNull(decryptedValues)) {
+                return doDecrypt(encryptedValue);
+            }
+
+            final String digest = digest(encryptedValue);
+            String plainText = decryptedValues.get(digest);
+            if (Objects.isNull(plainText)) {
+                plainText = doDecrypt(encryptedValue);
+                decryptedValues.put(digest, plainText);
+            }
+            return plainText;
+        }
+
+        private String doDecrypt(final String encryptedValue) throws DattackSecurityException {
+            return new String(RsaUtils.decryptBase64(encryptedValue.getBytes(Charset.defaultCharset()), privateKey),
+                              Charset.defaultCharset());
+        }
+
+        private boolean isSameFile(final long otherLastModified, final long otherLength) {
+            return lastModified == otherLastModified && length == otherLength;
+        }
+    }
+
+    /**
+     * A bounded map that evicts the least recently used entry.
+     */
+    private static final class LruMap extends LinkedHashMap<String, String> {
+
+        private static final long serialVersionUID = 4512436941542337271L;
+
+        private final int maxSize;
+
+        /* default */ LruMap(final int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
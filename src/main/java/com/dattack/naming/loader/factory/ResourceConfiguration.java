@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.configuration.Configuration;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The configuration of a single resource: a lightweight, read-only overlay of the resource properties on top of a
+ * shared configuration. As with a <code>CompositeConfiguration</code>, the shared configuration (environment variables
+ * and system properties) takes precedence over the resource properties. Interpolated values are memoized by each
+ * instance, and not shared between resources, as their variables may refer to the properties of the resource.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class ResourceConfiguration extends AbstractConfiguration {
+
+    private static final String VARIABLE_START = "${";
+
+    private final Configuration parent;
+    private final Properties properties;
+    private final Map<String, Object> interpolated;
+
+    /**
+     * Creates a new configuration using the shared environment and system properties.
+     *
+     * @param properties the resource properties
+     */
+    public ResourceConfiguration(final Properties properties) {
+        this(EnvSystemConfiguration.getInstance(), properties);
+    }
+
+    /**
+     * Creates a new configuration.
+     *
+     * @param parent the shared configuration, takes precedence over the resource properties
+     * @param properties the resource properties
+     */
+    public ResourceConfiguration(final Configuration parent, final Properties properties) {
+        super();
+        this.parent = parent;
+        this.properties = properties;
+        this.interpolated = new ConcurrentHashMap<>();
+        setDelimiterParsingDisabled(true);
+    }
+
+    @Override
+    public boolean containsKey(final String key) {
+        return parent.containsKey(key) || properties.containsKey(key);
+    }
+
+    @Override
+    public Iterator<String> getKeys() {
+        final Set<String> keys = new LinkedHashSet<>();
+        parent.getKeys().forEachRemaining(keys::add);
+        properties.stringPropertyNames().forEach(keys::add);
+        return keys.iterator();
+    }
+
+    @Override
+    public Object getProperty(final String key) {
+        final Object value = parent.getProperty(key);
+        return value == null ? properties.get(key) : value;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return parent.isEmpty() && properties.isEmpty();
+    }
+
+    @Override
+    protected void addPropertyDirect(final String key, final Object value) {
+        throw new UnsupportedOperationException("Read-only configuration");
+    }
+
+    @Override
+    protected void clearPropertyDirect(final String key) {
+        throw new UnsupportedOperationException("Read-only configuration");
+    }
+
+    @Override
+    @SuppressWarnings("PMD.OnlyOneReturn")
+    protected Object interpolate(final Object value) {
+
+        if (!(value instanceof String) || !((String) value).contains(VARIABLE_START)) {
+            return value;
+        }
+
+        // not using computeIfAbsent: the interpolation of a variable may require the interpolation of another one
+        final String key = (String) value;
+        Object result = interpolated.get(key);
+        if (result == null) {
+            result = super.interpolate(value);
+            if (result != null) {
+                interpolated.put(key, result);
+            }
+        }
+        return result;
+    }
+}
@@ -34,6 +34,9 @@ public final class ResourceFactoryRegistry {
     static {
         // default factory list
         MAPPING.put(CommonConstants.TYPE_DATASOURCE, new DataSourceFactory());
+        MAPPING.put(CommonConstants.TYPE_ROUTING_DATASOURCE, new RoutingDataSourceFactory());
+        MAPPING.put(CommonConstants.TYPE_SHARDED_DATASOURCE, new ShardedDataSourceFactory());
+        MAPPING.put(CommonConstants.TYPE_HEDGING_DATASOURCE, new HedgingDataSourceFactory());
     }
 
     private ResourceFactoryRegistry() {
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import java.sql.SQLException;
+
+/**
+ * Interface implemented by the DataSources whose credentials can be replaced without recreating them. The new
+ * credentials are used by the physical connections created afterwards; the connections already open are not affected.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public interface RotatableCredentials {
+
+    /**
+     * Replaces the credentials used to create new physical connections.
+     *
+     * @param username the new username
+     * @param password the new password
+     * @throws SQLException if the credentials cannot be replaced
+     */
+    void updateCredentials(String username, String password) throws SQLException;
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.naming.loader.CommonConstants;
+import com.dattack.naming.loader.factory.jdbc.routing.RoutingDataSource;
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import javax.naming.ConfigurationException;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+/**
+ * A factory that composes other JNDI datasources into a {@link RoutingDataSource}, so that the writes are executed on
+ * a primary database and the read-only connections are balanced across its replicas. The properties are as follows:
+ * <ul>
+ * <li>primary: the JNDI name of the primary datasource</li>
+ * <li>replicas: a comma-separated list with the JNDI names of the replicas (optional)</li>
+ * </ul>
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class RoutingDataSourceFactory implements ResourceFactory<DataSource> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutingDataSourceFactory.class);
+
+    /* default */ static DataSource lookup(final InitialContext context, final String jndiName, final String name)
+        throws NamingException
+    {
+        final Object obj = context.lookup(name);
+        if (!(obj instanceof DataSource)) {
+            throw new ConfigurationException(String.format("[%s] The resource '%s' isn't a datasource (%s)", jndiName,
+                                                            name, obj));
+        }
+        return (DataSource) obj;
+    }
+
+    @Override
+    public DataSource getObjectInstance(final String jndiName, final Properties properties) throws NamingException {
+
+        final AbstractConfiguration configuration = new ResourceConfiguration(properties);
+        final String primaryName = configuration.getString(CommonConstants.PRIMARY_KEY);
+        if (StringUtils.isBlank(primaryName)) {
+            throw new ConfigurationException(String.format("Missing property '%s'", CommonConstants.PRIMARY_KEY));
+        }
+
+        // the context is not closed: the standalone initial context is shared by the whole process
+        final InitialContext context = new InitialContext();
+        final DataSource primary = lookup(context, jndiName, primaryName.trim());
+        final Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (final String name : StringUtils.split(configuration.getString(CommonConstants.REPLICAS_KEY, ""), ',')) {
+            if (StringUtils.isNotBlank(name)) {
+                replicas.put(name.trim(), lookup(context, jndiName, name.trim()));
+            }
+        }
+
+        final RoutingDataSource dataSource = new RoutingDataSource(jndiName, primary, replicas);
+        LOGGER.info("[{}] Datasource: {}", jndiName, dataSource);
+        return dataSource;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.naming.loader.CommonConstants;
+import com.dattack.naming.loader.factory.jdbc.routing.ShardMap;
+import com.dattack.naming.loader.factory.jdbc.routing.ShardedDataSource;
+import org.apache.commons.configuration.AbstractConfiguration;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import javax.naming.ConfigurationException;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+/**
+ * A factory that composes other JNDI datasources into a {@link ShardedDataSource}. The properties are as follows:
+ * <ul>
+ * <li>shards: a comma-separated list with the JNDI names of the shards, in order</li>
+ * <li>shardMap: <i>hash</i> (the default) to distribute the shard keys by their hash, or <i>range</i> to distribute
+ * them by their numeric value</li>
+ * <li>shardRanges: for a <i>range</i> map, a comma-separated list with the lower bound of each shard but the first
+ * one</li>
+ * </ul>
+ * The shards are looked up the first time they are used.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class ShardedDataSourceFactory implements ResourceFactory<DataSource> {
+
+    private static final String HASH_SHARD_MAP = "hash";
+    private static final String RANGE_SHARD_MAP = "range";
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedDataSourceFactory.class);
+
+    private static List<String> getList(final AbstractConfiguration configuration, final String key) {
+        final List<String> result = new ArrayList<>();
+        for (final String value : StringUtils.split(configuration.getString(key, ""), ',')) {
+            if (StringUtils.isNotBlank(value)) {
+                result.add(value.trim());
+            }
+        }
+        return result;
+    }
+
+    private static ShardMap getShardMap(final AbstractConfiguration configuration, final int shardCount)
+        throws ConfigurationException
+    {
+        final String type = configuration.getString(CommonConstants.SHARD_MAP_KEY, HASH_SHARD_MAP).trim();
+        if (HASH_SHARD_MAP.equalsIgnoreCase(type)) {
+            return ShardMap.hash(shardCount);
+        }
+        if (!RANGE_SHARD_MAP.equalsIgnoreCase(type)) {
+            throw new ConfigurationException(String.format("Invalid value of property '%s': %s",
+                                                           CommonConstants.SHARD_MAP_KEY, type));
+        }
+
+        final List<String> ranges = getList(configuration, CommonConstants.SHARD_RANGES_KEY);
+        if (ranges.size() != shardCount - 1) {
+            throw new ConfigurationException(String.format("Property '%s' must contain %d bounds",
+                                                           CommonConstants.SHARD_RANGES_KEY, shardCount - 1));
+        }
+        try {
+            return ShardMap.range(ranges.stream().mapToLong(Long::parseLong).toArray());
+        } catch (final IllegalArgumentException e) {
+            throw new ConfigurationException(String.format("Invalid value of property '%s': %s",
+                                                           CommonConstants.SHARD_RANGES_KEY, e.getMessage()));
+        }
+    }
+
+    @Override
+    public DataSource getObjectInstance(final String jndiName, final Properties properties) throws NamingException {
+
+        final AbstractConfiguration configuration = new ResourceConfiguration(properties);
+        final List<String> shardNames = getList(configuration, CommonConstants.SHARDS_KEY);
+        if (shardNames.isEmpty()) {
+            throw new ConfigurationException(String.format("Missing property '%s'", CommonConstants.SHARDS_KEY));
+        }
+
+        final ShardMap shardMap = getShardMap(configuration, shardNames.size());
+        final DataSource dataSource = new ShardedDataSource(jndiName, shardMap, shardNames,
+            name -> RoutingDataSourceFactory.lookup(new InitialContext(), jndiName, name));
+        LOGGER.info("[{}] Datasource: {}", jndiName, dataSource);
+        return dataSource;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Executes the on-connect statements on new physical connections, trying to use a single round trip to the database:
+ * the statements are wrapped in an anonymous PL/SQL block on Oracle, and executed as a JDBC batch on other databases.
+ * If that fails, the transaction is rolled back, if any, and the statements are executed one by one on that connection;
+ * the next connections try a single round trip again, as the failure may be transient. Since they may be executed
+ * again on fallback, the statements are expected to be idempotent, as session settings usually are.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class ConnectionInitializer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionInitializer.class);
+
+    private static final String ORACLE_URL_PREFIX = "jdbc:oracle:";
+
+    private final String jndiName;
+    private final List<String> statements;
+    private final String anonymousBlock;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param jndiName   the JNDI name of the datasource, used for logging
+     * @param url        the JDBC URL of the datasource
+     * @param statements the statements to execute
+     */
+    public ConnectionInitializer(final String jndiName, final String url, final List<String> statements) {
+        this.jndiName = jndiName;
+        this.statements = statements;
+        this.anonymousBlock = toAnonymousBlock(url, statements);
+    }
+
+    private static String toAnonymousBlock(final String url, final List<String> statements) {
+        if (statements.size() <= 1 || url == null || !url.startsWith(ORACLE_URL_PREFIX)) {
+            return null;
+        }
+        final StringBuilder block = new StringBuilder("BEGIN\n");
+        for (final String statement : statements) {
+            block.append("  EXECUTE IMMEDIATE '").append(statement.replace("'", "''")).append("';\n");
+        }
+        return block.append("END;").toString();
+    }
+
+    /**
+     * Executes the statements on a connection.
+     *
+     * @param connection the connection to initialize
+     * @throws SQLException if a statement fails
+     */
+    public void initialize(final Connection connection) throws SQLException {
+        if (statements.isEmpty()) {
+            return;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            if (statements.size() > 1) {
+                try {
+                    executeSingleRoundTrip(statement);
+                    return;
+                } catch (final SQLException e) {
+                    LOGGER.debug("[{}] Unable to execute the on-connect statements in a single round trip, "
+                        + "falling back to sequential execution: {}", jndiName, e.getMessage());
+                    statement.clearBatch();
+                    if (!connection.getAutoCommit()) {
+                        // the failed statement aborts the transaction on some databases (e.g. PostgreSQL)
+                        connection.rollback();
+                    }
+                }
+            }
+            for (final String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    private void executeSingleRoundTrip(final Statement statement) throws SQLException {
+        if (anonymousBlock == null) {
+            for (final String sql : statements) {
+                statement.addBatch(sql);
+            }
+            statement.executeBatch();
+        } else {
+            statement.execute(anonymousBlock);
+        }
+    }
+}
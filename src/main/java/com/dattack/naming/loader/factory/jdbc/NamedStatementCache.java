@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc;
+
+import com.dattack.jtoolbox.jdbc.internal.NamedPreparedStatementConfig;
+import com.dattack.naming.loader.CommonConstants;
+import com.dattack.naming.loader.factory.EnvSystemConfiguration;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide cache of the parsed named-parameter statements, indexed by their SQL text, so that each statement is
+ * parsed only once. The cache is bounded: when it is full, an arbitrary entry is evicted to make room for the new
+ * one. Its size is configured with the <i>'namedStatementCacheSize'</i> environment variable or system property (1000
+ * by default, 0 disables it).
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class NamedStatementCache {
+
+    private static final int DEFAULT_MAX_SIZE = 1000;
+
+    private static final ConcurrentMap<String, NamedPreparedStatementConfig> CACHE = new ConcurrentHashMap<>();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+
+    private static final int MAX_SIZE = EnvSystemConfiguration.getInstance().getInt(
+        CommonConstants.NAMED_STATEMENT_CACHE_SIZE_KEY, DEFAULT_MAX_SIZE);
+
+    private NamedStatementCache() {
+        // static class
+    }
+
+    /**
+     * Returns the parsed form of a named-parameter statement, parsing it only if it is not cached.
+     *
+     * @param sql a SQL statement that may contain one or more ':parameterName' placeholders
+     * @return the parsed statement
+     */
+    public static NamedPreparedStatementConfig parse(final String sql) {
+
+        if (MAX_SIZE <= 0) {
+            return NamedPreparedStatementConfig.parse(sql);
+        }
+
+        NamedPreparedStatementConfig config = CACHE.get(sql);
+        if (config == null) {
+            MISSES.increment();
+            config = NamedPreparedStatementConfig.parse(sql);
+            if (CACHE.size() >= MAX_SIZE) {
+                evictOne();
+            }
+            CACHE.putIfAbsent(sql, config);
+        } else {
+            HITS.increment();
+        }
+        return config;
+    }
+
+    /**
+     * Removes all the cached statements and resets the statistics.
+     */
+    public static void clear() {
+        CACHE.clear();
+        HITS.reset();
+        MISSES.reset();
+        EVICTIONS.reset();
+    }
+
+    public static long getEvictionCount() {
+        return EVICTIONS.sum();
+    }
+
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    /**
+     * Returns the ratio of lookups that found the statement already parsed.
+     *
+     * @return the hit rate, between 0 and 1
+     */
+    public static double getHitRate() {
+        final long hits = HITS.sum();
+        final long total = hits + MISSES.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    public static int getSize() {
+        return CACHE.size();
+    }
+
+    private static void evictOne() {
+        final Iterator<String> iterator = CACHE.keySet().iterator();
+        if (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            EVICTIONS.increment();
+        }
+    }
+}
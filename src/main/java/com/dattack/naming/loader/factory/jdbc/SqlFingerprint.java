@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc;
+
+import java.util.regex.Pattern;
+
+/**
+ * Computes the fingerprint of a SQL statement, that is, its text without the values that change between executions
+ * of the same statement. String and numeric literals are replaced by <code>?</code>, lists of parameters are
+ * collapsed into <code>?+</code>, comments are removed and consecutive whitespace characters are replaced by a single
+ * space. Quoted identifiers are kept as they are.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class SqlFingerprint {
+
+    private static final int MAX_LENGTH = 2048;
+    private static final char PLACEHOLDER = '?';
+    private static final char SINGLE_QUOTE = '\'';
+    private static final char DOUBLE_QUOTE = '"';
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(?: ?, ?\\?)+");
+
+    private SqlFingerprint() {
+        // static class
+    }
+
+    /**
+     * Returns the fingerprint of a SQL statement.
+     *
+     * @param sql the SQL statement, may be <code>null</code>
+     * @return the fingerprint, or an empty string if <code>sql</code> is <code>null</code>
+     */
+    @SuppressWarnings({ "PMD.CyclomaticComplexity", "PMD.AvoidReassigningLoopVariables" })
+    public static String of(final String sql) {
+
+        if (sql == null) {
+            return "";
+        }
+
+        final int length = sql.length();
+        final StringBuilder builder = new StringBuilder(Math.min(length, MAX_LENGTH));
+        int i = 0;
+        while (i < length && builder.length() < MAX_LENGTH) {
+            final char c = sql.charAt(i);
+            if (c == SINGLE_QUOTE) {
+                builder.append(PLACEHOLDER);
+                i = skipQuoted(sql, i, c);
+            } else if (c == DOUBLE_QUOTE) {
+                final int end = skipQuoted(sql, i, c);
+                builder.append(sql, i, end);
+                i = end;
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                appendSpace(builder);
+                i = skipLine(sql, i);
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                appendSpace(builder);
+                i = skipBlockComment(sql, i);
+            } else if (Character.isWhitespace(c)) {
+                appendSpace(builder);
+                i++;
+            } else if (Character.isDigit(c) && !isIdentifierPart(builder)) {
+                builder.append(PLACEHOLDER);
+                i = skipNumber(sql, i);
+            } else if (Character.isLetterOrDigit(c) || c == '_') {
+                final int end = skipWord(sql, i);
+                builder.append(sql, i, end);
+                i = end;
+            } else {
+                builder.append(c);
+                i++;
+            }
+        }
+        return PARAMETER_LIST.matcher(builder.toString().trim()).replaceAll("?+");
+    }
+
+    private static void appendSpace(final StringBuilder builder) {
+        if (builder.length() > 0 && builder.charAt(builder.length() - 1) != ' ') {
+            builder.append(' ');
+        }
+    }
+
+    private static boolean isIdentifierPart(final StringBuilder builder) {
+        if (builder.length() == 0) {
+            return false;
+        }
+        final char last = builder.charAt(builder.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$' || last == '#';
+    }
+
+    private static int skipBlockComment(final String sql, final int start) {
+        final int end = sql.indexOf("*/", start + 2);
+        return end < 0 ? sql.length() : end + 2;
+    }
+
+    private static int skipLine(final String sql, final int start) {
+        final int end = sql.indexOf('\n', start);
+        return end < 0 ? sql.length() : end + 1;
+    }
+
+    private static int skipNumber(final String sql, final int start) {
+        int i = start;
+        while (i < sql.length() && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipQuoted(final String sql, final int start, final char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                // a doubled quote is an escaped quote
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipWord(final String sql, final int start) {
+        int i = start;
+        while (i < sql.length() && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_'
+            || sql.charAt(i) == '$' || sql.charAt(i) == '#'))
+        {
+            i++;
+        }
+        return i;
+    }
+}
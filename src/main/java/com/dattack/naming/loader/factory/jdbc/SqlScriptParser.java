@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits a SQL script into statements. The semicolon character is the separator between statements, except when it
+ * appears inside a string literal, a quoted identifier or a comment.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class SqlScriptParser {
+
+    private static final char SEPARATOR = ';';
+    private static final char SINGLE_QUOTE = '\'';
+    private static final char DOUBLE_QUOTE = '"';
+
+    private SqlScriptParser() {
+        // static class
+    }
+
+    /**
+     * Splits a SQL script into statements. Blank statements are discarded.
+     *
+     * @param script the SQL script, may be <code>null</code>
+     * @return an unmodifiable list containing the statements of the script
+     */
+    @SuppressWarnings({ "PMD.CyclomaticComplexity", "PMD.AvoidReassigningLoopVariables" })
+    public static List<String> split(final String script) {
+
+        if (script == null) {
+            return Collections.emptyList();
+        }
+
+        final List<String> statements = new ArrayList<>();
+        final int length = script.length();
+        int start = 0;
+        int i = 0;
+        while (i < length) {
+            final char c = script.charAt(i);
+            if (c == SINGLE_QUOTE || c == DOUBLE_QUOTE) {
+                i = skipQuoted(script, i, c);
+            } else if (c == '-' && i + 1 < length && script.charAt(i + 1) == '-') {
+                i = skipLine(script, i);
+            } else if (c == '/' && i + 1 < length && script.charAt(i + 1) == '*') {
+                i = skipBlockComment(script, i);
+            } else {
+                if (c == SEPARATOR) {
+                    addStatement(statements, script.substring(start, i));
+                    start = i + 1;
+                }
+                i++;
+            }
+        }
+        addStatement(statements, script.substring(start));
+        return Collections.unmodifiableList(statements);
+    }
+
+    private static void addStatement(final List<String> statements, final String statement) {
+        final String trimmed = statement.trim();
+        if (!trimmed.isEmpty()) {
+            statements.add(trimmed);
+        }
+    }
+
+    private static int skipBlockComment(final String script, final int start) {
+        final int end = script.indexOf("*/", start + 2);
+        return end < 0 ? script.length() : end + 2;
+    }
+
+    private static int skipLine(final String script, final int start) {
+        final int end = script.indexOf('\n', start);
+        return end < 0 ? script.length() : end + 1;
+    }
+
+    private static int skipQuoted(final String script, final int start, final char quote) {
+        int i = start + 1;
+        while (i < script.length()) {
+            if (script.charAt(i) == quote) {
+                // a doubled quote is an escaped quote
+                if (i + 1 < script.length() && script.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+}
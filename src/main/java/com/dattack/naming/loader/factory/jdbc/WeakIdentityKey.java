@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * A weak reference that can be used as the key of a hash map, comparing the referents by identity instead of with
+ * {@link Object#equals(Object)}: JDBC objects rarely define equality, and a wrapper may define it as equality of the
+ * wrapped object. A key whose referent has been collected is only equal to itself.
+ *
+ * @param <T> the type of the referent
+ * @author cvarela
+ * @since 0.5
+ */
+public final class WeakIdentityKey<T> extends WeakReference<T> {
+
+    private final int hashCode;
+
+    /**
+     * Creates a new key, e.g. to look up an entry.
+     *
+     * @param referent the object to which the key refers
+     */
+    public WeakIdentityKey(final T referent) {
+        this(referent, null);
+    }
+
+    /**
+     * Creates a new key that is enqueued once its referent has been collected, so its entry can be removed.
+     *
+     * @param referent the object to which the key refers
+     * @param queue    the queue to which the key is enqueued
+     */
+    public WeakIdentityKey(final T referent, final ReferenceQueue<? super T> queue) {
+        super(referent, queue);
+        this.hashCode = System.identityHashCode(referent);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof WeakIdentityKey)) {
+            return false;
+        }
+        final Object referent = get();
+        return referent != null && referent == ((WeakIdentityKey<?>) obj).get(); // NOPMD - identity comparison
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
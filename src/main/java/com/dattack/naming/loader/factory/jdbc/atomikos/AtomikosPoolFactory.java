@@ -15,11 +15,17 @@
  */
 package com.dattack.naming.loader.factory.jdbc.atomikos;
 
+import com.atomikos.jdbc.AtomikosNonXADataSourceBean;
 import com.dattack.naming.loader.factory.AbstractPoolFactory;
 import com.dattack.naming.loader.factory.DataSourceConfig;
-
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 import javax.sql.DataSource;
 
@@ -31,12 +37,20 @@ import javax.sql.DataSource;
  */
 public final class AtomikosPoolFactory extends AbstractPoolFactory {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(AtomikosPoolFactory.class);
+
     private static final String PREFIX = "atomikos.";
     private static final String DRIVER_KEY = "driverClassName";
     private static final String URL_KEY = "url";
     private static final String USER_KEY = "user";
     private static final String PASSWORD_KEY = "password";
     private static final String UNIQUE_RESOURCE_NAME_KEY = "uniqueResourceName";
+    private static final String MIN_POOL_SIZE_KEY = "minPoolSize";
+    private static final String POOL_SIZE_KEY = "poolSize";
+    private static final String MAX_POOL_SIZE_KEY = "maxPoolSize";
+    private static final String NAME = "atomikos";
+    private static final int PRIORITY = 200;
+    private static final String REQUIRED_CLASS_NAME = "com.atomikos.jdbc.AtomikosNonXADataSourceBean";
     private static final String TYPE_NAME = "Atomikos-Pool";
     private static final AtomikosPoolFactory SINGLETON = new AtomikosPoolFactory();
 
@@ -47,8 +61,6 @@ public final class AtomikosPoolFactory extends AbstractPoolFactory {
     @Override
     public DataSource createDataSource(final DataSourceConfig dataSourceConfig) {
 
-        final String clazzName = "com.atomikos.jdbc.AtomikosNonXADataSourceBean";
-
         log(dataSourceConfig, "Configuring datasource (driver: {}) ...", dataSourceConfig.getDriver());
         DataSource dataSource = null;
         try {
@@ -59,30 +71,40 @@ public final class AtomikosPoolFactory extends AbstractPoolFactory {
             }
             logPoolConfiguration(dataSourceConfig, poolProperties);
 
-            final Class<?> factory = Class.forName(clazzName);
-            dataSource = (DataSource) factory.newInstance();
-
-            final Class<?> propertyUtilsClass = Class.forName("com.atomikos.beans.PropertyUtils");
-            final Method setPropertiesMethod = propertyUtilsClass.getMethod("setProperty", Object.class,
-                    String.class, Object.class);
-            DataSource finalDataSource = dataSource;
-            poolProperties.forEach((k, v) -> {
-                try {
-                    setPropertiesMethod.invoke(null, finalDataSource, k.toString(), v);
-                } catch (IllegalAccessException | InvocationTargetException e) {
-                    log(dataSourceConfig, e, "Unable to set property '{}'", k);
+            final AtomikosNonXADataSourceBean bean = new AtomikosNonXADataSourceBean();
+            // an invalid value fails the whole pool, as a misconfigured pool must not be used
+            for (final Map.Entry<Object, Object> entry : poolProperties.entrySet()) {
+                if (!setProperty(bean, entry.getKey().toString(), entry.getValue())) {
+                    LOGGER.warn("[{}] Ignoring unknown Atomikos property '{}'", dataSourceConfig.getJndiName(),
+                                entry.getKey());
                 }
-            });
+            }
+            dataSource = bean;
 
-        } catch (ClassNotFoundException e) {
-            log(dataSourceConfig, e, "Class not found");
-            disable();
-        } catch (Throwable t) { //NOPMD
+        } catch (final Throwable t) { //NOPMD
             log(dataSourceConfig, t, "Unable to configure datasource");
         }
         return dataSource;
     }
 
+    @Override
+    public int getMinimumSize(final DataSourceConfig dataSourceConfig) {
+        final Properties poolProperties = computeProperties(dataSourceConfig);
+        final int poolSize = getIntProperty(poolProperties, POOL_SIZE_KEY, 1);
+        return capMinimumSize(getIntProperty(poolProperties, MIN_POOL_SIZE_KEY, poolSize),
+                              getIntProperty(poolProperties, MAX_POOL_SIZE_KEY, poolSize));
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getPriority() {
+        return PRIORITY;
+    }
+
     @Override
     public String getTypeName() {
         return TYPE_NAME;
@@ -112,4 +134,94 @@ public final class AtomikosPoolFactory extends AbstractPoolFactory {
     public String getPasswordKey() {
         return PASSWORD_KEY;
     }
+
+    @Override
+    public boolean isSupported() {
+        return isClassAvailable(REQUIRED_CLASS_NAME);
+    }
+
+    private static boolean toBoolean(final String value) {
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    private static int toInt(final String value) {
+        return Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Sets a property of the bean through its setter.
+     *
+     * @param bean  the bean
+     * @param key   the name of the property
+     * @param value the value of the property
+     * @return <code>false</code> if the bean has no such property
+     * @throws IllegalArgumentException if the value cannot be converted or is rejected by the bean
+     * @throws SQLException             if the setter fails
+     */
+    private static boolean setProperty(final AtomikosNonXADataSourceBean bean, final String key, final Object value)
+        throws SQLException
+    {
+        final PropertySetter setter = BeanSetters.SETTERS.get(key);
+        if (Objects.isNull(setter)) {
+            return false;
+        }
+        try {
+            setter.set(bean, value.toString());
+            return true;
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid value of the Atomikos property '%s': %s", key,
+                                                             value), e);
+        }
+    }
+
+    /**
+     * Sets the value of a property of {@link AtomikosNonXADataSourceBean}, converted from its text.
+     */
+    @FunctionalInterface
+    private interface PropertySetter {
+
+        /**
+         * Sets the value of the property.
+         *
+         * @param bean  the bean
+         * @param value the text of the value
+         * @throws SQLException if the setter fails
+         */
+        void set(AtomikosNonXADataSourceBean bean, String value) throws SQLException;
+    }
+
+    /**
+     * The setters of the configurable properties of {@link AtomikosNonXADataSourceBean}, by property name. This class
+     * is loaded only when Atomikos is available.
+     */
+    private static final class BeanSetters {
+
+        private static final Map<String, PropertySetter> SETTERS = createSetters();
+
+        private static Map<String, PropertySetter> createSetters() {
+            final Map<String, PropertySetter> setters = new HashMap<>();
+            setters.put(UNIQUE_RESOURCE_NAME_KEY, AtomikosNonXADataSourceBean::setUniqueResourceName);
+            setters.put(DRIVER_KEY, AtomikosNonXADataSourceBean::setDriverClassName);
+            setters.put(URL_KEY, AtomikosNonXADataSourceBean::setUrl);
+            setters.put(USER_KEY, AtomikosNonXADataSourceBean::setUser);
+            setters.put(PASSWORD_KEY, AtomikosNonXADataSourceBean::setPassword);
+            setters.put("testQuery", AtomikosNonXADataSourceBean::setTestQuery);
+            setters.put(MAX_POOL_SIZE_KEY, (bean, value) -> bean.setMaxPoolSize(toInt(value)));
+            setters.put(MIN_POOL_SIZE_KEY, (bean, value) -> bean.setMinPoolSize(toInt(value)));
+            setters.put(POOL_SIZE_KEY, (bean, value) -> bean.setPoolSize(toInt(value)));
+            setters.put("maxIdleTime", (bean, value) -> bean.setMaxIdleTime(toInt(value)));
+            setters.put("maxLifetime", (bean, value) -> bean.setMaxLifetime(toInt(value)));
+            setters.put("reapTimeout", (bean, value) -> bean.setReapTimeout(toInt(value)));
+            setters.put("borrowConnectionTimeout", (bean, value) -> bean.setBorrowConnectionTimeout(toInt(value)));
+            setters.put("maintenanceInterval", (bean, value) -> bean.setMaintenanceInterval(toInt(value)));
+            setters.put("defaultIsolationLevel", (bean, value) -> bean.setDefaultIsolationLevel(toInt(value)));
+            setters.put("loginTimeout", (bean, value) -> bean.setLoginTimeout(toInt(value)));
+            setters.put("readOnly", (bean, value) -> bean.setReadOnly(toBoolean(value)));
+            setters.put("localTransactionMode", (bean, value) -> bean.setLocalTransactionMode(toBoolean(value)));
+            setters.put("ignoreJtaTransactions", (bean, value) -> bean.setIgnoreJtaTransactions(toBoolean(value)));
+            setters.put("concurrentConnectionValidation",
+                        (bean, value) -> bean.setConcurrentConnectionValidation(toBoolean(value)));
+            return Collections.unmodifiableMap(setters);
+        }
+    }
 }
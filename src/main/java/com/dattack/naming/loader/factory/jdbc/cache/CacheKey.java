@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.cache;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The key of a cached result: the SQL text of the query, the user that executed it, the values bound to its parameters
+ * and the maximum number of rows set on the statement.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+/* default */ final class CacheKey {
+
+    private final String sql;
+    private final String username;
+    private final Object[] parameters;
+    private final int maxRows;
+    private final int hashCode;
+
+    /**
+     * Creates a new key.
+     *
+     * @param sql        the SQL text of the query
+     * @param username   the user the connection was requested for, or <code>null</code> for the default user
+     * @param parameters the parameters, each one as the name of the method used to bind it followed by its arguments
+     * @param maxRows    the maximum number of rows set on the statement
+     */
+    /* default */ CacheKey(final String sql, final String username, final Object[] parameters, final int maxRows) {
+        this.sql = sql;
+        this.username = username;
+        this.parameters = parameters;
+        this.maxRows = maxRows;
+        this.hashCode = 31 * (31 * (31 * sql.hashCode() + Objects.hashCode(username))
+            + Arrays.deepHashCode(parameters)) + maxRows;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CacheKey)) {
+            return false;
+        }
+        final CacheKey other = (CacheKey) obj;
+        return hashCode == other.hashCode && maxRows == other.maxRows && sql.equals(other.sql)
+            && Objects.equals(username, other.username) && Arrays.deepEquals(parameters, other.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheKey[" + sql + ", " + parameters.length + " parameters]";
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.cache;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An in-memory copy of the rows of a result set, which does not depend on the connection that read them. Each row is
+ * stored as an array of values, and the metadata is shared by all the rows. A copy is immutable, so it can be read by
+ * any number of result sets at the same time. The copy may hold only the first rows of the result set, in which case
+ * it is not cached and the result set it is read with reads the rest from the database.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+/* default */ final class CachedResult {
+
+    private final CachedResultMetaData metaData;
+    private final Object[][] rows;
+    private final long expiresNanos;
+    private final boolean disconnected;
+    private final boolean complete;
+
+    private CachedResult(final CachedResultMetaData metaData, final Object[][] rows, final long expiresNanos,
+        final boolean disconnected, final boolean complete)
+    {
+        this.metaData = metaData;
+        this.rows = rows;
+        this.expiresNanos = expiresNanos;
+        this.disconnected = disconnected;
+        this.complete = complete;
+    }
+
+    /**
+     * Reads the rows of a result set, up to a maximum number of them. The large objects are read into strings and
+     * byte arrays when they fit in them.
+     *
+     * @param resultSet    the result set, positioned before the first row; when not all its rows are copied, it is
+     *                     left positioned on the last row copied
+     * @param expiresNanos the time, as returned by {@link System#nanoTime()}, at which the copy expires
+     * @param maxRows      the maximum number of rows to copy
+     * @return the copy of the result set
+     * @throws SQLException if the result set cannot be read
+     */
+    /* default */ static CachedResult copy(final ResultSet resultSet, final long expiresNanos, final long maxRows)
+        throws SQLException
+    {
+        final CachedResultMetaData metaData = new CachedResultMetaData(resultSet.getMetaData());
+        final int columnCount = metaData.getColumnCount();
+        final List<Object[]> rows = new ArrayList<>();
+        boolean disconnected = true;
+        while (rows.size() < maxRows && resultSet.next()) {
+            final Object[] row = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                final Object value = detach(resultSet.getObject(i + 1));
+                // the values still bound to the connection cannot be shared
+                disconnected &= !isConnected(value);
+                row[i] = value;
+            }
+            rows.add(row);
+        }
+        return new CachedResult(metaData, rows.toArray(new Object[0][]), expiresNanos, disconnected,
+                                rows.size() < maxRows);
+    }
+
+    private static Object detach(final Object value) throws SQLException {
+        // the large objects that do not fit in a string or an array are left bound to the connection
+        if (value instanceof Clob) {
+            final Clob clob = (Clob) value;
+            final long length = clob.length();
+            return length > Integer.MAX_VALUE ? clob : clob.getSubString(1, (int) length);
+        }
+        if (value instanceof Blob) {
+            final Blob blob = (Blob) value;
+            final long length = blob.length();
+            return length > Integer.MAX_VALUE ? blob : blob.getBytes(1, (int) length);
+        }
+        if (value instanceof SQLXML) {
+            return ((SQLXML) value).getString();
+        }
+        return value;
+    }
+
+    private static boolean isConnected(final Object value) {
+        return value instanceof Array || value instanceof Struct || value instanceof Ref || value instanceof ResultSet
+            || value instanceof Clob || value instanceof Blob;
+    }
+
+    /* default */ CachedResultMetaData getMetaData() {
+        return metaData;
+    }
+
+    /* default */ int getRowCount() {
+        return rows.length;
+    }
+
+    /* default */ Object getValue(final int row, final int column) {
+        return rows[row][column - 1];
+    }
+
+    /**
+     * Checks whether all the values of the rows were copied, so that the copy can be cached.
+     *
+     * @return <code>true</code> if no value depends on the connection that read it
+     */
+    /* default */ boolean isDisconnected() {
+        return disconnected;
+    }
+
+    /**
+     * Checks whether all the rows of the result set were copied.
+     *
+     * @return <code>true</code> if the copy holds all the rows
+     */
+    /* default */ boolean isComplete() {
+        return complete;
+    }
+
+    /* default */ boolean isExpired(final long nowNanos) {
+        return nowNanos - expiresNanos >= 0;
+    }
+
+    /**
+     * Creates a read-only result set that reads this copy and then, if it does not hold all the rows, the rest of the
+     * original result set.
+     *
+     * @param statement the statement returned by {@link ResultSet#getStatement()}
+     * @param remainder the original result set, positioned on the last row copied, or <code>null</code> if this copy
+     *                  holds all the rows
+     * @return the result set, which is only scrollable when this copy holds all the rows
+     */
+    /* default */ ResultSet toResultSet(final Statement statement, final ResultSet remainder) {
+        return CachedResultSetHandler.wrap(this, statement, remainder);
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.cache;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A copy of the {@link ResultSetMetaData} of a cached result, shared by all the result sets created from it.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+/* default */ final class CachedResultMetaData implements ResultSetMetaData {
+
+    private final Column[] columns;
+    private final Map<String, Integer> indexes;
+
+    /**
+     * Copies the metadata of a result set.
+     *
+     * @param metaData the metadata returned by the driver
+     * @throws SQLException if the metadata cannot be read
+     */
+    /* default */ CachedResultMetaData(final ResultSetMetaData metaData) throws SQLException {
+        this.columns = new Column[metaData.getColumnCount()];
+        this.indexes = new HashMap<>(columns.length * 2);
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column(metaData, i + 1);
+            // the first column with a given label is the one returned by findColumn
+            indexes.putIfAbsent(columns[i].label.toUpperCase(Locale.ROOT), i + 1);
+        }
+    }
+
+    /**
+     * Returns the index of the column with the given label.
+     *
+     * @param label the label of the column, case-insensitive
+     * @return the index of the column
+     * @throws SQLException if there is no column with that label
+     */
+    /* default */ int findColumn(final String label) throws SQLException {
+        final Integer index = indexes.get(label.toUpperCase(Locale.ROOT));
+        if (Objects.isNull(index)) {
+            throw new SQLException("Column not found: " + label);
+        }
+        return index;
+    }
+
+    private Column getColumn(final int column) throws SQLException {
+        if (column < 1 || column > columns.length) {
+            throw new SQLException("Invalid column index: " + column);
+        }
+        return columns[column - 1];
+    }
+
+    @Override
+    public String getCatalogName(final int column) throws SQLException {
+        return getColumn(column).catalogName;
+    }
+
+    @Override
+    public String getColumnClassName(final int column) throws SQLException {
+        return getColumn(column).className;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public int getColumnDisplaySize(final int column) throws SQLException {
+        return getColumn(column).displaySize;
+    }
+
+    @Override
+    public String getColumnLabel(final int column) throws SQLException {
+        return getColumn(column).label;
+    }
+
+    @Override
+    public String getColumnName(final int column) throws SQLException {
+        return getColumn(column).name;
+    }
+
+    @Override
+    public int getColumnType(final int column) throws SQLException {
+        return getColumn(column).type;
+    }
+
+    @Override
+    public String getColumnTypeName(final int column) throws SQLException {
+        return getColumn(column).typeName;
+    }
+
+    @Override
+    public int getPrecision(final int column) throws SQLException {
+        return getColumn(column).precision;
+    }
+
+    @Override
+    public int getScale(final int column) throws SQLException {
+        return getColumn(column).scale;
+    }
+
+    @Override
+    public String getSchemaName(final int column) throws SQLException {
+        return getColumn(column).schemaName;
+    }
+
+    @Override
+    public String getTableName(final int column) throws SQLException {
+        return getColumn(column).tableName;
+    }
+
+    @Override
+    public boolean isAutoIncrement(final int column) throws SQLException {
+        return getColumn(column).autoIncrement;
+    }
+
+    @Override
+    public boolean isCaseSensitive(final int column) throws SQLException {
+        return getColumn(column).caseSensitive;
+    }
+
+    @Override
+    public boolean isCurrency(final int column) throws SQLException {
+        return getColumn(column).currency;
+    }
+
+    @Override
+    public boolean isDefinitelyWritable(final int column) throws SQLException {
+        getColumn(column);
+        return false;
+    }
+
+    @Override
+    public int isNullable(final int column) throws SQLException {
+        return getColumn(column).nullable;
+    }
+
+    @Override
+    public boolean isReadOnly(final int column) throws SQLException {
+        getColumn(column);
+        return true;
+    }
+
+    @Override
+    public boolean isSearchable(final int column) throws SQLException {
+        return getColumn(column).searchable;
+    }
+
+    @Override
+    public boolean isSigned(final int column) throws SQLException {
+        return getColumn(column).signed;
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    @Override
+    public boolean isWritable(final int column) throws SQLException {
+        getColumn(column);
+        return false;
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    /**
+     * The description of a column.
+     */
+    private static final class Column {
+
+        private final String label;
+        private final String name;
+        private final String catalogName;
+        private final String schemaName;
+        private final String tableName;
+        private final int type;
+        private final String typeName;
+        private final String className;
+        private final int precision;
+        private final int scale;
+        private final int displaySize;
+        private final int nullable;
+        private final boolean autoIncrement;
+        private final boolean caseSensitive;
+        private final boolean currency;
+        private final boolean searchable;
+        private final boolean signed;
+
+        /* default */ Column(final ResultSetMetaData metaData, final int column) throws SQLException {
+            this.label = metaData.getColumnLabel(column);
+            this.name = metaData.getColumnName(column);
+            this.catalogName = metaData.getCatalogName(column);
+            this.schemaName = metaData.getSchemaName(column);
+            this.tableName = metaData.getTableName(column);
+            this.type = metaData.getColumnType(column);
+            this.typeName = metaData.getColumnTypeName(column);
+            this.className = metaData.getColumnClassName(column);
+            this.precision = metaData.getPrecision(column);
+            this.scale = metaData.getScale(column);
+            this.displaySize = metaData.getColumnDisplaySize(column);
+            this.nullable = metaData.isNullable(column);
+            this.autoIncrement = metaData.isAutoIncrement(column);
+            this.caseSensitive = metaData.isCaseSensitive(column);
+            this.currency = metaData.isCurrency(column);
+            this.searchable = metaData.isSearchable(column);
+            this.signed = metaData.isSigned(column);
+        }
+    }
+}
@@ -0,0 +1,518 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Objects;
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+
+/**
+ * The invocation handler of the read-only, scrollable result sets that read a {@link CachedResult}. The values are
+ * converted as most drivers do, and the mutable ones (dates and byte arrays) are copied before they are returned, so
+ * that the application cannot modify the cached result. When the copy does not hold all the rows, the result set is
+ * forward-only and, once past the copied rows, reads the rest from the original result set.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+@SuppressWarnings({ "PMD.CyclomaticComplexity", "PMD.TooManyMethods" })
+/* default */ final class CachedResultSetHandler implements InvocationHandler {
+
+    private static final String SQLSTATE_INVALID_CURSOR_STATE = "24000";
+
+    private final CachedResult result;
+    private final Statement statement;
+    private final ResultSet remainder;
+    private int row;
+    private boolean lastValueNull;
+    private boolean streaming;
+    private boolean closed;
+
+    private CachedResultSetHandler(final CachedResult result, final Statement statement, final ResultSet remainder) {
+        this.result = result;
+        this.statement = statement;
+        this.remainder = remainder;
+        this.row = -1;
+    }
+
+    /**
+     * Creates a result set that reads a cached result.
+     *
+     * @param result    the cached result
+     * @param statement the statement returned by {@link ResultSet#getStatement()}
+     * @param remainder the result set the copy was read from, positioned on its last row copied, or
+     *                  <code>null</code> if the copy holds all the rows
+     * @return the result set
+     */
+    /* default */ static ResultSet wrap(final CachedResult result, final Statement statement,
+        final ResultSet remainder)
+    {
+        return (ResultSet) Proxy.newProxyInstance(CachedResultSetHandler.class.getClassLoader(),
+                                                  new Class<?>[]{ ResultSet.class },
+                                                  new CachedResultSetHandler(result, statement, remainder));
+    }
+
+    private static Object call(final ResultSet target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (final InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Object copy(final Object value) {
+        if (value instanceof java.util.Date) {
+            return ((java.util.Date) value).clone();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        }
+        return value;
+    }
+
+    private static boolean isScroll(final Method method) {
+        switch (method.getName()) {
+            case "previous":
+            case "first":
+            case "last":
+            case "beforeFirst":
+            case "afterLast":
+            case "absolute":
+            case "relative":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isStreamed(final Method method, final Object[] args) {
+        switch (method.getName()) {
+            case "next":
+            case "wasNull":
+            case "getRow":
+            case "isLast":
+            case "isAfterLast":
+                return true;
+            default:
+                return isValueGetter(method, args);
+        }
+    }
+
+    private static boolean isValueGetter(final Method method, final Object[] args) {
+        return method.getName().startsWith("get") && Objects.nonNull(args)
+            && (args[0] instanceof Integer || args[0] instanceof String);
+    }
+
+    private static BigDecimal toBigDecimal(final Object value) throws SQLException {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? BigDecimal.ONE : BigDecimal.ZERO;
+        }
+        try {
+            return new BigDecimal(value.toString().trim());
+        } catch (final NumberFormatException e) {
+            throw new SQLException("Cannot convert to a number: " + value, e);
+        }
+    }
+
+    private static boolean toBoolean(final Object value) throws SQLException {
+        if (Objects.isNull(value)) {
+            return false;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof String) {
+            final String text = ((String) value).trim();
+            if ("true".equalsIgnoreCase(text)) {
+                return true;
+            }
+            if ("false".equalsIgnoreCase(text)) {
+                return false;
+            }
+        }
+        return toBigDecimal(value).signum() != 0;
+    }
+
+    private static byte[] toBytes(final Object value) throws SQLException {
+        if (Objects.isNull(value) || value instanceof byte[]) {
+            return (byte[]) copy(value);
+        }
+        throw new SQLException("Cannot convert to a byte array: " + value.getClass().getName());
+    }
+
+    private static Date toDate(final Object value) throws SQLException {
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        if (value instanceof java.util.Date) {
+            return new Date(((java.util.Date) value).getTime());
+        }
+        if (value instanceof LocalDate) {
+            return Date.valueOf((LocalDate) value);
+        }
+        if (value instanceof LocalDateTime) {
+            return Date.valueOf(((LocalDateTime) value).toLocalDate());
+        }
+        try {
+            return Date.valueOf(value.toString().trim());
+        } catch (final IllegalArgumentException e) {
+            throw new SQLException("Cannot convert to a date: " + value, e);
+        }
+    }
+
+    private static Number toNumber(final Object value) throws SQLException {
+        if (Objects.isNull(value)) {
+            return 0;
+        }
+        return value instanceof Number ? (Number) value : toBigDecimal(value);
+    }
+
+    private static String toString(final Object value) {
+        return Objects.isNull(value) ? null : value.toString();
+    }
+
+    private static Time toTime(final Object value) throws SQLException {
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        if (value instanceof java.util.Date) {
+            return new Time(((java.util.Date) value).getTime());
+        }
+        if (value instanceof LocalTime) {
+            return Time.valueOf((LocalTime) value);
+        }
+        if (value instanceof LocalDateTime) {
+            return Time.valueOf(((LocalDateTime) value).toLocalTime());
+        }
+        try {
+            return Time.valueOf(value.toString().trim());
+        } catch (final IllegalArgumentException e) {
+            throw new SQLException("Cannot convert to a time: " + value, e);
+        }
+    }
+
+    private static Timestamp toTimestamp(final Object value) throws SQLException {
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        if (value instanceof Timestamp) {
+            return (Timestamp) ((Timestamp) value).clone();
+        }
+        if (value instanceof java.util.Date) {
+            return new Timestamp(((java.util.Date) value).getTime());
+        }
+        if (value instanceof LocalDateTime) {
+            return Timestamp.valueOf((LocalDateTime) value);
+        }
+        if (value instanceof LocalDate) {
+            return Timestamp.valueOf(((LocalDate) value).atStartOfDay());
+        }
+        try {
+            return Timestamp.valueOf(value.toString().trim());
+        } catch (final IllegalArgumentException e) {
+            throw new SQLException("Cannot convert to a timestamp: " + value, e);
+        }
+    }
+
+    @SuppressWarnings("PMD.NcssCount")
+    private static Object convert(final Object value, final Class<?> type) throws SQLException {
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        if (type.isInstance(value)) {
+            return copy(value);
+        }
+        if (type == String.class) {
+            return toString(value);
+        }
+        if (type == Integer.class) {
+            return toNumber(value).intValue();
+        }
+        if (type == Long.class) {
+            return toNumber(value).longValue();
+        }
+        if (type == Short.class) {
+            return toNumber(value).shortValue();
+        }
+        if (type == Byte.class) {
+            return toNumber(value).byteValue();
+        }
+        if (type == Double.class) {
+            return toNumber(value).doubleValue();
+        }
+        if (type == Float.class) {
+            return toNumber(value).floatValue();
+        }
+        if (type == BigDecimal.class) {
+            return toBigDecimal(value);
+        }
+        if (type == Boolean.class) {
+            return toBoolean(value);
+        }
+        if (type == Date.class) {
+            return toDate(value);
+        }
+        if (type == Time.class) {
+            return toTime(value);
+        }
+        if (type == Timestamp.class) {
+            return toTimestamp(value);
+        }
+        if (type == LocalDate.class) {
+            return toDate(value).toLocalDate();
+        }
+        if (type == LocalTime.class) {
+            return toTime(value).toLocalTime();
+        }
+        if (type == LocalDateTime.class) {
+            return toTimestamp(value).toLocalDateTime();
+        }
+        throw new SQLException("Cannot convert " + value.getClass().getName() + " to " + type.getName());
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "close":
+                if (!closed) {
+                    closed = true;
+                    if (Objects.nonNull(remainder)) {
+                        remainder.close();
+                    }
+                }
+                return null;
+            case "isClosed":
+                return closed;
+            case "unwrap":
+                if (((Class<?>) args[0]).isInstance(proxy)) {
+                    return proxy;
+                }
+                throw new SQLException("Not a wrapper for " + ((Class<?>) args[0]).getName());
+            case "isWrapperFor":
+                return ((Class<?>) args[0]).isInstance(proxy);
+            case "toString":
+                return "CachedResultSet[" + result.getRowCount() + " rows]";
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0]; // NOPMD - identity comparison intended
+            default:
+                if (closed) {
+                    throw new SQLException("ResultSet is closed", SQLSTATE_INVALID_CURSOR_STATE);
+                }
+                if (streaming && isStreamed(method, args)) {
+                    return call(remainder, method, args);
+                }
+                return invokeOpen(method, args);
+        }
+    }
+
+    @SuppressWarnings("PMD.NcssCount")
+    private Object invokeOpen(final Method method, final Object[] args) throws SQLException {
+        final int rowCount = result.getRowCount();
+        if (Objects.nonNull(remainder) && isScroll(method)) {
+            throw new SQLException("The result set is forward-only: " + method.getName());
+        }
+        switch (method.getName()) {
+            case "next":
+                if (Objects.nonNull(remainder) && row + 1 >= rowCount) {
+                    // past the copied rows, the original result set is read
+                    row = rowCount;
+                    streaming = true;
+                    return remainder.next();
+                }
+                return moveTo(row + 1);
+            case "previous":
+                return moveTo(row - 1);
+            case "first":
+                return moveTo(0);
+            case "last":
+                return moveTo(rowCount - 1);
+            case "beforeFirst":
+                row = -1;
+                return null;
+            case "afterLast":
+                row = rowCount;
+                return null;
+            case "absolute":
+                final int position = (Integer) args[0];
+                return moveTo(position >= 0 ? position - 1 : rowCount + position);
+            case "relative":
+                return moveTo(row + (Integer) args[0]);
+            case "isBeforeFirst":
+                return row < 0 && rowCount > 0;
+            case "isAfterLast":
+                return row >= rowCount && rowCount > 0 && Objects.isNull(remainder);
+            case "isFirst":
+                return row == 0 && rowCount > 0;
+            case "isLast":
+                return row == rowCount - 1 && row >= 0 && Objects.isNull(remainder);
+            case "getRow":
+                return row >= 0 && row < rowCount ? row + 1 : 0;
+            case "wasNull":
+                return lastValueNull;
+            case "findColumn":
+                return result.getMetaData().findColumn((String) args[0]);
+            case "getMetaData":
+                return result.getMetaData();
+            case "getStatement":
+                return statement;
+            case "getType":
+                return Objects.isNull(remainder) ? ResultSet.TYPE_SCROLL_INSENSITIVE : ResultSet.TYPE_FORWARD_ONLY;
+            case "getConcurrency":
+                return ResultSet.CONCUR_READ_ONLY;
+            case "getHoldability":
+                return ResultSet.HOLD_CURSORS_OVER_COMMIT;
+            case "getFetchDirection":
+                return ResultSet.FETCH_FORWARD;
+            case "getFetchSize":
+                return 0;
+            case "getWarnings":
+                return null;
+            case "setFetchDirection":
+            case "setFetchSize":
+            case "clearWarnings":
+                return null;
+            default:
+                if (isValueGetter(method, args)) {
+                    return getValue(method, args);
+                }
+                throw new SQLFeatureNotSupportedException("The cached result sets are read-only: " + method.getName());
+        }
+    }
+
+    private boolean moveTo(final int target) {
+        row = Math.max(-1, Math.min(target, result.getRowCount()));
+        return row >= 0 && row < result.getRowCount();
+    }
+
+    @SuppressWarnings({ "PMD.NcssCount", "PMD.AvoidLiteralsInIfCondition" })
+    private Object getValue(final Method method, final Object[] args) throws SQLException {
+        final CachedResultMetaData metaData = result.getMetaData();
+        final int column = args[0] instanceof String ? metaData.findColumn((String) args[0]) : (Integer) args[0];
+        if (row < 0 || row >= result.getRowCount()) {
+            throw new SQLException("No current row", SQLSTATE_INVALID_CURSOR_STATE);
+        }
+        if (column < 1 || column > metaData.getColumnCount()) {
+            throw new SQLException("Invalid column index: " + column);
+        }
+        final Object value = result.getValue(row, column);
+        lastValueNull = Objects.isNull(value);
+
+        switch (method.getName()) {
+            case "getObject":
+                if (args.length == 2 && args[1] instanceof Class) {
+                    return convert(value, (Class<?>) args[1]);
+                }
+                return copy(value);
+            case "getString":
+            case "getNString":
+                return toString(value);
+            case "getBoolean":
+                return toBoolean(value);
+            case "getByte":
+                return toNumber(value).byteValue();
+            case "getShort":
+                return toNumber(value).shortValue();
+            case "getInt":
+                return toNumber(value).intValue();
+            case "getLong":
+                return toNumber(value).longValue();
+            case "getFloat":
+                return toNumber(value).floatValue();
+            case "getDouble":
+                return toNumber(value).doubleValue();
+            case "getBigDecimal":
+                if (lastValueNull) {
+                    return null;
+                }
+                return args.length == 2 ? toBigDecimal(value).setScale((Integer) args[1], RoundingMode.HALF_UP)
+                    : toBigDecimal(value);
+            case "getBytes":
+                return toBytes(value);
+            case "getDate":
+                return toDate(value);
+            case "getTime":
+                return toTime(value);
+            case "getTimestamp":
+                return toTimestamp(value);
+            case "getCharacterStream":
+            case "getNCharacterStream":
+                if (value instanceof Clob) {
+                    return ((Clob) value).getCharacterStream();
+                }
+                return lastValueNull ? null : new StringReader(value.toString());
+            case "getAsciiStream":
+                return lastValueNull ? null
+                    : new ByteArrayInputStream(value.toString().getBytes(StandardCharsets.US_ASCII));
+            case "getBinaryStream":
+                if (value instanceof Blob) {
+                    return ((Blob) value).getBinaryStream();
+                }
+                return lastValueNull ? null : new ByteArrayInputStream(toBytes(value));
+            case "getClob":
+                // the large objects too large to be copied are returned as read by the driver
+                if (lastValueNull || value instanceof Clob) {
+                    return value;
+                }
+                return new SerialClob(value.toString().toCharArray());
+            case "getBlob":
+                if (lastValueNull || value instanceof Blob) {
+                    return value;
+                }
+                return new SerialBlob(toBytes(value));
+            case "getURL":
+                try {
+                    return lastValueNull ? null : new URL(value.toString());
+                } catch (final MalformedURLException e) {
+                    throw new SQLException("Cannot convert to a URL: " + value, e);
+                }
+            default:
+                // the values that are not copied, such as arrays, are returned as read by the driver
+                if (lastValueNull || method.getReturnType().isInstance(value)) {
+                    return value;
+                }
+                throw new SQLFeatureNotSupportedException("Unsupported method of the cached result sets: "
+                    + method.getName());
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.cache;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * The invocation handler of the prepared statements whose results are cached. The statement records its parameters
+ * and settings, and prepares the statement on the database only when the result of a query is not cached or another
+ * operation requires it, replaying then the recorded invocations.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+/* default */ final class CachingStatementHandler implements InvocationHandler {
+
+    private final LazyConnectionHandler connection;
+    private final Connection connectionProxy;
+    private final ResultCache cache;
+    private final String sql;
+    private final Map<Integer, Invocation> parameters;
+    private final Map<String, Invocation> settings;
+    private PreparedStatement delegate;
+    private ResultSet cachedResultSet;
+    private boolean cacheable;
+    private int maxRows;
+    private boolean closed;
+
+    private CachingStatementHandler(final LazyConnectionHandler connection, final Connection connectionProxy,
+        final ResultCache cache, final String sql)
+    {
+        this.connection = connection;
+        this.connectionProxy = connectionProxy;
+        this.cache = cache;
+        this.sql = sql;
+        this.parameters = new TreeMap<>();
+        this.settings = new LinkedHashMap<>();
+        this.cacheable = true;
+    }
+
+    /**
+     * Creates a prepared statement whose results are cached.
+     *
+     * @param connection      the handler of the connection that creates the statement
+     * @param connectionProxy the connection returned by {@link PreparedStatement#getConnection()}
+     * @param cache           the result cache
+     * @param sql             the SQL text of the statement
+     * @return the prepared statement
+     */
+    /* default */ static PreparedStatement wrap(final LazyConnectionHandler connection,
+        final Connection connectionProxy, final ResultCache cache, final String sql)
+    {
+        return (PreparedStatement) Proxy.newProxyInstance(CachingStatementHandler.class.getClassLoader(),
+            new Class<?>[]{ PreparedStatement.class },
+            new CachingStatementHandler(connection, connectionProxy, cache, sql));
+    }
+
+    private static Object call(final Object target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (final InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean isParameterSetter(final Method method, final Object[] args) {
+        return method.getName().startsWith("set") && Objects.nonNull(args) && args.length >= 2
+            && args[0] instanceof Integer;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "toString":
+                return "CachingStatement[" + sql + "]";
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0]; // NOPMD - identity comparison intended
+            case "close":
+                close();
+                return null;
+            case "isClosed":
+                return closed;
+            default:
+                if (closed) {
+                    throw new SQLException("Statement is closed");
+                }
+                return invokeOpen(proxy, method, args);
+        }
+    }
+
+    private Object invokeOpen(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "executeQuery":
+                if (Objects.isNull(args) && cacheable) {
+                    return executeCachedQuery(proxy);
+                }
+                break;
+            case "getResultSet":
+                if (Objects.nonNull(cachedResultSet)) {
+                    return cachedResultSet;
+                }
+                break;
+            case "getConnection":
+                return connectionProxy;
+            case "clearParameters":
+                parameters.clear();
+                cacheable = true;
+                if (Objects.isNull(delegate)) {
+                    return null;
+                }
+                break;
+            case "unwrap":
+            case "isWrapperFor":
+                if (((Class<?>) args[0]).isInstance(proxy)) {
+                    return "unwrap".equals(method.getName()) ? proxy : Boolean.TRUE;
+                }
+                break;
+            default:
+                if (method.getName().startsWith("set") && Objects.nonNull(args)) {
+                    record(method, args);
+                    if (Objects.isNull(delegate)) {
+                        return null;
+                    }
+                }
+                break;
+        }
+        cachedResultSet = null; // NOPMD
+        return call(getDelegate(), method, args);
+    }
+
+    private void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (Objects.nonNull(cachedResultSet)) {
+            cachedResultSet.close();
+        }
+        if (Objects.nonNull(delegate)) {
+            delegate.close();
+        }
+    }
+
+    private ResultSet executeCachedQuery(final Object proxy) throws SQLException {
+        if (Objects.nonNull(cachedResultSet)) {
+            cachedResultSet.close();
+        }
+        final Object[] values = new Object[parameters.size()];
+        int index = 0;
+        for (final Map.Entry<Integer, Invocation> entry : parameters.entrySet()) {
+            values[index++] = entry.getValue().toKey();
+        }
+        final CacheKey key = new CacheKey(sql, connection.getUsername(), values, maxRows);
+
+        CachedResult result = cache.get(key);
+        ResultSet remainder = null;
+        if (Objects.isNull(result)) {
+            final ResultSet resultSet = getDelegate().executeQuery();
+            try {
+                result = cache.load(key, resultSet);
+            } finally {
+                // the rows that were not copied are read from the database as the application reads them
+                if (Objects.nonNull(result) && !result.isComplete()) {
+                    remainder = resultSet;
+                } else {
+                    resultSet.close();
+                }
+            }
+        }
+        cachedResultSet = result.toResultSet((PreparedStatement) proxy, remainder);
+        return cachedResultSet;
+    }
+
+    private PreparedStatement getDelegate() throws SQLException {
+        if (Objects.isNull(delegate)) {
+            final PreparedStatement statement = connection.connect().prepareStatement(sql);
+            try {
+                for (final Invocation invocation : settings.values()) {
+                    invocation.replay(statement);
+                }
+                for (final Invocation invocation : parameters.values()) {
+                    invocation.replay(statement);
+                }
+            } catch (final SQLException e) {
+                statement.close();
+                throw e;
+            }
+            delegate = statement;
+        }
+        return delegate;
+    }
+
+    private void record(final Method method, final Object[] args) {
+        if (isParameterSetter(method, args)) {
+            // the streams and large objects cannot be compared
+            if (args[1] instanceof InputStream || args[1] instanceof Reader || args[1] instanceof Blob
+                || args[1] instanceof Clob)
+            {
+                cacheable = false;
+            }
+            parameters.put((Integer) args[0], new Invocation(method, args));
+        } else {
+            if ("setMaxRows".equals(method.getName())) {
+                maxRows = (Integer) args[0];
+            }
+            settings.put(method.getName(), new Invocation(method, args));
+        }
+    }
+
+    /**
+     * An invocation of a method that sets a parameter or a property of the statement.
+     */
+    private static final class Invocation {
+
+        private final Method method;
+        private final Object[] args;
+
+        /* default */ Invocation(final Method method, final Object[] args) {
+            this.method = method;
+            this.args = args.clone();
+        }
+
+        /* default */ void replay(final PreparedStatement statement) throws SQLException {
+            try {
+                call(statement, method, args);
+            } catch (final SQLException | RuntimeException e) {
+                throw e;
+            } catch (final Throwable e) { // NOPMD - the setters only throw SQLException
+                throw new SQLException(e);
+            }
+        }
+
+        /**
+         * Returns the value of this invocation used in the key of a cached result: the name of the method and its
+         * arguments, so that, for instance, <code>setNull(1, Types.INTEGER)</code> and <code>setInt(1, 4)</code> are
+         * different.
+         *
+         * @return the value of this invocation in the key
+         */
+        /* default */ Object toKey() {
+            final Object[] key = Arrays.copyOf(args, args.length + 1, Object[].class);
+            key[args.length] = method.getName();
+            return key;
+        }
+    }
+}
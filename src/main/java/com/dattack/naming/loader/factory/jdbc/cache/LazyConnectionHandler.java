@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.cache;
+
+import com.dattack.jtoolbox.jdbc.internal.ProxyConnection;
+import com.dattack.naming.loader.factory.jdbc.dbcp.DbcpProxyConnection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+import javax.sql.DataSource;
+
+/**
+ * The invocation handler of the connections handed out by a {@link ResultCacheDataSource}. The connection is obtained
+ * from the underlying datasource only when it is actually needed, so that a query whose result is cached does not
+ * borrow a connection from the pool at all. Until then, the auto-commit and read-only modes are recorded, and a
+ * commit or a rollback has nothing to do.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+/* default */ final class LazyConnectionHandler implements InvocationHandler {
+
+    private static final String SQLSTATE_CONNECTION_CLOSED = "08003";
+
+    private final DataSource dataSource;
+    private final ResultCache cache;
+    private final String username;
+    private final String password;
+    private Connection delegate;
+    private Boolean autoCommit;
+    private Boolean readOnly;
+    private boolean closed;
+
+    private LazyConnectionHandler(final DataSource dataSource, final ResultCache cache, final String username,
+        final String password)
+    {
+        this.dataSource = dataSource;
+        this.cache = cache;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Creates a connection that is obtained from a datasource only when it is needed.
+     *
+     * @param dataSource the underlying datasource
+     * @param cache      the result cache
+     * @param username   the user on whose behalf the connection is being made, or <code>null</code> to use the
+     *                   default user
+     * @param password   the user's password
+     * @return the connection
+     */
+    /* default */ static Connection wrap(final DataSource dataSource, final ResultCache cache, final String username,
+        final String password)
+    {
+        return (Connection) Proxy.newProxyInstance(LazyConnectionHandler.class.getClassLoader(),
+            new Class<?>[]{ ProxyConnection.class },
+            new LazyConnectionHandler(dataSource, cache, username, password));
+    }
+
+    private static Object call(final Connection target, final Method method, final Object[] args) throws Throwable {
+        // the methods of the connection may be the default methods declared by ProxyConnection
+        final Method targetMethod = method.getDeclaringClass().isInstance(target) ? method
+            : Connection.class.getMethod(method.getName(), method.getParameterTypes());
+        try {
+            return targetMethod.invoke(target, args);
+        } catch (final InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the underlying connection, obtaining it from the datasource the first time.
+     *
+     * @return the underlying connection
+     * @throws SQLException if the connection is closed or cannot be obtained
+     */
+    /* default */ Connection connect() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection is closed", SQLSTATE_CONNECTION_CLOSED);
+        }
+        if (Objects.isNull(delegate)) {
+            final Connection connection = Objects.isNull(username) ? dataSource.getConnection()
+                : dataSource.getConnection(username, password);
+            try {
+                if (Objects.nonNull(autoCommit)) {
+                    connection.setAutoCommit(autoCommit);
+                }
+                if (Objects.nonNull(readOnly)) {
+                    connection.setReadOnly(readOnly);
+                }
+            } catch (final SQLException e) {
+                connection.close();
+                throw e;
+            }
+            delegate = connection;
+        }
+        return delegate;
+    }
+
+    /**
+     * Returns the user the connection was requested for, which is part of the key of the cached results.
+     *
+     * @return the user, or <code>null</code> for the default user of the datasource
+     */
+    /* default */ String getUsername() {
+        return username;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "toString":
+                return "ResultCacheConnection[" + delegate + "]";
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0]; // NOPMD - identity comparison intended
+            case "close":
+                if (!closed) {
+                    closed = true;
+                    if (Objects.nonNull(delegate)) {
+                        delegate.close();
+                    }
+                }
+                return null;
+            case "isClosed":
+                return closed || Objects.nonNull(delegate) && delegate.isClosed();
+            case "unwrap":
+            case "isWrapperFor":
+                if (((Class<?>) args[0]).isInstance(proxy)) {
+                    return "unwrap".equals(method.getName()) ? proxy : Boolean.TRUE;
+                }
+                break;
+            case "getDelegate":
+                return connect();
+            case "prepareNamedStatement":
+                // the named statement prepares its SQL text through this connection, so its results are cached too
+                return DbcpProxyConnection.build((Connection) proxy).prepareNamedStatement((String) args[0]);
+            case "prepareStatement":
+                if (args.length == 1 && cache.isCacheable((String) args[0])) {
+                    if (closed) {
+                        throw new SQLException("Connection is closed", SQLSTATE_CONNECTION_CLOSED);
+                    }
+                    return CachingStatementHandler.wrap(this, (Connection) proxy, cache, (String) args[0]);
+                }
+                break;
+            default:
+                if (Objects.isNull(delegate) && !closed) {
+                    return invokeUnconnected(method, args);
+                }
+                break;
+        }
+        return call(connect(), method, args);
+    }
+
+    private Object invokeUnconnected(final Method method, final Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "setAutoCommit":
+                autoCommit = (Boolean) args[0];
+                return null;
+            case "setReadOnly":
+                readOnly = (Boolean) args[0];
+                return null;
+            case "getAutoCommit":
+                if (Objects.nonNull(autoCommit)) {
+                    return autoCommit;
+                }
+                break;
+            case "isReadOnly":
+                if (Objects.nonNull(readOnly)) {
+                    return readOnly;
+                }
+                break;
+            case "commit":
+            case "rollback":
+                if (Objects.isNull(args)) {
+                    // nothing has been executed on the database yet
+                    return null;
+                }
+                break;
+            default:
+                break;
+        }
+        return call(connect(), method, args);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.cache;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * The results of the queries of a datasource, indexed by their SQL text and bound parameters. Only the queries whose
+ * SQL text matches a pattern are cached, each result for a limited time. The cache is bounded: when it is full, the
+ * oldest result is evicted to make room for the new one, which, as every result is cached for the same time, is also
+ * the first to expire. The results with more rows than a given limit are not cached: only the rows up to the first
+ * one over the limit are copied, and the rest are read from the database as the application reads them.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class ResultCache {
+
+    private final Pattern pattern;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final int maxRows;
+    private final ConcurrentMap<CacheKey, CachedResult> entries;
+    // the cached results in the order they were cached, which may include some already removed from the map
+    private final Queue<Map.Entry<CacheKey, CachedResult>> order;
+    private final AtomicInteger orderSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param pattern    the regular expression that must be found in the SQL text of the cached queries
+     * @param ttlMillis  the time, in milliseconds, each result is cached
+     * @param maxEntries the maximum number of cached results
+     * @param maxRows    the maximum number of rows of a cached result
+     */
+    public ResultCache(final Pattern pattern, final long ttlMillis, final int maxEntries, final int maxRows) {
+        this.pattern = Objects.requireNonNull(pattern);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxEntries = maxEntries;
+        this.maxRows = maxRows;
+        this.entries = new ConcurrentHashMap<>();
+        this.order = new ConcurrentLinkedQueue<>();
+        this.orderSize = new AtomicInteger();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Removes all the cached results, for instance after the reference data has been modified.
+     */
+    public void clear() {
+        entries.clear();
+        while (Objects.nonNull(order.poll())) {
+            orderSize.decrementAndGet();
+        }
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the ratio of lookups that found the result already cached.
+     *
+     * @return the hit rate, between 0 and 1
+     */
+    public double getHitRate() {
+        final long hitCount = hits.sum();
+        final long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Checks whether the results of a query are cached.
+     *
+     * @param sql the SQL text of the query
+     * @return <code>true</code> if the SQL text matches the pattern of this cache
+     */
+    public boolean isCacheable(final String sql) {
+        return Objects.nonNull(sql) && pattern.matcher(sql).find();
+    }
+
+    @Override
+    public String toString() {
+        return "ResultCache[pattern=" + pattern + ", size=" + entries.size() + "]";
+    }
+
+    /**
+     * Returns the cached result of a query.
+     *
+     * @param key the query and its parameters
+     * @return the cached result, or <code>null</code> if it is not cached or has expired
+     */
+    /* default */ CachedResult get(final CacheKey key) {
+        final CachedResult result = entries.get(key);
+        if (Objects.nonNull(result)) {
+            if (!result.isExpired(System.nanoTime())) {
+                hits.increment();
+                return result;
+            }
+            entries.remove(key, result);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Reads the rows of a result set into a disconnected copy, and caches it if it is small enough. Only the rows up
+     * to the first one over the limit of this cache are copied, so the copy of a larger result does not hold all its
+     * rows and is not cached.
+     *
+     * @param key       the query and its parameters
+     * @param resultSet the result set returned by the database, which is consumed up to the last row copied
+     * @return the copy of the result set
+     * @throws SQLException if the result set cannot be read
+     */
+    /* default */ CachedResult load(final CacheKey key, final ResultSet resultSet) throws SQLException {
+        final CachedResult result = CachedResult.copy(resultSet, System.nanoTime() + ttlNanos, maxRows + 1L);
+        if (result.isComplete() && result.isDisconnected() && maxEntries > 0) {
+            entries.put(key, result);
+            order.add(new AbstractMap.SimpleImmutableEntry<>(key, result));
+            if (orderSize.incrementAndGet() > maxEntries) {
+                evictEldest();
+            }
+        }
+        return result;
+    }
+
+    private void evictEldest() {
+        final Map.Entry<CacheKey, CachedResult> eldest = order.poll();
+        if (Objects.nonNull(eldest)) {
+            orderSize.decrementAndGet();
+            // the result may have already been removed, or replaced by a newer one that must be kept
+            if (entries.remove(eldest.getKey(), eldest.getValue()) && !eldest.getValue().isExpired(System.nanoTime())) {
+                evictions.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.cache;
+
+import com.dattack.jtoolbox.jdbc.AbstractDataSourceDecorator;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+
+/**
+ * A datasource that caches the results of the queries whose SQL text matches the pattern of a {@link ResultCache},
+ * when they are executed with a {@link java.sql.PreparedStatement} (including the named-parameter statements). A cached
+ * result is returned as a disconnected, read-only result set, without borrowing a connection from the underlying
+ * datasource: the connections handed out by this datasource obtain the underlying connection only when a query is
+ * not cached or any other operation needs it. The cached results are not invalidated when the data changes, so the
+ * cache is meant for reference data that can be stale for the time the results are cached. The cache is available
+ * with <code>unwrap(ResultCache.class)</code>.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class ResultCacheDataSource extends AbstractDataSourceDecorator {
+
+    private final ResultCache cache;
+
+    /**
+     * Creates a new datasource.
+     *
+     * @param delegate the datasource that provides the connections
+     * @param cache    the result cache
+     */
+    public ResultCacheDataSource(final DataSource delegate, final ResultCache cache) {
+        super(delegate);
+        this.cache = cache;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return LazyConnectionHandler.wrap(getDelegate(), cache, null, null);
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        return LazyConnectionHandler.wrap(getDelegate(), cache, username, password);
+    }
+
+    public ResultCache getResultCache() {
+        return cache;
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || iface.isInstance(cache) || super.isWrapperFor(iface);
+    }
+
+    @Override
+    public String toString() {
+        return "ResultCacheDataSource[" + cache + ", " + getDelegate() + "]";
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return iface.isInstance(cache) ? iface.cast(cache) : super.unwrap(iface);
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.dbcp;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A {@link PreparedStatement} that buffers the updates in a batch and sends them to the database automatically, so
+ * that the code that calls {@link #executeUpdate()} in a loop gets the throughput of the batch updates without being
+ * rewritten. The batch is sent when it reaches the maximum number of rows, the estimated size of its parameters or
+ * the maximum time since its first row was buffered (checked each time a row is buffered, as no thread other than the
+ * one using the statement may touch it), and also when the transaction is committed and when the statement or its
+ * connection is closed, the auto-commit mode is enabled or another statement of the connection is executed. A
+ * rollback discards the rows not sent yet. In the {@link ProxyMode#CONNECTION} mode, the statements created before
+ * the first batching statement of the connection are not wrapped and do not send the pending rows.
+ *
+ * <p>{@link #executeUpdate()} and {@link #executeLargeUpdate()} return {@link Statement#SUCCESS_NO_INFO}, as the
+ * row has not been sent yet: when enabled with {@link #setRetainUpdateCounts(boolean)}, the update count of each row
+ * is available from {@link #drainUpdateCounts()} once its batch has been sent. It is obtained with
+ * {@link DbcpProxyConnection#prepareBatchingStatement(String)} or, for the named-parameter statements, with
+ * {@link DbcpProxyConnection#prepareNamedBatchingStatement(String)}, and then {@link #unwrap(Class)}.</p>
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+@SuppressWarnings({ "PMD.TooManyMethods", "PMD.ExcessivePublicCount" })
+public final class BatchingPreparedStatement extends DbcpProxyPreparedStatement<PreparedStatement> {
+
+    // rough size of the values without a variable length, and of the bookkeeping of each row
+    private static final int FIXED_ROW_BYTES = 64;
+    private static final int[] NO_ROWS = new int[0];
+
+    private final DbcpProxyConnection proxyConnection;
+    private final int maxRows;
+    private final long maxBytes;
+    private final long maxDelayNanos;
+    private int pendingRows;
+    private long pendingBytes;
+    private long rowBytes;
+    private long firstRowNanos;
+    private int[] updateCounts = NO_ROWS;
+    private int updateCountSize;
+    private long flushedRows;
+    private boolean retainUpdateCounts;
+    private boolean closed;
+
+    /* default */ BatchingPreparedStatement(final DbcpProxyConnection connection, final PreparedStatement delegate,
+        final String sql)
+    {
+        super(connection, delegate, sql);
+        final ProxyOptions options = connection.getProxyOptions();
+        this.proxyConnection = connection;
+        this.maxRows = options.getBatchSize();
+        this.maxBytes = options.getBatchMaxBytes();
+        this.maxDelayNanos = options.getBatchMaxDelayMillis() * 1_000_000L;
+    }
+
+    private static long estimateBytes(final Object value) {
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).precision();
+        }
+        return 0;
+    }
+
+    @Override
+    public void addBatch() throws SQLException {
+        getDelegate().addBatch();
+        if (pendingRows == 0 && maxDelayNanos > 0) {
+            firstRowNanos = System.nanoTime();
+        }
+        pendingRows++;
+        pendingBytes += rowBytes + FIXED_ROW_BYTES;
+        rowBytes = 0;
+        if (isFull()) {
+            flush();
+        }
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        getDelegate().clearBatch();
+        pendingRows = 0;
+        pendingBytes = 0;
+    }
+
+    @Override
+    public void clearParameters() throws SQLException {
+        super.clearParameters();
+        rowBytes = 0;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        proxyConnection.unregister(this);
+        try {
+            flush();
+        } finally {
+            getDelegate().close();
+        }
+    }
+
+    /**
+     * Returns the update counts of the rows sent to the database since the previous invocation, in the order they
+     * were buffered, and forgets them. The update counts are only kept while {@link #setRetainUpdateCounts(boolean)}
+     * is enabled.
+     *
+     * @return the update counts, as returned by the driver for each row
+     */
+    public int[] drainUpdateCounts() {
+        final int[] result = Arrays.copyOf(updateCounts, updateCountSize);
+        updateCountSize = 0;
+        return result;
+    }
+
+    @Override
+    public boolean execute() throws SQLException {
+        flush();
+        return super.execute();
+    }
+
+    /**
+     * Sends the buffered rows to the database.
+     *
+     * @return the update counts of the rows sent
+     * @throws SQLException if the batch fails
+     */
+    @Override
+    public int[] executeBatch() throws SQLException {
+        return flush();
+    }
+
+    /**
+     * Sends the buffered rows to the database.
+     *
+     * @return the update counts of the rows sent
+     * @throws SQLException if the batch fails
+     */
+    @Override
+    public long[] executeLargeBatch() throws SQLException {
+        return Arrays.stream(flush()).asLongStream().toArray();
+    }
+
+    /**
+     * Buffers the current set of parameters. The row is sent to the database with the rest of its batch.
+     *
+     * @return {@link Statement#SUCCESS_NO_INFO}
+     * @throws SQLException if the batch is sent and fails
+     */
+    @Override
+    public long executeLargeUpdate() throws SQLException {
+        addBatch();
+        return Statement.SUCCESS_NO_INFO;
+    }
+
+    @Override
+    public ResultSet executeQuery() throws SQLException {
+        flush();
+        return super.executeQuery();
+    }
+
+    /**
+     * Buffers the current set of parameters. The row is sent to the database with the rest of its batch.
+     *
+     * @return {@link Statement#SUCCESS_NO_INFO}
+     * @throws SQLException if the batch is sent and fails
+     */
+    @Override
+    public int executeUpdate() throws SQLException {
+        addBatch();
+        return Statement.SUCCESS_NO_INFO;
+    }
+
+    /**
+     * Sends the buffered rows to the database, if any.
+     *
+     * @return the update counts of the rows sent
+     * @throws SQLException if the batch fails
+     */
+    public int[] flush() throws SQLException {
+        if (pendingRows == 0) {
+            return NO_ROWS;
+        }
+        pendingRows = 0;
+        pendingBytes = 0;
+        // the rows buffered before by the other batching statements go first
+        flushPendingBatches();
+        try {
+            final int[] counts = isMeasured() ? measure(null, () -> getDelegate().executeBatch())
+                : getDelegate().executeBatch();
+            recordUpdateCounts(counts);
+            return counts;
+        } catch (final BatchUpdateException e) {
+            if (Objects.nonNull(e.getUpdateCounts())) {
+                recordUpdateCounts(e.getUpdateCounts());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of rows sent to the database by this statement.
+     *
+     * @return the number of rows sent
+     */
+    public long getFlushedRows() {
+        return flushedRows;
+    }
+
+    /**
+     * Returns the number of rows buffered and not sent to the database yet.
+     *
+     * @return the number of pending rows
+     */
+    public int getPendingRows() {
+        return pendingRows;
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return closed || getDelegate().isClosed();
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || super.isWrapperFor(iface);
+    }
+
+    @Override
+    public void setBigDecimal(final int parameterIndex, final BigDecimal x) throws SQLException {
+        super.setBigDecimal(parameterIndex, x);
+        rowBytes += estimateBytes(x);
+    }
+
+    @Override
+    public void setBytes(final int parameterIndex, final byte[] x) throws SQLException {
+        super.setBytes(parameterIndex, x);
+        rowBytes += estimateBytes(x);
+    }
+
+    @Override
+    public void setCharacterStream(final int parameterIndex, final Reader reader, final long length)
+        throws SQLException
+    {
+        super.setCharacterStream(parameterIndex, reader, length);
+        rowBytes += length;
+    }
+
+    @Override
+    public void setNString(final int parameterIndex, final String value) throws SQLException {
+        super.setNString(parameterIndex, value);
+        rowBytes += estimateBytes(value);
+    }
+
+    @Override
+    public void setObject(final int parameterIndex, final Object x) throws SQLException {
+        super.setObject(parameterIndex, x);
+        rowBytes += estimateBytes(x);
+    }
+
+    @Override
+    public void setObject(final int parameterIndex, final Object x, final int targetSqlType) throws SQLException {
+        super.setObject(parameterIndex, x, targetSqlType);
+        rowBytes += estimateBytes(x);
+    }
+
+    /**
+     * Sets whether the update counts of the rows sent are kept until they are read with {@link #drainUpdateCounts()}.
+     * They are not kept by default, as they would grow without limit if never read. Disabling it forgets the update
+     * counts not read yet.
+     *
+     * @param retain <code>true</code> to keep the update counts
+     */
+    public void setRetainUpdateCounts(final boolean retain) {
+        this.retainUpdateCounts = retain;
+        if (!retain) {
+            updateCounts = NO_ROWS;
+            updateCountSize = 0;
+        }
+    }
+
+    @Override
+    public void setString(final int parameterIndex, final String x) throws SQLException {
+        super.setString(parameterIndex, x);
+        rowBytes += estimateBytes(x);
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : super.unwrap(iface);
+    }
+
+    /**
+     * Discards the buffered rows, when the transaction they belong to is rolled back.
+     *
+     * @throws SQLException if a database access error occurs
+     */
+    /* default */ void discard() throws SQLException {
+        if (pendingRows > 0) {
+            clearBatch();
+        }
+        rowBytes = 0;
+    }
+
+    private boolean isFull() {
+        return maxRows > 0 && pendingRows >= maxRows //
+            || maxBytes > 0 && pendingBytes >= maxBytes //
+            || maxDelayNanos > 0 && System.nanoTime() - firstRowNanos >= maxDelayNanos;
+    }
+
+    private void recordUpdateCounts(final int[] counts) {
+        flushedRows += counts.length;
+        if (!retainUpdateCounts) {
+            return;
+        }
+        if (updateCountSize + counts.length > updateCounts.length) {
+            updateCounts = Arrays.copyOf(updateCounts,
+                Math.max(updateCounts.length * 2, updateCountSize + counts.length));
+        }
+        System.arraycopy(counts, 0, updateCounts, updateCountSize, counts.length);
+        updateCountSize += counts.length;
+    }
+}
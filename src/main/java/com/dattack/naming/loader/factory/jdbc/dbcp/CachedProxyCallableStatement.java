@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.dbcp;
+
+import com.dattack.naming.loader.factory.jdbc.dbcp.StatementCache.StatementKey;
+
+import java.sql.CallableStatement;
+
+/**
+ * A {@link CallableStatement} taken from a {@link StatementCache}. Closing it returns the underlying statement to the
+ * cache instead of closing it.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+@SuppressWarnings({ "PMD.TooManyMethods", "PMD.ExcessivePublicCount" })
+public final class CachedProxyCallableStatement extends DbcpProxyCallableStatement {
+
+    private final StatementCache cache;
+    private final StatementKey key;
+    private boolean closed;
+
+    /* default */ CachedProxyCallableStatement(final DbcpProxyConnection connection, final CallableStatement delegate,
+        final StatementCache cache, final StatementKey key)
+    {
+        super(connection, delegate, key.getSql());
+        this.cache = cache;
+        this.key = key;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            cache.release(key, super.getDelegate());
+            notifyClosed();
+        }
+    }
+
+    @Override
+    public CallableStatement getDelegate() {
+        return closed ? StatementCache.CLOSED_STATEMENT : super.getDelegate();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+}
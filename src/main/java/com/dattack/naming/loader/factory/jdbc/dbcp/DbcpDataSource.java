@@ -15,9 +15,9 @@
  */
 package com.dattack.naming.loader.factory.jdbc.dbcp;
 
-import com.dattack.jtoolbox.jdbc.AbstractDataSourceDecorator;
+import com.dattack.naming.loader.factory.RotatableCredentials;
+import org.apache.commons.dbcp2.BasicDataSource;
 
-import java.sql.Connection;
 import java.sql.SQLException;
 import javax.sql.DataSource;
 
@@ -27,24 +27,38 @@ import javax.sql.DataSource;
  * @author cvarela
  * @since 0.5
  */
-public class DbcpDataSource extends AbstractDataSourceDecorator {
+public class DbcpDataSource extends ProxyDataSource implements RotatableCredentials {
+
+    private static final String USER_PROPERTY = "user";
+    private static final String PASSWORD_PROPERTY = "password";
 
     /**
      * Creates a new instance.
      *
      * @param delegate the delegate datasource
+     * @param options  the options of the proxies
      */
-    /* default */ DbcpDataSource(final DataSource delegate) {
-        super(delegate);
+    /* default */ DbcpDataSource(final DataSource delegate, final ProxyOptions options) {
+        super(delegate, options);
     }
 
     @Override
-    public Connection getConnection() throws SQLException {
-        return DbcpProxyConnection.build(getDelegate().getConnection());
+    public void updateCredentials(final String username, final String password) throws SQLException {
+        final BasicDataSource basicDataSource = getDelegate().unwrap(BasicDataSource.class);
+        basicDataSource.setUsername(username);
+        basicDataSource.setPassword(password);
+        // once the pool is initialized, its connection factory reads the credentials from the connection properties
+        setConnectionProperty(basicDataSource, USER_PROPERTY, username);
+        setConnectionProperty(basicDataSource, PASSWORD_PROPERTY, password);
     }
 
-    @Override
-    public Connection getConnection(final String username, final String password) throws SQLException {
-        return DbcpProxyConnection.build(getDelegate().getConnection(username, password));
+    private static void setConnectionProperty(final BasicDataSource basicDataSource, final String name,
+        final String value)
+    {
+        if (value == null) {
+            basicDataSource.removeConnectionProperty(name);
+        } else {
+            basicDataSource.addConnectionProperty(name, value);
+        }
     }
 }
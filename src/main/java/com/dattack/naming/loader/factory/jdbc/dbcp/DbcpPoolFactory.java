@@ -17,8 +17,10 @@ package com.dattack.naming.loader.factory.jdbc.dbcp;
 
 import com.dattack.naming.loader.factory.AbstractPoolFactory;
 import com.dattack.naming.loader.factory.DataSourceConfig;
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbcp2.BasicDataSourceFactory;
 
-import java.lang.reflect.Method;
+import java.util.Objects;
 import java.util.Properties;
 import javax.sql.DataSource;
 
@@ -35,6 +37,13 @@ public final class DbcpPoolFactory extends AbstractPoolFactory {
     private static final String URL_KEY = "url";
     private static final String USER_KEY = "username";
     private static final String PASSWORD_KEY = "password";
+    private static final String INITIAL_SIZE_KEY = "initialSize";
+    private static final String MIN_IDLE_KEY = "minIdle";
+    private static final String MAX_TOTAL_KEY = "maxTotal";
+    private static final int DEFAULT_MAX_TOTAL = 8;
+    private static final String NAME = "dbcp";
+    private static final int PRIORITY = 100;
+    private static final String REQUIRED_CLASS_NAME = "org.apache.commons.dbcp2.BasicDataSourceFactory";
     private static final String TYPE_NAME = "DBCP-Pool";
     private static final DbcpPoolFactory SINGLETON = new DbcpPoolFactory();
 
@@ -45,28 +54,50 @@ public final class DbcpPoolFactory extends AbstractPoolFactory {
     @Override
     public DataSource createDataSource(final DataSourceConfig dataSourceConfig) {
 
-        final String clazzName = "org.apache.commons.dbcp2.BasicDataSourceFactory";
-
         log(dataSourceConfig, "Configuring datasource (driver: {}) ...", dataSourceConfig.getDriver());
         DataSource dataSource = null;
         try {
             final Properties poolProperties = computeProperties(dataSourceConfig);
             logPoolConfiguration(dataSourceConfig, poolProperties);
 
-            final Class<?> factory = Class.forName(clazzName);
-            final Method method = factory.getDeclaredMethod("createDataSource", Properties.class);
-            dataSource = (DataSource) method.invoke(null, poolProperties);
-            dataSource = new DbcpDataSource(dataSource);
-
-        } catch (ClassNotFoundException e) {
-            log(dataSourceConfig, e, "Class not found");
-            disable();
+            // the pool is started by the factory when 'initialSize' is set, before the init SQLs can be configured
+            final Object initialSize = poolProperties.remove(INITIAL_SIZE_KEY);
+            final BasicDataSource basicDataSource = BasicDataSourceFactory.createDataSource(poolProperties);
+            if (isOnConnectScriptSupported(dataSourceConfig)) {
+                basicDataSource.setConnectionInitSqls(dataSourceConfig.getOnConnectStatements());
+            }
+            // the warm-up opens the initial connections in parallel, instead of one by one when the pool starts
+            if (Objects.nonNull(initialSize) && !dataSourceConfig.isWarmUp()) {
+                basicDataSource.setInitialSize(Integer.parseInt(initialSize.toString().trim()));
+                if (basicDataSource.getInitialSize() > 0) {
+                    basicDataSource.start();
+                }
+            }
+            dataSource = new DbcpDataSource(basicDataSource, dataSourceConfig.getProxyOptions());
         } catch (final Throwable t) { //NOPMD
             log(dataSourceConfig, t, "Unable to configure datasource");
         }
         return dataSource;
     }
 
+    @Override
+    public int getMinimumSize(final DataSourceConfig dataSourceConfig) {
+        final Properties poolProperties = computeProperties(dataSourceConfig);
+        return capMinimumSize(Math.max(getIntProperty(poolProperties, INITIAL_SIZE_KEY, 0),
+                                       getIntProperty(poolProperties, MIN_IDLE_KEY, 0)),
+                              getIntProperty(poolProperties, MAX_TOTAL_KEY, DEFAULT_MAX_TOTAL));
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getPriority() {
+        return PRIORITY;
+    }
+
     @Override
     public String getTypeName() {
         return TYPE_NAME;
@@ -96,4 +127,21 @@ public final class DbcpPoolFactory extends AbstractPoolFactory {
     public String getPasswordKey() {
         return PASSWORD_KEY;
     }
+
+    @Override
+    public boolean isProxySupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isOnConnectScriptSupported(final DataSourceConfig dataSourceConfig) {
+        // a single statement is executed by DBCP through 'connectionInitSqls'; a longer script is executed by the
+        // ConnectionInitializer, which saves round trips and falls back to sequential execution
+        return dataSourceConfig.getOnConnectStatements().size() <= 1;
+    }
+
+    @Override
+    public boolean isSupported() {
+        return isClassAvailable(REQUIRED_CLASS_NAME);
+    }
 }
@@ -26,17 +26,19 @@ import java.sql.CallableStatement;
  * @author cvarela
  * @since 0.5
  */
-public final class DbcpProxyCallableStatement extends DbcpProxyPreparedStatement<CallableStatement>
+public class DbcpProxyCallableStatement extends DbcpProxyPreparedStatement<CallableStatement>
     implements ProxyCallableStatement
 {
 
-    private DbcpProxyCallableStatement(final DbcpProxyConnection connection, final CallableStatement delegate) {
-        super(connection, delegate);
+    protected DbcpProxyCallableStatement(final DbcpProxyConnection connection, final CallableStatement delegate,
+        final String sql)
+    {
+        super(connection, delegate, sql);
     }
 
     /* default */ static DbcpProxyCallableStatement build(final DbcpProxyConnection connection, //
-        final CallableStatement delegate)
+        final CallableStatement delegate, final String sql)
     {
-        return new DbcpProxyCallableStatement(connection, delegate);
+        return new DbcpProxyCallableStatement(connection, delegate, sql);
     }
 }
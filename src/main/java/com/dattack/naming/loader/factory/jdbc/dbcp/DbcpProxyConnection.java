@@ -15,14 +15,28 @@
  */
 package com.dattack.naming.loader.factory.jdbc.dbcp;
 
+import com.dattack.jtoolbox.jdbc.JdbcObjectProxy;
 import com.dattack.jtoolbox.jdbc.internal.NamedPreparedStatement;
+import com.dattack.jtoolbox.jdbc.internal.NamedPreparedStatementConfig;
 import com.dattack.jtoolbox.jdbc.internal.ProxyConnection;
+import com.dattack.naming.loader.factory.jdbc.NamedStatementCache;
+import com.dattack.naming.loader.factory.jdbc.dbcp.StatementCache.StatementCreator;
+import com.dattack.naming.loader.factory.jdbc.dbcp.StatementCache.StatementKey;
+import com.dattack.naming.loader.factory.jdbc.metrics.LeakDetector;
+import org.apache.commons.dbcp2.DelegatingConnection;
 
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * A delegating implementation of {@link Connection}. All methods call the corresponding method on the "delegate"
@@ -34,28 +48,199 @@ import java.sql.Statement;
 @SuppressWarnings({ "unused", "PMD.TooManyMethods", "PMD.ExcessivePublicCount" })
 public class DbcpProxyConnection implements ProxyConnection {
 
+    // DBCP is an optional dependency: the proxies are also used with the other pools
+    /* default */ static final boolean DBCP_AVAILABLE = isDbcpAvailable();
+    private static final int UNSET = StatementKey.UNSET;
+
     private final Connection delegate;
+    private final Connection physicalConnection;
+    private final StatementCache statementCache;
+    private final ProxyOptions options;
+    private final boolean wrapStatements;
+    private final boolean statementDefaults;
+    private final long acquiredNanos;
+    private final LeakDetector.Lease lease;
+    private List<BatchingPreparedStatement> batchingStatements;
+    private Set<Statement> cachedStatements;
+    private boolean released;
 
     protected DbcpProxyConnection(final Connection delegate) {
+        this(delegate, null, ProxyOptions.DEFAULT);
+    }
+
+    /**
+     * Creates a new proxy connection.
+     *
+     * @param delegate           the connection obtained from the pool
+     * @param physicalConnection the physical connection used to prepare the cached statements
+     * @param options            the options of the proxies
+     */
+    protected DbcpProxyConnection(final Connection delegate, final Connection physicalConnection,
+        final ProxyOptions options)
+    {
+        this(delegate, physicalConnection, options, options.isStatementWrappingRequired());
+    }
+
+    /**
+     * Creates a new proxy connection that wraps its statements regardless of the proxy mode. The pools whose
+     * connections are closed through the statements (<code>Statement.getConnection().close()</code>) must wrap them,
+     * or closing that connection would close the physical one.
+     *
+     * @param delegate           the connection obtained from the pool
+     * @param physicalConnection the physical connection used to prepare the cached statements
+     * @param options            the options of the proxies
+     * @param wrapStatements     whether the statements are wrapped whatever the proxy mode
+     */
+    protected DbcpProxyConnection(final Connection delegate, final Connection physicalConnection,
+        final ProxyOptions options, final boolean wrapStatements)
+    {
         this.delegate = delegate;
+        this.options = options;
+        this.wrapStatements = wrapStatements || options.isStatementWrappingRequired();
+        this.statementDefaults = options.hasStatementDefaults();
+        this.acquiredNanos = Objects.isNull(options.getMetrics()) ? 0 : System.nanoTime();
+        this.lease = Objects.isNull(options.getLeakDetector()) ? null : options.getLeakDetector().acquire();
+        if (options.getStatementCacheSize() > 0 && Objects.nonNull(physicalConnection)) {
+            this.physicalConnection = physicalConnection;
+            this.statementCache = StatementCache.forConnection(physicalConnection, options.getStatementCacheSize());
+        } else {
+            this.physicalConnection = null; // NOPMD
+            this.statementCache = null; // NOPMD
+        }
     }
 
     public static DbcpProxyConnection build(Connection delegate) {
         return new DbcpProxyConnection(delegate);
     }
 
+    /**
+     * Creates a new proxy connection.
+     *
+     * @param delegate the connection obtained from the pool
+     * @param options  the options of the proxies
+     * @return the proxy connection
+     * @throws SQLException if the physical connection cannot be obtained
+     */
+    public static DbcpProxyConnection build(final Connection delegate, final ProxyOptions options)
+        throws SQLException
+    {
+        if (options.getStatementCacheSize() <= 0) {
+            return new DbcpProxyConnection(delegate, null, options);
+        }
+        return new DbcpProxyConnection(delegate, getPhysicalConnection(delegate), options);
+    }
+
+    /**
+     * Returns the physical connection wrapped by a connection obtained from a pool.
+     *
+     * @param connection the connection obtained from a pool
+     * @return the physical connection, or the same connection if it cannot be determined
+     * @throws SQLException if a database access error occurs
+     */
+    @SuppressWarnings({ "unchecked", "PMD.CloseResource" })
+    public static Connection getPhysicalConnection(final Connection connection) throws SQLException {
+        Connection result = connection;
+        while (result instanceof JdbcObjectProxy) {
+            result = ((JdbcObjectProxy<Connection>) result).getDelegate();
+        }
+        if (DBCP_AVAILABLE && result instanceof DelegatingConnection) {
+            final Connection innermost = ((DelegatingConnection<?>) result).getInnermostDelegateInternal();
+            return Objects.isNull(innermost) ? result : innermost;
+        }
+        if (result.isWrapperFor(Connection.class)) {
+            final Connection unwrapped = result.unwrap(Connection.class);
+            if (Objects.nonNull(unwrapped)) {
+                result = unwrapped;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isDbcpAvailable() {
+        try {
+            Class.forName("org.apache.commons.dbcp2.DelegatingConnection", false,
+                          DbcpProxyConnection.class.getClassLoader());
+            return true;
+        } catch (final ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        recordRelease();
+        try {
+            closeBatchingStatements();
+        } finally {
+            closeCachedStatements();
+            if (Objects.nonNull(statementCache) && !getDelegate().isClosed() && !getDelegate().getAutoCommit()) {
+                // the cached statements run on the physical connection, so the pool may not notice the pending work
+                getDelegate().rollback();
+            }
+            getDelegate().close();
+        }
+    }
+
+    /**
+     * Closes the batching statements created by this connection, which sends their pending rows to the database.
+     *
+     * @throws SQLException if a batch fails
+     */
+    protected final void closeBatchingStatements() throws SQLException {
+        if (Objects.isNull(batchingStatements)) {
+            return;
+        }
+        SQLException exception = null;
+        for (final BatchingPreparedStatement statement : new ArrayList<>(batchingStatements)) {
+            try {
+                statement.close();
+            } catch (final SQLException e) {
+                exception = e;
+            }
+        }
+        batchingStatements.clear();
+        if (Objects.nonNull(exception)) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Returns to their cache the cached statements taken by this connection that the application has not closed, so
+     * that they are not used by the next holder of the physical connection while this one can still reach them.
+     */
+    protected final void closeCachedStatements() {
+        if (Objects.isNull(cachedStatements) || cachedStatements.isEmpty()) {
+            return;
+        }
+        final List<Statement> list = new ArrayList<>(cachedStatements);
+        cachedStatements.clear();
+        for (final Statement statement : list) {
+            try {
+                statement.close();
+            } catch (final SQLException e) { // NOPMD - the cached statements are returned quietly
+                // nothing to do
+            }
+        }
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        flushBatchingStatements();
+        getDelegate().commit();
+    }
+
     @Override
     @SuppressWarnings("PMD.CloseResource")
     public Statement createStatement() throws SQLException {
-        Statement statement = getDelegate().createStatement();
-        return DbcpProxyStatement.build(this, statement);
+        Statement statement = applyDefaults(getDelegate().createStatement());
+        return isWrappingStatements() ? DbcpProxyStatement.build(this, statement) : statement;
     }
 
     @Override
     @SuppressWarnings("PMD.CloseResource")
     public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
-        Statement statement = getDelegate().createStatement(resultSetType, resultSetConcurrency);
-        return DbcpProxyStatement.build(this, statement);
+        Statement statement = applyDefaults(getDelegate().createStatement(resultSetType, resultSetConcurrency));
+        return isWrappingStatements() ? DbcpProxyStatement.build(this, statement) : statement;
     }
 
     @Override
@@ -63,8 +248,9 @@ public class DbcpProxyConnection implements ProxyConnection {
     public Statement createStatement(int resultSetType, int resultSetConcurrency,
         int resultSetHoldability) throws SQLException
     {
-        Statement statement = getDelegate().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
-        return DbcpProxyStatement.build(this, statement);
+        Statement statement = applyDefaults(
+            getDelegate().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+        return isWrappingStatements() ? DbcpProxyStatement.build(this, statement) : statement;
     }
 
     @Override
@@ -72,21 +258,141 @@ public class DbcpProxyConnection implements ProxyConnection {
         return delegate;
     }
 
+    /**
+     * Returns the options of the proxies created by this connection.
+     *
+     * @return the options of the proxies
+     */
+    /* default */ ProxyOptions getProxyOptions() {
+        return options;
+    }
+
+    /**
+     * Records the time this connection has been held by the application, and stops tracking it as a potential leak.
+     * Only the first invocation has effect.
+     */
+    protected final void recordRelease() {
+        if (released) {
+            return;
+        }
+        released = true;
+        if (Objects.nonNull(options.getMetrics())) {
+            options.getMetrics().recordHold(System.nanoTime() - acquiredNanos);
+        }
+        if (Objects.nonNull(lease)) {
+            options.getLeakDetector().release(lease);
+        }
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        discardBatchingStatements();
+        getDelegate().rollback();
+    }
+
+    @Override
+    public void rollback(final Savepoint savepoint) throws SQLException {
+        discardBatchingStatements();
+        getDelegate().rollback(savepoint);
+    }
+
+    @Override
+    public void setAutoCommit(final boolean autoCommit) throws SQLException {
+        if (autoCommit) {
+            // enabling the auto-commit mode commits the transaction, which must include the buffered rows
+            flushBatchingStatements();
+        }
+        getDelegate().setAutoCommit(autoCommit);
+    }
+
+    @Override
+    public Savepoint setSavepoint() throws SQLException {
+        // the rows buffered before the savepoint must not be discarded by a rollback to it
+        flushBatchingStatements();
+        return getDelegate().setSavepoint();
+    }
+
+    @Override
+    public Savepoint setSavepoint(final String name) throws SQLException {
+        flushBatchingStatements();
+        return getDelegate().setSavepoint(name);
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : getDelegate().unwrap(iface);
+    }
+
+    /**
+     * Invoked when a statement wrapped by a proxy of this connection is closed. The subclasses that override it must
+     * invoke this implementation, which stops tracking the cached statements.
+     *
+     * @param statement the proxy statement that has been closed
+     */
+    protected void statementClosed(final Statement statement) {
+        if (Objects.nonNull(cachedStatements)) {
+            cachedStatements.remove(statement);
+        }
+    }
+
+    /**
+     * Stops tracking a batching statement that has been closed.
+     *
+     * @param statement the batching statement
+     */
+    /* default */ void unregister(final BatchingPreparedStatement statement) {
+        if (Objects.nonNull(batchingStatements)) {
+            batchingStatements.remove(statement);
+        }
+    }
+
     @Override
     public CallableStatement prepareCall(String sql) throws SQLException {
-        return doPrepareCall(getDelegate().prepareCall(sql));
+        if (Objects.nonNull(statementCache)) {
+            return prepareCachedCall(StatementKey.callable(sql), () -> physicalConnection.prepareCall(sql));
+        }
+        return doPrepareCall(sql, getDelegate().prepareCall(sql));
     }
 
     @Override
     public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
-        return doPrepareCall(getDelegate().prepareCall(sql, resultSetType, resultSetConcurrency));
+        if (Objects.nonNull(statementCache)) {
+            return prepareCachedCall(StatementKey.callable(sql, resultSetType, resultSetConcurrency, UNSET),
+                () -> physicalConnection.prepareCall(sql, resultSetType, resultSetConcurrency));
+        }
+        return doPrepareCall(sql, getDelegate().prepareCall(sql, resultSetType, resultSetConcurrency));
     }
 
     @Override
     public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency,
         int resultSetHoldability) throws SQLException
     {
-        return doPrepareCall(getDelegate().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+        if (Objects.nonNull(statementCache)) {
+            return prepareCachedCall(
+                StatementKey.callable(sql, resultSetType, resultSetConcurrency, resultSetHoldability),
+                () -> physicalConnection.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+        }
+        return doPrepareCall(sql,
+            getDelegate().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || getDelegate().isWrapperFor(iface);
+    }
+
+    /**
+     * Creates a named-parameter statement that buffers its updates in batches, as described in
+     * {@link BatchingPreparedStatement}, to which it can be unwrapped.
+     *
+     * @param sql a SQL statement that may contain one or more ':parameterName' IN parameter placeholders
+     * @return the named-parameter statement
+     * @throws SQLException if a database access error occurs
+     */
+    @SuppressWarnings("PMD.CloseResource")
+    public NamedPreparedStatement prepareNamedBatchingStatement(final String sql) throws SQLException {
+        final NamedPreparedStatementConfig config = NamedStatementCache.parse(sql);
+        return new DbcpProxyNamedPreparedStatement(this, prepareBatchingStatement(config.getCompiledSql()), config);
     }
 
     @Override
@@ -94,46 +400,168 @@ public class DbcpProxyConnection implements ProxyConnection {
         return DbcpProxyNamedPreparedStatement.build(this, sql);
     }
 
+    /**
+     * Creates a statement that buffers its updates in batches, as described in {@link BatchingPreparedStatement}.
+     *
+     * @param sql a SQL statement that may contain one or more '?' IN parameter placeholders
+     * @return the batching statement
+     * @throws SQLException if a database access error occurs
+     */
+    public BatchingPreparedStatement prepareBatchingStatement(final String sql) throws SQLException {
+        final BatchingPreparedStatement statement = new BatchingPreparedStatement(this, prepareStatement(sql), sql);
+        if (Objects.isNull(batchingStatements)) {
+            batchingStatements = new ArrayList<>();
+        }
+        batchingStatements.add(statement);
+        return statement;
+    }
+
     @Override
     public PreparedStatement prepareStatement(String sql) throws SQLException {
-        return doPrepareStatement(getDelegate().prepareStatement(sql));
+        if (Objects.nonNull(statementCache)) {
+            return prepareCachedStatement(StatementKey.prepared(sql), () -> physicalConnection.prepareStatement(sql));
+        }
+        return doPrepareStatement(sql, getDelegate().prepareStatement(sql));
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql, int resultSetType,
         int resultSetConcurrency) throws SQLException
     {
-        return doPrepareStatement(getDelegate().prepareStatement(sql, resultSetType, resultSetConcurrency));
+        if (Objects.nonNull(statementCache)) {
+            return prepareCachedStatement(StatementKey.prepared(sql, resultSetType, resultSetConcurrency, UNSET),
+                () -> physicalConnection.prepareStatement(sql, resultSetType, resultSetConcurrency));
+        }
+        return doPrepareStatement(sql, getDelegate().prepareStatement(sql, resultSetType, resultSetConcurrency));
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
         int resultSetHoldability) throws SQLException
     {
-        return doPrepareStatement(
+        if (Objects.nonNull(statementCache)) {
+            return prepareCachedStatement(
+                StatementKey.prepared(sql, resultSetType, resultSetConcurrency, resultSetHoldability),
+                () -> physicalConnection.prepareStatement(sql, resultSetType, resultSetConcurrency,
+                                                          resultSetHoldability));
+        }
+        return doPrepareStatement(sql,
             getDelegate().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
-        return doPrepareStatement(getDelegate().prepareStatement(sql, autoGeneratedKeys));
+        if (Objects.nonNull(statementCache)) {
+            return prepareCachedStatement(StatementKey.prepared(sql, autoGeneratedKeys),
+                () -> physicalConnection.prepareStatement(sql, autoGeneratedKeys));
+        }
+        return doPrepareStatement(sql, getDelegate().prepareStatement(sql, autoGeneratedKeys));
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
-        return doPrepareStatement(getDelegate().prepareStatement(sql, columnIndexes));
+        if (Objects.nonNull(statementCache)) {
+            return prepareCachedStatement(StatementKey.prepared(sql, columnIndexes),
+                () -> physicalConnection.prepareStatement(sql, columnIndexes));
+        }
+        return doPrepareStatement(sql, getDelegate().prepareStatement(sql, columnIndexes));
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
-        return doPrepareStatement(getDelegate().prepareStatement(sql, columnNames));
+        if (Objects.nonNull(statementCache)) {
+            return prepareCachedStatement(StatementKey.prepared(sql, columnNames),
+                () -> physicalConnection.prepareStatement(sql, columnNames));
+        }
+        return doPrepareStatement(sql, getDelegate().prepareStatement(sql, columnNames));
+    }
+
+    private CallableStatement prepareCachedCall(final StatementKey key,
+        final StatementCreator<CallableStatement> creator) throws SQLException
+    {
+        return trackCached(new CachedProxyCallableStatement(this, applyDefaults(statementCache.take(key, creator)),
+                                                            statementCache, key));
+    }
+
+    private PreparedStatement prepareCachedStatement(final StatementKey key,
+        final StatementCreator<PreparedStatement> creator) throws SQLException
+    {
+        return trackCached(new CachedProxyPreparedStatement(this, applyDefaults(statementCache.take(key, creator)),
+                                                            statementCache, key));
     }
 
-    private CallableStatement doPrepareCall(final CallableStatement callableStatement) {
-        return DbcpProxyCallableStatement.build(this, callableStatement);
+    private <S extends Statement> S trackCached(final S statement) {
+        if (Objects.isNull(cachedStatements)) {
+            cachedStatements = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+        cachedStatements.add(statement);
+        return statement;
     }
 
-    private PreparedStatement doPrepareStatement(final PreparedStatement preparedStatement) {
-        return DbcpProxyPreparedStatement.build(this, preparedStatement);
+    /**
+     * Sets the default fetch size, maximum number of rows and query timeout of the datasource on a statement, before
+     * it is handed out to the application, which can still override them. The cached statements get them each time
+     * they are reused.
+     *
+     * @param statement the statement
+     * @param <S>       the type of the statement
+     * @return the same statement
+     * @throws SQLException if a database access error occurs
+     */
+    private <S extends Statement> S applyDefaults(final S statement) throws SQLException {
+        if (statementDefaults) {
+            if (options.getDefaultFetchSize() > 0) {
+                statement.setFetchSize(options.getDefaultFetchSize());
+            }
+            if (options.getDefaultMaxRows() > 0) {
+                statement.setMaxRows(options.getDefaultMaxRows());
+            }
+            if (options.getDefaultQueryTimeoutSeconds() > 0) {
+                statement.setQueryTimeout(options.getDefaultQueryTimeoutSeconds());
+            }
+        }
+        return statement;
+    }
+
+    private void discardBatchingStatements() throws SQLException {
+        if (Objects.nonNull(batchingStatements)) {
+            for (final BatchingPreparedStatement statement : batchingStatements) {
+                statement.discard();
+            }
+        }
+    }
+
+    /**
+     * Sends the pending rows of the batching statements created by this connection.
+     *
+     * @throws SQLException if a batch fails
+     */
+    /* default */ void flushBatchingStatements() throws SQLException {
+        if (Objects.nonNull(batchingStatements)) {
+            for (final BatchingPreparedStatement statement : batchingStatements) {
+                statement.flush();
+            }
+        }
+    }
+
+    private boolean isWrappingStatements() {
+        // once there are batching statements, the others must be wrapped to send their pending rows before executing
+        return wrapStatements || Objects.nonNull(batchingStatements);
+    }
+
+    private CallableStatement doPrepareCall(final String sql, final CallableStatement callableStatement)
+        throws SQLException
+    {
+        applyDefaults(callableStatement);
+        return isWrappingStatements() ? DbcpProxyCallableStatement.build(this, callableStatement, sql)
+            : callableStatement;
+    }
+
+    private PreparedStatement doPrepareStatement(final String sql, final PreparedStatement preparedStatement)
+        throws SQLException
+    {
+        applyDefaults(preparedStatement);
+        return isWrappingStatements() ? DbcpProxyPreparedStatement.build(this, preparedStatement, sql)
+            : preparedStatement;
     }
 }
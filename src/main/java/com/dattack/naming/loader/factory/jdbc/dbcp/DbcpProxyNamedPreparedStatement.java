@@ -17,6 +17,7 @@ package com.dattack.naming.loader.factory.jdbc.dbcp;
 
 import com.dattack.jtoolbox.jdbc.internal.NamedPreparedStatementConfig;
 import com.dattack.jtoolbox.jdbc.internal.ProxyNamedPreparedStatement;
+import com.dattack.naming.loader.factory.jdbc.NamedStatementCache;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -55,7 +56,7 @@ public class DbcpProxyNamedPreparedStatement extends DbcpProxyPreparedStatement<
     public static DbcpProxyNamedPreparedStatement build(final DbcpProxyConnection connection,
         final String sql) throws SQLException
     {
-        final NamedPreparedStatementConfig preparedStatementConfig = NamedPreparedStatementConfig.parse(sql);
+        final NamedPreparedStatementConfig preparedStatementConfig = NamedStatementCache.parse(sql);
         return new DbcpProxyNamedPreparedStatement(connection, connection.prepareStatement(
             preparedStatementConfig.getCompiledSql()), preparedStatementConfig);
     }
@@ -17,13 +17,30 @@ package com.dattack.naming.loader.factory.jdbc.dbcp;
 
 import com.dattack.jtoolbox.jdbc.internal.ProxyPreparedStatement;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
 import java.sql.PreparedStatement;
+import java.sql.Ref;
 import java.sql.ResultSet;
+import java.sql.RowId;
 import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
 
 /**
  * A delegating implementation of {@link PreparedStatement}. All methods call the corresponding method on the "delegate"
- * provided in the constructor.
+ * provided in the constructor. The setters also record the highest parameter index bound, which is reported by the
+ * slow-query log without asking the driver for the parameter metadata.
  *
  * @author cvarela
  * @since 0.5
@@ -33,18 +50,368 @@ public class DbcpProxyPreparedStatement<P extends PreparedStatement> extends Dbc
     implements ProxyPreparedStatement<P>
 {
 
+    private int boundParameters;
+
     protected DbcpProxyPreparedStatement(final DbcpProxyConnection connection, final P delegate) {
         super(connection, delegate);
     }
 
+    protected DbcpProxyPreparedStatement(final DbcpProxyConnection connection, final P delegate, final String sql) {
+        super(connection, delegate, sql);
+    }
+
     protected static <P extends PreparedStatement> DbcpProxyPreparedStatement<P> build(
-        final DbcpProxyConnection connection, final P delegate)
+        final DbcpProxyConnection connection, final P delegate, final String sql)
     {
-        return new DbcpProxyPreparedStatement<>(connection, delegate);
+        return new DbcpProxyPreparedStatement<>(connection, delegate, sql);
+    }
+
+    @Override
+    public void clearParameters() throws SQLException {
+        getDelegate().clearParameters();
+        boundParameters = 0;
+    }
+
+    @Override
+    public boolean execute() throws SQLException {
+        flushPendingBatches();
+        return isMeasured() ? measure(null, () -> getDelegate().execute()) : getDelegate().execute();
     }
 
     @Override
     public ResultSet executeQuery() throws SQLException {
-        return DbcpProxyResultSet.build(this, getDelegate().executeQuery());
+        flushPendingBatches();
+        return DbcpProxyResultSet.build(this, isMeasured() ? measure(null, () -> getDelegate().executeQuery())
+            : getDelegate().executeQuery());
+    }
+
+    @Override
+    public int executeUpdate() throws SQLException {
+        flushPendingBatches();
+        return isMeasured() ? measure(null, () -> getDelegate().executeUpdate()) : getDelegate().executeUpdate();
+    }
+
+    @Override
+    public void setNull(final int parameterIndex, final int sqlType) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setNull(parameterIndex, sqlType);
+    }
+
+    @Override
+    public void setBoolean(final int parameterIndex, final boolean x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setBoolean(parameterIndex, x);
+    }
+
+    @Override
+    public void setByte(final int parameterIndex, final byte x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setByte(parameterIndex, x);
+    }
+
+    @Override
+    public void setShort(final int parameterIndex, final short x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setShort(parameterIndex, x);
+    }
+
+    @Override
+    public void setInt(final int parameterIndex, final int x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setInt(parameterIndex, x);
+    }
+
+    @Override
+    public void setLong(final int parameterIndex, final long x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setLong(parameterIndex, x);
+    }
+
+    @Override
+    public void setFloat(final int parameterIndex, final float x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setFloat(parameterIndex, x);
+    }
+
+    @Override
+    public void setDouble(final int parameterIndex, final double x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setDouble(parameterIndex, x);
+    }
+
+    @Override
+    public void setBigDecimal(final int parameterIndex, final BigDecimal x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setBigDecimal(parameterIndex, x);
+    }
+
+    @Override
+    public void setString(final int parameterIndex, final String x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setString(parameterIndex, x);
+    }
+
+    @Override
+    public void setBytes(final int parameterIndex, final byte[] x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setBytes(parameterIndex, x);
+    }
+
+    @Override
+    public void setDate(final int parameterIndex, final Date x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setDate(parameterIndex, x);
+    }
+
+    @Override
+    public void setTime(final int parameterIndex, final Time x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setTime(parameterIndex, x);
+    }
+
+    @Override
+    public void setTimestamp(final int parameterIndex, final Timestamp x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setTimestamp(parameterIndex, x);
+    }
+
+    @Override
+    public void setAsciiStream(final int parameterIndex, final InputStream x, final int length) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setAsciiStream(parameterIndex, x, length);
+    }
+
+    @Override
+    @Deprecated
+    public void setUnicodeStream(final int parameterIndex, final InputStream x, final int length) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setUnicodeStream(parameterIndex, x, length);
+    }
+
+    @Override
+    public void setBinaryStream(final int parameterIndex, final InputStream x, final int length) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setBinaryStream(parameterIndex, x, length);
+    }
+
+    @Override
+    public void setObject(final int parameterIndex, final Object x, final int targetSqlType) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setObject(parameterIndex, x, targetSqlType);
+    }
+
+    @Override
+    public void setObject(final int parameterIndex, final Object x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setObject(parameterIndex, x);
+    }
+
+    @Override
+    public void setCharacterStream(final int parameterIndex, final Reader reader, final int length)
+        throws SQLException
+    {
+        bound(parameterIndex);
+        getDelegate().setCharacterStream(parameterIndex, reader, length);
+    }
+
+    @Override
+    public void setRef(final int parameterIndex, final Ref x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setRef(parameterIndex, x);
+    }
+
+    @Override
+    public void setBlob(final int parameterIndex, final Blob x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setBlob(parameterIndex, x);
+    }
+
+    @Override
+    public void setClob(final int parameterIndex, final Clob x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setClob(parameterIndex, x);
+    }
+
+    @Override
+    public void setArray(final int parameterIndex, final Array x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setArray(parameterIndex, x);
+    }
+
+    @Override
+    public void setDate(final int parameterIndex, final Date x, final Calendar cal) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setDate(parameterIndex, x, cal);
+    }
+
+    @Override
+    public void setTime(final int parameterIndex, final Time x, final Calendar cal) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setTime(parameterIndex, x, cal);
+    }
+
+    @Override
+    public void setTimestamp(final int parameterIndex, final Timestamp x, final Calendar cal) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setTimestamp(parameterIndex, x, cal);
+    }
+
+    @Override
+    public void setNull(final int parameterIndex, final int sqlType, final String typeName) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setNull(parameterIndex, sqlType, typeName);
+    }
+
+    @Override
+    public void setURL(final int parameterIndex, final URL x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setURL(parameterIndex, x);
+    }
+
+    @Override
+    public void setRowId(final int parameterIndex, final RowId x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setRowId(parameterIndex, x);
+    }
+
+    @Override
+    public void setNString(final int parameterIndex, final String x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setNString(parameterIndex, x);
+    }
+
+    @Override
+    public void setNCharacterStream(final int parameterIndex, final Reader reader, final long length)
+        throws SQLException
+    {
+        bound(parameterIndex);
+        getDelegate().setNCharacterStream(parameterIndex, reader, length);
+    }
+
+    @Override
+    public void setNClob(final int parameterIndex, final NClob x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setNClob(parameterIndex, x);
+    }
+
+    @Override
+    public void setClob(final int parameterIndex, final Reader reader, final long length) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setClob(parameterIndex, reader, length);
+    }
+
+    @Override
+    public void setBlob(final int parameterIndex, final InputStream inputStream, final long length)
+        throws SQLException
+    {
+        bound(parameterIndex);
+        getDelegate().setBlob(parameterIndex, inputStream, length);
+    }
+
+    @Override
+    public void setNClob(final int parameterIndex, final Reader reader, final long length) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setNClob(parameterIndex, reader, length);
+    }
+
+    @Override
+    public void setSQLXML(final int parameterIndex, final SQLXML x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setSQLXML(parameterIndex, x);
+    }
+
+    @Override
+    public void setObject(final int parameterIndex, final Object x, final int targetSqlType, final int scaleOrLength)
+        throws SQLException
+    {
+        bound(parameterIndex);
+        getDelegate().setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+    }
+
+    @Override
+    public void setAsciiStream(final int parameterIndex, final InputStream x, final long length) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setAsciiStream(parameterIndex, x, length);
+    }
+
+    @Override
+    public void setBinaryStream(final int parameterIndex, final InputStream x, final long length) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setBinaryStream(parameterIndex, x, length);
+    }
+
+    @Override
+    public void setCharacterStream(final int parameterIndex, final Reader reader, final long length)
+        throws SQLException
+    {
+        bound(parameterIndex);
+        getDelegate().setCharacterStream(parameterIndex, reader, length);
+    }
+
+    @Override
+    public void setAsciiStream(final int parameterIndex, final InputStream x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setAsciiStream(parameterIndex, x);
+    }
+
+    @Override
+    public void setBinaryStream(final int parameterIndex, final InputStream x) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setBinaryStream(parameterIndex, x);
+    }
+
+    @Override
+    public void setCharacterStream(final int parameterIndex, final Reader reader) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setCharacterStream(parameterIndex, reader);
+    }
+
+    @Override
+    public void setNCharacterStream(final int parameterIndex, final Reader reader) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setNCharacterStream(parameterIndex, reader);
+    }
+
+    @Override
+    public void setClob(final int parameterIndex, final Reader reader) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setClob(parameterIndex, reader);
+    }
+
+    @Override
+    public void setBlob(final int parameterIndex, final InputStream inputStream) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setBlob(parameterIndex, inputStream);
+    }
+
+    @Override
+    public void setNClob(final int parameterIndex, final Reader reader) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setNClob(parameterIndex, reader);
+    }
+
+    @Override
+    public void setObject(final int parameterIndex, final Object x, final SQLType targetSqlType,
+        final int scaleOrLength) throws SQLException
+    {
+        bound(parameterIndex);
+        getDelegate().setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+    }
+
+    @Override
+    public void setObject(final int parameterIndex, final Object x, final SQLType targetSqlType) throws SQLException {
+        bound(parameterIndex);
+        getDelegate().setObject(parameterIndex, x, targetSqlType);
+    }
+
+    @Override
+    protected int getBoundParameterCount() {
+        return boundParameters;
+    }
+
+    private void bound(final int parameterIndex) {
+        if (parameterIndex > boundParameters) {
+            boundParameters = parameterIndex;
+        }
     }
 }
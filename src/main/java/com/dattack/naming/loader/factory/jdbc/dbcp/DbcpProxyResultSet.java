@@ -16,9 +16,12 @@
 package com.dattack.naming.loader.factory.jdbc.dbcp;
 
 import com.dattack.jtoolbox.jdbc.internal.ProxyResultSet;
+import com.dattack.naming.loader.factory.jdbc.metrics.StatementMetrics;
 
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Objects;
 
 /**
  * A delegating implementation of {@link ResultSet}. All methods call the corresponding method on the "delegate"
@@ -32,10 +35,12 @@ public final class DbcpProxyResultSet implements ProxyResultSet {
 
     private final DbcpProxyStatement<?> statement;
     private final ResultSet delegate;
+    private final StatementMetrics statementMetrics;
 
     private DbcpProxyResultSet(DbcpProxyStatement<?> statement, ResultSet delegate) {
         this.statement = statement;
         this.delegate = delegate;
+        this.statementMetrics = statement.getStatementMetrics();
     }
 
     /**
@@ -58,4 +63,13 @@ public final class DbcpProxyResultSet implements ProxyResultSet {
     public Statement getStatement() {
         return statement;
     }
+
+    @Override
+    public boolean next() throws SQLException {
+        final boolean result = delegate.next();
+        if (result && Objects.nonNull(statementMetrics)) {
+            statementMetrics.recordRow();
+        }
+        return result;
+    }
 }
@@ -17,12 +17,16 @@ package com.dattack.naming.loader.factory.jdbc.dbcp;
 
 import com.dattack.jtoolbox.jdbc.JdbcObjectProxy;
 import com.dattack.jtoolbox.jdbc.internal.ProxyStatement;
+import com.dattack.naming.loader.factory.jdbc.metrics.DataSourceMetrics;
+import com.dattack.naming.loader.factory.jdbc.metrics.SlowQueryLog;
+import com.dattack.naming.loader.factory.jdbc.metrics.StatementMetrics;
 import org.apache.commons.dbcp2.DelegatingStatement;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Objects;
 
 /**
  * A delegating implementation of {@link Statement}. All methods call the corresponding method on the "delegate"
@@ -35,11 +39,36 @@ import java.sql.Statement;
 public class DbcpProxyStatement<S extends Statement> implements ProxyStatement<S> {
 
     private final S delegate;
-    private final Connection connection;
+    private final DbcpProxyConnection connection;
+    private final DataSourceMetrics metrics;
+    private final SlowQueryLog slowQueryLog;
+    private final boolean measured;
+    private final boolean flushesBatches;
+    private final String sql;
+    private StatementMetrics preparedStatementMetrics;
+    private StatementMetrics statementMetrics;
 
     protected DbcpProxyStatement(final DbcpProxyConnection connection, final S delegate) {
+        this(connection, delegate, null);
+    }
+
+    /**
+     * Creates a new proxy statement.
+     *
+     * @param connection the connection that created this statement
+     * @param delegate   the delegate statement
+     * @param sql        the SQL statement this statement was prepared with, or <code>null</code> for a plain statement
+     */
+    protected DbcpProxyStatement(final DbcpProxyConnection connection, final S delegate, final String sql) {
         this.delegate = delegate;
         this.connection = connection;
+        this.sql = sql;
+        // a statement that wraps another proxy statement leaves the measures to it
+        final boolean wrapsProxy = delegate instanceof DbcpProxyStatement;
+        this.metrics = wrapsProxy ? null : connection.getProxyOptions().getMetrics();
+        this.slowQueryLog = wrapsProxy ? null : connection.getProxyOptions().getSlowQueryLog();
+        this.measured = Objects.nonNull(metrics) || Objects.nonNull(slowQueryLog);
+        this.flushesBatches = !wrapsProxy;
     }
 
     protected static <S extends Statement> DbcpProxyStatement<?> build(final DbcpProxyConnection connection,
@@ -48,9 +77,82 @@ public class DbcpProxyStatement<S extends Statement> implements ProxyStatement<S
         return new DbcpProxyStatement<>(connection, delegate);
     }
 
+    @Override
+    public void close() throws SQLException {
+        try {
+            getDelegate().close();
+        } finally {
+            notifyClosed();
+        }
+    }
+
+    @Override
+    public boolean execute(final String sql) throws SQLException {
+        flushPendingBatches();
+        return !measured ? getDelegate().execute(sql) : measure(sql, () -> getDelegate().execute(sql));
+    }
+
+    @Override
+    public boolean execute(final String sql, final int autoGeneratedKeys) throws SQLException {
+        flushPendingBatches();
+        return !measured ? getDelegate().execute(sql, autoGeneratedKeys)
+            : measure(sql, () -> getDelegate().execute(sql, autoGeneratedKeys));
+    }
+
+    @Override
+    public boolean execute(final String sql, final int[] columnIndexes) throws SQLException {
+        flushPendingBatches();
+        return !measured ? getDelegate().execute(sql, columnIndexes)
+            : measure(sql, () -> getDelegate().execute(sql, columnIndexes));
+    }
+
+    @Override
+    public boolean execute(final String sql, final String[] columnNames) throws SQLException {
+        flushPendingBatches();
+        return !measured ? getDelegate().execute(sql, columnNames)
+            : measure(sql, () -> getDelegate().execute(sql, columnNames));
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        flushPendingBatches();
+        return !measured ? getDelegate().executeBatch()
+            : measure(null, () -> getDelegate().executeBatch());
+    }
+
     @Override
     public ResultSet executeQuery(final String sql) throws SQLException {
-        return DbcpProxyResultSet.build(this, getDelegate().executeQuery(sql));
+        flushPendingBatches();
+        return DbcpProxyResultSet.build(this, !measured ? getDelegate().executeQuery(sql)
+            : measure(sql, () -> getDelegate().executeQuery(sql)));
+    }
+
+    @Override
+    public int executeUpdate(final String sql) throws SQLException {
+        flushPendingBatches();
+        return !measured ? getDelegate().executeUpdate(sql)
+            : measure(sql, () -> getDelegate().executeUpdate(sql));
+    }
+
+    @Override
+    public int executeUpdate(final String sql, final int autoGeneratedKeys) throws SQLException {
+        flushPendingBatches();
+        return !measured ? getDelegate().executeUpdate(sql, autoGeneratedKeys)
+            : measure(sql, () -> getDelegate().executeUpdate(sql, autoGeneratedKeys));
+    }
+
+    @Override
+    public int executeUpdate(final String sql, final int[] columnIndexes) throws SQLException {
+        flushPendingBatches();
+        return !measured ? getDelegate().executeUpdate(sql, columnIndexes)
+            : measure(sql, () -> getDelegate().executeUpdate(sql, columnIndexes));
+    }
+
+    @Override
+    public int executeUpdate(final String sql, final String[] columnNames) throws SQLException {
+        flushPendingBatches();
+        return !measured ? getDelegate().executeUpdate(sql, columnNames)
+            : measure(sql, () -> getDelegate().executeUpdate(sql, columnNames));
     }
 
     @Override
@@ -80,15 +182,129 @@ public class DbcpProxyStatement<S extends Statement> implements ProxyStatement<S
             }
         }
 
-        if (s instanceof DelegatingStatement) {
-            s = (S) ((DelegatingStatement) s).getInnermostDelegate();
+        if (DbcpProxyConnection.DBCP_AVAILABLE) {
+            s = (S) getDbcpInnermostDelegate(s);
         }
 
         return s;
     }
 
+    private static Statement getDbcpInnermostDelegate(final Statement statement) {
+        // only invoked when DBCP is available, so that DelegatingStatement is never loaded otherwise
+        if (statement instanceof DelegatingStatement) {
+            return ((DelegatingStatement) statement).getInnermostDelegate();
+        }
+        return statement;
+    }
+
     @Override
     public ResultSet getResultSet() throws SQLException {
         return DbcpProxyResultSet.build(this, getDelegate().getResultSet());
     }
+
+    /**
+     * Returns the metrics of the SQL statement last executed by this statement.
+     *
+     * @return the metrics of the last SQL statement, or <code>null</code> if the metrics are disabled
+     */
+    /* default */ StatementMetrics getStatementMetrics() {
+        return statementMetrics;
+    }
+
+    /**
+     * Notifies the connection that created this statement that it has been closed, so that it stops tracking it.
+     */
+    protected final void notifyClosed() {
+        connection.statementClosed(this);
+    }
+
+    /**
+     * Sends the rows buffered by the batching statements of the connection before this statement executes, so that
+     * the database applies the changes in the order they were made. A statement that wraps another proxy statement
+     * leaves it to the wrapped one.
+     *
+     * @throws SQLException if a batch fails
+     */
+    protected final void flushPendingBatches() throws SQLException {
+        if (flushesBatches) {
+            connection.flushBatchingStatements();
+        }
+    }
+
+    /**
+     * Checks whether the executions of this statement are measured.
+     *
+     * @return <code>true</code> if the executions are measured
+     */
+    protected final boolean isMeasured() {
+        return measured;
+    }
+
+    /**
+     * Executes a call on the delegate statement, records its execution time and errors and logs it if it is slow. It
+     * must be called only when {@link #isMeasured()} returns <code>true</code>.
+     *
+     * @param sqlStatement the SQL statement executed, or <code>null</code> to use the one this statement was prepared
+     *                     with
+     * @param call         the call to execute
+     * @param <T>          the type of the result of the call
+     * @return the result of the call
+     * @throws SQLException if the call fails
+     */
+    protected final <T> T measure(final String sqlStatement, final SqlCall<T> call) throws SQLException {
+        StatementMetrics current = null;
+        if (Objects.nonNull(metrics)) {
+            current = Objects.isNull(sqlStatement) ? getPreparedStatementMetrics()
+                : metrics.getStatementMetrics(sqlStatement);
+        }
+        statementMetrics = current;
+
+        final long start = System.nanoTime();
+        boolean success = false;
+        try {
+            final T result = call.call();
+            success = true;
+            return result;
+        } finally {
+            final long elapsed = System.nanoTime() - start;
+            if (Objects.nonNull(current)) {
+                if (success) {
+                    current.recordExecute(elapsed);
+                } else {
+                    current.recordError(elapsed);
+                }
+            }
+            if (Objects.nonNull(slowQueryLog) && slowQueryLog.shouldLog(elapsed)) {
+                slowQueryLog.log(elapsed, Objects.isNull(sqlStatement) ? sql : sqlStatement,
+                                 Objects.isNull(sqlStatement) ? getBoundParameterCount() : 0);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of parameters bound to this statement, as reported by the slow-query log.
+     *
+     * @return the highest index of the parameters bound, or <code>0</code> if this statement has no parameters
+     */
+    protected int getBoundParameterCount() {
+        return 0;
+    }
+
+    private StatementMetrics getPreparedStatementMetrics() {
+        if (Objects.isNull(preparedStatementMetrics)) {
+            preparedStatementMetrics = metrics.getStatementMetrics(sql);
+        }
+        return preparedStatementMetrics;
+    }
+
+    /**
+     * A call on a JDBC object.
+     *
+     * @param <T> the type of the result of the call
+     */
+    @FunctionalInterface
+    protected interface SqlCall<T> {
+
+        T call() throws SQLException;
+    }
 }
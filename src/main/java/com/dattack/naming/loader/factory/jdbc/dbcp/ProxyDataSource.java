@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.dbcp;
+
+import com.dattack.jtoolbox.jdbc.AbstractDataSourceDecorator;
+import com.dattack.naming.loader.factory.jdbc.metrics.DataSourceMetrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+import javax.sql.DataSource;
+
+/**
+ * A datasource that wraps the connections of another datasource with {@link DbcpProxyConnection}, so that they
+ * support named parameters, cache their prepared statements and record the metrics of the datasource, as set by the
+ * {@link ProxyOptions}.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public class ProxyDataSource extends AbstractDataSourceDecorator {
+
+    private final ProxyOptions options;
+    private final DataSourceMetrics metrics;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param delegate the delegate datasource
+     * @param options  the options of the proxies
+     */
+    public ProxyDataSource(final DataSource delegate, final ProxyOptions options) {
+        super(delegate);
+        this.options = options;
+        this.metrics = options.getMetrics();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (Objects.isNull(metrics)) {
+            return wrap(getDelegate().getConnection());
+        }
+        final long start = System.nanoTime();
+        try {
+            final Connection connection = getDelegate().getConnection();
+            metrics.recordAcquire(System.nanoTime() - start);
+            return wrap(connection);
+        } catch (final SQLException e) {
+            metrics.recordAcquireError();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        if (Objects.isNull(metrics)) {
+            return wrap(getDelegate().getConnection(username, password));
+        }
+        final long start = System.nanoTime();
+        try {
+            final Connection connection = getDelegate().getConnection(username, password);
+            metrics.recordAcquire(System.nanoTime() - start);
+            return wrap(connection);
+        } catch (final SQLException e) {
+            metrics.recordAcquireError();
+            throw e;
+        }
+    }
+
+    private Connection wrap(final Connection connection) throws SQLException {
+        return DbcpProxyConnection.build(connection, options);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.dbcp;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The JDBC objects wrapped by a {@link DbcpProxyConnection}.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public enum ProxyMode {
+
+    /**
+     * The connection, the statements and the result sets are wrapped, so that every object returned is a proxy (e.g.
+     * <code>Statement.getConnection()</code> returns the proxy connection and <code>getInnermostDelegate()</code> is
+     * available on the statements).
+     */
+    FULL,
+
+    /**
+     * Only the connection is wrapped: the statements and result sets are returned as created by the pool, so that
+     * executing a query does not allocate any proxy. The named-parameter statements and the cached statements are
+     * still wrapped, as they cannot work otherwise. The built-in pool ignores this mode, as the physical connection
+     * returned by <code>Statement.getConnection()</code> would be closed instead of being returned to the pool.
+     */
+    CONNECTION;
+
+    /**
+     * Returns the mode with the given name, ignoring case.
+     *
+     * @param value the name of the mode
+     * @return the mode, or {@link #FULL} if <code>value</code> is <code>null</code> or blank
+     * @throws IllegalArgumentException if there is no mode with that name
+     */
+    public static ProxyMode parse(final String value) {
+        if (Objects.isNull(value) || value.trim().isEmpty()) {
+            return FULL;
+        }
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.dbcp;
+
+import com.dattack.naming.loader.factory.jdbc.metrics.DataSourceMetrics;
+import com.dattack.naming.loader.factory.jdbc.metrics.LeakDetector;
+import com.dattack.naming.loader.factory.jdbc.metrics.SlowQueryLog;
+
+import java.util.Objects;
+
+/**
+ * Set of options that configure the proxies created by a {@link DbcpProxyConnection}. An instance is shared by all
+ * the connections of a datasource, so it must not be modified once the datasource has been created.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class ProxyOptions {
+
+    /**
+     * The default maximum number of rows sent in each batch by a {@link BatchingPreparedStatement}.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * The default maximum estimated size, in bytes, of the parameters sent in each batch by a
+     * {@link BatchingPreparedStatement}.
+     */
+    public static final long DEFAULT_BATCH_MAX_BYTES = 4L * 1024 * 1024;
+
+    /* default */ static final ProxyOptions DEFAULT = new ProxyOptions();
+
+    private transient int statementCacheSize;
+    private transient ProxyMode proxyMode = ProxyMode.FULL;
+    private transient DataSourceMetrics metrics;
+    private transient SlowQueryLog slowQueryLog;
+    private transient LeakDetector leakDetector;
+    private transient int defaultFetchSize;
+    private transient int defaultMaxRows;
+    private transient int defaultQueryTimeoutSeconds;
+    private transient int batchSize = DEFAULT_BATCH_SIZE;
+    private transient long batchMaxBytes = DEFAULT_BATCH_MAX_BYTES;
+    private transient long batchMaxDelayMillis;
+    private transient boolean batchLimitsConfigured;
+
+    /**
+     * Returns the maximum number of prepared statements cached for each physical connection.
+     *
+     * @return the maximum number of cached statements, or zero if the cache is disabled
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public ProxyOptions withStatementCacheSize(final int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+        return this;
+    }
+
+    /**
+     * Returns the JDBC objects that are wrapped.
+     *
+     * @return the proxy mode, never <code>null</code>
+     */
+    public ProxyMode getProxyMode() {
+        return proxyMode;
+    }
+
+    public ProxyOptions withProxyMode(final ProxyMode proxyMode) {
+        this.proxyMode = Objects.requireNonNull(proxyMode);
+        return this;
+    }
+
+    /**
+     * Returns the metrics of the datasource.
+     *
+     * @return the metrics, or <code>null</code> if they are disabled
+     */
+    public DataSourceMetrics getMetrics() {
+        return metrics;
+    }
+
+    public ProxyOptions withMetrics(final DataSourceMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Returns the log of the slow queries of the datasource.
+     *
+     * @return the slow-query log, or <code>null</code> if it is disabled
+     */
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    public ProxyOptions withSlowQueryLog(final SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+        return this;
+    }
+
+    /**
+     * Returns the detector of the connections held too long by the application.
+     *
+     * @return the leak detector, or <code>null</code> if the leak detection is disabled
+     */
+    public LeakDetector getLeakDetector() {
+        return leakDetector;
+    }
+
+    public ProxyOptions withLeakDetector(final LeakDetector leakDetector) {
+        this.leakDetector = leakDetector;
+        return this;
+    }
+
+    /**
+     * Returns the fetch size set on every statement when it is created.
+     *
+     * @return the default fetch size, or zero to use the one of the driver
+     */
+    public int getDefaultFetchSize() {
+        return defaultFetchSize;
+    }
+
+    public ProxyOptions withDefaultFetchSize(final int defaultFetchSize) {
+        this.defaultFetchSize = defaultFetchSize;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of rows set on every statement when it is created.
+     *
+     * @return the default maximum number of rows, or zero for no limit
+     */
+    public int getDefaultMaxRows() {
+        return defaultMaxRows;
+    }
+
+    public ProxyOptions withDefaultMaxRows(final int defaultMaxRows) {
+        this.defaultMaxRows = defaultMaxRows;
+        return this;
+    }
+
+    /**
+     * Returns the query timeout, in seconds, set on every statement when it is created.
+     *
+     * @return the default query timeout, or zero for no limit
+     */
+    public int getDefaultQueryTimeoutSeconds() {
+        return defaultQueryTimeoutSeconds;
+    }
+
+    public ProxyOptions withDefaultQueryTimeoutSeconds(final int defaultQueryTimeoutSeconds) {
+        this.defaultQueryTimeoutSeconds = defaultQueryTimeoutSeconds;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of rows sent in each batch by a {@link BatchingPreparedStatement}.
+     *
+     * @return the maximum number of rows, or zero for no limit
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns the maximum estimated size, in bytes, of the parameters sent in each batch by a
+     * {@link BatchingPreparedStatement}.
+     *
+     * @return the maximum size, or zero for no limit
+     */
+    public long getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    /**
+     * Returns the maximum time, in milliseconds, a row is buffered by a {@link BatchingPreparedStatement} before its
+     * batch is sent.
+     *
+     * @return the maximum time, or zero for no limit
+     */
+    public long getBatchMaxDelayMillis() {
+        return batchMaxDelayMillis;
+    }
+
+    /**
+     * Sets the limits of the batches sent by a {@link BatchingPreparedStatement}. A value of zero disables that
+     * limit.
+     *
+     * @param size           the maximum number of rows of each batch
+     * @param maxBytes       the maximum estimated size, in bytes, of the parameters of each batch
+     * @param maxDelayMillis the maximum time, in milliseconds, a row is buffered
+     * @return these options
+     */
+    public ProxyOptions withBatchLimits(final int size, final long maxBytes, final long maxDelayMillis) {
+        this.batchSize = size;
+        this.batchMaxBytes = maxBytes;
+        this.batchMaxDelayMillis = maxDelayMillis;
+        this.batchLimitsConfigured = true;
+        return this;
+    }
+
+    /**
+     * Checks whether any default is set on the statements when they are created.
+     *
+     * @return <code>true</code> if a default fetch size, maximum number of rows or query timeout is configured
+     */
+    public boolean hasStatementDefaults() {
+        return defaultFetchSize > 0 || defaultMaxRows > 0 || defaultQueryTimeoutSeconds > 0;
+    }
+
+    /**
+     * Checks whether the statements are measured, either to record the metrics or to log the slow queries.
+     *
+     * @return <code>true</code> if the statements are measured
+     */
+    public boolean isMonitored() {
+        return Objects.nonNull(metrics) || Objects.nonNull(slowQueryLog);
+    }
+
+    /**
+     * Checks whether the connections of a datasource must be wrapped to provide any of these options.
+     *
+     * @return <code>true</code> if the statement cache is enabled, the statements are measured or have defaults, the
+     *         connections are tracked by a leak detector, or the limits of the batching statements are configured
+     */
+    public boolean isWrappingRequired() {
+        return statementCacheSize > 0 || isMonitored() || Objects.nonNull(leakDetector) || hasStatementDefaults()
+            || batchLimitsConfigured;
+    }
+
+    /* default */ boolean isStatementWrappingRequired() {
+        // the statements are measured by their proxies
+        return proxyMode != ProxyMode.CONNECTION || isMonitored();
+    }
+}
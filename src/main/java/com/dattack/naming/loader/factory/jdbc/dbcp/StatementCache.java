@@ -0,0 +1,434 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.dbcp;
+
+import com.dattack.naming.loader.factory.jdbc.WeakIdentityKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A LRU cache of the prepared and callable statements of a physical connection. The statements are removed from the
+ * cache while they are in use, and they are returned to it when they are closed by the application or when the logical
+ * connection that took them is closed; the least recently used statements are closed when the cache is full. The
+ * options that the application may have changed (fetch size, fetch direction, maximum rows, maximum field size and
+ * query timeout) are restored to the values set by the driver before a statement is reused. A cache is shared by all
+ * the logical connections that wrap the same physical connection, and it is discarded once that connection is closed:
+ * immediately when the built-in pool closes it, or otherwise by a periodic sweep that runs in a background thread, so
+ * that neither obtaining nor closing a connection waits for the statements of other connections to be closed.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class StatementCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementCache.class);
+
+    /**
+     * The statement returned by a cached statement once it has been closed by the application.
+     */
+    /* default */ static final CallableStatement CLOSED_STATEMENT = (CallableStatement) Proxy.newProxyInstance(
+        StatementCache.class.getClassLoader(), new Class<?>[]{ CallableStatement.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "isClosed":
+                    return Boolean.TRUE;
+                case "close":
+                    return null;
+                case "toString":
+                    return "ClosedStatement";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0]; // NOPMD
+                default:
+                    throw new SQLException("Statement is closed");
+            }
+        });
+
+    private static final Map<WeakIdentityKey<Connection>, StatementCache> REGISTRY = new ConcurrentHashMap<>();
+    private static final long SWEEP_INTERVAL_SECONDS = 30;
+    private static final AtomicBoolean SWEEPER_STARTED = new AtomicBoolean();
+
+    private final int maxSize;
+    private final LinkedHashMap<StatementKey, PreparedStatement> statements;
+    // the options set by the driver on each statement owned by this cache, either idle or in use
+    private final Map<PreparedStatement, StatementDefaults> driverDefaults;
+    private boolean closed;
+
+    private StatementCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+        this.driverDefaults = new IdentityHashMap<>();
+    }
+
+    /**
+     * Discards the cache of a physical connection that is being closed, closing its statements.
+     *
+     * @param connection the physical connection
+     */
+    public static void discard(final Connection connection) {
+        final StatementCache cache = REGISTRY.remove(new WeakIdentityKey<>(connection));
+        if (Objects.nonNull(cache)) {
+            cache.close();
+        }
+    }
+
+    /**
+     * Returns the cache of the given physical connection, creating it if it does not exist.
+     *
+     * @param connection the physical connection
+     * @param maxSize    the maximum number of statements to cache
+     * @return the statement cache
+     */
+    /* default */ static StatementCache forConnection(final Connection connection, final int maxSize) {
+        final StatementCache cache = REGISTRY.get(new WeakIdentityKey<>(connection));
+        if (Objects.nonNull(cache)) {
+            return cache;
+        }
+        startSweeper();
+        return REGISTRY.computeIfAbsent(new WeakIdentityKey<>(connection), key -> new StatementCache(maxSize));
+    }
+
+    /**
+     * Starts the background sweep of the caches of the closed connections, if it has not been started yet. The
+     * connections closed by the external pools are not notified, so they are looked for periodically.
+     */
+    private static void startSweeper() {
+        if (SWEEPER_STARTED.compareAndSet(false, true)) {
+            final ScheduledThreadPoolExecutor sweeper = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, "standalone-jndi-statement-cache-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleWithFixedDelay(StatementCache::removeClosedConnections, SWEEP_INTERVAL_SECONDS,
+                                           SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private static void removeClosedConnections() {
+        try {
+            for (final Map.Entry<WeakIdentityKey<Connection>, StatementCache> entry : REGISTRY.entrySet()) {
+                final Connection connection = entry.getKey().get();
+                if ((Objects.isNull(connection) || isClosed(connection))
+                    && REGISTRY.remove(entry.getKey(), entry.getValue()))
+                {
+                    entry.getValue().close();
+                }
+            }
+        } catch (final RuntimeException e) {
+            // an exception would cancel the next sweeps
+            LOGGER.warn("Unable to discard the statement caches of the closed connections: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isClosed(final Connection connection) {
+        try {
+            return connection.isClosed();
+        } catch (final SQLException e) {
+            return true;
+        }
+    }
+
+    private static void closeQuietly(final PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (final SQLException e) {
+            LOGGER.debug("Unable to close statement: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns a cached statement or, if there is none, creates a new one.
+     *
+     * @param key     the key of the statement
+     * @param creator used to create a new statement
+     * @param <T>     the type of the statement
+     * @return the statement
+     * @throws SQLException if the statement cannot be created
+     */
+    @SuppressWarnings("unchecked")
+    /* default */ <T extends PreparedStatement> T take(final StatementKey key, final StatementCreator<T> creator)
+        throws SQLException
+    {
+        final PreparedStatement statement;
+        synchronized (this) {
+            statement = statements.remove(key);
+        }
+        if (Objects.nonNull(statement)) {
+            if (!statement.isClosed()) {
+                return (T) statement;
+            }
+            forget(statement);
+        }
+        final T created = creator.create();
+        final StatementDefaults defaults;
+        try {
+            defaults = StatementDefaults.of(created);
+        } catch (final SQLException e) {
+            closeQuietly(created);
+            throw e;
+        }
+        synchronized (this) {
+            driverDefaults.put(created, defaults);
+        }
+        return created;
+    }
+
+    /**
+     * Returns a statement to the cache once it has been closed by the application.
+     *
+     * @param key       the key of the statement
+     * @param statement the statement
+     */
+    /* default */ void release(final StatementKey key, final PreparedStatement statement) {
+        final StatementDefaults defaults;
+        synchronized (this) {
+            defaults = driverDefaults.get(statement);
+        }
+        try {
+            final ResultSet resultSet = statement.getResultSet();
+            if (Objects.nonNull(resultSet)) {
+                resultSet.close();
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            if (Objects.nonNull(defaults)) {
+                defaults.restore(statement);
+            }
+        } catch (final SQLException e) {
+            forget(statement);
+            closeQuietly(statement);
+            return;
+        }
+
+        final List<PreparedStatement> evicted = new ArrayList<>(1);
+        synchronized (this) {
+            if (closed || Objects.isNull(defaults)) {
+                evicted.add(statement);
+            } else {
+                final PreparedStatement previous = statements.put(key, statement);
+                if (Objects.nonNull(previous)) {
+                    evicted.add(previous);
+                }
+                final Iterator<PreparedStatement> iterator = statements.values().iterator();
+                while (statements.size() > maxSize && iterator.hasNext()) {
+                    evicted.add(iterator.next());
+                    iterator.remove();
+                }
+            }
+            evicted.forEach(driverDefaults::remove);
+        }
+        evicted.forEach(StatementCache::closeQuietly);
+    }
+
+    /**
+     * Returns the number of cached statements.
+     *
+     * @return the number of cached statements
+     */
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    private void close() {
+        final List<PreparedStatement> list;
+        synchronized (this) {
+            closed = true;
+            list = new ArrayList<>(statements.values());
+            statements.clear();
+            driverDefaults.clear();
+        }
+        list.forEach(StatementCache::closeQuietly);
+    }
+
+    private synchronized void forget(final PreparedStatement statement) {
+        driverDefaults.remove(statement);
+    }
+
+    /**
+     * The options of a statement that the application can change and that must not be seen by the next user of a
+     * cached statement.
+     */
+    private static final class StatementDefaults {
+
+        private final int fetchSize;
+        private final int fetchDirection;
+        private final int maxRows;
+        private final int maxFieldSize;
+        private final int queryTimeout;
+
+        private StatementDefaults(final Statement statement) throws SQLException {
+            this.fetchSize = statement.getFetchSize();
+            this.fetchDirection = statement.getFetchDirection();
+            this.maxRows = statement.getMaxRows();
+            this.maxFieldSize = statement.getMaxFieldSize();
+            this.queryTimeout = statement.getQueryTimeout();
+        }
+
+        /* default */ static StatementDefaults of(final Statement statement) throws SQLException {
+            return new StatementDefaults(statement);
+        }
+
+        /* default */ void restore(final Statement statement) throws SQLException {
+            // some drivers reject a fetch size greater than the maximum number of rows, so it is restored last
+            if (statement.getMaxRows() != maxRows) {
+                statement.setMaxRows(maxRows);
+            }
+            if (statement.getFetchDirection() != fetchDirection) {
+                statement.setFetchDirection(fetchDirection);
+            }
+            if (statement.getMaxFieldSize() != maxFieldSize) {
+                statement.setMaxFieldSize(maxFieldSize);
+            }
+            if (statement.getQueryTimeout() != queryTimeout) {
+                statement.setQueryTimeout(queryTimeout);
+            }
+            if (statement.getFetchSize() != fetchSize) {
+                statement.setFetchSize(fetchSize);
+            }
+        }
+    }
+
+    /**
+     * Creates new statements on demand.
+     *
+     * @param <T> the type of the statement
+     */
+    @FunctionalInterface
+    /* default */ interface StatementCreator<T extends PreparedStatement> {
+
+        T create() throws SQLException;
+    }
+
+    /**
+     * Identifies a statement by its SQL text and the options used to prepare it.
+     */
+    /* default */ static final class StatementKey {
+
+        /* default */ static final int UNSET = Integer.MIN_VALUE;
+
+        private final String sql;
+        private final boolean callable;
+        private final int resultSetType;
+        private final int resultSetConcurrency;
+        private final int resultSetHoldability;
+        private final int autoGeneratedKeys;
+        private final int[] columnIndexes;
+        private final String[] columnNames;
+        private final int hashCode;
+
+        @SuppressWarnings("checkstyle:ParameterNumber")
+        private StatementKey(final String sql, final boolean callable, final int resultSetType,
+            final int resultSetConcurrency, final int resultSetHoldability, final int autoGeneratedKeys,
+            final int[] columnIndexes, final String[] columnNames)
+        {
+            this.sql = sql;
+            this.callable = callable;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+            this.resultSetHoldability = resultSetHoldability;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+            this.columnIndexes = columnIndexes;
+            this.columnNames = columnNames;
+            this.hashCode = Objects.hash(sql, callable, resultSetType, resultSetConcurrency, resultSetHoldability,
+                                         autoGeneratedKeys, Arrays.hashCode(columnIndexes),
+                                         Arrays.hashCode(columnNames));
+        }
+
+        /* default */ static StatementKey callable(final String sql, final int resultSetType,
+            final int resultSetConcurrency, final int resultSetHoldability)
+        {
+            return new StatementKey(sql, true, resultSetType, resultSetConcurrency, resultSetHoldability, UNSET,
+                                    null, null);
+        }
+
+        /* default */ static StatementKey prepared(final String sql) {
+            return prepared(sql, UNSET, UNSET, UNSET);
+        }
+
+        /* default */ static StatementKey prepared(final String sql, final int resultSetType,
+            final int resultSetConcurrency, final int resultSetHoldability)
+        {
+            return new StatementKey(sql, false, resultSetType, resultSetConcurrency, resultSetHoldability, UNSET,
+                                    null, null);
+        }
+
+        /* default */ static StatementKey prepared(final String sql, final int autoGeneratedKeys) {
+            return new StatementKey(sql, false, UNSET, UNSET, UNSET, autoGeneratedKeys, null, null);
+        }
+
+        /* default */ static StatementKey prepared(final String sql, final int[] columnIndexes) {
+            return new StatementKey(sql, false, UNSET, UNSET, UNSET, UNSET,
+                                    Objects.isNull(columnIndexes) ? null : columnIndexes.clone(), null);
+        }
+
+        /* default */ static StatementKey prepared(final String sql, final String[] columnNames) {
+            return new StatementKey(sql, false, UNSET, UNSET, UNSET, UNSET, null,
+                                    Objects.isNull(columnNames) ? null : columnNames.clone());
+        }
+
+        /* default */ static StatementKey callable(final String sql) {
+            return callable(sql, UNSET, UNSET, UNSET);
+        }
+
+        /* default */ String getSql() {
+            return sql;
+        }
+
+        @Override
+        @SuppressWarnings("PMD.OnlyOneReturn")
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof StatementKey)) {
+                return false;
+            }
+            final StatementKey other = (StatementKey) obj;
+            return callable == other.callable && resultSetType == other.resultSetType
+                && resultSetConcurrency == other.resultSetConcurrency
+                && resultSetHoldability == other.resultSetHoldability && autoGeneratedKeys == other.autoGeneratedKeys
+                && sql.equals(other.sql) && Arrays.equals(columnIndexes, other.columnIndexes)
+                && Arrays.equals(columnNames, other.columnNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
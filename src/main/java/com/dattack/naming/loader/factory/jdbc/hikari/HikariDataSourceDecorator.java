@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.hikari;
+
+import com.dattack.naming.loader.factory.RotatableCredentials;
+import com.dattack.naming.loader.factory.jdbc.dbcp.ProxyDataSource;
+import com.dattack.naming.loader.factory.jdbc.dbcp.ProxyOptions;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.sql.SQLException;
+import javax.sql.DataSource;
+
+/**
+ * Decorates a HikariCP datasource so that its connections support named parameters and its credentials can be
+ * rotated. HikariCP reads the credentials from its configuration each time it opens a physical connection, so the
+ * new credentials are used by the connections created afterwards.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public class HikariDataSourceDecorator extends ProxyDataSource implements RotatableCredentials {
+
+    /**
+     * Creates a new instance.
+     *
+     * @param delegate the HikariCP datasource
+     * @param options  the options of the proxies
+     */
+    /* default */ HikariDataSourceDecorator(final DataSource delegate, final ProxyOptions options) {
+        super(delegate, options);
+    }
+
+    @Override
+    public void updateCredentials(final String username, final String password) throws SQLException {
+        final HikariDataSource hikariDataSource = getDelegate().unwrap(HikariDataSource.class);
+        hikariDataSource.setUsername(username);
+        hikariDataSource.setPassword(password);
+    }
+}
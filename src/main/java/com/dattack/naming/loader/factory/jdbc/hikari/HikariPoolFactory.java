@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.hikari;
+
+import com.dattack.naming.loader.factory.AbstractPoolFactory;
+import com.dattack.naming.loader.factory.DataSourceConfig;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import javax.sql.DataSource;
+
+/**
+ * A factory to create HikariCP pool instances. See {@link HikariConfig} for more information.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class HikariPoolFactory extends AbstractPoolFactory {
+
+    private static final String PREFIX = "hikari.";
+    private static final String DRIVER_KEY = "driverClassName";
+    private static final String URL_KEY = "jdbcUrl";
+    private static final String USER_KEY = "username";
+    private static final String PASSWORD_KEY = "password";
+    private static final String POOL_NAME_KEY = "poolName";
+    private static final String CONNECTION_INIT_SQL_KEY = "connectionInitSql";
+    private static final String MINIMUM_IDLE_KEY = "minimumIdle";
+    private static final String MAXIMUM_POOL_SIZE_KEY = "maximumPoolSize";
+    private static final int DEFAULT_MAXIMUM_POOL_SIZE = 10;
+    private static final String NAME = "hikari";
+    private static final int PRIORITY = 300;
+    private static final String REQUIRED_CLASS_NAME = "com.zaxxer.hikari.HikariDataSource";
+    private static final String TYPE_NAME = "Hikari-Pool";
+    private static final HikariPoolFactory SINGLETON = new HikariPoolFactory();
+
+    public static HikariPoolFactory getInstance() {
+        return SINGLETON;
+    }
+
+    private static void putIfNotNull(final Properties properties, final String key, final String value) {
+        if (Objects.nonNull(value)) {
+            properties.put(key, value);
+        }
+    }
+
+    @Override
+    public DataSource createDataSource(final DataSourceConfig dataSourceConfig) {
+
+        log(dataSourceConfig, "Configuring datasource (driver: {}) ...", dataSourceConfig.getDriver());
+        DataSource dataSource = null;
+        try {
+            // HikariConfig rejects unknown properties, so only the prefixed ones are used
+            final Properties poolProperties = filterProperties(dataSourceConfig.getProperties(), PREFIX);
+            if (!poolProperties.containsKey(POOL_NAME_KEY)) {
+                poolProperties.put(POOL_NAME_KEY, dataSourceConfig.getJndiName());
+            }
+            putIfNotNull(poolProperties, DRIVER_KEY, dataSourceConfig.getDriver());
+            putIfNotNull(poolProperties, URL_KEY, dataSourceConfig.getUrl());
+            putIfNotNull(poolProperties, USER_KEY, dataSourceConfig.getUser());
+            putIfNotNull(poolProperties, PASSWORD_KEY, dataSourceConfig.getPassword());
+            final List<String> onConnectStatements = dataSourceConfig.getOnConnectStatements();
+            if (onConnectStatements.size() == 1) {
+                poolProperties.put(CONNECTION_INIT_SQL_KEY, onConnectStatements.get(0));
+            }
+            logPoolConfiguration(dataSourceConfig, poolProperties);
+
+            dataSource = new HikariDataSourceDecorator(new HikariDataSource(new HikariConfig(poolProperties)),
+                dataSourceConfig.getProxyOptions());
+
+        } catch (final Throwable t) { //NOPMD
+            log(dataSourceConfig, t, "Unable to configure datasource");
+        }
+        return dataSource;
+    }
+
+    @Override
+    public int getMinimumSize(final DataSourceConfig dataSourceConfig) {
+        // as in HikariCP, 'minimumIdle' defaults to 'maximumPoolSize'
+        final Properties poolProperties = filterProperties(dataSourceConfig.getProperties(), PREFIX);
+        final int maximumPoolSize = getIntProperty(poolProperties, MAXIMUM_POOL_SIZE_KEY, DEFAULT_MAXIMUM_POOL_SIZE);
+        return capMinimumSize(getIntProperty(poolProperties, MINIMUM_IDLE_KEY, maximumPoolSize), maximumPoolSize);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getPriority() {
+        return PRIORITY;
+    }
+
+    @Override
+    public String getTypeName() {
+        return TYPE_NAME;
+    }
+
+    @Override
+    public String getPrefixKey() {
+        return PREFIX;
+    }
+
+    @Override
+    public String getDriverKey() {
+        return DRIVER_KEY;
+    }
+
+    @Override
+    public String getUrlKey() {
+        return URL_KEY;
+    }
+
+    @Override
+    public String getUsernameKey() {
+        return USER_KEY;
+    }
+
+    @Override
+    public String getPasswordKey() {
+        return PASSWORD_KEY;
+    }
+
+    @Override
+    public boolean isProxySupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isOnConnectScriptSupported(final DataSourceConfig dataSourceConfig) {
+        // HikariCP executes a single statement through 'connectionInitSql'; a longer script is executed by the
+        // ConnectionInitializer, which saves round trips and falls back to sequential execution
+        return dataSourceConfig.getOnConnectStatements().size() <= 1;
+    }
+
+    @Override
+    public boolean isSupported() {
+        return isClassAvailable(REQUIRED_CLASS_NAME);
+    }
+}
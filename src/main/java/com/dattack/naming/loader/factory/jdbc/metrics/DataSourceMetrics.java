@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.metrics;
+
+import com.dattack.naming.loader.factory.jdbc.SqlFingerprint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of a datasource: time to acquire a connection, time a connection is held by the application and
+ * execution time, errors and rows fetched by SQL fingerprint. All the counters are lock-free, so recording a value
+ * does not block the threads that use the datasource.
+ *
+ * <p>
+ * The number of distinct fingerprints is bounded: once the limit is reached, the new statements are accounted under
+ * the {@link #OTHER_STATEMENTS} fingerprint.
+ * </p>
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+public final class DataSourceMetrics implements DataSourceMetricsMBean {
+
+    /**
+     * The fingerprint used when the maximum number of distinct fingerprints is reached.
+     */
+    public static final String OTHER_STATEMENTS = "<other>";
+
+    private static final int MAX_STATEMENTS = 500;
+    private static final int TOP_STATEMENTS = 20;
+
+    private final String jndiName;
+    private final LatencyHistogram acquireTime;
+    private final LongAdder acquireErrors;
+    private final LatencyHistogram holdTime;
+    private final LatencyHistogram executeTime;
+    private final LongAdder executeErrors;
+    private final ConcurrentMap<String, StatementMetrics> statementsByFingerprint;
+    private final ConcurrentMap<String, StatementMetrics> statementsBySql;
+    private final StatementMetrics otherStatements;
+
+    /* default */ DataSourceMetrics(final String jndiName) {
+        this.jndiName = jndiName;
+        this.acquireTime = new LatencyHistogram();
+        this.acquireErrors = new LongAdder();
+        this.holdTime = new LatencyHistogram();
+        this.executeTime = new LatencyHistogram();
+        this.executeErrors = new LongAdder();
+        this.statementsByFingerprint = new ConcurrentHashMap<>();
+        this.statementsBySql = new ConcurrentHashMap<>();
+        this.otherStatements = new StatementMetrics(OTHER_STATEMENTS, this);
+    }
+
+    /**
+     * Records the time spent to obtain a connection.
+     *
+     * @param nanos the time, in nanoseconds
+     */
+    public void recordAcquire(final long nanos) {
+        acquireTime.record(nanos);
+    }
+
+    /**
+     * Records an error while obtaining a connection.
+     */
+    public void recordAcquireError() {
+        acquireErrors.increment();
+    }
+
+    /**
+     * Records the time elapsed from obtaining a connection to closing it.
+     *
+     * @param nanos the time, in nanoseconds
+     */
+    public void recordHold(final long nanos) {
+        holdTime.record(nanos);
+    }
+
+    /* default */ void recordExecute(final long nanos) {
+        executeTime.record(nanos);
+    }
+
+    /* default */ void recordError() {
+        executeErrors.increment();
+    }
+
+    /**
+     * Returns the metrics of the statements with the same fingerprint as the given SQL statement.
+     *
+     * @param sql the SQL statement
+     * @return the metrics of the statements with the same fingerprint, never <code>null</code>
+     */
+    public StatementMetrics getStatementMetrics(final String sql) {
+        final String key = Objects.toString(sql, "");
+        StatementMetrics result = statementsBySql.get(key);
+        if (Objects.isNull(result)) {
+            final String fingerprint = SqlFingerprint.of(key);
+            result = statementsByFingerprint.get(fingerprint);
+            if (Objects.isNull(result)) {
+                result = statementsByFingerprint.size() < MAX_STATEMENTS //
+                    ? statementsByFingerprint.computeIfAbsent(fingerprint, k -> new StatementMetrics(k, this)) //
+                    : otherStatements;
+            }
+            if (statementsBySql.size() < MAX_STATEMENTS) {
+                statementsBySql.putIfAbsent(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the metrics of all the statements executed, indexed by fingerprint.
+     *
+     * @return an unmodifiable snapshot of the metrics of the statements
+     */
+    public Map<String, StatementMetrics> getStatementMetrics() {
+        final Map<String, StatementMetrics> result = new HashMap<>(statementsByFingerprint);
+        if (otherStatements.getExecuteTime().getCount() > 0) {
+            result.put(OTHER_STATEMENTS, otherStatements);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    public LatencyHistogram getAcquireTime() {
+        return acquireTime;
+    }
+
+    public LatencyHistogram getHoldTime() {
+        return holdTime;
+    }
+
+    public LatencyHistogram getExecuteTime() {
+        return executeTime;
+    }
+
+    @Override
+    public String getJndiName() {
+        return jndiName;
+    }
+
+    @Override
+    public long getConnectionAcquireCount() {
+        return acquireTime.getCount();
+    }
+
+    @Override
+    public long getConnectionAcquireErrors() {
+        return acquireErrors.sum();
+    }
+
+    @Override
+    public double getConnectionAcquireMeanMillis() {
+        return acquireTime.getMeanMillis();
+    }
+
+    @Override
+    public double getConnectionAcquireP99Millis() {
+        return acquireTime.getPercentileMillis(99);
+    }
+
+    @Override
+    public double getConnectionAcquireMaxMillis() {
+        return acquireTime.getMaxMillis();
+    }
+
+    @Override
+    public long getConnectionHoldCount() {
+        return holdTime.getCount();
+    }
+
+    @Override
+    public double getConnectionHoldMeanMillis() {
+        return holdTime.getMeanMillis();
+    }
+
+    @Override
+    public double getConnectionHoldP99Millis() {
+        return holdTime.getPercentileMillis(99);
+    }
+
+    @Override
+    public double getConnectionHoldMaxMillis() {
+        return holdTime.getMaxMillis();
+    }
+
+    @Override
+    public long getExecuteCount() {
+        return executeTime.getCount();
+    }
+
+    @Override
+    public long getExecuteErrors() {
+        return executeErrors.sum();
+    }
+
+    @Override
+    public double getExecuteMeanMillis() {
+        return executeTime.getMeanMillis();
+    }
+
+    @Override
+    public double getExecuteP99Millis() {
+        return executeTime.getPercentileMillis(99);
+    }
+
+    @Override
+    public double getExecuteMaxMillis() {
+        return executeTime.getMaxMillis();
+    }
+
+    @Override
+    public long getRowsFetched() {
+        long rows = otherStatements.getRowsFetched();
+        for (final StatementMetrics statementMetrics : statementsByFingerprint.values()) {
+            rows += statementMetrics.getRowsFetched();
+        }
+        return rows;
+    }
+
+    @Override
+    public String[] getTopStatements() {
+        final List<StatementMetrics> list = new ArrayList<>(getStatementMetrics().values());
+        list.sort(Comparator.comparingDouble((StatementMetrics s) -> s.getExecuteTime().getTotalMillis())
+                      .reversed());
+        return list.stream().limit(TOP_STATEMENTS).map(StatementMetrics::toString).toArray(String[]::new);
+    }
+
+    @Override
+    public void reset() {
+        acquireTime.reset();
+        acquireErrors.reset();
+        holdTime.reset();
+        executeTime.reset();
+        executeErrors.reset();
+        otherStatements.reset();
+        statementsByFingerprint.values().forEach(StatementMetrics::reset);
+    }
+}
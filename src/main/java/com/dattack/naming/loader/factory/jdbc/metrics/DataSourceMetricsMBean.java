@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.metrics;
+
+/**
+ * The management interface of {@link DataSourceMetrics}. The times are expressed in milliseconds.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+public interface DataSourceMetricsMBean {
+
+    String getJndiName();
+
+    long getConnectionAcquireCount();
+
+    long getConnectionAcquireErrors();
+
+    double getConnectionAcquireMeanMillis();
+
+    double getConnectionAcquireP99Millis();
+
+    double getConnectionAcquireMaxMillis();
+
+    long getConnectionHoldCount();
+
+    double getConnectionHoldMeanMillis();
+
+    double getConnectionHoldP99Millis();
+
+    double getConnectionHoldMaxMillis();
+
+    long getExecuteCount();
+
+    long getExecuteErrors();
+
+    double getExecuteMeanMillis();
+
+    double getExecuteP99Millis();
+
+    double getExecuteMaxMillis();
+
+    long getRowsFetched();
+
+    /**
+     * Returns a summary of the statements with the highest total execution time.
+     *
+     * @return a summary of each statement, in descending order of total execution time
+     */
+    String[] getTopStatements();
+
+    /**
+     * Removes all the values recorded.
+     */
+    void reset();
+}
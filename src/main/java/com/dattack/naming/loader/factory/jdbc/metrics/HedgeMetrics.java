@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of a hedging datasource: number of queries, hedges sent and won, and latency of the queries executed
+ * by the first datasource tried. The latency saved by a hedge is estimated as the mean latency of the first
+ * datasource for the queries slower than the hedged one, minus the latency of the hedged query.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class HedgeMetrics implements HedgeMetricsMBean {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String jndiName;
+    private final LongAdder queries;
+    private final LongAdder hedges;
+    private final LongAdder hedgeWins;
+    private final LongAdder budgetRejections;
+    private final DoubleAdder latencySavedMillis;
+    private final LatencyHistogram primaryLatency;
+
+    /* default */ HedgeMetrics(final String jndiName) {
+        this.jndiName = jndiName;
+        this.queries = new LongAdder();
+        this.hedges = new LongAdder();
+        this.hedgeWins = new LongAdder();
+        this.budgetRejections = new LongAdder();
+        this.latencySavedMillis = new DoubleAdder();
+        this.primaryLatency = new LatencyHistogram();
+    }
+
+    /**
+     * Returns the latency of the queries completed by the first datasource tried.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getPrimaryLatency() {
+        return primaryLatency;
+    }
+
+    /**
+     * Records a hedge that was not sent because the hedge budget was exhausted.
+     */
+    public void recordBudgetRejection() {
+        budgetRejections.increment();
+    }
+
+    /**
+     * Records a hedge sent.
+     */
+    public void recordHedge() {
+        hedges.increment();
+    }
+
+    /**
+     * Records a hedge that returned before the first datasource tried.
+     *
+     * @param nanos the latency of the query, in nanoseconds
+     */
+    public void recordHedgeWin(final long nanos) {
+        hedgeWins.increment();
+        final double saved = primaryLatency.getMeanAboveMillis(nanos) - nanos / NANOS_PER_MILLI;
+        if (saved > 0) {
+            latencySavedMillis.add(saved);
+        }
+    }
+
+    /**
+     * Records a query completed by the first datasource tried.
+     *
+     * @param nanos the latency of the query, in nanoseconds
+     */
+    public void recordPrimary(final long nanos) {
+        primaryLatency.record(nanos);
+    }
+
+    /**
+     * Records a query.
+     */
+    public void recordQuery() {
+        queries.increment();
+    }
+
+    @Override
+    public String getJndiName() {
+        return jndiName;
+    }
+
+    @Override
+    public long getQueryCount() {
+        return queries.sum();
+    }
+
+    @Override
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    @Override
+    public long getHedgeWinCount() {
+        return hedgeWins.sum();
+    }
+
+    @Override
+    public long getBudgetRejectionCount() {
+        return budgetRejections.sum();
+    }
+
+    @Override
+    public double getHedgeRate() {
+        final long total = queries.sum();
+        return total == 0 ? 0 : 100.0 * hedges.sum() / total;
+    }
+
+    @Override
+    public double getLatencySavedMillis() {
+        return latencySavedMillis.sum();
+    }
+
+    @Override
+    public double getPrimaryMeanMillis() {
+        return primaryLatency.getMeanMillis();
+    }
+
+    @Override
+    public double getPrimaryP95Millis() {
+        return primaryLatency.getPercentileMillis(95);
+    }
+
+    @Override
+    public double getPrimaryP99Millis() {
+        return primaryLatency.getPercentileMillis(99);
+    }
+
+    @Override
+    public void reset() {
+        queries.reset();
+        hedges.reset();
+        hedgeWins.reset();
+        budgetRejections.reset();
+        latencySavedMillis.reset();
+        primaryLatency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HedgeMetrics[%s: queries=%d, hedges=%d, wins=%d]", jndiName, getQueryCount(),
+                             getHedgeCount(), getHedgeWinCount());
+    }
+}
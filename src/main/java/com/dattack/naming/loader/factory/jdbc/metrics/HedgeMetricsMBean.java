@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.metrics;
+
+/**
+ * The management interface of {@link HedgeMetrics}. The times are expressed in milliseconds.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public interface HedgeMetricsMBean {
+
+    String getJndiName();
+
+    long getQueryCount();
+
+    long getHedgeCount();
+
+    long getHedgeWinCount();
+
+    long getBudgetRejectionCount();
+
+    /**
+     * Returns the percentage of queries for which a hedge was sent.
+     *
+     * @return the hedge rate, between 0 and 100
+     */
+    double getHedgeRate();
+
+    /**
+     * Returns an estimation of the total latency saved by the hedges that returned first.
+     *
+     * @return the latency saved
+     */
+    double getLatencySavedMillis();
+
+    double getPrimaryMeanMillis();
+
+    double getPrimaryP95Millis();
+
+    double getPrimaryP99Millis();
+
+    /**
+     * Removes all the values recorded.
+     */
+    void reset();
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies. The values are counted in buckets whose upper bound is a power of two
+ * microseconds, so that recording a value only increments a couple of {@link LongAdder}s. The percentiles are
+ * therefore approximations: they return the upper bound of the bucket that contains the requested percentile.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LongAdder[] buckets;
+    private final LongAdder count;
+    private final LongAdder totalNanos;
+    private final LongAccumulator maxNanos;
+
+    /* default */ LatencyHistogram() {
+        this.buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+        this.count = new LongAdder();
+        this.totalNanos = new LongAdder();
+        this.maxNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    private static int bucketIndex(final long nanos) {
+        final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        return Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(micros));
+    }
+
+    private static double toMillis(final double nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Records a new value.
+     *
+     * @param nanos the latency, in nanoseconds
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        buckets[bucketIndex(value)].increment();
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the sum of the values recorded, in milliseconds.
+     *
+     * @return the sum of the values
+     */
+    public double getTotalMillis() {
+        return toMillis(totalNanos.sum());
+    }
+
+    /**
+     * Returns the mean of the values recorded, in milliseconds.
+     *
+     * @return the mean, or zero if there are no values
+     */
+    public double getMeanMillis() {
+        final long n = count.sum();
+        return n == 0 ? 0 : toMillis((double) totalNanos.sum() / n);
+    }
+
+    /**
+     * Returns the maximum value recorded, in milliseconds.
+     *
+     * @return the maximum value
+     */
+    public double getMaxMillis() {
+        return toMillis(maxNanos.get());
+    }
+
+    /**
+     * Returns an approximation of the given percentile, in milliseconds.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the bucket containing the percentile, never greater than the maximum value
+     */
+    public double getPercentileMillis(final double percentile) {
+        final long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+        long accumulated = 0;
+        int index = 0;
+        for (; index < BUCKETS - 1; index++) {
+            accumulated += counts[index];
+            if (accumulated >= rank) {
+                break;
+            }
+        }
+        final double upperBound = toMillis((double) TimeUnit.MICROSECONDS.toNanos(1L << index));
+        return Math.min(upperBound, getMaxMillis());
+    }
+
+    /**
+     * Returns an approximation of the mean of the values recorded that are greater than the given one, in
+     * milliseconds. Each value is approximated by the midpoint of its bucket.
+     *
+     * @param nanos the lower limit of the values, in nanoseconds
+     * @return the mean of the values greater than the limit, or zero if there are no such values
+     */
+    public double getMeanAboveMillis(final long nanos) {
+        final long limitMicros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+        long total = 0;
+        double sumMicros = 0;
+        for (int i = bucketIndex(Math.max(0, nanos)); i < BUCKETS; i++) {
+            final long bucketCount = buckets[i].sum();
+            if (bucketCount > 0) {
+                // the bucket i contains the values between 2^(i - 1) and 2^i microseconds
+                final double lower = Math.max(i == 0 ? 0 : 1L << (i - 1), limitMicros);
+                sumMicros += bucketCount * (lower + (1L << i)) / 2;
+                total += bucketCount;
+            }
+        }
+        if (total == 0) {
+            return 0;
+        }
+        return Math.min(toMillis(sumMicros / total * TimeUnit.MICROSECONDS.toNanos(1)), getMaxMillis());
+    }
+
+    /**
+     * Removes all the values recorded.
+     */
+    public void reset() {
+        for (final LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+}
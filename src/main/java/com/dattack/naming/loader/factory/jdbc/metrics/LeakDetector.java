@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+
+/**
+ * Detects the connections held by the application longer than a threshold. Each connection handed out by the
+ * datasource is tracked together with its acquisition site: the first class outside the datasource, the pools and the
+ * JDK that requested it, which is cheaply obtained from the class context of the caller. For the configured percentage
+ * of the connections, the full stack trace is captured as well, so that the site includes the method and line. A
+ * background task flags the connections held longer than the threshold, logs them and counts them by site.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class LeakDetector implements LeakDetectorMBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeakDetector.class);
+
+    private static final int TOP_SITES = 10;
+    private static final int MAX_STACK_FRAMES = 10;
+    private static final long MIN_SCAN_MILLIS = 100L;
+    private static final String[] FRAMEWORK_PACKAGES = { "java.", "javax.", "sun.", "jdk.", "com.sun.",
+        "com.dattack.jtoolbox.jdbc.", "com.dattack.naming.loader.factory.jdbc.routing.", "org.apache.commons.dbcp2.",
+        "org.apache.commons.pool2.", "com.zaxxer.hikari.", "com.atomikos." };
+    private static final CallerResolver CALLER_RESOLVER = new CallerResolver();
+    private static final ClassValue<Boolean> FRAMEWORK_CLASSES = new ClassValue<Boolean>() {
+
+        @Override
+        protected Boolean computeValue(final Class<?> type) {
+            return isFrameworkClass(type);
+        }
+    };
+
+    private static volatile ScheduledThreadPoolExecutor scheduler;
+
+    private final String jndiName;
+    private final long thresholdNanos;
+    private final double samplePercent;
+    private final Set<Lease> leases;
+    private final Map<String, LongAdder> leakSites;
+    private final LongAdder leaks;
+    private ScheduledFuture<?> scan;
+
+    /**
+     * Creates a new leak detector.
+     *
+     * @param jndiName        the JNDI name of the datasource
+     * @param thresholdMillis the time, in milliseconds, a connection can be held before it is considered a leak
+     * @param samplePercent   the percentage of the connections whose full stack trace is captured
+     */
+    public LeakDetector(final String jndiName, final long thresholdMillis, final double samplePercent) {
+        this.jndiName = jndiName;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.samplePercent = samplePercent;
+        this.leases = ConcurrentHashMap.newKeySet();
+        this.leakSites = new ConcurrentHashMap<>();
+        this.leaks = new LongAdder();
+    }
+
+    private static ScheduledThreadPoolExecutor getScheduler() {
+        ScheduledThreadPoolExecutor result = scheduler;
+        if (Objects.isNull(result)) {
+            synchronized (LeakDetector.class) {
+                result = scheduler;
+                if (Objects.isNull(result)) {
+                    result = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        final Thread thread = new Thread(runnable, "standalone-jndi-leak-detector");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    result.setRemoveOnCancelPolicy(true);
+                    scheduler = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isFrameworkClass(final Class<?> type) {
+        if (DataSource.class.isAssignableFrom(type) || Connection.class.isAssignableFrom(type)
+            || LeakDetector.class.equals(type) || type.getName().contains("$$Lambda"))
+        {
+            return true;
+        }
+        final Class<?> enclosing = type.getEnclosingClass();
+        return Objects.nonNull(enclosing) ? isFrameworkClass(enclosing) : isFrameworkPackage(type.getName());
+    }
+
+    private static boolean isFrameworkPackage(final String className) {
+        for (final String prefix : FRAMEWORK_PACKAGES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts tracking a connection handed out to the application.
+     *
+     * @return the lease of the connection, to be passed to {@link #release(Lease)} when it is closed
+     */
+    public Lease acquire() {
+        final Class<?> caller = CALLER_RESOLVER.getCaller();
+        final Lease lease;
+        if (samplePercent > 0 && ThreadLocalRandom.current().nextDouble(100) < samplePercent) {
+            lease = new Lease(caller, new Throwable().getStackTrace());
+        } else {
+            lease = new Lease(caller, null);
+        }
+        leases.add(lease);
+        return lease;
+    }
+
+    /**
+     * Stops tracking a connection closed by the application.
+     *
+     * @param lease the lease returned by {@link #acquire()}
+     */
+    public void release(final Lease lease) {
+        leases.remove(lease);
+        if (lease.flagged) {
+            LOGGER.info("[{}] Connection acquired at {} returned after {} ms", jndiName, lease.site,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lease.acquiredNanos));
+        }
+    }
+
+    /**
+     * Flags the connections held longer than the threshold that have not been flagged yet.
+     */
+    public void scan() {
+        final long now = System.nanoTime();
+        for (final Lease lease : leases) {
+            if (!lease.flagged && now - lease.acquiredNanos > thresholdNanos) {
+                lease.flagged = true;
+                leaks.increment();
+                leakSites.computeIfAbsent(lease.site, key -> new LongAdder()).increment();
+                LOGGER.warn("[{}] Connection held for more than {} ms by thread '{}', acquired at {}{}", jndiName,
+                            getThresholdMillis(), lease.threadName, lease.site, lease.getStack());
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the acquisition sites with more leaks detected.
+     *
+     * @param limit the maximum number of sites returned
+     * @return the sites and the number of leaks detected at each one, from the one with more leaks
+     */
+    public List<Map.Entry<String, Long>> getTopLeakSites(final int limit) {
+        final List<Map.Entry<String, Long>> result = new ArrayList<>(leakSites.size());
+        leakSites.forEach((site, count) -> result.add(new SimpleImmutableEntry<>(site, count.sum())));
+        result.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * Starts the background task that flags the leaks.
+     */
+    public synchronized void start() {
+        if (Objects.isNull(scan)) {
+            final long period = Math.max(MIN_SCAN_MILLIS, getThresholdMillis() / 2);
+            scan = getScheduler().scheduleWithFixedDelay(this::scan, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the background task that flags the leaks.
+     */
+    public synchronized void stop() {
+        if (Objects.nonNull(scan)) {
+            scan.cancel(false);
+            scan = null; // NOPMD
+        }
+    }
+
+    @Override
+    public int getHeldConnectionCount() {
+        return leases.size();
+    }
+
+    @Override
+    public String getJndiName() {
+        return jndiName;
+    }
+
+    @Override
+    public long getLeakCount() {
+        return leaks.sum();
+    }
+
+    @Override
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    @Override
+    public String[] getTopLeakSites() {
+        return getTopLeakSites(TOP_SITES).stream() //
+            .map(entry -> entry.getValue() + " " + entry.getKey()) //
+            .toArray(String[]::new);
+    }
+
+    @Override
+    public void reset() {
+        leaks.reset();
+        leakSites.clear();
+    }
+
+    /**
+     * A connection tracked by the leak detector.
+     */
+    public static final class Lease {
+
+        private final long acquiredNanos;
+        private final String threadName;
+        private final String site;
+        private final StackTraceElement[] stack;
+        private volatile boolean flagged;
+
+        /* default */ Lease(final Class<?> caller, final StackTraceElement[] stackTrace) {
+            this.acquiredNanos = System.nanoTime();
+            this.threadName = Thread.currentThread().getName();
+            final String callerName = Objects.isNull(caller) ? "unknown" : caller.getName();
+            StackTraceElement[] callerStack = null;
+            if (Objects.nonNull(stackTrace)) {
+                for (int i = 0; i < stackTrace.length; i++) {
+                    if (stackTrace[i].getClassName().equals(callerName)) {
+                        callerStack = Arrays.copyOfRange(stackTrace, i, Math.min(stackTrace.length,
+                                                                                 i + MAX_STACK_FRAMES));
+                        break;
+                    }
+                }
+            }
+            this.stack = callerStack;
+            this.site = Objects.isNull(callerStack) ? callerName : callerStack[0].toString();
+        }
+
+        private String getStack() {
+            if (Objects.isNull(stack)) {
+                return "";
+            }
+            final StringBuilder builder = new StringBuilder();
+            for (final StackTraceElement element : stack) {
+                builder.append(System.lineSeparator()).append("\tat ").append(element);
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Obtains the classes of the current execution stack, which is much cheaper than capturing a stack trace.
+     */
+    @SuppressWarnings("removal")
+    private static final class CallerResolver extends SecurityManager {
+
+        /* default */ Class<?> getCaller() {
+            for (final Class<?> type : getClassContext()) {
+                if (!FRAMEWORK_CLASSES.get(type)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+}
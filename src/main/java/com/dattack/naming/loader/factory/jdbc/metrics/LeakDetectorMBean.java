@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.metrics;
+
+/**
+ * The management interface of {@link LeakDetector}. The times are expressed in milliseconds.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public interface LeakDetectorMBean {
+
+    String getJndiName();
+
+    long getThresholdMillis();
+
+    /**
+     * Returns the number of connections currently held by the application.
+     *
+     * @return the number of connections held
+     */
+    int getHeldConnectionCount();
+
+    /**
+     * Returns the number of connections that have been held longer than the threshold.
+     *
+     * @return the number of leaks detected
+     */
+    long getLeakCount();
+
+    /**
+     * Returns the acquisition sites with more leaks detected, as <code>"&lt;count&gt; &lt;site&gt;"</code>.
+     *
+     * @return the top leak sites, from the one with more leaks
+     */
+    String[] getTopLeakSites();
+
+    /**
+     * Removes all the leaks recorded.
+     */
+    void reset();
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide registry of the metrics of the datasources, indexed by JNDI name. Each {@link DataSourceMetrics} is
+ * also published in the platform MBean server as
+ * <code>com.dattack.naming:type=DataSourceMetrics,name="&lt;jndiName&gt;"</code>, and each {@link HedgeMetrics} as
+ * <code>com.dattack.naming:type=HedgeMetrics,name="&lt;jndiName&gt;"</code> and each {@link LeakDetector} as
+ * <code>com.dattack.naming:type=LeakDetector,name="&lt;jndiName&gt;"</code>.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class MetricsRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    private static final String DOMAIN = "com.dattack.naming";
+    private static final String DATASOURCE_METRICS_TYPE = "DataSourceMetrics";
+    private static final String HEDGE_METRICS_TYPE = "HedgeMetrics";
+    private static final String LEAK_DETECTOR_TYPE = "LeakDetector";
+
+    private static final ConcurrentMap<String, DataSourceMetrics> MAPPING = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, HedgeMetrics> HEDGE_MAPPING = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LeakDetector> LEAK_MAPPING = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {
+        // static class
+    }
+
+    /**
+     * Returns the metrics of a datasource, creating and publishing them if they do not exist.
+     *
+     * @param jndiName the JNDI name of the datasource
+     * @return the metrics of the datasource
+     */
+    public static DataSourceMetrics getOrCreate(final String jndiName) {
+        return MAPPING.computeIfAbsent(jndiName, key -> {
+            final DataSourceMetrics metrics = new DataSourceMetrics(key);
+            register(metrics, DATASOURCE_METRICS_TYPE, key);
+            return metrics;
+        });
+    }
+
+    /**
+     * Returns the hedge metrics of a datasource, creating and publishing them if they do not exist.
+     *
+     * @param jndiName the JNDI name of the datasource
+     * @return the hedge metrics of the datasource
+     */
+    public static HedgeMetrics getOrCreateHedgeMetrics(final String jndiName) {
+        return HEDGE_MAPPING.computeIfAbsent(jndiName, key -> {
+            final HedgeMetrics metrics = new HedgeMetrics(key);
+            register(metrics, HEDGE_METRICS_TYPE, key);
+            return metrics;
+        });
+    }
+
+    /**
+     * Returns the hedge metrics of a datasource.
+     *
+     * @param jndiName the JNDI name of the datasource
+     * @return the hedge metrics of the datasource, or <code>null</code> if it does not send hedges
+     */
+    public static HedgeMetrics getHedgeMetrics(final String jndiName) {
+        return HEDGE_MAPPING.get(jndiName);
+    }
+
+    /**
+     * Returns the leak detector of a datasource, creating, starting and publishing it if it does not exist.
+     *
+     * @param jndiName        the JNDI name of the datasource
+     * @param thresholdMillis the time, in milliseconds, a connection can be held before it is considered a leak
+     * @param samplePercent   the percentage of the connections whose full stack trace is captured
+     * @return the leak detector of the datasource
+     */
+    public static LeakDetector getOrCreateLeakDetector(final String jndiName, final long thresholdMillis,
+        final double samplePercent)
+    {
+        return LEAK_MAPPING.computeIfAbsent(jndiName, key -> {
+            final LeakDetector leakDetector = new LeakDetector(key, thresholdMillis, samplePercent);
+            leakDetector.start();
+            register(leakDetector, LEAK_DETECTOR_TYPE, key);
+            return leakDetector;
+        });
+    }
+
+    /**
+     * Returns the leak detector of a datasource.
+     *
+     * @param jndiName the JNDI name of the datasource
+     * @return the leak detector of the datasource, or <code>null</code> if the leak detection is disabled
+     */
+    public static LeakDetector getLeakDetector(final String jndiName) {
+        return LEAK_MAPPING.get(jndiName);
+    }
+
+    /**
+     * Returns the metrics of a datasource.
+     *
+     * @param jndiName the JNDI name of the datasource
+     * @return the metrics of the datasource, or <code>null</code> if its metrics are disabled
+     */
+    public static DataSourceMetrics get(final String jndiName) {
+        return MAPPING.get(jndiName);
+    }
+
+    /**
+     * Returns the metrics of all the datasources.
+     *
+     * @return an unmodifiable snapshot of the metrics, indexed by JNDI name
+     */
+    public static Map<String, DataSourceMetrics> getAll() {
+        return Collections.unmodifiableMap(new HashMap<>(MAPPING));
+    }
+
+    /**
+     * Removes the metrics of a datasource and unpublishes them from the MBean server.
+     *
+     * @param jndiName the JNDI name of the datasource
+     */
+    public static void remove(final String jndiName) {
+        if (Objects.nonNull(MAPPING.remove(jndiName))) {
+            unregister(DATASOURCE_METRICS_TYPE, jndiName);
+        }
+        if (Objects.nonNull(HEDGE_MAPPING.remove(jndiName))) {
+            unregister(HEDGE_METRICS_TYPE, jndiName);
+        }
+        final LeakDetector leakDetector = LEAK_MAPPING.remove(jndiName);
+        if (Objects.nonNull(leakDetector)) {
+            leakDetector.stop();
+            unregister(LEAK_DETECTOR_TYPE, jndiName);
+        }
+    }
+
+    private static ObjectName getObjectName(final String type, final String jndiName) throws JMException {
+        return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(jndiName));
+    }
+
+    private static void register(final Object mbean, final String type, final String jndiName) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = getObjectName(type, jndiName);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+        } catch (final JMException | SecurityException e) {
+            LOGGER.warn("[{}] Unable to register the {}: {}", jndiName, type, e.getMessage());
+        }
+    }
+
+    private static void unregister(final String type, final String jndiName) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = getObjectName(type, jndiName);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (final JMException e) {
+            LOGGER.warn("[{}] Unable to unregister the {}: {}", jndiName, type, e.getMessage());
+        }
+    }
+}
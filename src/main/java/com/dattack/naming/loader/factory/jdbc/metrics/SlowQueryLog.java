@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.metrics;
+
+import com.dattack.naming.loader.factory.jdbc.SqlFingerprint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs the statements of a datasource whose execution time exceeds a threshold. The statements are logged by their
+ * fingerprint (see {@link SqlFingerprint}), so that the values of their literals are never written to the log, along
+ * with the number of bound parameters.
+ *
+ * <p>
+ * The number of messages is limited per second: the slow queries beyond that limit are only counted, and the count is
+ * reported with the next message logged, so that a burst of slow queries does not turn the log into a bottleneck.
+ * </p>
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class SlowQueryLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private static final long ONE_SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String jndiName;
+    private final long thresholdNanos;
+    private final int maxLogsPerSecond;
+    private final AtomicLong windowStart;
+    private final AtomicInteger permits;
+    private final LongAdder slowQueries;
+    private final LongAdder suppressed;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param jndiName         the JNDI name of the datasource
+     * @param thresholdMillis  the execution time above which a query is slow, in milliseconds
+     * @param maxLogsPerSecond the maximum number of slow queries logged per second
+     */
+    public SlowQueryLog(final String jndiName, final long thresholdMillis, final int maxLogsPerSecond) {
+        this.jndiName = jndiName;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.maxLogsPerSecond = maxLogsPerSecond;
+        this.windowStart = new AtomicLong(System.nanoTime());
+        this.permits = new AtomicInteger(maxLogsPerSecond);
+        this.slowQueries = new LongAdder();
+        this.suppressed = new LongAdder();
+    }
+
+    /**
+     * Checks whether an execution is slow and can be logged without exceeding the limit of messages per second. The
+     * slow executions that cannot be logged are counted to be reported later.
+     *
+     * @param nanos the execution time, in nanoseconds
+     * @return <code>true</code> if the execution must be logged with {@link #log(long, String, int)}
+     */
+    public boolean shouldLog(final long nanos) {
+        if (nanos < thresholdNanos) {
+            return false;
+        }
+
+        slowQueries.increment();
+        final long now = System.nanoTime();
+        final long start = windowStart.get();
+        if (now - start >= ONE_SECOND_NANOS && windowStart.compareAndSet(start, now)) {
+            permits.set(maxLogsPerSecond);
+        }
+        if (permits.getAndDecrement() > 0) {
+            return true;
+        }
+        suppressed.increment();
+        return false;
+    }
+
+    /**
+     * Logs a slow execution.
+     *
+     * @param nanos          the execution time, in nanoseconds
+     * @param sql            the SQL statement executed
+     * @param parameterCount the number of bound parameters, or a negative value if it is unknown
+     */
+    public void log(final long nanos, final String sql, final int parameterCount) {
+        if (LOGGER.isWarnEnabled()) {
+            final long notLogged = suppressed.sumThenReset();
+            LOGGER.warn("[{}] Slow query: {} ms, {} bound parameters{}: {}", jndiName,
+                        TimeUnit.NANOSECONDS.toMillis(nanos), parameterCount < 0 ? "?" : parameterCount,
+                        notLogged > 0 ? String.format(" (%d slow queries not logged)", notLogged) : "",
+                        SqlFingerprint.of(sql));
+        }
+    }
+
+    /**
+     * Returns the number of slow queries detected, either logged or not.
+     *
+     * @return the number of slow queries
+     */
+    public long getSlowQueryCount() {
+        return slowQueries.sum();
+    }
+
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of the statements that share the same SQL fingerprint (see
+ * {@link com.dattack.naming.loader.factory.jdbc.SqlFingerprint}).
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class StatementMetrics {
+
+    private final String fingerprint;
+    private final LatencyHistogram executeTime;
+    private final LongAdder errors;
+    private final LongAdder rows;
+    private final DataSourceMetrics parent;
+
+    /* default */ StatementMetrics(final String fingerprint, final DataSourceMetrics parent) {
+        this.fingerprint = fingerprint;
+        this.executeTime = new LatencyHistogram();
+        this.errors = new LongAdder();
+        this.rows = new LongAdder();
+        this.parent = parent;
+    }
+
+    /**
+     * Records a successful execution.
+     *
+     * @param nanos the execution time, in nanoseconds
+     */
+    public void recordExecute(final long nanos) {
+        executeTime.record(nanos);
+        parent.recordExecute(nanos);
+    }
+
+    /**
+     * Records a failed execution.
+     *
+     * @param nanos the time until the error, in nanoseconds
+     */
+    public void recordError(final long nanos) {
+        recordExecute(nanos);
+        errors.increment();
+        parent.recordError();
+    }
+
+    /**
+     * Records a row fetched from a result set.
+     */
+    public void recordRow() {
+        rows.increment();
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public LatencyHistogram getExecuteTime() {
+        return executeTime;
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public long getRowsFetched() {
+        return rows.sum();
+    }
+
+    /* default */ void reset() {
+        executeTime.reset();
+        errors.reset();
+        rows.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count: %d, errors: %d, rows: %d, total: %.3f ms, mean: %.3f ms, p99: %.3f ms, "
+                             + "max: %.3f ms, sql: %s", executeTime.getCount(), getErrorCount(), getRowsFetched(),
+                             executeTime.getTotalMillis(), executeTime.getMeanMillis(),
+                             executeTime.getPercentileMillis(99), executeTime.getMaxMillis(), fingerprint);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.pool;
+
+import com.dattack.naming.loader.factory.AbstractPoolFactory;
+import com.dattack.naming.loader.factory.DataSourceConfig;
+
+import java.util.Properties;
+import javax.sql.DataSource;
+
+/**
+ * A factory to create instances of the built-in connection pool (see {@link PooledDataSource}). It has no external
+ * dependencies, so it is used when neither DBCP nor Atomikos are available. The pool is configured with the properties
+ * prefixed by <i>'pool.'</i>.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class BuiltinPoolFactory extends AbstractPoolFactory {
+
+    private static final String PREFIX = "pool.";
+    private static final String DRIVER_KEY = "driverClassName";
+    private static final String URL_KEY = "url";
+    private static final String USER_KEY = "username";
+    private static final String PASSWORD_KEY = "password";
+    private static final String MAX_POOL_SIZE_KEY = "maxPoolSize";
+    private static final String MIN_IDLE_KEY = "minIdle";
+    private static final String CONNECTION_TIMEOUT_KEY = "connectionTimeoutMillis";
+    private static final String IDLE_TIMEOUT_KEY = "idleTimeoutMillis";
+    private static final String MAX_LIFETIME_KEY = "maxLifetimeMillis";
+    private static final String HOUSEKEEPING_PERIOD_KEY = "housekeepingPeriodMillis";
+    private static final String VALIDATION_TIMEOUT_KEY = "validationTimeoutSeconds";
+    private static final String VALIDATION_BYPASS_KEY = "validationBypassMillis";
+    private static final String VALIDATION_QUERY_KEY = "validationQuery";
+    private static final String VIRTUAL_THREADS_KEY = "virtualThreads";
+    private static final String NAME = "builtin";
+    private static final int PRIORITY = 1000;
+    private static final String TYPE_NAME = "Builtin-Pool";
+    private static final BuiltinPoolFactory SINGLETON = new BuiltinPoolFactory();
+
+    public static BuiltinPoolFactory getInstance() {
+        return SINGLETON;
+    }
+
+    private static int getInt(final Properties properties, final String key, final int defaultValue) {
+        final String value = properties.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static long getLong(final Properties properties, final String key, final long defaultValue) {
+        final String value = properties.getProperty(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    @Override
+    public DataSource createDataSource(final DataSourceConfig dataSourceConfig) {
+
+        log(dataSourceConfig, "Configuring datasource (driver: {}) ...", dataSourceConfig.getDriver());
+        DataSource dataSource = null;
+        try {
+            final Properties poolProperties = filterProperties(dataSourceConfig.getProperties(), PREFIX);
+            logPoolConfiguration(dataSourceConfig, poolProperties);
+
+            final PoolConfig defaults = new PoolConfig();
+            final PoolConfig config = new PoolConfig() //
+                .withJndiName(dataSourceConfig.getJndiName()) //
+                .withDriverClassName(dataSourceConfig.getDriver()) //
+                .withUrl(dataSourceConfig.getUrl()) //
+                .withUsername(dataSourceConfig.getUser()) //
+                .withPassword(dataSourceConfig.getPassword()) //
+                .withMaxPoolSize(getInt(poolProperties, MAX_POOL_SIZE_KEY, defaults.getMaxPoolSize())) //
+                .withMinIdle(getInt(poolProperties, MIN_IDLE_KEY, defaults.getMinIdle())) //
+                .withConnectionTimeoutMillis(
+                    getLong(poolProperties, CONNECTION_TIMEOUT_KEY, defaults.getConnectionTimeoutMillis())) //
+                .withIdleTimeoutMillis(getLong(poolProperties, IDLE_TIMEOUT_KEY, defaults.getIdleTimeoutMillis())) //
+                .withMaxLifetimeMillis(getLong(poolProperties, MAX_LIFETIME_KEY, defaults.getMaxLifetimeMillis())) //
+                .withHousekeepingPeriodMillis(
+                    getLong(poolProperties, HOUSEKEEPING_PERIOD_KEY, defaults.getHousekeepingPeriodMillis())) //
+                .withValidationTimeoutSeconds(
+                    getInt(poolProperties, VALIDATION_TIMEOUT_KEY, defaults.getValidationTimeoutSeconds())) //
+                .withValidationBypassMillis(
+                    getLong(poolProperties, VALIDATION_BYPASS_KEY, defaults.getValidationBypassMillis())) //
+                .withValidationQuery(poolProperties.getProperty(VALIDATION_QUERY_KEY)) //
+                .withOnConnectStatements(dataSourceConfig.getOnConnectStatements()) //
+                .withProxyOptions(dataSourceConfig.getProxyOptions()) //
+                .withVirtualThreads(Boolean.parseBoolean(poolProperties.getProperty(VIRTUAL_THREADS_KEY)));
+
+            dataSource = new PooledDataSource(config);
+
+        } catch (final Throwable t) { //NOPMD
+            log(dataSourceConfig, t, "Unable to configure datasource");
+        }
+        return dataSource;
+    }
+
+    @Override
+    public int getMinimumSize(final DataSourceConfig dataSourceConfig) {
+        final Properties poolProperties = filterProperties(dataSourceConfig.getProperties(), PREFIX);
+        final PoolConfig defaults = new PoolConfig();
+        return capMinimumSize(getInt(poolProperties, MIN_IDLE_KEY, defaults.getMinIdle()),
+                              getInt(poolProperties, MAX_POOL_SIZE_KEY, defaults.getMaxPoolSize()));
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getPriority() {
+        return PRIORITY;
+    }
+
+    @Override
+    public boolean isProxySupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isOnConnectScriptSupported(final DataSourceConfig dataSourceConfig) {
+        return true;
+    }
+
+    @Override
+    public String getTypeName() {
+        return TYPE_NAME;
+    }
+
+    @Override
+    public String getPrefixKey() {
+        return PREFIX;
+    }
+
+    @Override
+    public String getDriverKey() {
+        return DRIVER_KEY;
+    }
+
+    @Override
+    public String getUrlKey() {
+        return URL_KEY;
+    }
+
+    @Override
+    public String getUsernameKey() {
+        return USER_KEY;
+    }
+
+    @Override
+    public String getPasswordKey() {
+        return PASSWORD_KEY;
+    }
+}
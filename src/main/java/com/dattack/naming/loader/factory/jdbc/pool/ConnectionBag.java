@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.pool;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A lock-free collection of {@link PoolEntry} objects. Borrowing an entry tries, in order:
+ * <ol>
+ *     <li>the entries recently released by the current thread, which are likely to be idle and warm;</li>
+ *     <li>any idle entry of the shared list;</li>
+ *     <li>a new entry, if the pool has not reached its maximum size;</li>
+ *     <li>waiting for an entry to be handed off by another thread that releases it.</li>
+ * </ol>
+ * The state of each entry is changed with compare-and-set operations, so no lock is held while borrowing or releasing
+ * an entry.
+ * <p>
+ * In the virtual-thread mode the bag does not keep per-thread lists, since virtual threads are not reused, and the
+ * threads that release an entry do not spin to hand it off. Instead, the waiting threads park on a
+ * {@link Condition} that is signalled whenever an entry becomes idle, so a virtual thread waiting for a connection is
+ * unmounted from its carrier thread.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+/* default */ final class ConnectionBag {
+
+    private static final int MAX_THREAD_LOCAL_ENTRIES = 16;
+    private static final long MAX_WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MAX_HANDOFF_ATTEMPTS = 256;
+
+    private final CopyOnWriteArrayList<PoolEntry> sharedList;
+    private final ThreadLocal<List<PoolEntry>> threadList;
+    private final SynchronousQueue<PoolEntry> handoffQueue;
+    private final AtomicInteger waiters;
+    private final AtomicInteger pollers;
+    private final ReentrantLock waitLock;
+    private final Condition idleEntry;
+
+    /* default */ ConnectionBag() {
+        this(false);
+    }
+
+    /**
+     * Creates a new bag.
+     *
+     * @param virtualThreads <code>true</code> to use the virtual-thread mode
+     */
+    /* default */ ConnectionBag(final boolean virtualThreads) {
+        this.sharedList = new CopyOnWriteArrayList<>();
+        this.waiters = new AtomicInteger();
+        this.pollers = new AtomicInteger();
+        if (virtualThreads) {
+            this.threadList = null; // NOPMD
+            this.handoffQueue = null; // NOPMD
+            this.waitLock = new ReentrantLock();
+            this.idleEntry = waitLock.newCondition();
+        } else {
+            this.threadList = ThreadLocal.withInitial(() -> new ArrayList<>(MAX_THREAD_LOCAL_ENTRIES));
+            this.handoffQueue = new SynchronousQueue<>(true);
+            this.waitLock = null; // NOPMD
+            this.idleEntry = null; // NOPMD
+        }
+    }
+
+    /**
+     * Adds a new entry to the bag. If the entry is not in use, it is handed off to a waiting thread, if any.
+     *
+     * @param entry the entry to add
+     */
+    /* default */ void add(final PoolEntry entry) {
+        sharedList.add(entry);
+        if (isVirtualThreadMode()) {
+            signalIdleEntry();
+            return;
+        }
+        handOff(entry);
+    }
+
+    /**
+     * Borrows an entry from the bag.
+     *
+     * @param timeoutNanos the maximum time to wait for an entry
+     * @param creator      used to create a new entry when none is idle
+     * @return the borrowed entry, or <code>null</code> if the timeout expired
+     * @throws SQLException         if the creation of a new entry fails
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    /* default */ PoolEntry borrow(final long timeoutNanos, final EntryCreator creator)
+        throws SQLException, InterruptedException
+    {
+        if (isVirtualThreadMode()) {
+            return borrowParking(timeoutNanos, creator);
+        }
+
+        // try the entries recently used by this thread
+        final List<PoolEntry> list = threadList.get();
+        for (int i = list.size() - 1; i >= 0; i--) {
+            final PoolEntry entry = list.remove(i);
+            if (entry.compareAndSet(PoolEntry.STATE_NOT_IN_USE, PoolEntry.STATE_IN_USE)) {
+                return entry;
+            }
+        }
+
+        waiters.incrementAndGet();
+        try {
+            final long deadline = System.nanoTime() + timeoutNanos;
+            long remaining = timeoutNanos;
+            do {
+                PoolEntry entry = pollSharedList();
+                if (entry == null) {
+                    entry = creator.create();
+                }
+                if (entry == null) {
+                    entry = pollHandoffQueue(remaining);
+                }
+                if (entry != null) {
+                    return entry;
+                }
+                remaining = deadline - System.nanoTime();
+            } while (remaining > 0);
+            return null;
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns a borrowed entry to the bag, handing it off directly to a waiting thread if there is any.
+     *
+     * @param entry the entry to release
+     */
+    /* default */ void requite(final PoolEntry entry) {
+
+        entry.setState(PoolEntry.STATE_NOT_IN_USE);
+
+        if (isVirtualThreadMode()) {
+            signalIdleEntry();
+            return;
+        }
+
+        if (handOff(entry)) {
+            return;
+        }
+
+        final List<PoolEntry> list = threadList.get();
+        if (list.size() < MAX_THREAD_LOCAL_ENTRIES) {
+            list.add(entry);
+        }
+    }
+
+    /**
+     * Removes an entry that is in use or reserved.
+     *
+     * @param entry the entry to remove
+     * @return <code>true</code> if the entry was removed
+     */
+    /* default */ boolean remove(final PoolEntry entry) {
+        if (!entry.compareAndSet(PoolEntry.STATE_IN_USE, PoolEntry.STATE_REMOVED)
+            && !entry.compareAndSet(PoolEntry.STATE_RESERVED, PoolEntry.STATE_REMOVED))
+        {
+            return false;
+        }
+        return sharedList.remove(entry);
+    }
+
+    /**
+     * Reserves an idle entry so that it cannot be borrowed, e.g. before removing it.
+     *
+     * @param entry the entry to reserve
+     * @return <code>true</code> if the entry was idle and has been reserved
+     */
+    /* default */ boolean reserve(final PoolEntry entry) {
+        return entry.compareAndSet(PoolEntry.STATE_NOT_IN_USE, PoolEntry.STATE_RESERVED);
+    }
+
+    /* default */ int getCount(final int state) {
+        int count = 0;
+        for (final PoolEntry entry : sharedList) {
+            if (entry.getState() == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /* default */ int getWaitingThreads() {
+        return waiters.get();
+    }
+
+    /* default */ int size() {
+        return sharedList.size();
+    }
+
+    /* default */ List<PoolEntry> values() {
+        return new ArrayList<>(sharedList);
+    }
+
+    private boolean isVirtualThreadMode() {
+        return waitLock != null;
+    }
+
+    /**
+     * Borrows an entry in the virtual-thread mode: when no entry is idle and no new one can be created, the current
+     * thread parks until an entry is released or added.
+     */
+    private PoolEntry borrowParking(final long timeoutNanos, final EntryCreator creator)
+        throws SQLException, InterruptedException
+    {
+        // a thread that releases an entry after this point signals the condition
+        waiters.incrementAndGet();
+        try {
+            final long deadline = System.nanoTime() + timeoutNanos;
+            long remaining = timeoutNanos;
+            do {
+                PoolEntry entry = pollSharedList();
+                if (entry == null) {
+                    entry = creator.create();
+                }
+                if (entry == null) {
+                    waitLock.lockInterruptibly();
+                    try {
+                        // scan again while holding the lock, so that a signal cannot be missed
+                        entry = pollSharedList();
+                        if (entry == null) {
+                            idleEntry.awaitNanos(Math.min(remaining, MAX_WAIT_SLICE_NANOS));
+                        }
+                    } finally {
+                        waitLock.unlock();
+                    }
+                }
+                if (entry != null) {
+                    return entry;
+                }
+                remaining = deadline - System.nanoTime();
+            } while (remaining > 0);
+            return null;
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Hands off an idle entry to a thread blocked waiting for one, if there is any. Only the threads blocked in the
+     * handoff queue are waited for, and only for a bounded number of attempts: otherwise, the entry is left in the
+     * shared list, where the waiting threads look for it again before blocking.
+     *
+     * @param entry the idle entry
+     * @return <code>true</code> if the entry was handed off or has already been borrowed by another thread
+     */
+    private boolean handOff(final PoolEntry entry) {
+        for (int i = 0; i < MAX_HANDOFF_ATTEMPTS && pollers.get() > 0; i++) {
+            if (entry.getState() != PoolEntry.STATE_NOT_IN_USE || handoffQueue.offer(entry)) {
+                return true;
+            }
+            Thread.yield();
+        }
+        return false;
+    }
+
+    /**
+     * Waits for an entry to be handed off by another thread.
+     *
+     * @param remaining the remaining time to wait for an entry
+     * @return the borrowed entry, or <code>null</code> if none was handed off in time
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    private PoolEntry pollHandoffQueue(final long remaining) throws InterruptedException {
+        // from here on, any released entry will be handed off to this thread
+        pollers.incrementAndGet();
+        try {
+            // scan again, so that an entry released before registering as a poller is not missed
+            PoolEntry entry = pollSharedList();
+            if (entry == null) {
+                entry = handoffQueue.poll(Math.min(remaining, MAX_WAIT_SLICE_NANOS), TimeUnit.NANOSECONDS);
+                if (entry != null && !entry.compareAndSet(PoolEntry.STATE_NOT_IN_USE, PoolEntry.STATE_IN_USE)) {
+                    entry = null; // NOPMD
+                }
+            }
+            return entry;
+        } finally {
+            pollers.decrementAndGet();
+        }
+    }
+
+    private void signalIdleEntry() {
+        if (waiters.get() > 0) {
+            waitLock.lock();
+            try {
+                idleEntry.signal();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    private PoolEntry pollSharedList() {
+        for (final PoolEntry entry : sharedList) {
+            if (entry.compareAndSet(PoolEntry.STATE_NOT_IN_USE, PoolEntry.STATE_IN_USE)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates new entries on demand.
+     */
+    @FunctionalInterface
+    /* default */ interface EntryCreator {
+
+        /**
+         * Creates a new entry, already in use and added to the bag.
+         *
+         * @return the new entry, or <code>null</code> if no more entries can be created
+         * @throws SQLException if the entry cannot be created
+         */
+        PoolEntry create() throws SQLException;
+    }
+}
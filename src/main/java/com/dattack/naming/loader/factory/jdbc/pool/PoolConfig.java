@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.pool;
+
+import com.dattack.naming.loader.factory.jdbc.dbcp.ProxyOptions;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Set of properties needed to configure a {@link PooledDataSource}.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class PoolConfig {
+
+    private transient String jndiName;
+    private transient String driverClassName;
+    private transient String url;
+    private transient String username;
+    private transient String password;
+    private transient int maxPoolSize = 10;
+    private transient int minIdle;
+    private transient long connectionTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+    private transient long idleTimeoutMillis = TimeUnit.MINUTES.toMillis(10);
+    private transient long maxLifetimeMillis = TimeUnit.MINUTES.toMillis(30);
+    private transient long housekeepingPeriodMillis = TimeUnit.SECONDS.toMillis(30);
+    private transient int validationTimeoutSeconds = 5;
+    private transient long validationBypassMillis = 500;
+    private transient String validationQuery;
+    private transient List<String> onConnectStatements = Collections.emptyList();
+    private transient ProxyOptions proxyOptions = new ProxyOptions();
+    private transient boolean virtualThreads;
+
+    public String getJndiName() {
+        return jndiName;
+    }
+
+    public PoolConfig withJndiName(final String jndiName) {
+        this.jndiName = jndiName;
+        return this;
+    }
+
+    public String getDriverClassName() {
+        return driverClassName;
+    }
+
+    public PoolConfig withDriverClassName(final String driverClassName) {
+        this.driverClassName = driverClassName;
+        return this;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public PoolConfig withUrl(final String url) {
+        this.url = url;
+        return this;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public PoolConfig withUsername(final String username) {
+        this.username = username;
+        return this;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public PoolConfig withPassword(final String password) {
+        this.password = password;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of physical connections, both idle and in use.
+     *
+     * @return the maximum number of physical connections
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public PoolConfig withMaxPoolSize(final int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+        return this;
+    }
+
+    /**
+     * Returns the minimum number of idle connections that the pool tries to keep.
+     *
+     * @return the minimum number of idle connections
+     */
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public PoolConfig withMinIdle(final int minIdle) {
+        this.minIdle = minIdle;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of milliseconds to wait for a connection when the pool is exhausted.
+     *
+     * @return the maximum number of milliseconds to wait for a connection
+     */
+    public long getConnectionTimeoutMillis() {
+        return connectionTimeoutMillis;
+    }
+
+    public PoolConfig withConnectionTimeoutMillis(final long connectionTimeoutMillis) {
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of milliseconds that a connection can stay idle before being closed, or zero to never
+     * close idle connections. Idle connections are not closed below <i>minIdle</i>.
+     *
+     * @return the maximum number of milliseconds that a connection can stay idle
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public PoolConfig withIdleTimeoutMillis(final long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Returns the maximum lifetime in milliseconds of a physical connection, or zero for no limit.
+     *
+     * @return the maximum lifetime of a physical connection
+     */
+    public long getMaxLifetimeMillis() {
+        return maxLifetimeMillis;
+    }
+
+    public PoolConfig withMaxLifetimeMillis(final long maxLifetimeMillis) {
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        return this;
+    }
+
+    /**
+     * Returns the number of milliseconds between two runs of the task that retires idle and expired connections and
+     * fills the pool up to <i>minIdle</i>.
+     *
+     * @return the number of milliseconds between two housekeeping runs
+     */
+    public long getHousekeepingPeriodMillis() {
+        return housekeepingPeriodMillis;
+    }
+
+    public PoolConfig withHousekeepingPeriodMillis(final long housekeepingPeriodMillis) {
+        this.housekeepingPeriodMillis = housekeepingPeriodMillis;
+        return this;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public PoolConfig withValidationTimeoutSeconds(final int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        return this;
+    }
+
+    /**
+     * Returns the number of milliseconds since its last use during which a connection is borrowed without being
+     * validated.
+     *
+     * @return the number of milliseconds during which a recently used connection is not validated
+     */
+    public long getValidationBypassMillis() {
+        return validationBypassMillis;
+    }
+
+    public PoolConfig withValidationBypassMillis(final long validationBypassMillis) {
+        this.validationBypassMillis = validationBypassMillis;
+        return this;
+    }
+
+    /**
+     * Returns the query used to validate the connections or <code>null</code> to use
+     * {@link java.sql.Connection#isValid(int)}.
+     *
+     * @return the validation query
+     */
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    public PoolConfig withValidationQuery(final String validationQuery) {
+        this.validationQuery = validationQuery;
+        return this;
+    }
+
+    /**
+     * Returns the SQL statements executed once on each new physical connection.
+     *
+     * @return the SQL statements, never <code>null</code>
+     */
+    public List<String> getOnConnectStatements() {
+        return onConnectStatements;
+    }
+
+    public PoolConfig withOnConnectStatements(final List<String> onConnectStatements) {
+        this.onConnectStatements = onConnectStatements;
+        return this;
+    }
+
+    /**
+     * Returns the options of the proxies that wrap the connections of the pool.
+     *
+     * @return the options of the proxies
+     */
+    public ProxyOptions getProxyOptions() {
+        return proxyOptions;
+    }
+
+    public PoolConfig withProxyOptions(final ProxyOptions proxyOptions) {
+        this.proxyOptions = proxyOptions;
+        return this;
+    }
+
+    /**
+     * Checks whether the pool is tuned for virtual threads: the threads waiting for a connection park on a
+     * <code>java.util.concurrent</code> condition and no connection is cached per thread.
+     *
+     * @return <code>true</code> if the pool is tuned for virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public PoolConfig withVirtualThreads(final boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+}
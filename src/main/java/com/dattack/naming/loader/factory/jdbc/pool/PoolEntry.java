@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A physical connection managed by a {@link PooledDataSource}, together with its pooling state.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+/* default */ final class PoolEntry {
+
+    /* default */ static final int STATE_NOT_IN_USE = 0;
+    /* default */ static final int STATE_IN_USE = 1;
+    /* default */ static final int STATE_REMOVED = -1;
+    /* default */ static final int STATE_RESERVED = -2;
+
+    private final Connection connection;
+    private final AtomicInteger state;
+    private final long creationNanos;
+    private final boolean defaultAutoCommit;
+    private final boolean defaultReadOnly;
+    private final int defaultTransactionIsolation;
+    private volatile long lastAccessNanos;
+
+    /* default */ PoolEntry(final Connection connection, final int initialState) throws SQLException {
+        this.connection = connection;
+        this.state = new AtomicInteger(initialState);
+        this.defaultAutoCommit = connection.getAutoCommit();
+        this.defaultReadOnly = connection.isReadOnly();
+        this.defaultTransactionIsolation = connection.getTransactionIsolation();
+        this.creationNanos = System.nanoTime();
+        this.lastAccessNanos = creationNanos;
+    }
+
+    /* default */ boolean compareAndSet(final int expectedState, final int newState) {
+        return state.compareAndSet(expectedState, newState);
+    }
+
+    /* default */ Connection getConnection() {
+        return connection;
+    }
+
+    /* default */ long getCreationNanos() {
+        return creationNanos;
+    }
+
+    /* default */ long getLastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    /* default */ int getState() {
+        return state.get();
+    }
+
+    /* default */ void setState(final int newState) {
+        state.set(newState);
+    }
+
+    /* default */ boolean isDefaultAutoCommit() {
+        return defaultAutoCommit;
+    }
+
+    /* default */ boolean isDefaultReadOnly() {
+        return defaultReadOnly;
+    }
+
+    /* default */ int getDefaultTransactionIsolation() {
+        return defaultTransactionIsolation;
+    }
+
+    /* default */ void touch() {
+        this.lastAccessNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.pool;
+
+import com.dattack.naming.loader.factory.jdbc.dbcp.DbcpProxyConnection;
+
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The logical connection handed out by a {@link PooledDataSource}. Closing it closes the statements created through it,
+ * restores the default state of the physical connection and returns it to the pool. The statements closed by the
+ * application stop being tracked as soon as they are closed, so a connection held for a long time does not keep them
+ * reachable.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+@SuppressWarnings({ "PMD.TooManyMethods", "PMD.ExcessivePublicCount" })
+public final class PooledConnection extends DbcpProxyConnection {
+
+    private static final String SQLSTATE_CONNECTION_CLOSED = "08003";
+    private static final int MIN_PRUNE_THRESHOLD = 64;
+
+    private static final Connection CLOSED_CONNECTION = (Connection) Proxy.newProxyInstance(
+        PooledConnection.class.getClassLoader(), new Class<?>[]{ Connection.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "isClosed":
+                    return Boolean.TRUE;
+                case "isValid":
+                    return Boolean.FALSE;
+                case "close":
+                    return null;
+                case "toString":
+                    return "ClosedConnection";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0]; // NOPMD
+                default:
+                    throw new SQLException("Connection is closed", SQLSTATE_CONNECTION_CLOSED);
+            }
+        });
+
+    private final PooledDataSource pool;
+    private final PoolEntry entry;
+    private final AtomicBoolean closed;
+    private final Set<Statement> statements;
+    private int pruneThreshold = MIN_PRUNE_THRESHOLD;
+    private boolean autoCommit;
+    private boolean readOnly;
+    private int transactionIsolation;
+    private boolean evict;
+
+    /* default */ PooledConnection(final PooledDataSource pool, final PoolEntry entry) {
+        // the statements of the physical connection would return it from getConnection(), bypassing the pool
+        super(entry.getConnection(), entry.getConnection(), pool.getProxyOptions(), true);
+        this.pool = pool;
+        this.entry = entry;
+        this.closed = new AtomicBoolean(false);
+        this.statements = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.autoCommit = entry.isDefaultAutoCommit();
+        this.readOnly = entry.isDefaultReadOnly();
+        this.transactionIsolation = entry.getDefaultTransactionIsolation();
+    }
+
+    @Override
+    public void abort(final Executor executor) throws SQLException {
+        if (!closed.get()) {
+            evict = true;
+            entry.getConnection().abort(executor);
+            close();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed.compareAndSet(false, true)) {
+            recordRelease();
+            SQLException batchException = null;
+            try {
+                // a failed batch does not make the connection unusable
+                closeBatchingStatements();
+            } catch (final SQLException e) {
+                batchException = e;
+            }
+            try {
+                closeCachedStatements();
+                closeStatements();
+                resetState();
+            } catch (final SQLException e) {
+                evict = true;
+            } finally {
+                pool.release(entry, evict);
+            }
+            if (batchException != null) {
+                throw batchException;
+            }
+        }
+    }
+
+    @Override
+    public Statement createStatement() throws SQLException {
+        return track(super.createStatement());
+    }
+
+    @Override
+    public Statement createStatement(final int resultSetType, final int resultSetConcurrency) throws SQLException {
+        return track(super.createStatement(resultSetType, resultSetConcurrency));
+    }
+
+    @Override
+    public Statement createStatement(final int resultSetType, final int resultSetConcurrency,
+        final int resultSetHoldability) throws SQLException
+    {
+        return track(super.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+    }
+
+    @Override
+    public Connection getDelegate() {
+        return closed.get() ? CLOSED_CONNECTION : entry.getConnection();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return closed.get() || entry.getConnection().isClosed();
+    }
+
+    @Override
+    public CallableStatement prepareCall(final String sql) throws SQLException {
+        return track(super.prepareCall(sql));
+    }
+
+    @Override
+    public CallableStatement prepareCall(final String sql, final int resultSetType, final int resultSetConcurrency)
+        throws SQLException
+    {
+        return track(super.prepareCall(sql, resultSetType, resultSetConcurrency));
+    }
+
+    @Override
+    public CallableStatement prepareCall(final String sql, final int resultSetType, final int resultSetConcurrency,
+        final int resultSetHoldability) throws SQLException
+    {
+        return track(super.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql) throws SQLException {
+        return track(super.prepareStatement(sql));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql, final int resultSetType,
+        final int resultSetConcurrency) throws SQLException
+    {
+        return track(super.prepareStatement(sql, resultSetType, resultSetConcurrency));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql, final int resultSetType,
+        final int resultSetConcurrency, final int resultSetHoldability) throws SQLException
+    {
+        return track(super.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql, final int autoGeneratedKeys) throws SQLException {
+        return track(super.prepareStatement(sql, autoGeneratedKeys));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql, final int[] columnIndexes) throws SQLException {
+        return track(super.prepareStatement(sql, columnIndexes));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql, final String[] columnNames) throws SQLException {
+        return track(super.prepareStatement(sql, columnNames));
+    }
+
+    @Override
+    public void setAutoCommit(final boolean value) throws SQLException {
+        super.setAutoCommit(value);
+        this.autoCommit = value;
+    }
+
+    @Override
+    public void setReadOnly(final boolean value) throws SQLException {
+        getDelegate().setReadOnly(value);
+        this.readOnly = value;
+    }
+
+    @Override
+    public void setTransactionIsolation(final int level) throws SQLException {
+        getDelegate().setTransactionIsolation(level);
+        this.transactionIsolation = level;
+    }
+
+    @Override
+    public String toString() {
+        return "PooledConnection[" + entry.getConnection() + "]";
+    }
+
+    @Override
+    protected void statementClosed(final Statement statement) {
+        super.statementClosed(statement);
+        statements.remove(statement);
+    }
+
+    private static boolean isClosedQuietly(final Statement statement) {
+        try {
+            return statement.isClosed();
+        } catch (final SQLException e) {
+            return false;
+        }
+    }
+
+    private void closeStatements() throws SQLException {
+        SQLException exception = null;
+        for (final Statement statement : new ArrayList<>(statements)) {
+            try {
+                statement.close();
+            } catch (final SQLException e) {
+                exception = e;
+            }
+        }
+        statements.clear();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private void resetState() throws SQLException {
+        final Connection connection = entry.getConnection();
+        if (!autoCommit) {
+            // discard any uncommitted work
+            connection.rollback();
+        }
+        if (autoCommit != entry.isDefaultAutoCommit()) {
+            connection.setAutoCommit(entry.isDefaultAutoCommit());
+        }
+        if (readOnly != entry.isDefaultReadOnly()) {
+            connection.setReadOnly(entry.isDefaultReadOnly());
+        }
+        if (transactionIsolation != entry.getDefaultTransactionIsolation()) {
+            connection.setTransactionIsolation(entry.getDefaultTransactionIsolation());
+        }
+        connection.clearWarnings();
+    }
+
+    private <T extends Statement> T track(final T statement) {
+        if (statements.size() >= pruneThreshold) {
+            // the statements closed by the driver (e.g. closeOnCompletion) do not notify when they are closed
+            statements.removeIf(PooledConnection::isClosedQuietly);
+            pruneThreshold = Math.max(MIN_PRUNE_THRESHOLD, statements.size() * 2);
+        }
+        statements.add(statement);
+        return statement;
+    }
+}
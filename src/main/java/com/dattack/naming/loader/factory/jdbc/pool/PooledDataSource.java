@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.pool;
+
+import com.dattack.naming.loader.factory.RotatableCredentials;
+import com.dattack.naming.loader.factory.jdbc.ConnectionInitializer;
+import com.dattack.naming.loader.factory.jdbc.dbcp.ProxyOptions;
+import com.dattack.naming.loader.factory.jdbc.dbcp.StatementCache;
+import com.dattack.naming.loader.factory.jdbc.metrics.DataSourceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+/**
+ * A lightweight connection pool. Idle connections are kept in a {@link ConnectionBag}, so that borrowing and returning
+ * a connection do not acquire any lock in the common case: each thread first reuses the connections it released
+ * recently, then scans the shared list with CAS operations and, when the pool is exhausted, waits for a connection to
+ * be handed off directly by the thread that releases it. A background task retires the idle and expired connections
+ * and keeps the minimum number of idle connections.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+public final class PooledDataSource implements DataSource, RotatableCredentials, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledDataSource.class);
+
+    private static final String USER_PROPERTY = "user";
+    private static final String PASSWORD_PROPERTY = "password";
+
+    private static volatile ScheduledExecutorService scheduler;
+
+    private final PoolConfig config;
+    private final Driver driver;
+    private final ConnectionBag bag;
+    private final AtomicInteger totalConnections;
+    private final ConnectionInitializer initializer;
+    private final ScheduledFuture<?> housekeeper;
+    private volatile Properties connectionProperties;
+    private volatile boolean closed;
+    private transient PrintWriter logWriter;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param config the pool configuration
+     * @throws SQLException if the JDBC driver cannot be instantiated
+     */
+    public PooledDataSource(final PoolConfig config) throws SQLException {
+        this.config = config;
+        this.driver = instantiateDriver(config.getDriverClassName());
+        this.bag = new ConnectionBag(config.isVirtualThreads());
+        this.totalConnections = new AtomicInteger();
+        this.initializer = new ConnectionInitializer(config.getJndiName(), config.getUrl(),
+                                                     config.getOnConnectStatements());
+        this.connectionProperties = createConnectionProperties(config.getUsername(), config.getPassword());
+        this.housekeeper = getScheduler().scheduleWithFixedDelay(this::housekeep, 0L,
+            config.getHousekeepingPeriodMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static Properties createConnectionProperties(final String username, final String password) {
+        final Properties properties = new Properties();
+        if (Objects.nonNull(username)) {
+            properties.setProperty(USER_PROPERTY, username);
+        }
+        if (Objects.nonNull(password)) {
+            properties.setProperty(PASSWORD_PROPERTY, password);
+        }
+        return properties;
+    }
+
+    private static ScheduledExecutorService getScheduler() {
+        ScheduledExecutorService result = scheduler;
+        if (Objects.isNull(result)) {
+            synchronized (PooledDataSource.class) {
+                result = scheduler;
+                if (Objects.isNull(result)) {
+                    result = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        final Thread thread = new Thread(runnable, "standalone-jndi-pool-housekeeper");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    scheduler = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Driver instantiateDriver(final String driverClassName) throws SQLException {
+        try {
+            return (Driver) Class.forName(driverClassName).getDeclaredConstructor().newInstance();
+        } catch (final ReflectiveOperationException | ClassCastException e) {
+            throw new SQLException(String.format("Unable to instantiate the JDBC driver '%s'", driverClassName), e);
+        }
+    }
+
+    private static void closeQuietly(final Connection connection) {
+        try {
+            connection.close();
+        } catch (final SQLException e) {
+            LOGGER.debug("Unable to close connection: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        housekeeper.cancel(false);
+        for (final PoolEntry entry : bag.values()) {
+            if (bag.reserve(entry)) {
+                evict(entry);
+            }
+        }
+        LOGGER.debug("[{}] Pool closed", config.getJndiName());
+    }
+
+    /* default */ ProxyOptions getProxyOptions() {
+        return config.getProxyOptions();
+    }
+
+    /**
+     * Returns the number of connections currently in use.
+     *
+     * @return the number of active connections
+     */
+    public int getActiveConnections() {
+        return bag.getCount(PoolEntry.STATE_IN_USE);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+
+        final DataSourceMetrics metrics = config.getProxyOptions().getMetrics();
+        if (Objects.isNull(metrics)) {
+            return borrowConnection();
+        }
+
+        final long start = System.nanoTime();
+        try {
+            final Connection connection = borrowConnection();
+            metrics.recordAcquire(System.nanoTime() - start);
+            return connection;
+        } catch (final SQLException e) {
+            metrics.recordAcquireError();
+            throw e;
+        }
+    }
+
+    private Connection borrowConnection() throws SQLException {
+
+        if (closed) {
+            throw new SQLException("Pool is closed");
+        }
+
+        final long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getConnectionTimeoutMillis());
+        final long deadline = System.nanoTime() + timeoutNanos;
+        long remaining = timeoutNanos;
+        try {
+            do {
+                final PoolEntry entry = bag.borrow(remaining, this::tryCreateEntry);
+                if (Objects.isNull(entry)) {
+                    break;
+                }
+                if (isValid(entry)) {
+                    entry.touch();
+                    return new PooledConnection(this, entry);
+                }
+                evict(entry);
+                remaining = deadline - System.nanoTime();
+            } while (remaining > 0);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+
+        throw new SQLTransientConnectionException(String.format(
+            "[%s] Connection is not available, request timed out after %d ms (total: %d, active: %d, waiting: %d)",
+            config.getJndiName(), config.getConnectionTimeoutMillis(), getTotalConnections(),
+            getActiveConnections(), bag.getWaitingThreads()));
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The credentials are set by the pool configuration");
+    }
+
+    /**
+     * Returns the number of idle connections.
+     *
+     * @return the number of idle connections
+     */
+    public int getIdleConnections() {
+        return bag.getCount(PoolEntry.STATE_NOT_IN_USE);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /**
+     * Returns the number of physical connections, both idle and in use.
+     *
+     * @return the number of physical connections
+     */
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    @Override
+    public void setLogWriter(final PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(final int seconds) throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException(String.format("Unable to unwrap to %s", iface));
+    }
+
+    @Override
+    public void updateCredentials(final String username, final String password) {
+        // used by the physical connections created from now on
+        this.connectionProperties = createConnectionProperties(username, password);
+    }
+
+    /**
+     * Returns a connection to the pool.
+     *
+     * @param entry the pool entry of the connection
+     * @param evict <code>true</code> if the physical connection must be closed
+     */
+    /* default */ void release(final PoolEntry entry, final boolean evict) {
+        if (evict || closed || isExpired(entry, System.nanoTime())) {
+            evict(entry);
+        } else {
+            entry.touch();
+            bag.requite(entry);
+        }
+    }
+
+    private PoolEntry createEntry(final int initialState) throws SQLException {
+        final Connection connection = driver.connect(config.getUrl(), connectionProperties);
+        if (Objects.isNull(connection)) {
+            throw new SQLException(String.format("The driver %s does not accept the URL %s", driver.getClass(),
+                                                 config.getUrl()));
+        }
+        try {
+            initializer.initialize(connection);
+            return new PoolEntry(connection, initialState);
+        } catch (final SQLException e) {
+            closeQuietly(connection);
+            throw e;
+        }
+    }
+
+    private void evict(final PoolEntry entry) {
+        if (bag.remove(entry)) {
+            totalConnections.decrementAndGet();
+            StatementCache.discard(entry.getConnection());
+            closeQuietly(entry.getConnection());
+        }
+    }
+
+    private void fillPool() {
+        while (!closed && getIdleConnections() < config.getMinIdle() && reserveSlot()) {
+            try {
+                bag.add(createEntry(PoolEntry.STATE_NOT_IN_USE));
+            } catch (final SQLException e) {
+                totalConnections.decrementAndGet();
+                LOGGER.warn("[{}] Unable to create connection: {}", config.getJndiName(), e.getMessage());
+                break;
+            }
+        }
+    }
+
+    private void housekeep() {
+        try {
+            final long now = System.nanoTime();
+            final long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+            int idle = getIdleConnections();
+            for (final PoolEntry entry : bag.values()) {
+                final boolean expired = isExpired(entry, now);
+                final boolean retireIdle = idleTimeoutNanos > 0 && idle > config.getMinIdle()
+                    && now - entry.getLastAccessNanos() > idleTimeoutNanos;
+                if ((expired || retireIdle) && bag.reserve(entry)) {
+                    evict(entry);
+                    idle--;
+                }
+            }
+            fillPool();
+        } catch (final RuntimeException e) {
+            LOGGER.warn("[{}] Housekeeping failed: {}", config.getJndiName(), e.getMessage());
+        }
+    }
+
+    private boolean isExpired(final PoolEntry entry, final long now) {
+        final long maxLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxLifetimeMillis());
+        return maxLifetimeNanos > 0 && now - entry.getCreationNanos() > maxLifetimeNanos;
+    }
+
+    private boolean isValid(final PoolEntry entry) {
+        final long bypassNanos = TimeUnit.MILLISECONDS.toNanos(config.getValidationBypassMillis());
+        if (System.nanoTime() - entry.getLastAccessNanos() < bypassNanos) {
+            // the connection has been used recently
+            return true;
+        }
+
+        final Connection connection = entry.getConnection();
+        try {
+            if (Objects.isNull(config.getValidationQuery())) {
+                return connection.isValid(config.getValidationTimeoutSeconds());
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(config.getValidationTimeoutSeconds());
+                statement.execute(config.getValidationQuery());
+            }
+            return true;
+        } catch (final SQLException e) {
+            LOGGER.debug("[{}] Connection validation failed: {}", config.getJndiName(), e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean reserveSlot() {
+        int current;
+        do {
+            current = totalConnections.get();
+            if (current >= config.getMaxPoolSize()) {
+                return false;
+            }
+        } while (!totalConnections.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private PoolEntry tryCreateEntry() throws SQLException {
+        if (closed || !reserveSlot()) {
+            return null;
+        }
+        try {
+            final PoolEntry entry = createEntry(PoolEntry.STATE_IN_USE);
+            bag.add(entry);
+            return entry;
+        } catch (final SQLException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+}
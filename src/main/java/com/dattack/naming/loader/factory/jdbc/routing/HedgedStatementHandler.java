@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.routing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * The invocation handler of the statements created by a read-only {@link HedgingConnection}. The statements record
+ * their parameters and settings, so that a query that is slower than the hedge delay can be sent again through a
+ * connection of another datasource. The first result is returned, and the other query is cancelled.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+/* default */ final class HedgedStatementHandler implements InvocationHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HedgedStatementHandler.class);
+
+    private static final int PENDING = 0;
+    private static final int PRIMARY = 1;
+    private static final int HEDGE = 2;
+    private static final int ABANDONED = 3;
+
+    private final HedgingConnection connection;
+    private final Statement primary;
+    private final StatementFactory factory;
+    private final Map<Object, Invocation> settings;
+    private boolean hedgeable;
+    private HedgedQuery lastHedge;
+
+    private HedgedStatementHandler(final HedgingConnection connection, final Statement primary,
+        final StatementFactory factory)
+    {
+        this.connection = connection;
+        this.primary = primary;
+        this.factory = factory;
+        this.settings = new LinkedHashMap<>();
+        this.hedgeable = true;
+    }
+
+    /**
+     * Wraps a statement so that its queries are hedged.
+     *
+     * @param type       the interface of the statement
+     * @param connection the connection that created the statement
+     * @param statement  the statement created by the underlying connection
+     * @param factory    the function that creates an equivalent statement on another connection
+     * @param <T>        the type of the statement
+     * @return the hedged statement
+     */
+    /* default */ static <T extends Statement> T wrap(final Class<T> type, final HedgingConnection connection,
+        final T statement, final StatementFactory factory)
+    {
+        return type.cast(Proxy.newProxyInstance(HedgedStatementHandler.class.getClassLoader(), new Class<?>[]{ type },
+                                                new HedgedStatementHandler(connection, statement, factory)));
+    }
+
+    private static Object call(final Object target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (final InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean isParameterSetter(final Method method, final Object[] args) {
+        return method.getName().startsWith("set") && Objects.nonNull(args) && args.length >= 2
+            && args[0] instanceof Integer;
+    }
+
+    private static void closeQuietly(final AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (final Exception e) { // NOPMD - nothing else can be done
+            LOGGER.debug("Unable to close {}: {}", closeable, e.getMessage());
+        }
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "executeQuery":
+                return hedgeable ? executeQuery(method, args) : call(primary, method, args);
+            case "getResultSet":
+                return Objects.isNull(lastHedge) ? call(primary, method, args) : lastHedge.getResultSet();
+            case "getConnection":
+                return connection;
+            case "close":
+                closeLastHedge();
+                return call(primary, method, args);
+            case "clearParameters":
+                settings.keySet().removeIf(Integer.class::isInstance);
+                hedgeable = true;
+                return call(primary, method, args);
+            case "toString":
+                return "HedgedStatement[" + primary + "]";
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0]; // NOPMD - identity comparison intended
+            default:
+                record(method, args);
+                return call(primary, method, args);
+        }
+    }
+
+    private void closeLastHedge() {
+        if (Objects.nonNull(lastHedge)) {
+            lastHedge.close();
+            lastHedge = null; // NOPMD
+        }
+    }
+
+    private Object executeQuery(final Method method, final Object[] args) throws SQLException {
+
+        closeLastHedge();
+        final HedgingDataSource dataSource = connection.getDataSource();
+        dataSource.onQuery();
+
+        final HedgedQuery query = new HedgedQuery(method, args, new ArrayList<>(settings.values()));
+        final ScheduledFuture<?> trigger = dataSource.scheduleHedge(query::executeHedge);
+        try {
+            // returns once the primary has ended, so that its connection is never used by two queries at once
+            query.executePrimary();
+        } finally {
+            trigger.cancel(false);
+        }
+        final ResultSet resultSet = query.await();
+        if (query.isHedgeWinner()) {
+            lastHedge = query;
+            dataSource.getMetrics().recordHedgeWin(System.nanoTime() - query.start);
+        }
+        return resultSet;
+    }
+
+    private void record(final Method method, final Object[] args) {
+        if (isParameterSetter(method, args)) {
+            // the streams cannot be read twice
+            if (args[1] instanceof InputStream || args[1] instanceof Reader) {
+                hedgeable = false;
+            }
+            settings.put(args[0], new Invocation(method, args));
+        } else if (method.getName().startsWith("set")) {
+            settings.put(method.getName(), new Invocation(method, args));
+        }
+    }
+
+    /**
+     * Creates a statement equivalent to the hedged one on another connection.
+     */
+    @FunctionalInterface
+    /* default */ interface StatementFactory {
+
+        Statement create(Connection connection) throws SQLException;
+    }
+
+    /**
+     * An invocation of a method that sets a parameter or a property of the statement.
+     */
+    private static final class Invocation {
+
+        private final Method method;
+        private final Object[] args;
+
+        /* default */ Invocation(final Method method, final Object[] args) {
+            this.method = method;
+            this.args = args;
+        }
+
+        /* default */ void replay(final Statement statement) throws Throwable {
+            call(statement, method, args);
+        }
+    }
+
+    /**
+     * A query executed by the original statement and, if it is slower than the hedge delay, by a copy of the statement
+     * on another datasource. The original statement is executed by the calling thread and the copy by the hedge
+     * executor. When the copy completes first, the original query is cancelled and its result is discarded once it
+     * ends: the calling thread waits for it, as the connection cannot be used again while it is still running.
+     */
+    private final class HedgedQuery {
+
+        private final Method method;
+        private final Object[] args;
+        private final List<Invocation> invocations;
+        private final CompletableFuture<ResultSet> result;
+        private final long start;
+        private int running;
+        private int winner;
+        private SQLException failure;
+        private volatile Statement statement;
+        private Connection hedgeConnection;
+
+        /* default */ HedgedQuery(final Method method, final Object[] args, final List<Invocation> invocations) {
+            this.method = method;
+            this.args = args;
+            this.invocations = invocations;
+            this.result = new CompletableFuture<>();
+            this.start = System.nanoTime();
+            this.running = 1;
+            this.winner = PENDING;
+        }
+
+        /* default */ ResultSet await() throws SQLException {
+            try {
+                return result.get();
+            } catch (final ExecutionException e) {
+                throw (SQLException) e.getCause();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abandon();
+                throw new SQLException("Interrupted while waiting for the query", e);
+            }
+        }
+
+        /**
+         * Closes the statement and the connection of the hedge.
+         */
+        /* default */ void close() {
+            final Statement current = statement;
+            if (Objects.nonNull(current)) {
+                closeQuietly(current);
+                statement = null; // NOPMD
+            }
+            if (Objects.nonNull(hedgeConnection)) {
+                try {
+                    connection.releaseHedgeConnection(hedgeConnection);
+                } catch (final SQLException e) {
+                    LOGGER.debug("[{}] Unable to close the hedge connection: {}",
+                                 connection.getDataSource().getJndiName(), e.getMessage());
+                }
+                hedgeConnection = null; // NOPMD
+            }
+        }
+
+        /**
+         * Sends the query to the next datasource, if the original query has not completed yet and the budget allows
+         * it.
+         */
+        /* default */ void executeHedge() {
+            if (!startHedge()) {
+                return;
+            }
+            try {
+                hedgeConnection = connection.getHedgeConnection();
+                final Statement current = factory.create(hedgeConnection);
+                statement = current;
+                for (final Invocation invocation : invocations) {
+                    invocation.replay(current);
+                }
+                final ResultSet resultSet = isDecided() ? null : (ResultSet) call(current, method, args);
+                if (!complete(HEDGE, resultSet, null)) {
+                    if (Objects.nonNull(resultSet)) {
+                        closeQuietly(resultSet);
+                    }
+                    close();
+                }
+            } catch (final Throwable e) { // NOPMD - the failure is reported to the thread waiting for the query
+                close();
+                complete(HEDGE, null, e instanceof SQLException ? (SQLException) e : new SQLException(e));
+            }
+        }
+
+        /**
+         * Executes the query with the original statement.
+         */
+        /* default */ void executePrimary() {
+            try {
+                final ResultSet resultSet = (ResultSet) call(primary, method, args);
+                connection.getDataSource().getMetrics().recordPrimary(System.nanoTime() - start);
+                if (!complete(PRIMARY, resultSet, null)) {
+                    closeQuietly(resultSet);
+                }
+            } catch (final Throwable e) { // NOPMD - the failure is reported to the thread waiting for the query
+                complete(PRIMARY, null, e instanceof SQLException ? (SQLException) e : new SQLException(e));
+            }
+        }
+
+        /* default */ ResultSet getResultSet() throws SQLException {
+            final Statement current = statement;
+            return Objects.isNull(current) ? null : current.getResultSet();
+        }
+
+        /* default */ synchronized boolean isHedgeWinner() {
+            return winner == HEDGE;
+        }
+
+        /**
+         * Stops waiting for the query: the executions still running are cancelled and their results are discarded.
+         */
+        private void abandon() {
+            synchronized (this) {
+                if (winner != PENDING) {
+                    return;
+                }
+                winner = ABANDONED;
+            }
+            cancel(primary);
+            cancel(statement);
+        }
+
+        private void cancel(final Statement loser) {
+            if (Objects.nonNull(loser)) {
+                try {
+                    loser.cancel();
+                } catch (final SQLException e) {
+                    LOGGER.debug("[{}] Unable to cancel the query: {}", connection.getDataSource().getJndiName(),
+                                 e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Records the end of one of the executions. The first successful execution is the result of the query, and
+         * the other one is cancelled; the query fails only if all the executions fail.
+         *
+         * @param source    the execution that has ended
+         * @param resultSet the result of the execution, or <code>null</code> if it failed
+         * @param error     the error of the execution, or <code>null</code> if it succeeded
+         * @return <code>true</code> if the result set is the result of the query
+         */
+        private boolean complete(final int source, final ResultSet resultSet, final SQLException error) {
+            final Statement loser;
+            synchronized (this) {
+                if (Objects.nonNull(error)) {
+                    running--;
+                    if (Objects.isNull(failure)) {
+                        failure = error;
+                    } else {
+                        failure.addSuppressed(error);
+                    }
+                    if (winner == PENDING && running == 0) {
+                        winner = source;
+                        result.completeExceptionally(failure);
+                    }
+                    return false;
+                }
+                if (winner != PENDING || Objects.isNull(resultSet)) {
+                    return false;
+                }
+                winner = source;
+                loser = source == PRIMARY ? statement : primary;
+            }
+            result.complete(resultSet);
+            cancel(loser);
+            return true;
+        }
+
+        private synchronized boolean isDecided() {
+            return winner != PENDING;
+        }
+
+        private boolean startHedge() {
+            synchronized (this) {
+                if (winner != PENDING) {
+                    return false;
+                }
+                running++;
+            }
+            if (connection.getDataSource().tryAcquireHedge()) {
+                return true;
+            }
+            synchronized (this) {
+                running--;
+                if (winner == PENDING && running == 0 && Objects.nonNull(failure)) {
+                    winner = PRIMARY;
+                    result.completeExceptionally(failure);
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.routing;
+
+import com.dattack.jtoolbox.jdbc.internal.NamedPreparedStatement;
+import com.dattack.jtoolbox.jdbc.internal.ProxyConnection;
+import com.dattack.naming.loader.factory.jdbc.dbcp.DbcpProxyConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+
+/**
+ * The connection handed out by a {@link HedgingDataSource}. While it is read-only and in auto-commit mode, the
+ * statements it creates hedge their queries; otherwise, they are the statements of the underlying connection. The
+ * transaction isolation, catalog and schema set on this connection are also set on the connections of the hedges.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+@SuppressWarnings({ "PMD.TooManyMethods", "PMD.ExcessivePublicCount" })
+/* default */ final class HedgingConnection implements ProxyConnection {
+
+    private final HedgingDataSource dataSource;
+    private final int index;
+    private final Connection delegate;
+    private final String username;
+    private final String password;
+    private boolean readOnly;
+    private boolean closed;
+    private Integer transactionIsolation;
+    private String catalog;
+    private String schema;
+
+    /**
+     * Creates a new connection.
+     *
+     * @param dataSource the datasource that created this connection
+     * @param index      the index of the datasource that provided the underlying connection
+     * @param delegate   the underlying connection
+     * @param username   the user on whose behalf the connection was made, or <code>null</code> for the default user
+     * @param password   the user's password
+     */
+    /* default */ HedgingConnection(final HedgingDataSource dataSource, final int index, final Connection delegate,
+        final String username, final String password)
+    {
+        this.dataSource = dataSource;
+        this.index = index;
+        this.delegate = delegate;
+        this.username = username;
+        this.password = password;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (!closed) {
+            closed = true;
+            dataSource.release(index, delegate);
+        }
+    }
+
+    @Override
+    public Statement createStatement() throws SQLException {
+        final Statement statement = getDelegate().createStatement();
+        return isHedged() ? HedgedStatementHandler.wrap(Statement.class, this, statement,
+                                                      Connection::createStatement) : statement;
+    }
+
+    @Override
+    public Statement createStatement(final int resultSetType, final int resultSetConcurrency) throws SQLException {
+        final Statement statement = getDelegate().createStatement(resultSetType, resultSetConcurrency);
+        return isHedged() ? HedgedStatementHandler.wrap(Statement.class, this, statement,
+            connection -> connection.createStatement(resultSetType, resultSetConcurrency)) : statement;
+    }
+
+    @Override
+    public Statement createStatement(final int resultSetType, final int resultSetConcurrency,
+        final int resultSetHoldability) throws SQLException
+    {
+        final Statement statement = getDelegate().createStatement(resultSetType, resultSetConcurrency,
+                                                                  resultSetHoldability);
+        return isHedged() ? HedgedStatementHandler.wrap(Statement.class, this, statement,
+            connection -> connection.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability))
+            : statement;
+    }
+
+    @Override
+    public Connection getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return closed || getDelegate().isClosed();
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    @Override
+    @SuppressWarnings("PMD.CloseResource")
+    public NamedPreparedStatement prepareNamedStatement(final String sql) throws SQLException {
+        final Connection connection = getDelegate();
+        if (connection instanceof ProxyConnection) {
+            return ((ProxyConnection) connection).prepareNamedStatement(sql);
+        }
+        return DbcpProxyConnection.build(connection).prepareNamedStatement(sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql) throws SQLException {
+        final PreparedStatement statement = getDelegate().prepareStatement(sql);
+        return isHedged() ? HedgedStatementHandler.wrap(PreparedStatement.class, this, statement,
+            connection -> connection.prepareStatement(sql)) : statement;
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql, final int resultSetType,
+        final int resultSetConcurrency) throws SQLException
+    {
+        final PreparedStatement statement = getDelegate().prepareStatement(sql, resultSetType, resultSetConcurrency);
+        return isHedged() ? HedgedStatementHandler.wrap(PreparedStatement.class, this, statement,
+            connection -> connection.prepareStatement(sql, resultSetType, resultSetConcurrency)) : statement;
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql, final int resultSetType,
+        final int resultSetConcurrency, final int resultSetHoldability) throws SQLException
+    {
+        final PreparedStatement statement = getDelegate().prepareStatement(sql, resultSetType, resultSetConcurrency,
+                                                                           resultSetHoldability);
+        return isHedged() ? HedgedStatementHandler.wrap(PreparedStatement.class, this, statement,
+            connection -> connection.prepareStatement(sql, resultSetType, resultSetConcurrency,
+                                                      resultSetHoldability)) : statement;
+    }
+
+    @Override
+    public void setCatalog(final String value) throws SQLException {
+        getDelegate().setCatalog(value);
+        this.catalog = value;
+    }
+
+    @Override
+    public void setReadOnly(final boolean value) throws SQLException {
+        getDelegate().setReadOnly(value);
+        this.readOnly = value;
+    }
+
+    @Override
+    public void setSchema(final String value) throws SQLException {
+        getDelegate().setSchema(value);
+        this.schema = value;
+    }
+
+    @Override
+    public void setTransactionIsolation(final int level) throws SQLException {
+        getDelegate().setTransactionIsolation(level);
+        this.transactionIsolation = level;
+    }
+
+    @Override
+    public String toString() {
+        return "HedgingConnection[" + getDelegate() + "]";
+    }
+
+    /* default */ HedgingDataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Checks whether the queries of the statements created now must be hedged. The queries of a transaction are not
+     * hedged, as the connection of the hedge cannot see its uncommitted changes.
+     *
+     * @return <code>true</code> if this connection is read-only and in auto-commit mode
+     * @throws SQLException if the auto-commit mode cannot be read
+     */
+    private boolean isHedged() throws SQLException {
+        return readOnly && getDelegate().getAutoCommit();
+    }
+
+    /**
+     * Obtains a connection to execute the hedge of a query of this connection.
+     *
+     * @return a read-only connection of the next datasource
+     * @throws SQLException if the connection cannot be obtained
+     */
+    /* default */ Connection getHedgeConnection() throws SQLException {
+        final Connection connection = dataSource.getHedgeConnection(index, username, password);
+        try {
+            connection.setReadOnly(true);
+            // the session state of the hedge must match the one of this connection
+            if (Objects.nonNull(transactionIsolation)) {
+                connection.setTransactionIsolation(transactionIsolation);
+            }
+            if (Objects.nonNull(catalog)) {
+                connection.setCatalog(catalog);
+            }
+            if (Objects.nonNull(schema)) {
+                connection.setSchema(schema);
+            }
+            return connection;
+        } catch (final SQLException e) {
+            releaseHedgeConnection(connection);
+            throw e;
+        }
+    }
+
+    /**
+     * Closes a connection obtained with {@link #getHedgeConnection()}.
+     *
+     * @param connection the connection
+     * @throws SQLException if the connection cannot be closed
+     */
+    /* default */ void releaseHedgeConnection(final Connection connection) throws SQLException {
+        dataSource.release(dataSource.getHedgeIndex(index), connection);
+    }
+}
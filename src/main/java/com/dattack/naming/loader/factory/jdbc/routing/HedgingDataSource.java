@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.routing;
+
+import com.dattack.jtoolbox.jdbc.AbstractDataSourceDecorator;
+import com.dattack.naming.loader.factory.jdbc.metrics.HedgeMetrics;
+import com.dattack.naming.loader.factory.jdbc.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+
+/**
+ * A datasource that balances the connections across a set of equivalent read-only datasources (usually, replicas of
+ * the same database) and hedges the queries executed by the read-only connections: when a query has not completed
+ * after the hedge delay, the same query is sent to the next datasource, the first result is returned and the other
+ * query is cancelled with {@link java.sql.Statement#cancel()}. The hedge delay is the given percentile of the latency
+ * of the queries, once enough of them have been executed, or a fixed delay otherwise. The hedges are limited by a
+ * budget, as a percentage of the queries executed, and by the threads of the hedge executor. Only the queries executed
+ * in auto-commit mode are hedged, as the hedge cannot see the uncommitted changes of the transaction.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class HedgingDataSource extends AbstractDataSourceDecorator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HedgingDataSource.class);
+
+    private static final long MIN_SAMPLES = 100;
+    // the hedges sent while all the threads are busy are dropped
+    private static final int MAX_HEDGE_THREADS = 16;
+    private static final long HEDGE_THREAD_KEEP_ALIVE_SECONDS = 60;
+    // the budget is expressed in thousandths of a hedge, and allows a burst of 10 hedges
+    private static final long BUDGET_PER_HEDGE = 1_000;
+    private static final long MAX_BUDGET = 10 * BUDGET_PER_HEDGE;
+
+    private static volatile ScheduledThreadPoolExecutor scheduler;
+    private static volatile ExecutorService executor;
+
+    private final String jndiName;
+    private final List<RoutingTarget> targets;
+    private final AtomicInteger nextTarget;
+    private final long delayNanos;
+    private final double percentile;
+    private final long budgetPerQuery;
+    private final AtomicLong budget;
+    private final HedgeMetrics metrics;
+
+    /**
+     * Creates a new hedging datasource.
+     *
+     * @param jndiName      the JNDI name of this datasource, also used to publish its metrics
+     * @param dataSources   the datasources, indexed by name; at least two are required
+     * @param delayMillis   the hedge delay used until the percentile can be computed
+     * @param percentile    the percentile of the latency of the queries used as hedge delay, or zero to always use
+     *                      the fixed delay
+     * @param budgetPercent the maximum percentage of queries that can be hedged
+     */
+    public HedgingDataSource(final String jndiName, final Map<String, DataSource> dataSources,
+        final long delayMillis, final double percentile, final double budgetPercent)
+    {
+        super(getFirstDataSource(jndiName, dataSources));
+        this.jndiName = jndiName;
+        final List<RoutingTarget> list = new ArrayList<>(dataSources.size());
+        dataSources.forEach((name, dataSource) -> list.add(new RoutingTarget(name, dataSource)));
+        this.targets = Collections.unmodifiableList(list);
+        this.nextTarget = new AtomicInteger();
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        this.percentile = percentile;
+        this.budgetPerQuery = Math.round(budgetPercent * BUDGET_PER_HEDGE / 100);
+        this.budget = new AtomicLong(MAX_BUDGET);
+        this.metrics = MetricsRegistry.getOrCreateHedgeMetrics(jndiName);
+    }
+
+    private static DataSource getFirstDataSource(final String jndiName, final Map<String, DataSource> dataSources) {
+        if (dataSources.size() < 2) {
+            throw new IllegalArgumentException(String.format("[%s] At least two datasources are required", jndiName));
+        }
+        return dataSources.values().iterator().next();
+    }
+
+    private static ScheduledThreadPoolExecutor getScheduler() {
+        ScheduledThreadPoolExecutor result = scheduler;
+        if (Objects.isNull(result)) {
+            synchronized (HedgingDataSource.class) {
+                result = scheduler;
+                if (Objects.isNull(result)) {
+                    result = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        final Thread thread = new Thread(runnable, "standalone-jndi-hedge-scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    // most of the hedges are cancelled because the query completes before the delay
+                    result.setRemoveOnCancelPolicy(true);
+                    scheduler = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static ExecutorService getExecutor() {
+        ExecutorService result = executor;
+        if (Objects.isNull(result)) {
+            synchronized (HedgingDataSource.class) {
+                result = executor;
+                if (Objects.isNull(result)) {
+                    result = new ThreadPoolExecutor(0, MAX_HEDGE_THREADS, HEDGE_THREAD_KEEP_ALIVE_SECONDS,
+                                                    TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                            final Thread thread = new Thread(runnable, "standalone-jndi-hedge");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                    executor = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(null, null);
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        final int index = Math.floorMod(nextTarget.getAndIncrement(), targets.size());
+        return new HedgingConnection(this, index, targets.get(index).getConnection(username, password), username,
+                                     password);
+    }
+
+    /**
+     * Returns the metrics of the hedges sent by this datasource.
+     *
+     * @return the hedge metrics
+     */
+    public HedgeMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return "HedgingDataSource[" + targets + "]";
+    }
+
+    /**
+     * Obtains a connection to execute the hedge of a query.
+     *
+     * @param index    the index of the datasource that executes the query
+     * @param username the user on whose behalf the connection is being made, or <code>null</code> to use the
+     *                 default user
+     * @param password the user's password
+     * @return a connection of the next datasource
+     * @throws SQLException if the connection cannot be obtained
+     */
+    /* default */ Connection getHedgeConnection(final int index, final String username, final String password)
+        throws SQLException
+    {
+        return targets.get(getHedgeIndex(index)).getConnection(username, password);
+    }
+
+    /* default */ int getHedgeIndex(final int index) {
+        return (index + 1) % targets.size();
+    }
+
+    /**
+     * Returns the time to wait for a query before sending its hedge.
+     *
+     * @return the hedge delay, in nanoseconds
+     */
+    /* default */ long getHedgeDelayNanos() {
+        if (percentile > 0 && metrics.getPrimaryLatency().getCount() >= MIN_SAMPLES) {
+            return (long) (metrics.getPrimaryLatency().getPercentileMillis(percentile) * TimeUnit.MILLISECONDS
+                .toNanos(1));
+        }
+        return delayNanos;
+    }
+
+    /* default */ String getJndiName() {
+        return jndiName;
+    }
+
+    /**
+     * Records a new query and increases the hedge budget accordingly.
+     */
+    /* default */ void onQuery() {
+        metrics.recordQuery();
+        budget.accumulateAndGet(budgetPerQuery, (current, delta) -> Math.min(MAX_BUDGET, current + delta));
+    }
+
+    /**
+     * Closes a connection obtained from one of the datasources.
+     *
+     * @param index      the index of the datasource
+     * @param connection the connection
+     * @throws SQLException if the connection cannot be closed
+     */
+    /* default */ void release(final int index, final Connection connection) throws SQLException {
+        targets.get(index).release(connection);
+    }
+
+    /**
+     * Schedules the hedge of a query.
+     *
+     * @param task the task that sends the hedge
+     * @return the scheduled task, to be cancelled if the query completes before the delay
+     */
+    /* default */ ScheduledFuture<?> scheduleHedge(final Runnable task) {
+        return getScheduler().schedule(() -> sendHedge(task), getHedgeDelayNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void sendHedge(final Runnable task) {
+        try {
+            getExecutor().execute(task);
+        } catch (final RejectedExecutionException e) {
+            LOGGER.debug("[{}] Hedge not sent, all the hedge threads are busy", jndiName);
+        }
+    }
+
+    /**
+     * Consumes the budget of one hedge, if available.
+     *
+     * @return <code>true</code> if the hedge can be sent
+     */
+    /* default */ boolean tryAcquireHedge() {
+        long current = budget.get();
+        while (current >= BUDGET_PER_HEDGE) {
+            if (budget.compareAndSet(current, current - BUDGET_PER_HEDGE)) {
+                metrics.recordHedge();
+                return true;
+            }
+            current = budget.get();
+        }
+        metrics.recordBudgetRejection();
+        return false;
+    }
+}
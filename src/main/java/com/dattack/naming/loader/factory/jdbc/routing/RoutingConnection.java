@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.routing;
+
+import com.dattack.jtoolbox.jdbc.internal.NamedPreparedStatement;
+import com.dattack.jtoolbox.jdbc.internal.ProxyConnection;
+import com.dattack.naming.loader.factory.jdbc.dbcp.DbcpProxyConnection;
+import com.dattack.naming.loader.factory.jdbc.routing.RoutingDataSource.Route;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+
+/**
+ * The connection handed out by a {@link RoutingDataSource}. No physical connection is borrowed until one is needed,
+ * typically when the first statement is created: until then, the read-only mode, the auto-commit mode and the
+ * transaction isolation level are only recorded, and the connection is borrowed once from the primary or from a
+ * replica. If the physical connection was borrowed before creating any statement (e.g. to read its metadata),
+ * changing the read-only mode moves it to the primary or to a replica, carrying over the settings made so far.
+ * Once a statement is created, the connection stays on the same datasource until it is closed.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+@SuppressWarnings({ "PMD.TooManyMethods", "PMD.ExcessivePublicCount" })
+/* default */ final class RoutingConnection implements ProxyConnection {
+
+    private static final int UNSET = -1;
+
+    private final RoutingDataSource dataSource;
+    private final String username;
+    private final String password;
+    private Route route;
+    private Connection unborrowed;
+    private boolean readOnly;
+    private Boolean autoCommit;
+    private int transactionIsolation;
+    private boolean used;
+    private boolean closed;
+
+    /**
+     * Creates a new connection.
+     *
+     * @param dataSource the datasource that created this connection
+     * @param readOnly   whether the connection must be obtained from a replica
+     * @param username   the user on whose behalf the connection was made, or <code>null</code> for the default user
+     * @param password   the user's password
+     */
+    /* default */ RoutingConnection(final RoutingDataSource dataSource, final boolean readOnly, final String username,
+        final String password)
+    {
+        this.dataSource = dataSource;
+        this.readOnly = readOnly;
+        this.username = username;
+        this.password = password;
+        this.transactionIsolation = UNSET;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (!closed) {
+            closed = true;
+            if (Objects.nonNull(route)) {
+                route.release();
+            }
+        }
+    }
+
+    @Override
+    public Statement createStatement() throws SQLException {
+        used = true;
+        return borrow().createStatement();
+    }
+
+    @Override
+    public Statement createStatement(final int resultSetType, final int resultSetConcurrency) throws SQLException {
+        used = true;
+        return borrow().createStatement(resultSetType, resultSetConcurrency);
+    }
+
+    @Override
+    public Statement createStatement(final int resultSetType, final int resultSetConcurrency,
+        final int resultSetHoldability) throws SQLException
+    {
+        used = true;
+        return borrow().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+    }
+
+    @Override
+    public Connection getDelegate() {
+        if (Objects.nonNull(route)) {
+            return route.getConnection();
+        }
+        if (Objects.isNull(unborrowed)) {
+            // stands in for the physical connection until it is borrowed by the first method that needs it
+            unborrowed = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                              new Class<?>[]{ Connection.class },
+                                                              this::invokeUnborrowed);
+        }
+        return unborrowed;
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return closed || Objects.nonNull(route) && route.getConnection().isClosed();
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        // some drivers ignore the read-only hint, so the mode is the one used to route this connection
+        return readOnly;
+    }
+
+    @Override
+    public CallableStatement prepareCall(final String sql) throws SQLException {
+        used = true;
+        return borrow().prepareCall(sql);
+    }
+
+    @Override
+    public CallableStatement prepareCall(final String sql, final int resultSetType, final int resultSetConcurrency)
+        throws SQLException
+    {
+        used = true;
+        return borrow().prepareCall(sql, resultSetType, resultSetConcurrency);
+    }
+
+    @Override
+    public CallableStatement prepareCall(final String sql, final int resultSetType, final int resultSetConcurrency,
+        final int resultSetHoldability) throws SQLException
+    {
+        used = true;
+        return borrow().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+    }
+
+    @Override
+    @SuppressWarnings("PMD.CloseResource")
+    public NamedPreparedStatement prepareNamedStatement(final String sql) throws SQLException {
+        used = true;
+        final Connection connection = borrow();
+        if (connection instanceof ProxyConnection) {
+            return ((ProxyConnection) connection).prepareNamedStatement(sql);
+        }
+        return DbcpProxyConnection.build(connection).prepareNamedStatement(sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql) throws SQLException {
+        used = true;
+        return borrow().prepareStatement(sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql, final int resultSetType,
+        final int resultSetConcurrency) throws SQLException
+    {
+        used = true;
+        return borrow().prepareStatement(sql, resultSetType, resultSetConcurrency);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql, final int resultSetType,
+        final int resultSetConcurrency, final int resultSetHoldability) throws SQLException
+    {
+        used = true;
+        return borrow().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql, final int autoGeneratedKeys) throws SQLException {
+        used = true;
+        return borrow().prepareStatement(sql, autoGeneratedKeys);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql, final int[] columnIndexes) throws SQLException {
+        used = true;
+        return borrow().prepareStatement(sql, columnIndexes);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql, final String[] columnNames) throws SQLException {
+        used = true;
+        return borrow().prepareStatement(sql, columnNames);
+    }
+
+    @Override
+    public void setAutoCommit(final boolean value) throws SQLException {
+        if (Objects.nonNull(route)) {
+            route.getConnection().setAutoCommit(value);
+        }
+        this.autoCommit = value;
+    }
+
+    @Override
+    public void setReadOnly(final boolean value) throws SQLException {
+        if (Objects.nonNull(route)) {
+            if (value != readOnly && !used && !closed && dataSource.hasReplicas()) {
+                reroute(value);
+            }
+            route.getConnection().setReadOnly(value);
+        }
+        this.readOnly = value;
+    }
+
+    @Override
+    public void setTransactionIsolation(final int level) throws SQLException {
+        if (Objects.nonNull(route)) {
+            route.getConnection().setTransactionIsolation(level);
+        }
+        this.transactionIsolation = level;
+    }
+
+    @Override
+    public String toString() {
+        if (Objects.isNull(route)) {
+            return "RoutingConnection[not borrowed]";
+        }
+        return "RoutingConnection[" + route.getTarget() + ": " + route.getConnection() + "]";
+    }
+
+    /**
+     * Returns the physical connection, borrowing it from the primary or from a replica, depending on the read-only
+     * mode, if it was not borrowed yet.
+     *
+     * @return the physical connection
+     * @throws SQLException if the connection is closed or the physical connection cannot be obtained or configured
+     */
+    private Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection is closed", "08003");
+        }
+        if (Objects.isNull(route)) {
+            final Route newRoute = dataSource.connect(readOnly, username, password);
+            try {
+                configure(newRoute.getConnection());
+                if (readOnly) {
+                    newRoute.getConnection().setReadOnly(true);
+                }
+            } catch (final SQLException e) {
+                newRoute.release();
+                throw e;
+            }
+            route = newRoute;
+        }
+        return route.getConnection();
+    }
+
+    /**
+     * Applies the auto-commit mode and the transaction isolation level set so far to a new physical connection.
+     *
+     * @param connection the physical connection
+     * @throws SQLException if a database access error occurs
+     */
+    private void configure(final Connection connection) throws SQLException {
+        if (Objects.nonNull(autoCommit)) {
+            connection.setAutoCommit(autoCommit);
+        }
+        if (transactionIsolation != UNSET) {
+            connection.setTransactionIsolation(transactionIsolation);
+        }
+    }
+
+    private Object invokeUnborrowed(final Object proxy, final Method method, final Object... args) throws Throwable {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0]; // NOPMD - identity comparison intended
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return toString();
+            default:
+                try {
+                    return method.invoke(borrow(), args);
+                } catch (final InvocationTargetException e) {
+                    throw e.getCause();
+                }
+        }
+    }
+
+    /**
+     * Replaces the current connection with one obtained from the primary or from a replica.
+     *
+     * @param toReplica whether the new connection must be obtained from a replica
+     * @throws SQLException if the new connection cannot be obtained or configured
+     */
+    private void reroute(final boolean toReplica) throws SQLException {
+        final Route newRoute = dataSource.connect(toReplica, username, password);
+        if (newRoute.getTarget() == route.getTarget()) { // NOPMD - identity comparison intended
+            // no replica available, so the connection stays on the primary
+            newRoute.release();
+            return;
+        }
+
+        try {
+            configure(newRoute.getConnection());
+        } catch (final SQLException e) {
+            newRoute.release();
+            throw e;
+        }
+
+        final Route oldRoute = route;
+        route = newRoute;
+        oldRoute.release();
+    }
+}
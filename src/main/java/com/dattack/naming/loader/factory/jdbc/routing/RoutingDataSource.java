@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.routing;
+
+import com.dattack.jtoolbox.jdbc.AbstractDataSourceDecorator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+/**
+ * A datasource that routes the connections between a primary datasource and a set of read-only replicas. The
+ * connections are obtained from the primary unless they are read-only: {@link #getReadOnlyConnection()} obtains the
+ * connection from a replica, and so does {@link Connection#setReadOnly(boolean)} when it is invoked before creating
+ * any statement. The physical connection is only borrowed when it is first needed, so the datasource is chosen once,
+ * with the read-only mode set at that time. The replica used is the one with the fewest connections in use; if no
+ * replica is available, the primary is used instead. A replica that fails to provide a connection is skipped for a
+ * backoff period that grows with each consecutive failure.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class RoutingDataSource extends AbstractDataSourceDecorator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutingDataSource.class);
+
+    private final String jndiName;
+    private final RoutingTarget primary;
+    private final List<RoutingTarget> replicas;
+    private final AtomicInteger nextReplica;
+
+    /**
+     * Creates a new routing datasource.
+     *
+     * @param jndiName the JNDI name of this datasource, used in the log messages
+     * @param primary  the datasource that executes the writes
+     * @param replicas the read-only replicas, indexed by name
+     */
+    public RoutingDataSource(final String jndiName, final DataSource primary, final Map<String, DataSource> replicas) {
+        super(primary);
+        this.jndiName = jndiName;
+        this.primary = new RoutingTarget(jndiName, primary);
+        final List<RoutingTarget> list = new ArrayList<>(replicas.size());
+        replicas.forEach((name, dataSource) -> list.add(new RoutingTarget(name, dataSource)));
+        this.replicas = Collections.unmodifiableList(list);
+        this.nextReplica = new AtomicInteger();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return new RoutingConnection(this, false, null, null);
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        return new RoutingConnection(this, false, username, password);
+    }
+
+    /**
+     * Attempts to establish a read-only connection to one of the replicas.
+     *
+     * @return a read-only connection
+     * @throws SQLException if a database access error occurs
+     */
+    public Connection getReadOnlyConnection() throws SQLException {
+        return new RoutingConnection(this, true, null, null);
+    }
+
+    /**
+     * Attempts to establish a read-only connection to one of the replicas, on behalf of the given user.
+     *
+     * @param username the database user on whose behalf the connection is being made
+     * @param password the user's password
+     * @return a read-only connection
+     * @throws SQLException if a database access error occurs
+     */
+    public Connection getReadOnlyConnection(final String username, final String password) throws SQLException {
+        return new RoutingConnection(this, true, username, password);
+    }
+
+    /**
+     * Returns the number of connections in use for each of the datasources, starting with the primary.
+     *
+     * @return the number of connections in use
+     */
+    /* default */ int[] getOutstanding() {
+        final int[] result = new int[replicas.size() + 1];
+        result[0] = primary.getOutstanding();
+        for (int i = 0; i < replicas.size(); i++) {
+            result[i + 1] = replicas.get(i).getOutstanding();
+        }
+        return result;
+    }
+
+    /* default */ boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * Obtains a connection from the primary or from the least loaded replica.
+     *
+     * @param readOnly whether the connection is read-only
+     * @param username the user on whose behalf the connection is being made, or <code>null</code> to use the
+     *                 default user
+     * @param password the user's password
+     * @return the connection and the datasource that provided it
+     * @throws SQLException if the connection cannot be obtained
+     */
+    /* default */ Route connect(final boolean readOnly, final String username, final String password)
+        throws SQLException
+    {
+        if (readOnly) {
+            for (final RoutingTarget replica : sortReplicas()) {
+                if (!replica.tryAcquire()) {
+                    continue;
+                }
+                try {
+                    return new Route(replica, replica.getConnection(username, password));
+                } catch (final SQLException e) {
+                    LOGGER.warn("[{}] Unable to obtain a connection from the replica '{}': {}", jndiName, replica,
+                                e.getMessage());
+                }
+            }
+        }
+        return new Route(primary, primary.getConnection(username, password));
+    }
+
+    /**
+     * Returns the replicas in the order they must be tried: by number of connections in use and, in case of a tie,
+     * in round-robin order. The numbers are read once, as they change while sorting.
+     *
+     * @return the sorted replicas
+     */
+    private List<RoutingTarget> sortReplicas() {
+        final int size = replicas.size();
+        final List<RoutingTarget> result = new ArrayList<>(size);
+        if (size > 0) {
+            final int start = Math.floorMod(nextReplica.getAndIncrement(), size);
+            // the load in the high bits and the round-robin position in the low bits
+            final long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                final int index = (start + i) % size;
+                keys[i] = (long) Math.max(0, replicas.get(index).getOutstanding()) << Integer.SIZE | index;
+            }
+            Arrays.sort(keys);
+            for (final long key : keys) {
+                result.add(replicas.get((int) key));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "RoutingDataSource[primary=" + primary + ", replicas=" + replicas + "]";
+    }
+
+    /**
+     * A connection obtained by a {@link RoutingDataSource} and the datasource that provided it.
+     */
+    /* default */ static final class Route {
+
+        private final RoutingTarget target;
+        private final Connection connection;
+
+        private Route(final RoutingTarget target, final Connection connection) {
+            this.target = target;
+            this.connection = connection;
+        }
+
+        /* default */ Connection getConnection() {
+            return connection;
+        }
+
+        /* default */ RoutingTarget getTarget() {
+            return target;
+        }
+
+        /**
+         * Closes the connection and updates the number of connections in use of its datasource.
+         *
+         * @throws SQLException if the connection cannot be closed
+         */
+        /* default */ void release() throws SQLException {
+            target.release(connection);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.routing;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+
+/**
+ * One of the datasources a {@link RoutingDataSource} routes the connections to, together with the number of its
+ * connections currently in use. A datasource that fails to provide a connection is skipped for a backoff period that
+ * doubles with each consecutive failure, from one second up to thirty; once it has elapsed, a single request is
+ * allowed through to probe it.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+/* default */ final class RoutingTarget {
+
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(30);
+    // 1 << 5 seconds already exceeds the maximum backoff
+    private static final int MAX_BACKOFF_SHIFT = 5;
+
+    private final String name;
+    private final DataSource dataSource;
+    private final AtomicInteger outstanding;
+    private final AtomicInteger consecutiveFailures;
+    private final AtomicLong retryNanos;
+
+    /* default */ RoutingTarget(final String name, final DataSource dataSource) {
+        this.name = name;
+        this.dataSource = Objects.requireNonNull(dataSource);
+        this.outstanding = new AtomicInteger();
+        this.consecutiveFailures = new AtomicInteger();
+        this.retryNanos = new AtomicLong();
+    }
+
+    private static long getBackoffNanos(final int failures) {
+        return Math.min(MAX_BACKOFF_NANOS, MIN_BACKOFF_NANOS << Math.min(failures - 1, MAX_BACKOFF_SHIFT));
+    }
+
+    /**
+     * Obtains a connection from the datasource. The connection must be returned with {@link #release(Connection)}.
+     *
+     * @param username the user on whose behalf the connection is being made, or <code>null</code> to use the
+     *                 default user
+     * @param password the user's password
+     * @return the connection
+     * @throws SQLException if the connection cannot be obtained
+     */
+    /* default */ Connection getConnection(final String username, final String password) throws SQLException {
+        // reserved in advance, so that the concurrent requests do not all choose this datasource while it connects
+        outstanding.incrementAndGet();
+        boolean success = false;
+        try {
+            final Connection connection = Objects.isNull(username) ? dataSource.getConnection()
+                : dataSource.getConnection(username, password);
+            success = true;
+            return connection;
+        } finally {
+            if (success) {
+                consecutiveFailures.set(0);
+            } else {
+                outstanding.decrementAndGet();
+                final int failures = consecutiveFailures.incrementAndGet();
+                retryNanos.set(System.nanoTime() + getBackoffNanos(failures));
+            }
+        }
+    }
+
+    /* default */ String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of connections obtained from the datasource that have not been released yet.
+     *
+     * @return the number of connections in use
+     */
+    /* default */ int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * Checks whether a connection can be requested to this datasource, that is, whether it has not failed or its
+     * backoff period has elapsed. Once elapsed, only the first caller is allowed through until the probe completes.
+     *
+     * @return <code>true</code> if a connection can be requested
+     */
+    /* default */ boolean tryAcquire() {
+        if (consecutiveFailures.get() == 0) {
+            return true;
+        }
+        final long now = System.nanoTime();
+        final long retry = retryNanos.get();
+        // the probe either succeeds or sets a new backoff period when it fails
+        return now - retry >= 0 && retryNanos.compareAndSet(retry, now + MAX_BACKOFF_NANOS);
+    }
+
+    /**
+     * Closes a connection obtained with {@link #getConnection(String, String)}.
+     *
+     * @param connection the connection to close
+     * @throws SQLException if the connection cannot be closed
+     */
+    /* default */ void release(final Connection connection) throws SQLException {
+        try {
+            connection.close();
+        } finally {
+            outstanding.decrementAndGet();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.routing;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The mapping between the shard keys of the application and the shards of a {@link ShardedDataSource}.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public abstract class ShardMap {
+
+    private final int shardCount;
+
+    protected ShardMap(final int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("The number of shards must be greater than zero");
+        }
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Creates a map that distributes the keys by their hash. The integral numbers are distributed by their value, so
+     * that the key <i>k</i> is stored in the shard <i>k mod shardCount</i>.
+     *
+     * @param shardCount the number of shards
+     * @return the shard map
+     */
+    public static ShardMap hash(final int shardCount) {
+        return new HashShardMap(shardCount);
+    }
+
+    /**
+     * Creates a map that distributes numeric keys by range. The shard 0 stores the keys lower than the first bound,
+     * the shard <i>i</i> stores the keys between the bound <i>i - 1</i> (inclusive) and the bound <i>i</i>
+     * (exclusive), and the last shard stores the keys greater than or equal to the last bound.
+     *
+     * @param lowerBounds the lower bound of each shard but the first one, in ascending order
+     * @return the shard map
+     */
+    public static ShardMap range(final long... lowerBounds) {
+        return new RangeShardMap(lowerBounds);
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the number of shards
+     */
+    public final int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Returns the shard that stores a key.
+     *
+     * @param shardKey the shard key, not <code>null</code>
+     * @return the index of the shard, between 0 and {@link #getShardCount()} - 1
+     * @throws IllegalArgumentException if the key cannot be mapped to a shard
+     */
+    public abstract int getShard(Object shardKey);
+
+    /**
+     * Distributes the keys by their hash.
+     */
+    private static final class HashShardMap extends ShardMap {
+
+        /* default */ HashShardMap(final int shardCount) {
+            super(shardCount);
+        }
+
+        @Override
+        public int getShard(final Object shardKey) {
+            Objects.requireNonNull(shardKey, "The shard key must not be null");
+            if (shardKey instanceof Long || shardKey instanceof Integer || shardKey instanceof Short
+                || shardKey instanceof Byte)
+            {
+                return (int) Math.floorMod(((Number) shardKey).longValue(), (long) getShardCount());
+            }
+            return Math.floorMod(shardKey.hashCode(), getShardCount());
+        }
+
+        @Override
+        public String toString() {
+            return "hash(" + getShardCount() + ")";
+        }
+    }
+
+    /**
+     * Distributes the numeric keys by range.
+     */
+    private static final class RangeShardMap extends ShardMap {
+
+        private final long[] lowerBounds;
+
+        /* default */ RangeShardMap(final long... lowerBounds) {
+            super(lowerBounds.length + 1);
+            for (int i = 1; i < lowerBounds.length; i++) {
+                if (lowerBounds[i - 1] >= lowerBounds[i]) {
+                    throw new IllegalArgumentException("The bounds of the shards must be in ascending order");
+                }
+            }
+            this.lowerBounds = lowerBounds.clone();
+        }
+
+        @Override
+        public int getShard(final Object shardKey) {
+            if (!(shardKey instanceof Number)) {
+                throw new IllegalArgumentException(String.format("Invalid shard key: %s", shardKey));
+            }
+            final int index = Arrays.binarySearch(lowerBounds, ((Number) shardKey).longValue());
+            // a key equal to a bound belongs to the next shard
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+
+        @Override
+        public String toString() {
+            return "range" + Arrays.toString(lowerBounds);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.routing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+/**
+ * A datasource that routes each connection to one of a set of shards, as set by a {@link ShardMap}. The shard key is
+ * either passed explicitly to {@link #getConnection(Object)} or set for the current thread with
+ * {@link #setShardKey(Object)}. The datasource of each shard is located the first time it is used, so that the pools
+ * of the shards never used by the process are not created.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class ShardedDataSource implements DataSource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedDataSource.class);
+
+    private static final ThreadLocal<Object> SHARD_KEY = new ThreadLocal<>();
+
+    private final String jndiName;
+    private final ShardMap shardMap;
+    private final List<String> shardNames;
+    private final ShardLocator locator;
+    private final AtomicReferenceArray<DataSource> shards;
+    private volatile PrintWriter logWriter;
+
+    /**
+     * Creates a new sharded datasource.
+     *
+     * @param jndiName   the JNDI name of this datasource, used in the log messages
+     * @param shardMap   the mapping between the shard keys and the shards
+     * @param shardNames the names of the shards, as expected by the locator
+     * @param locator    the locator of the datasource of each shard
+     */
+    public ShardedDataSource(final String jndiName, final ShardMap shardMap, final List<String> shardNames,
+        final ShardLocator locator)
+    {
+        if (shardMap.getShardCount() != shardNames.size()) {
+            throw new IllegalArgumentException(String.format("[%s] The shard map expects %d shards, but %d are set",
+                                                             jndiName, shardMap.getShardCount(), shardNames.size()));
+        }
+        this.jndiName = jndiName;
+        this.shardMap = shardMap;
+        this.shardNames = Collections.unmodifiableList(new ArrayList<>(shardNames));
+        this.locator = locator;
+        this.shards = new AtomicReferenceArray<>(shardNames.size());
+    }
+
+    /**
+     * Removes the shard key of the current thread.
+     */
+    public static void clearShardKey() {
+        SHARD_KEY.remove();
+    }
+
+    /**
+     * Returns the shard key of the current thread.
+     *
+     * @return the shard key, or <code>null</code> if none is set
+     */
+    public static Object getShardKey() {
+        return SHARD_KEY.get();
+    }
+
+    /**
+     * Sets the shard key used by {@link #getConnection()} in the current thread. It must be removed with
+     * {@link #clearShardKey()} once the thread is done with the shard.
+     *
+     * @param shardKey the shard key, or <code>null</code> to remove it
+     */
+    public static void setShardKey(final Object shardKey) {
+        if (Objects.isNull(shardKey)) {
+            SHARD_KEY.remove();
+        } else {
+            SHARD_KEY.set(shardKey);
+        }
+    }
+
+    private static Object requireShardKey() throws SQLException {
+        final Object shardKey = SHARD_KEY.get();
+        if (Objects.isNull(shardKey)) {
+            throw new SQLException("No shard key set for the current thread");
+        }
+        return shardKey;
+    }
+
+    /**
+     * Attempts to establish a connection to the shard selected by the shard key of the current thread.
+     *
+     * @return a connection to the shard
+     * @throws SQLException if no shard key is set or a database access error occurs
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getShard(requireShardKey()).getConnection();
+    }
+
+    /**
+     * Attempts to establish a connection to the shard selected by the shard key of the current thread, on behalf of
+     * the given user.
+     *
+     * @param username the database user on whose behalf the connection is being made
+     * @param password the user's password
+     * @return a connection to the shard
+     * @throws SQLException if no shard key is set or a database access error occurs
+     */
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        return getShard(requireShardKey()).getConnection(username, password);
+    }
+
+    /**
+     * Attempts to establish a connection to the shard that stores the given key.
+     *
+     * @param shardKey the shard key
+     * @return a connection to the shard
+     * @throws SQLException if a database access error occurs
+     */
+    public Connection getConnection(final Object shardKey) throws SQLException {
+        return getShard(shardKey).getConnection();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /**
+     * Returns the datasource of the shard that stores the given key, locating it if it is the first time it is used.
+     *
+     * @param shardKey the shard key
+     * @return the datasource of the shard
+     * @throws SQLException if the key cannot be mapped to a shard or the datasource of the shard cannot be located
+     */
+    public DataSource getShard(final Object shardKey) throws SQLException {
+        final int index;
+        try {
+            index = shardMap.getShard(shardKey);
+        } catch (final IllegalArgumentException | NullPointerException e) {
+            throw new SQLException(String.format("[%s] %s", jndiName, e.getMessage()), e);
+        }
+
+        DataSource dataSource = shards.get(index);
+        if (Objects.isNull(dataSource)) {
+            dataSource = locate(index);
+        }
+        return dataSource;
+    }
+
+    /**
+     * Checks whether the datasource of a shard has already been located.
+     *
+     * @param index the index of the shard
+     * @return <code>true</code> if the shard has been used
+     */
+    /* default */ boolean isLocated(final int index) {
+        return Objects.nonNull(shards.get(index));
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    @Override
+    public void setLogWriter(final PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(final int seconds) throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedDataSource[shardMap=" + shardMap + ", shards=" + shardNames + "]";
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException(String.format("Unable to unwrap to %s", iface));
+    }
+
+    private DataSource locate(final int index) throws SQLException {
+        final String name = shardNames.get(index);
+        try {
+            final DataSource dataSource = locator.lookup(name);
+            if (Objects.isNull(dataSource)) {
+                throw new SQLException(String.format("[%s] Shard '%s' not found", jndiName, name));
+            }
+            if (shards.compareAndSet(index, null, dataSource)) {
+                LOGGER.debug("[{}] Shard {} located: '{}'", jndiName, index, name);
+                return dataSource;
+            }
+            return shards.get(index);
+        } catch (final NamingException e) {
+            throw new SQLException(String.format("[%s] Unable to locate the shard '%s': %s", jndiName, name,
+                                                 e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Locates the datasource of a shard by its name.
+     */
+    @FunctionalInterface
+    public interface ShardLocator {
+
+        /**
+         * Returns the datasource of a shard.
+         *
+         * @param name the name of the shard
+         * @return the datasource of the shard
+         * @throws NamingException if the datasource cannot be located
+         */
+        DataSource lookup(String name) throws NamingException;
+    }
+}
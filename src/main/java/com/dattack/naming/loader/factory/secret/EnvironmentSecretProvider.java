@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.secret;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A {@link SecretProvider} that reads the secrets from environment variables (<i>secret:env:VARIABLE_NAME</i>).
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class EnvironmentSecretProvider implements SecretProvider {
+
+    public static final String NAME = "env";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getSecret(final String name) throws IOException {
+        final String value = System.getenv(name);
+        if (Objects.isNull(value)) {
+            throw new IOException(String.format("Environment variable '%s' not defined", name));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.secret;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * A {@link SecretProvider} that reads each secret from its own file (<i>secret:file:/path/to/file</i>), as done by
+ * Docker or Kubernetes secrets. The trailing line terminators of the file are ignored.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class FileSecretProvider implements SecretProvider {
+
+    public static final String NAME = "file";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getSecret(final String name) throws IOException {
+        final String content = new String(Files.readAllBytes(Paths.get(name)), StandardCharsets.UTF_8);
+        return StringUtils.stripEnd(content, "\r\n");
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.secret;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * The cached value of a secret obtained from a {@link SecretProvider}. The value can be refreshed, in which case the
+ * registered listeners are notified if it has changed.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class Secret {
+
+    private final SecretProvider provider;
+    private final String name;
+    private final List<Consumer<String>> listeners;
+    private final AtomicBoolean scheduled;
+    private volatile String value;
+
+    /* default */ Secret(final SecretProvider provider, final String name) throws IOException {
+        this.provider = provider;
+        this.name = name;
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.scheduled = new AtomicBoolean(false);
+        this.value = provider.getSecret(name);
+    }
+
+    /**
+     * Registers a listener to be notified with the new value every time the value of this secret changes.
+     *
+     * @param listener the listener
+     */
+    public void addListener(final Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the cached value of this secret.
+     *
+     * @return the cached value of this secret
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Reads the value of this secret again from its provider and notifies the listeners if it has changed.
+     *
+     * @throws IOException if the secret cannot be read, the cached value is kept
+     */
+    public void refresh() throws IOException {
+        final String newValue = provider.getSecret(name);
+        if (!Objects.equals(value, newValue)) {
+            value = newValue;
+            listeners.forEach(listener -> listener.accept(newValue));
+        }
+    }
+
+    /* default */ boolean markScheduled() {
+        return scheduled.compareAndSet(false, true);
+    }
+
+    @Override
+    public String toString() {
+        return provider.getName() + ":" + name;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.secret;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.naming.ConfigurationException;
+import javax.naming.NamingException;
+
+/**
+ * Resolves the references to secrets (<strong>secret:</strong><i>provider</i>:<i>name</i>) and caches their values for
+ * the whole process. Secrets can be refreshed periodically by a background thread; the refresh never blocks the
+ * threads that are reading the cached value.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public final class SecretManager {
+
+    public static final String SECRET_PREFIX = "secret:";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SecretManager.class);
+
+    private static final ConcurrentMap<String, Secret> SECRETS = new ConcurrentHashMap<>();
+
+    private static volatile ScheduledExecutorService scheduler;
+
+    private SecretManager() {
+        // static class
+    }
+
+    /**
+     * Checks if a configuration value is a reference to a secret.
+     *
+     * @param value the configuration value
+     * @return <code>true</code> if the value is a reference to a secret
+     */
+    public static boolean isSecretReference(final String value) {
+        return StringUtils.startsWithIgnoreCase(value, SECRET_PREFIX);
+    }
+
+    /**
+     * Returns the secret referenced by a configuration value.
+     *
+     * @param reference      the reference to the secret (<i>secret:provider:name</i>)
+     * @param refreshSeconds the number of seconds between two consecutive refreshes of the secret, or zero to never
+     *                       refresh it. Only the first non-zero value requested for a given secret is used.
+     * @return the secret
+     * @throws NamingException if the provider is unknown or the secret cannot be read
+     */
+    public static Secret getSecret(final String reference, final long refreshSeconds) throws NamingException {
+
+        final String key = reference.substring(SECRET_PREFIX.length());
+        Secret secret = SECRETS.get(key);
+        if (Objects.isNull(secret)) {
+            secret = SECRETS.computeIfAbsent(key, SecretManager::createSecret);
+            if (Objects.isNull(secret)) {
+                throw new ConfigurationException(String.format("Unable to resolve the secret '%s'", key));
+            }
+        }
+
+        if (refreshSeconds > 0 && secret.markScheduled()) {
+            final Secret target = secret;
+            getScheduler().scheduleWithFixedDelay(() -> refresh(target), refreshSeconds, refreshSeconds,
+                TimeUnit.SECONDS);
+        }
+        return secret;
+    }
+
+    private static Secret createSecret(final String key) {
+
+        final int index = key.indexOf(':');
+        if (index <= 0) {
+            LOGGER.warn("Invalid secret reference '{}', the expected format is '{}provider:name'", key,
+                SECRET_PREFIX);
+            return null;
+        }
+
+        final SecretProvider provider = SecretProviderRegistry.getProvider(key.substring(0, index));
+        if (Objects.isNull(provider)) {
+            LOGGER.warn("Unknown secret provider '{}'", key.substring(0, index));
+            return null;
+        }
+
+        try {
+            return new Secret(provider, key.substring(index + 1));
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to read the secret '{}': {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private static ScheduledExecutorService getScheduler() {
+        ScheduledExecutorService result = scheduler;
+        if (Objects.isNull(result)) {
+            synchronized (SecretManager.class) {
+                result = scheduler;
+                if (Objects.isNull(result)) {
+                    result = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        final Thread thread = new Thread(runnable, "standalone-jndi-secret-refresh");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    scheduler = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void refresh(final Secret secret) {
+        try {
+            secret.refresh();
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.warn("Unable to refresh the secret '{}', keeping the previous value: {}", secret,
+                e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.secret;
+
+import java.io.IOException;
+
+/**
+ * Interface that must be implemented by all the providers of secrets (e.g. passwords) that can be referenced from the
+ * configuration of the JNDI resources using the format <strong>secret:</strong><i>provider</i>:<i>name</i>.
+ * Implementations can be registered with {@link SecretProviderRegistry#register(SecretProvider)} or through the
+ * {@link java.util.ServiceLoader} mechanism.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+public interface SecretProvider {
+
+    /**
+     * Returns the name used to reference this provider from the configuration.
+     *
+     * @return the name of this provider
+     */
+    String getName();
+
+    /**
+     * Returns the current value of a secret. This method can be invoked periodically from a background thread to
+     * refresh the value of the secret.
+     *
+     * @param name the name of the secret
+     * @return the current value of the secret
+     * @throws IOException if the secret does not exist or cannot be read
+     */
+    String getSecret(String name) throws IOException;
+}
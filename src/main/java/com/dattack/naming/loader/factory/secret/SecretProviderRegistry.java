@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.secret;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry containing the available secret providers.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+@SuppressWarnings("PMD.ClassNamingConventions")
+public final class SecretProviderRegistry {
+
+    private static final Map<String, SecretProvider> MAPPING = new ConcurrentHashMap<>();
+
+    static {
+        // default provider list
+        register(new EnvironmentSecretProvider());
+        register(new FileSecretProvider());
+        for (final SecretProvider provider : ServiceLoader.load(SecretProvider.class)) {
+            register(provider);
+        }
+    }
+
+    private SecretProviderRegistry() {
+        // static class
+    }
+
+    /**
+     * Returns the provider with the given name.
+     *
+     * @param name the name of the provider, may be <code>null</code>
+     * @return the provider, or <code>null</code> if no one exists
+     */
+    @SuppressWarnings("PMD.OnlyOneReturn")
+    public static SecretProvider getProvider(final String name) {
+        if (name == null) {
+            return null;
+        }
+        return MAPPING.get(name);
+    }
+
+    /**
+     * Registers a provider, replacing any other provider with the same name.
+     *
+     * @param provider the provider to register
+     */
+    public static void register(final SecretProvider provider) {
+        MAPPING.put(provider.getName(), provider);
+    }
+}
@@ -15,10 +15,10 @@
  */
 package com.dattack.naming.standalone;
 
-import com.dattack.jtoolbox.commons.configuration.ConfigurationUtil;
 import com.dattack.jtoolbox.io.FilesystemUtils;
 import com.dattack.jtoolbox.util.FilesystemClassLoaderUtils;
 import com.dattack.naming.loader.NamingLoader;
+import com.dattack.naming.loader.factory.EnvSystemConfiguration;
 import org.apache.commons.configuration.BaseConfiguration;
 import org.apache.commons.configuration.CompositeConfiguration;
 import org.apache.commons.configuration.PropertyConverter;
@@ -35,6 +35,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.naming.ConfigurationException;
 import javax.naming.Context;
 import javax.naming.NamingException;
@@ -54,6 +56,9 @@ public final class StandaloneContextFactory implements InitialContextFactory {
     private static final String RESOURCES_DIRECTORY_PROPERTY =
         StandaloneContextFactory.class.getName() + ".resources.directory";
 
+    // guards the creation of the initial context, which may open connections: a virtual thread waiting on it is
+    // unmounted rather than pinned to its carrier thread
+    private static final Lock CONTEXT_LOCK = new ReentrantLock();
     private static volatile Context context;
 
     private static Context createInitialContext(final File dir, final Map<?, ?> environment,
@@ -68,6 +73,7 @@ public final class StandaloneContextFactory implements InitialContextFactory {
 
             FilesystemClassLoaderUtils.ensureClassLoaded(new HashSet<>(extraClasspath));
             loader.loadDirectory(dir, ctx);
+            loader.warmUp();
 
             LOGGER.debug("JNDI context is ready");
 
@@ -84,7 +90,9 @@ public final class StandaloneContextFactory implements InitialContextFactory {
             baseConf.setProperty(ObjectUtils.toString(entry.getKey()), entry.getValue());
         }
 
-        final CompositeConfiguration configuration = ConfigurationUtil.createEnvSystemConfiguration();
+        // the environment and system properties are read once per loader run and shared with all the resources
+        final CompositeConfiguration configuration = new CompositeConfiguration();
+        configuration.addConfiguration(EnvSystemConfiguration.reload());
         configuration.addConfiguration(baseConf);
         return configuration;
     }
@@ -125,10 +133,13 @@ public final class StandaloneContextFactory implements InitialContextFactory {
     public Context getInitialContext(final Hashtable<?, ?> environment) throws NamingException {
 
         if (context == null) {
-            synchronized (StandaloneContextFactory.class) {
+            CONTEXT_LOCK.lock();
+            try {
                 if (context == null) {
                     context = loadInitialContext(getDefaultProperties(environment));
                 }
+            } finally {
+                CONTEXT_LOCK.unlock();
             }
         }
         return context;
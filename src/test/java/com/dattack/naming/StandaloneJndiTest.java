@@ -15,7 +15,15 @@
  */
 package com.dattack.naming;
 
+import com.dattack.naming.loader.NamingLoader;
+import com.dattack.naming.loader.factory.DataSourceWarmUp;
+import com.dattack.naming.standalone.StandaloneContext;
 import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
 import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
@@ -25,6 +33,7 @@ import static com.dattack.junit.AssertionsExt.assertEquals;
 import static com.dattack.junit.AssertionsExt.assertNotNull;
 import static com.dattack.junit.AssertionsExt.assertNull;
 import static com.dattack.junit.AssertionsExt.assertThrows;
+import static com.dattack.junit.AssertionsExt.assertTrue;
 import static com.dattack.junit.AssertionsExt.fail;
 
 /**
@@ -91,6 +100,23 @@ import static com.dattack.junit.AssertionsExt.fail;
         }
     }
 
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+        /* package */ void testSubcontextEnvironment() {
+        try {
+            final InitialContext context = new InitialContext();
+            final Context subcontext = context.createSubcontext("testSubcontextEnvironment");
+            final String key = "testSubcontextEnvironment.key";
+            assertNull(subcontext.addToEnvironment(key, "value"));
+            assertEquals("value", subcontext.getEnvironment().get(key));
+            assertNull(context.getEnvironment().get(key));
+            assertEquals("value", subcontext.removeFromEnvironment(key));
+            assertNull(subcontext.getEnvironment().get(key));
+        } catch (final NamingException e) {
+            fail(e.getMessage());
+        }
+    }
+
     @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
     @Test
         /* package */ void testLookupInvalidContext() {
@@ -139,4 +165,25 @@ import static com.dattack.junit.AssertionsExt.fail;
             fail(e.getMessage());
         }
     }
+
+    @Test
+        /* package */ void testLookupRoutingDataSource() throws NamingException, SQLException {
+        final InitialContext context = new InitialContext();
+        final DataSource dataSource = (DataSource) context.lookup(getCompositeName(VALID_CONTEXT, "rw"));
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(true);
+            assertEquals("jdbc:h2:mem:db2", connection.getMetaData().getURL());
+        }
+    }
+
+    @Test
+        /* package */ void testWarmUpDataSource() throws NamingException, IOException {
+        final NamingLoader loader = new NamingLoader();
+        loader.loadDirectory(new File("src/test/resources/jndi"), new StandaloneContext(Collections.emptyMap()));
+        final DataSourceWarmUp.Result result = loader.warmUp().stream() //
+            .filter(r -> r.getJndiName().endsWith("jdbc/warm")).findFirst().orElse(null);
+        assertNotNull(result);
+        assertTrue(result.isSuccessful(), String.valueOf(result));
+        assertEquals(3, result.getOpenedConnections());
+    }
 }
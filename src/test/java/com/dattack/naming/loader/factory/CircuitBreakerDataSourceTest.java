@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.jtoolbox.jdbc.AbstractDataSourceDecorator;
+import com.dattack.jtoolbox.jdbc.SimpleDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import javax.sql.DataSource;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+import static com.dattack.junit.AssertionsExt.assertFalse;
+import static com.dattack.junit.AssertionsExt.assertThrows;
+import static com.dattack.junit.AssertionsExt.assertTrue;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class CircuitBreakerDataSourceTest {
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testOpenAndClose() throws SQLException, InterruptedException {
+
+        final UnreliableDataSource delegate = new UnreliableDataSource(
+            new SimpleDataSource("org.h2.Driver", "jdbc:h2:mem:testCircuitBreaker", "sa", ""));
+        final CircuitBreakerDataSource dataSource = new CircuitBreakerDataSource(delegate, "testCircuitBreaker", 2,
+                                                                                 100);
+
+        delegate.available = false;
+        assertThrows(SQLException.class, dataSource::getConnection);
+        assertFalse(dataSource.isOpen());
+        assertThrows(SQLException.class, dataSource::getConnection);
+        assertTrue(dataSource.isOpen());
+
+        // the requests are rejected without reaching the delegate
+        delegate.available = true;
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        assertEquals(2, delegate.requests);
+
+        // the probe closes the circuit
+        Thread.sleep(150);
+        try (Connection connection = dataSource.getConnection()) {
+            assertTrue(connection.isValid(1));
+        }
+        assertFalse(dataSource.isOpen());
+        assertEquals(3, delegate.requests);
+    }
+
+    @Test
+    /* package */ void testProbeFailingWithRuntimeException() throws SQLException, InterruptedException {
+
+        final UnreliableDataSource delegate = new UnreliableDataSource(
+            new SimpleDataSource("org.h2.Driver", "jdbc:h2:mem:testCircuitBreakerRuntime", "sa", ""));
+        final CircuitBreakerDataSource dataSource = new CircuitBreakerDataSource(delegate,
+                                                                                 "testCircuitBreakerRuntime", 1, 50);
+        delegate.available = false;
+        assertThrows(SQLException.class, dataSource::getConnection);
+        assertTrue(dataSource.isOpen());
+
+        // a probe that fails with an unchecked exception does not keep the circuit open forever
+        Thread.sleep(100);
+        delegate.unchecked = true;
+        assertThrows(IllegalStateException.class, dataSource::getConnection);
+
+        Thread.sleep(100);
+        delegate.unchecked = false;
+        delegate.available = true;
+        try (Connection connection = dataSource.getConnection()) {
+            assertTrue(connection.isValid(1));
+        }
+        assertFalse(dataSource.isOpen());
+    }
+
+    /**
+     * A datasource that can be made unavailable.
+     */
+    private static final class UnreliableDataSource extends AbstractDataSourceDecorator {
+
+        private volatile boolean available = true;
+        private volatile boolean unchecked;
+        private volatile int requests;
+
+        /* default */ UnreliableDataSource(final DataSource delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            requests++; //NOPMD - only used from the test thread
+            if (unchecked) {
+                throw new IllegalStateException("Pool closed");
+            }
+            if (!available) {
+                throw new SQLException("Database unavailable");
+            }
+            return getDelegate().getConnection();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.jtoolbox.jdbc.AbstractDataSourceDecorator;
+import com.dattack.jtoolbox.jdbc.SimpleDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+import static com.dattack.junit.AssertionsExt.assertFalse;
+import static com.dattack.junit.AssertionsExt.assertThrows;
+import static com.dattack.junit.AssertionsExt.assertTrue;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class FailoverDataSourceTest {
+
+    private static final String PRIMARY_URL = "jdbc:h2:mem:testFailoverPrimary";
+    private static final String SECONDARY_URL = "jdbc:h2:mem:testFailoverSecondary";
+
+    private static String getUrl(final Connection connection) throws SQLException {
+        return connection.getMetaData().getURL();
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testFailoverAndRecovery() throws SQLException {
+
+        final UnreliableDataSource primary = new UnreliableDataSource(
+            new SimpleDataSource("org.h2.Driver", PRIMARY_URL, "sa", ""));
+        final UnreliableDataSource secondary = new UnreliableDataSource(
+            new SimpleDataSource("org.h2.Driver", SECONDARY_URL, "sa", ""));
+        final Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        dataSources.put(PRIMARY_URL, primary);
+        dataSources.put(SECONDARY_URL, secondary);
+        try (FailoverDataSource dataSource = new FailoverDataSource("testFailover", dataSources, 60_000)) {
+            // a failed request marks the primary as unhealthy and is retried with the secondary
+            primary.available = false;
+            try (Connection connection = dataSource.getConnection()) {
+                assertEquals(SECONDARY_URL, getUrl(connection));
+            }
+            assertFalse(dataSource.isHealthy(0));
+
+            // the next requests do not reach the primary until the health check succeeds
+            primary.available = true;
+            try (Connection connection = dataSource.getConnection()) {
+                assertEquals(SECONDARY_URL, getUrl(connection));
+            }
+            assertEquals(1, primary.requests);
+
+            dataSource.checkHealth();
+            assertTrue(dataSource.isHealthy(0));
+            try (Connection connection = dataSource.getConnection()) {
+                assertEquals(PRIMARY_URL, getUrl(connection));
+            }
+        }
+    }
+
+    @Test
+    /* package */ void testOtherErrorsDoNotFailOver() throws SQLException {
+
+        final UnreliableDataSource primary = new UnreliableDataSource(
+            new SimpleDataSource("org.h2.Driver", PRIMARY_URL, "sa", ""));
+        final Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        dataSources.put(PRIMARY_URL, primary);
+        dataSources.put(SECONDARY_URL, new SimpleDataSource("org.h2.Driver", SECONDARY_URL, "sa", ""));
+        try (FailoverDataSource dataSource = new FailoverDataSource("testFailover", dataSources, 60_000)) {
+            // e.g. a timeout waiting for a saturated pool: the database is still reachable
+            primary.available = false;
+            primary.sqlState = null;
+            assertThrows(SQLException.class, dataSource::getConnection);
+            dataSource.checkHealth();
+            assertTrue(dataSource.isHealthy(0));
+        }
+    }
+
+    @Test
+    /* package */ void testIndexedUrls() throws NamingException, SQLException {
+
+        final Properties properties = new Properties();
+        properties.setProperty("driverClassName", "org.h2.Driver");
+        // ordered by their numeric index, not by their key
+        properties.setProperty("urls.10", SECONDARY_URL);
+        properties.setProperty("urls.2", PRIMARY_URL);
+        properties.setProperty("username", "sa");
+        properties.setProperty("password", "");
+        properties.setProperty("disablePool", "true");
+        final DataSource dataSource = new DataSourceFactory().getObjectInstance("testIndexedUrls", properties);
+        try (Connection connection = dataSource.getConnection()) {
+            assertEquals(PRIMARY_URL, getUrl(connection));
+        }
+
+        properties.setProperty("urls", PRIMARY_URL + "," + SECONDARY_URL);
+        assertThrows(NamingException.class, () -> new DataSourceFactory().getObjectInstance("testIndexedUrls",
+                                                                                            properties));
+    }
+
+    /**
+     * A datasource that can be made unavailable.
+     */
+    private static final class UnreliableDataSource extends AbstractDataSourceDecorator {
+
+        private volatile boolean available = true;
+        private volatile String sqlState = "08001";
+        private volatile int requests;
+
+        /* default */ UnreliableDataSource(final DataSource delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            requests++; //NOPMD - only used from the test thread
+            if (!available) {
+                throw new SQLException("Database unavailable", sqlState);
+            }
+            return getDelegate().getConnection();
+        }
+    }
+}
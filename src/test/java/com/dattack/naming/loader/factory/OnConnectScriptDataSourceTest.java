@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.jtoolbox.jdbc.AbstractDataSourceDecorator;
+import com.dattack.jtoolbox.jdbc.SimpleDataSource;
+import com.dattack.naming.loader.factory.jdbc.ConnectionInitializer;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class OnConnectScriptDataSourceTest {
+
+    private static final String URL = "jdbc:h2:mem:testOnConnectScript";
+    private static final String SCRIPT = "SET @INITIALIZED = COALESCE(@INITIALIZED, 0) + 1";
+
+    /**
+     * Wraps a physical connection the way a pool does: a new wrapper for each checkout, which can be unwrapped and
+     * whose close does not close the physical connection.
+     */
+    private static Connection checkout(final Connection physicalConnection) {
+        return (Connection) Proxy.newProxyInstance(OnConnectScriptDataSourceTest.class.getClassLoader(),
+            new Class<?>[]{ Connection.class }, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "close":
+                        return null;
+                    case "isWrapperFor":
+                        return Boolean.TRUE;
+                    case "unwrap":
+                        return physicalConnection;
+                    default:
+                        try {
+                            return method.invoke(physicalConnection, args);
+                        } catch (final InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            });
+    }
+
+    private static int getInitializations(final Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT @INITIALIZED"))
+        {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    @Test
+    /* package */ void testScriptRunsOncePerPhysicalConnection() throws SQLException {
+        final DataSource driver = new SimpleDataSource("org.h2.Driver", URL, "sa", "");
+        try (Connection physicalConnection = driver.getConnection()) {
+            final AtomicInteger checkouts = new AtomicInteger();
+            final DataSource pool = new AbstractDataSourceDecorator(driver) {
+                @Override
+                public Connection getConnection() {
+                    checkouts.incrementAndGet();
+                    return checkout(physicalConnection);
+                }
+            };
+            final DataSource dataSource = new OnConnectScriptDataSource(pool,
+                new ConnectionInitializer("testOnConnectScript", URL, Collections.singletonList(SCRIPT)));
+
+            for (int i = 0; i < 3; i++) {
+                try (Connection connection = dataSource.getConnection()) {
+                    assertEquals(1, getInitializations(connection));
+                }
+            }
+            assertEquals(3, checkouts.get());
+        }
+    }
+}
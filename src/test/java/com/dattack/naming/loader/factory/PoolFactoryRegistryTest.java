@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.naming.loader.factory.jdbc.pool.PooledDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Properties;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import static com.dattack.junit.AssertionsExt.assertNull;
+import static com.dattack.junit.AssertionsExt.assertSame;
+import static com.dattack.junit.AssertionsExt.assertTrue;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class PoolFactoryRegistryTest {
+
+    @Test
+    /* package */ void testSortedByPriority() {
+        final List<AbstractPoolFactory> factories = PoolFactoryRegistry.getPoolFactories();
+        for (int i = 1; i < factories.size(); i++) {
+            assertTrue(factories.get(i - 1).getPriority() <= factories.get(i).getPriority());
+        }
+    }
+
+    @Test
+    /* package */ void testRegister() {
+        final AbstractPoolFactory factory = new NoopPoolFactory();
+        PoolFactoryRegistry.register(factory);
+        assertSame(factory, PoolFactoryRegistry.getPoolFactories().get(0));
+        assertSame(factory, PoolFactoryRegistry.getPoolFactory("NOOP"));
+        assertNull(PoolFactoryRegistry.getPoolFactory("unknown"));
+    }
+
+    @Test
+    /* package */ void testPoolOrder() throws NamingException {
+
+        final Properties properties = new Properties();
+        properties.setProperty("driverClassName", "org.h2.Driver");
+        properties.setProperty("url", "jdbc:h2:mem:testPoolOrder");
+        properties.setProperty("username", "sa");
+        properties.setProperty("password", "");
+        properties.setProperty("poolOrder", "builtin, dbcp");
+
+        final DataSource dataSource = new DataSourceFactory().getObjectInstance("testPoolOrder", properties);
+        assertTrue(dataSource instanceof PooledDataSource);
+        ((PooledDataSource) dataSource).close();
+    }
+
+    /**
+     * A pool that never creates a datasource, so the following pools are always used.
+     */
+    private static final class NoopPoolFactory extends AbstractPoolFactory {
+
+        @Override
+        public DataSource createDataSource(final DataSourceConfig dataSourceConfig) {
+            return null;
+        }
+
+        @Override
+        public String getDriverKey() {
+            return "driver";
+        }
+
+        @Override
+        public String getName() {
+            return "noop";
+        }
+
+        @Override
+        public String getPasswordKey() {
+            return "password";
+        }
+
+        @Override
+        public String getPrefixKey() {
+            return "noop.";
+        }
+
+        @Override
+        public int getPriority() {
+            return Integer.MIN_VALUE;
+        }
+
+        @Override
+        public String getTypeName() {
+            return "Noop-Pool";
+        }
+
+        @Override
+        public String getUrlKey() {
+            return "url";
+        }
+
+        @Override
+        public String getUsernameKey() {
+            return "username";
+        }
+    }
+}
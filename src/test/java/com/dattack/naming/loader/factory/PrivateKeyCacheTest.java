@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import com.dattack.jtoolbox.security.DattackSecurityException;
+import com.dattack.jtoolbox.security.RsaUtils;
+import com.dattack.naming.loader.CommonConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import javax.crypto.Cipher;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+import static com.dattack.junit.AssertionsExt.assertNotSame;
+import static com.dattack.junit.AssertionsExt.assertSame;
+import static com.dattack.junit.AssertionsExt.assertTrue;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class PrivateKeyCacheTest {
+
+    private static Path copyPrivateKey() throws IOException {
+        final Path path = Files.createTempFile("id_rsa", null);
+        path.toFile().deleteOnExit();
+        try (InputStream input = PrivateKeyCacheTest.class.getClassLoader().getResourceAsStream("id_rsa")) {
+            Files.copy(input, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return path;
+    }
+
+    private static String encrypt(final String filename, final String value) throws GeneralSecurityException,
+        DattackSecurityException
+    {
+        // the public key is derived from the modulus and the public exponent of the private key
+        final RSAPrivateCrtKey privateKey = (RSAPrivateCrtKey) RsaUtils.loadPrivateKey(filename);
+        final PublicKey publicKey = KeyFactory.getInstance("RSA").generatePublic(
+            new RSAPublicKeySpec(privateKey.getModulus(), privateKey.getPublicExponent()));
+        final Cipher cipher = Cipher.getInstance("RSA");
+        cipher.init(Cipher.ENCRYPT_MODE, publicKey);
+        return Base64.getEncoder().encodeToString(cipher.doFinal(value.getBytes(Charset.defaultCharset())));
+    }
+
+    private static void setDecryptCacheSize(final String size) {
+        if (size == null) {
+            System.clearProperty(CommonConstants.DECRYPT_CACHE_SIZE_KEY);
+        } else {
+            System.setProperty(CommonConstants.DECRYPT_CACHE_SIZE_KEY, size);
+        }
+        EnvSystemConfiguration.reload();
+        PrivateKeyCache.clear();
+    }
+
+    @AfterEach
+    /* package */ void tearDown() {
+        setDecryptCacheSize(null);
+    }
+
+    @Test
+    /* package */ void testKeyReloadedWhenFileChanges() throws IOException, GeneralSecurityException,
+        DattackSecurityException
+    {
+
+        final Path path = copyPrivateKey();
+        final String filename = path.toString();
+        final File file = path.toFile();
+        assertTrue(file.setLastModified(1_000_000L));
+
+        final PrivateKeyCache.CachedPrivateKey first = PrivateKeyCache.getPrivateKey(filename);
+        assertSame(first, PrivateKeyCache.getPrivateKey(filename));
+
+        assertTrue(file.setLastModified(2_000_000L));
+        final PrivateKeyCache.CachedPrivateKey second = PrivateKeyCache.getPrivateKey(filename);
+        assertNotSame(first, second);
+        assertSame(second, PrivateKeyCache.getPrivateKey(filename));
+        assertEquals("secret", second.decrypt(encrypt(filename, "secret")));
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testDecryptedValuesAreBounded() throws IOException, GeneralSecurityException,
+        DattackSecurityException
+    {
+        setDecryptCacheSize("2");
+        final String filename = copyPrivateKey().toString();
+        final String first = encrypt(filename, "first");
+        final String second = encrypt(filename, "second");
+        final String third = encrypt(filename, "third");
+
+        final PrivateKeyCache.CachedPrivateKey key = PrivateKeyCache.getPrivateKey(filename);
+        final String firstValue = key.decrypt(first);
+        assertEquals("first", firstValue);
+        assertSame(firstValue, key.decrypt(first));
+
+        final String secondValue = key.decrypt(second);
+        assertEquals("third", key.decrypt(third));
+
+        // 'first' is the least recently used value, so it was evicted when 'third' was decrypted
+        assertSame(secondValue, key.decrypt(second));
+        final String firstAgain = key.decrypt(first);
+        assertEquals("first", firstAgain);
+        assertNotSame(firstValue, firstAgain);
+        assertSame(firstAgain, key.decrypt(first));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+import static com.dattack.junit.AssertionsExt.assertSame;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class ResourceConfigurationTest {
+
+    private static Properties createProperties(final String host) {
+        final Properties properties = new Properties();
+        properties.setProperty("host", host);
+        properties.setProperty("url", "jdbc:h2:tcp://${host}:${port}/test");
+        properties.setProperty("user", "sa");
+        return properties;
+    }
+
+    @Test
+    /* package */ void testInterpolatedValueIsReused() {
+        final BaseConfiguration parent = new BaseConfiguration();
+        parent.setProperty("port", "9092");
+        final ResourceConfiguration configuration = new ResourceConfiguration(parent, createProperties("db1"));
+
+        final String url = configuration.getString("url");
+        assertEquals("jdbc:h2:tcp://db1:9092/test", url);
+        // the second lookup returns the memoized instance instead of interpolating it again
+        assertSame(url, configuration.getString("url"));
+        // values without variables are returned as they are
+        assertEquals("sa", configuration.getString("user"));
+    }
+
+    @Test
+    /* package */ void testInterpolatedValueIsNotShared() {
+        final BaseConfiguration parent = new BaseConfiguration();
+        parent.setProperty("port", "9092");
+        final ResourceConfiguration first = new ResourceConfiguration(parent, createProperties("db1"));
+        final ResourceConfiguration second = new ResourceConfiguration(parent, createProperties("db2"));
+
+        // the same raw value is interpolated with the properties of each resource
+        assertEquals("jdbc:h2:tcp://db1:9092/test", first.getString("url"));
+        assertEquals("jdbc:h2:tcp://db2:9092/test", second.getString("url"));
+        assertEquals("jdbc:h2:tcp://db1:9092/test", first.getString("url"));
+    }
+
+    @Test
+    /* package */ void testSharedConfigurationTakesPrecedence() {
+        final BaseConfiguration parent = new BaseConfiguration();
+        parent.setProperty("port", "9092");
+        parent.setProperty("host", "override");
+        final ResourceConfiguration configuration = new ResourceConfiguration(parent, createProperties("db1"));
+
+        assertEquals("jdbc:h2:tcp://override:9092/test", configuration.getString("url"));
+        assertSame(configuration.getString("url"), configuration.getString("url"));
+    }
+}
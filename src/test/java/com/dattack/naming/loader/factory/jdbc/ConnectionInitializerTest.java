@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class ConnectionInitializerTest {
+
+    private static final List<String> SCRIPT = Arrays.asList("SET @INIT1 = COALESCE(@INIT1, 0) + 1",
+                                                             "SET @INIT2 = COALESCE(@INIT2, 0) + 1");
+
+    private static int getVariable(final Connection connection, final String name) throws SQLException {
+        try (Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT @" + name))
+        {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    @Test
+    /* package */ void testBatchExecution() throws SQLException {
+        final String url = "jdbc:h2:mem:testBatchExecution";
+        final ConnectionInitializer initializer = new ConnectionInitializer("testBatchExecution", url, SCRIPT);
+        try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+            final UnreliableConnection unreliable = new UnreliableConnection(connection);
+            initializer.initialize(unreliable.getProxy());
+            assertEquals(1, unreliable.batches.get());
+            assertEquals(1, getVariable(connection, "INIT1"));
+            assertEquals(1, getVariable(connection, "INIT2"));
+        }
+    }
+
+    @Test
+    /* package */ void testFallbackIsNotPermanent() throws SQLException {
+        final String url = "jdbc:h2:mem:testFallbackIsNotPermanent";
+        final ConnectionInitializer initializer = new ConnectionInitializer("testFallbackIsNotPermanent", url,
+                                                                            SCRIPT);
+        try (Connection first = DriverManager.getConnection(url, "sa", "");
+            Connection second = DriverManager.getConnection(url, "sa", ""))
+        {
+            // a transient failure of the batch: the statements are executed one by one, after a rollback
+            first.setAutoCommit(false);
+            final UnreliableConnection failing = new UnreliableConnection(first);
+            failing.failBatches = true;
+            initializer.initialize(failing.getProxy());
+            assertEquals(1, failing.rollbacks.get());
+            assertEquals(1, getVariable(first, "INIT1"));
+            assertEquals(1, getVariable(first, "INIT2"));
+
+            // the next connection tries the batch again
+            final UnreliableConnection working = new UnreliableConnection(second);
+            initializer.initialize(working.getProxy());
+            assertEquals(1, working.batches.get());
+            assertEquals(1, getVariable(second, "INIT1"));
+            assertEquals(1, getVariable(second, "INIT2"));
+        }
+    }
+
+    @Test
+    /* package */ void testAnonymousBlockFallback() throws SQLException {
+        // the anonymous PL/SQL block is rejected by H2, so the statements are executed one by one
+        final ConnectionInitializer initializer = new ConnectionInitializer("testAnonymousBlockFallback",
+                                                                            "jdbc:oracle:thin:@localhost:1521/XE",
+                                                                            SCRIPT);
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:testAnonymousBlock", "sa", "")) {
+            initializer.initialize(connection);
+            assertEquals(1, getVariable(connection, "INIT1"));
+            assertEquals(1, getVariable(connection, "INIT2"));
+        }
+    }
+
+    /**
+     * A connection whose batches can be made to fail, counting the batches executed and the rollbacks.
+     */
+    private static final class UnreliableConnection {
+
+        private final Connection delegate;
+        private final AtomicInteger batches = new AtomicInteger();
+        private final AtomicInteger rollbacks = new AtomicInteger();
+        private volatile boolean failBatches;
+
+        /* default */ UnreliableConnection(final Connection delegate) {
+            this.delegate = delegate;
+        }
+
+        private static Object invoke(final Object target, final Method method, final Object... args)
+            throws Throwable
+        {
+            try {
+                return method.invoke(target, args);
+            } catch (final InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /* default */ Connection getProxy() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ Connection.class },
+                (proxy, method, args) -> {
+                    if ("rollback".equals(method.getName())) {
+                        rollbacks.incrementAndGet();
+                    } else if ("createStatement".equals(method.getName())) {
+                        return createStatement((Statement) invoke(delegate, method, args));
+                    }
+                    return invoke(delegate, method, args);
+                });
+        }
+
+        private Statement createStatement(final Statement statement) {
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ Statement.class },
+                (proxy, method, args) -> {
+                    if ("executeBatch".equals(method.getName())) {
+                        if (failBatches) {
+                            throw new SQLException("Connection reset", "08006");
+                        }
+                        batches.incrementAndGet();
+                    }
+                    return invoke(statement, method, args);
+                });
+        }
+    }
+}
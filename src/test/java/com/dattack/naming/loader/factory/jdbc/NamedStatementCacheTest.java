@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc;
+
+import com.dattack.jtoolbox.jdbc.internal.NamedPreparedStatementConfig;
+import org.junit.jupiter.api.Test;
+
+import static com.dattack.junit.AssertionsExt.assertEquals;
+import static com.dattack.junit.AssertionsExt.assertSame;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class NamedStatementCacheTest {
+
+    @Test
+    /* package */ void testParseOnce() {
+
+        final String sql = "SELECT * FROM T WHERE A = :a AND B = :b AND C = :a";
+        final long hits = NamedStatementCache.getHitCount();
+
+        final NamedPreparedStatementConfig config = NamedStatementCache.parse(sql);
+        assertSame(config, NamedStatementCache.parse(sql));
+        assertEquals(hits + 1, NamedStatementCache.getHitCount());
+        assertEquals("SELECT * FROM T WHERE A = ? AND B = ? AND C = ?", config.getCompiledSql());
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+import static com.dattack.junit.AssertionsExt.assertTrue;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class SqlScriptParserTest {
+
+    @Test
+    /* package */ void testSplit() {
+        assertEquals(Arrays.asList("ALTER SESSION SET A = 1", "ALTER SESSION SET B = 2"),
+                     SqlScriptParser.split(" ALTER SESSION SET A = 1 ;\n ALTER SESSION SET B = 2; ; "));
+    }
+
+    @Test
+    /* package */ void testSplitIgnoresQuotedSeparators() {
+        assertEquals(Arrays.asList("SET X = 'a;''b'", "SELECT \"c;d\" FROM T -- e;f", "/* g;h */ SELECT 1"),
+                     SqlScriptParser.split("SET X = 'a;''b'; SELECT \"c;d\" FROM T -- e;f\n; /* g;h */ SELECT 1"));
+    }
+
+    @Test
+    /* package */ void testSplitEmpty() {
+        assertEquals(Collections.emptyList(), SqlScriptParser.split(null));
+        assertEquals(Collections.emptyList(), SqlScriptParser.split(" ; "));
+    }
+
+    @Test
+    /* package */ void testConnectionInitializer() throws SQLException {
+
+        final String url = "jdbc:h2:mem:testConnectionInitializer";
+        final ConnectionInitializer initializer = new ConnectionInitializer("testConnectionInitializer", url,
+            SqlScriptParser.split("CREATE TABLE INIT (NAME VARCHAR(10)); INSERT INTO INIT VALUES ('a;b')"));
+
+        try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+            initializer.initialize(connection);
+            try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT NAME FROM INIT"))
+            {
+                assertTrue(resultSet.next());
+                assertEquals("a;b", resultSet.getString(1));
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.cache;
+
+import com.dattack.jtoolbox.jdbc.AbstractDataSourceDecorator;
+import com.dattack.jtoolbox.jdbc.SimpleDataSource;
+import com.dattack.jtoolbox.jdbc.internal.NamedPreparedStatement;
+import com.dattack.jtoolbox.jdbc.internal.ProxyConnection;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+import static com.dattack.junit.AssertionsExt.assertFalse;
+import static com.dattack.junit.AssertionsExt.assertNull;
+import static com.dattack.junit.AssertionsExt.assertSame;
+import static com.dattack.junit.AssertionsExt.assertTrue;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class ResultCacheDataSourceTest {
+
+    private static final String URL = "jdbc:h2:mem:testResultCache;DB_CLOSE_DELAY=-1";
+    private static final String QUERY = "SELECT CODE, NAME, DECIMALS FROM CURRENCY WHERE CODE = ?";
+
+    @BeforeAll
+    /* package */ static void createTables() throws SQLException {
+        try (Connection connection = new SimpleDataSource("org.h2.Driver", URL, "sa", "").getConnection();
+            Statement statement = connection.createStatement())
+        {
+            statement.execute("CREATE TABLE CURRENCY (CODE VARCHAR(3), NAME VARCHAR(20), DECIMALS INT)");
+            statement.execute("INSERT INTO CURRENCY VALUES ('EUR', 'Euro', 2), ('JPY', 'Yen', NULL)");
+        }
+    }
+
+    private static ResultCacheDataSource createDataSource(final CountingDataSource counter) {
+        return new ResultCacheDataSource(counter,
+                                         new ResultCache(Pattern.compile("FROM CURRENCY\\b"), 60_000, 10, 100));
+    }
+
+    private static String queryName(final DataSource dataSource, final String code) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+            PreparedStatement statement = connection.prepareStatement(QUERY))
+        {
+            statement.setString(1, code);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString("NAME") : null;
+            }
+        }
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testCacheHitDoesNotBorrowConnection() throws SQLException {
+
+        final CountingDataSource counter = new CountingDataSource(new SimpleDataSource("org.h2.Driver", URL, "sa",
+                                                                                       ""));
+        final ResultCacheDataSource dataSource = createDataSource(counter);
+
+        assertEquals("Euro", queryName(dataSource, "EUR"));
+        assertEquals(1, counter.requests);
+        assertEquals("Euro", queryName(dataSource, "EUR"));
+        assertEquals(1, counter.requests);
+
+        // other parameters are a different entry
+        assertEquals("Yen", queryName(dataSource, "JPY"));
+        assertEquals(2, counter.requests);
+
+        final ResultCache cache = dataSource.unwrap(ResultCache.class);
+        assertSame(dataSource.getResultCache(), cache);
+        assertEquals(2, cache.getSize());
+        assertEquals(1L, cache.getHitCount());
+
+        // the queries that do not match the pattern are not cached
+        try (Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM CURRENCY"))
+        {
+            assertTrue(resultSet.next());
+            assertEquals(2, resultSet.getInt(1));
+        }
+        assertEquals(3, counter.requests);
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testCachedResultSet() throws SQLException {
+
+        final CountingDataSource counter = new CountingDataSource(new SimpleDataSource("org.h2.Driver", URL, "sa",
+                                                                                       ""));
+        final ResultCacheDataSource dataSource = createDataSource(counter);
+        assertEquals("Yen", queryName(dataSource, "JPY"));
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (NamedPreparedStatement statement = ((ProxyConnection) connection).prepareNamedStatement(
+                "SELECT CODE, NAME, DECIMALS FROM CURRENCY WHERE CODE = :code"))
+            {
+                statement.setString("code", "JPY");
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    assertEquals(3, resultSet.getMetaData().getColumnCount());
+                    assertTrue(resultSet.next());
+                    assertEquals("JPY", resultSet.getString(1));
+                    assertEquals(0, resultSet.getInt("DECIMALS"));
+                    assertTrue(resultSet.wasNull());
+                    assertNull(resultSet.getObject("DECIMALS"));
+                    assertFalse(resultSet.next());
+                }
+            }
+            connection.commit();
+        }
+        // the named statement read the result cached by the first query
+        assertEquals(1, counter.requests);
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testLargeResultIsStreamed() throws SQLException {
+
+        final ResultCacheDataSource dataSource = new ResultCacheDataSource(
+            new SimpleDataSource("org.h2.Driver", URL, "sa", ""),
+            new ResultCache(Pattern.compile("FROM CURRENCY\\b"), 60_000, 1, 1));
+        final ResultCache cache = dataSource.getResultCache();
+
+        try (Connection connection = dataSource.getConnection();
+            PreparedStatement statement = connection.prepareStatement("SELECT CODE FROM CURRENCY ORDER BY CODE");
+            ResultSet resultSet = statement.executeQuery())
+        {
+            assertEquals(ResultSet.TYPE_FORWARD_ONLY, resultSet.getType());
+            assertTrue(resultSet.next());
+            assertEquals("EUR", resultSet.getString(1));
+            assertTrue(resultSet.next());
+            assertEquals("JPY", resultSet.getString("CODE"));
+            assertFalse(resultSet.next());
+        }
+        assertEquals(0, cache.getSize());
+
+        // the results of each user are cached apart, and the eldest one is evicted when the cache is full
+        assertEquals("Euro", queryName(dataSource, "EUR"));
+        assertEquals(1, cache.getSize());
+        try (Connection connection = dataSource.getConnection("sa", "");
+            PreparedStatement statement = connection.prepareStatement(QUERY))
+        {
+            statement.setString(1, "EUR");
+            try (ResultSet resultSet = statement.executeQuery()) {
+                assertTrue(resultSet.next());
+            }
+        }
+        assertEquals(0L, cache.getHitCount());
+        assertEquals(1, cache.getSize());
+        assertEquals(1L, cache.getEvictionCount());
+    }
+
+    /**
+     * A datasource that counts the connections requested.
+     */
+    private static final class CountingDataSource extends AbstractDataSourceDecorator {
+
+        private int requests;
+
+        /* default */ CountingDataSource(final DataSource delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            requests++;
+            return getDelegate().getConnection();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.hikari;
+
+import com.dattack.naming.loader.factory.DataSourceConfig;
+import com.dattack.naming.loader.factory.jdbc.dbcp.DbcpProxyConnection;
+import com.dattack.naming.loader.factory.jdbc.dbcp.ProxyOptions;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import javax.sql.DataSource;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+import static com.dattack.junit.AssertionsExt.assertTrue;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class HikariPoolFactoryTest {
+
+    private static DataSource createDataSource(final String name) {
+        final Properties properties = new Properties();
+        properties.setProperty("hikari.maximumPoolSize", "1");
+        properties.setProperty("hikari.minimumIdle", "0");
+        final DataSourceConfig config = new DataSourceConfig().withJndiName(name) //
+            .withDriver("org.h2.Driver").withUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1") //
+            .withUser("sa").withPassword("") //
+            .withProperties(properties).withProxyOptions(new ProxyOptions());
+        return HikariPoolFactory.getInstance().createDataSource(config);
+    }
+
+    private static String getCurrentUser(final Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT CURRENT_USER"))
+        {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+
+    @Test
+    /* package */ void testCreateDataSource() throws SQLException {
+
+        final DataSource dataSource = createDataSource("testHikariCreateDataSource");
+        assertTrue(dataSource instanceof HikariDataSourceDecorator);
+        try (HikariDataSource hikariDataSource = dataSource.unwrap(HikariDataSource.class)) {
+            // the 'hikari.' properties configure the pool, whose name defaults to the JNDI name
+            assertEquals(1, hikariDataSource.getMaximumPoolSize());
+            assertEquals("testHikariCreateDataSource", hikariDataSource.getPoolName());
+
+            try (Connection connection = dataSource.getConnection()) {
+                assertTrue(connection instanceof DbcpProxyConnection);
+                assertEquals("SA", getCurrentUser(connection));
+            }
+        }
+    }
+
+    @Test
+    /* package */ void testUpdateCredentials() throws SQLException {
+
+        final DataSource dataSource = createDataSource("testHikariUpdateCredentials");
+        try (HikariDataSource hikariDataSource = dataSource.unwrap(HikariDataSource.class)) {
+            try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement())
+            {
+                statement.execute("CREATE USER ROTATED PASSWORD 'secret' ADMIN");
+            }
+
+            ((HikariDataSourceDecorator) dataSource).updateCredentials("ROTATED", "secret");
+            assertEquals("ROTATED", hikariDataSource.getUsername());
+
+            // the idle connection was opened with the old credentials, the new physical connection uses the new ones
+            hikariDataSource.getHikariPoolMXBean().softEvictConnections();
+            try (Connection connection = dataSource.getConnection()) {
+                assertEquals("ROTATED", getCurrentUser(connection));
+            }
+        }
+    }
+}
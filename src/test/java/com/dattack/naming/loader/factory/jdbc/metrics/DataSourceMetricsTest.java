@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.metrics;
+
+import com.dattack.naming.loader.factory.DataSourceFactory;
+import com.dattack.naming.loader.factory.jdbc.SqlFingerprint;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+import static com.dattack.junit.AssertionsExt.assertFalse;
+import static com.dattack.junit.AssertionsExt.assertThrows;
+import static com.dattack.junit.AssertionsExt.assertTrue;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class DataSourceMetricsTest {
+
+    @Test
+    /* package */ void testFingerprint() {
+        assertEquals("SELECT * FROM T1 WHERE A = ? AND B IN (?+) AND \"C 1\" = ?",
+                     SqlFingerprint.of("SELECT *  FROM T1\n WHERE A = 'x''y' AND B IN (1, 2.5,3) -- comment\n"
+                                       + "AND \"C 1\" = ?"));
+    }
+
+    @Test
+    /* package */ void testSlowQueryLogRateLimit() {
+        final SlowQueryLog slowQueryLog = new SlowQueryLog("testSlowQueryLogRateLimit", 10, 2);
+        final long slow = TimeUnit.MILLISECONDS.toNanos(20);
+        assertFalse(slowQueryLog.shouldLog(TimeUnit.MILLISECONDS.toNanos(5)));
+        assertTrue(slowQueryLog.shouldLog(slow));
+        assertTrue(slowQueryLog.shouldLog(slow));
+        assertFalse(slowQueryLog.shouldLog(slow));
+        assertEquals(3, slowQueryLog.getSlowQueryCount());
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testMetrics() throws NamingException, SQLException, JMException {
+
+        final String jndiName = "testMetrics";
+        final Properties properties = new Properties();
+        properties.setProperty("driverClassName", "org.h2.Driver");
+        properties.setProperty("url", "jdbc:h2:mem:testMetrics;DB_CLOSE_DELAY=-1");
+        properties.setProperty("username", "sa");
+        properties.setProperty("password", "");
+        properties.setProperty("disablePool", "true");
+        properties.setProperty("metricsEnabled", "true");
+        final DataSource dataSource = new DataSourceFactory().getObjectInstance(jndiName, properties);
+
+        try (Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement())
+        {
+            statement.executeUpdate("CREATE TABLE T (ID INT)");
+            statement.executeUpdate("INSERT INTO T VALUES (1), (2), (3)");
+            try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT ID FROM T WHERE ID > ?")) {
+                preparedStatement.setInt(1, 0);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        assertTrue(resultSet.getInt(1) > 0);
+                    }
+                }
+            }
+            assertThrows(SQLException.class, () -> statement.executeQuery("SELECT * FROM MISSING"));
+        }
+
+        final DataSourceMetrics metrics = MetricsRegistry.get(jndiName);
+        assertEquals(1, metrics.getConnectionAcquireCount());
+        assertEquals(1, metrics.getConnectionHoldCount());
+        assertEquals(4, metrics.getExecuteCount());
+        assertEquals(1, metrics.getExecuteErrors());
+        assertEquals(3, metrics.getRowsFetched());
+        assertEquals(3, metrics.getStatementMetrics().get("SELECT ID FROM T WHERE ID > ?").getRowsFetched());
+        assertEquals(4L, ManagementFactory.getPlatformMBeanServer().getAttribute(
+            new ObjectName("com.dattack.naming:type=DataSourceMetrics,name=\"" + jndiName + "\""), "ExecuteCount"));
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testLeakDetection() throws NamingException, SQLException, InterruptedException {
+
+        final String jndiName = "testLeakDetection";
+        final Properties properties = new Properties();
+        properties.setProperty("driverClassName", "org.h2.Driver");
+        properties.setProperty("url", "jdbc:h2:mem:testLeakDetection");
+        properties.setProperty("username", "sa");
+        properties.setProperty("password", "");
+        properties.setProperty("disablePool", "true");
+        properties.setProperty("leakThresholdMillis", "20");
+        properties.setProperty("leakSamplePercent", "100");
+        final DataSource dataSource = new DataSourceFactory().getObjectInstance(jndiName, properties);
+        final LeakDetector leakDetector = MetricsRegistry.getLeakDetector(jndiName);
+
+        try (Connection connection = dataSource.getConnection()) {
+            assertTrue(connection.isValid(1));
+            assertEquals(1, leakDetector.getHeldConnectionCount());
+            Thread.sleep(50);
+            leakDetector.scan();
+            assertEquals(1, leakDetector.getLeakCount());
+        }
+
+        assertEquals(0, leakDetector.getHeldConnectionCount());
+        final String site = leakDetector.getTopLeakSites(1).get(0).getKey();
+        assertTrue(site.startsWith(DataSourceMetricsTest.class.getName() + ".testLeakDetection("), site);
+    }
+}
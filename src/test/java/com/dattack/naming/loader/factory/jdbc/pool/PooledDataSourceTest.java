@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.pool;
+
+import com.dattack.jtoolbox.jdbc.JdbcObjectProxy;
+import com.dattack.jtoolbox.jdbc.internal.NamedPreparedStatement;
+import com.dattack.jtoolbox.jdbc.internal.ProxyConnection;
+import com.dattack.naming.loader.factory.DataSourceFactory;
+import com.dattack.naming.loader.factory.jdbc.dbcp.BatchingPreparedStatement;
+import com.dattack.naming.loader.factory.jdbc.dbcp.CachedProxyPreparedStatement;
+import com.dattack.naming.loader.factory.jdbc.dbcp.DbcpProxyConnection;
+import com.dattack.naming.loader.factory.jdbc.dbcp.ProxyMode;
+import com.dattack.naming.loader.factory.jdbc.dbcp.ProxyOptions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+import static com.dattack.junit.AssertionsExt.assertFalse;
+import static com.dattack.junit.AssertionsExt.assertSame;
+import static com.dattack.junit.AssertionsExt.assertThrows;
+import static com.dattack.junit.AssertionsExt.assertTrue;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class PooledDataSourceTest {
+
+    private static PoolConfig createConfig(final String name) {
+        return new PoolConfig().withJndiName(name).withDriverClassName("org.h2.Driver") //
+            .withUrl("jdbc:h2:mem:" + name).withUsername("sa").withPassword("") //
+            .withMaxPoolSize(1).withConnectionTimeoutMillis(200);
+    }
+
+    private static long count(final Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM T"))
+        {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testConnectionIsReused() throws SQLException {
+
+        try (PooledDataSource dataSource = new PooledDataSource(createConfig("testConnectionIsReused"))) {
+
+            final Connection first = dataSource.getConnection();
+            final Connection physical = ((PooledConnection) first).getDelegate();
+            assertEquals(1, dataSource.getActiveConnections());
+            first.setAutoCommit(false);
+            first.close();
+            assertTrue(first.isClosed());
+            assertEquals(1, dataSource.getIdleConnections());
+
+            try (Connection second = dataSource.getConnection()) {
+                assertSame(physical, ((PooledConnection) second).getDelegate());
+                // the default state is restored when the connection is returned to the pool
+                assertTrue(second.getAutoCommit());
+            }
+            assertEquals(1, dataSource.getTotalConnections());
+        }
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testStatementCache() throws SQLException {
+
+        try (PooledDataSource dataSource = new PooledDataSource(
+            createConfig("testStatementCache").withProxyOptions(new ProxyOptions().withStatementCacheSize(10))))
+        {
+            final PreparedStatement physical;
+            try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("SELECT ?"))
+            {
+                physical = ((CachedProxyPreparedStatement) statement).getDelegate();
+                statement.setInt(1, 1);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    assertTrue(resultSet.next());
+                }
+            }
+            assertFalse(physical.isClosed());
+
+            try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("SELECT ?"))
+            {
+                assertSame(physical, ((CachedProxyPreparedStatement) statement).getDelegate());
+                statement.setInt(1, 2);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    assertTrue(resultSet.next());
+                    assertEquals(2, resultSet.getInt(1));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testCachedStatementIsReset() throws SQLException {
+
+        try (PooledDataSource dataSource = new PooledDataSource(
+            createConfig("testCachedStatementIsReset").withProxyOptions(new ProxyOptions().withStatementCacheSize(10))))
+        {
+            // the statement is not closed by the application, so it is returned when the connection is closed
+            final Connection first = dataSource.getConnection();
+            final PreparedStatement leaked = first.prepareStatement("SELECT 1");
+            final PreparedStatement physical = ((CachedProxyPreparedStatement) leaked).getDelegate();
+            leaked.setMaxRows(10);
+            leaked.setQueryTimeout(5);
+            leaked.setFetchSize(7);
+            first.close();
+            assertTrue(leaked.isClosed());
+
+            try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("SELECT 1"))
+            {
+                assertSame(physical, ((CachedProxyPreparedStatement) statement).getDelegate());
+                assertEquals(0, statement.getMaxRows());
+                assertEquals(0, statement.getQueryTimeout());
+                assertFalse(statement.getFetchSize() == 7);
+            }
+        }
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testStatementDefaults() throws SQLException {
+
+        try (PooledDataSource dataSource = new PooledDataSource(createConfig("testStatementDefaults") //
+            .withProxyOptions(new ProxyOptions().withStatementCacheSize(10).withDefaultFetchSize(500)
+                                  .withDefaultMaxRows(2).withDefaultQueryTimeoutSeconds(30)));
+            Connection connection = dataSource.getConnection())
+        {
+            try (Statement statement = connection.createStatement()) {
+                assertEquals(500, statement.getFetchSize());
+                assertEquals(30, statement.getQueryTimeout());
+                try (ResultSet resultSet = statement.executeQuery("SELECT X FROM SYSTEM_RANGE(1, 10)")) {
+                    assertTrue(resultSet.next());
+                    assertTrue(resultSet.next());
+                    assertFalse(resultSet.next());
+                }
+            }
+
+            // the caller overrides the defaults, which are set again when the cached statement is reused
+            try (PreparedStatement statement = connection.prepareStatement("SELECT ?")) {
+                assertEquals(2, statement.getMaxRows());
+                statement.setMaxRows(0);
+            }
+            try (PreparedStatement statement = connection.prepareStatement("SELECT ?")) {
+                assertEquals(2, statement.getMaxRows());
+            }
+        }
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testBatchingStatement() throws SQLException {
+
+        try (PooledDataSource dataSource = new PooledDataSource(createConfig("testBatchingStatement") //
+            .withProxyOptions(new ProxyOptions().withBatchLimits(3, 0, 0)));
+            Connection connection = dataSource.getConnection())
+        {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE T (ID INT)");
+            }
+            connection.setAutoCommit(false);
+
+            final DbcpProxyConnection proxyConnection = connection.unwrap(DbcpProxyConnection.class);
+            try (BatchingPreparedStatement statement = proxyConnection.prepareBatchingStatement(
+                "INSERT INTO T VALUES (?)"))
+            {
+                statement.setRetainUpdateCounts(true);
+                for (int i = 0; i < 7; i++) {
+                    statement.setInt(1, i);
+                    assertEquals(Statement.SUCCESS_NO_INFO, statement.executeUpdate());
+                }
+                assertEquals(6L, statement.getFlushedRows());
+                assertEquals(1, statement.getPendingRows());
+                // another statement of the connection sends the pending rows before executing
+                assertEquals(7L, count(connection));
+                assertEquals(0, statement.getPendingRows());
+
+                statement.setInt(1, 7);
+                assertEquals(Statement.SUCCESS_NO_INFO, statement.executeLargeUpdate());
+                assertEquals(1, statement.getPendingRows());
+                connection.commit();
+                assertEquals(0, statement.getPendingRows());
+                assertEquals(8, statement.drainUpdateCounts().length);
+            }
+
+            try (NamedPreparedStatement statement = proxyConnection.prepareNamedBatchingStatement(
+                "INSERT INTO T VALUES (:id)"))
+            {
+                statement.setInt("id", 10);
+                statement.executeUpdate();
+                connection.rollback();
+                assertEquals(0, statement.unwrap(BatchingPreparedStatement.class).getPendingRows());
+
+                statement.setInt("id", 11);
+                statement.executeUpdate();
+            }
+            // closing the statement sends its pending rows
+            assertEquals(9L, count(connection));
+
+            try (BatchingPreparedStatement statement = proxyConnection.prepareBatchingStatement(
+                "INSERT INTO T VALUES (?)"))
+            {
+                statement.setInt(1, 12);
+                statement.executeUpdate();
+                // enabling the auto-commit mode commits the pending rows
+                connection.setAutoCommit(true);
+                assertEquals(0, statement.getPendingRows());
+                connection.setAutoCommit(false);
+                connection.rollback();
+            }
+            assertEquals(10L, count(connection));
+        }
+    }
+
+    @Test
+    /* package */ void testConnectionProxyMode() throws SQLException {
+
+        try (PooledDataSource dataSource = new PooledDataSource(createConfig("testConnectionProxyMode") //
+            .withProxyOptions(new ProxyOptions().withProxyMode(ProxyMode.CONNECTION)));
+            Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement())
+        {
+            // the built-in pool wraps the statements anyway, so that they do not expose the physical connection
+            assertTrue(statement instanceof JdbcObjectProxy);
+            assertSame(connection, statement.getConnection());
+            try (NamedPreparedStatement namedStatement = ((ProxyConnection) connection).prepareNamedStatement(
+                "SELECT :value"))
+            {
+                namedStatement.setInt("value", 1);
+                try (ResultSet resultSet = namedStatement.executeQuery()) {
+                    assertTrue(resultSet.next());
+                    assertEquals(1, resultSet.getInt(1));
+                }
+            }
+        }
+    }
+
+    @Test
+    /* package */ void testTimeoutWhenExhausted() throws SQLException {
+
+        try (PooledDataSource dataSource = new PooledDataSource(createConfig("testTimeoutWhenExhausted"));
+            Connection connection = dataSource.getConnection())
+        {
+            assertFalse(connection.isClosed());
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        }
+    }
+
+    @Test
+    /* package */ void testReleaseDoesNotWaitForConnectingBorrower()
+        throws SQLException, InterruptedException, ExecutionException, TimeoutException
+    {
+
+        final ConnectionBag bag = new ConnectionBag();
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:testReleaseDoesNotWait", "sa", "")) {
+            final PoolEntry entry = new PoolEntry(connection, PoolEntry.STATE_IN_USE);
+            bag.add(entry);
+
+            // another borrower is opening a new connection, which takes as long as the database needs
+            final CountDownLatch connecting = new CountDownLatch(1);
+            final CountDownLatch connected = new CountDownLatch(1);
+            final CompletableFuture<PoolEntry> borrower = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return bag.borrow(TimeUnit.SECONDS.toNanos(10), () -> {
+                        connecting.countDown();
+                        try {
+                            connected.await();
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return null;
+                    });
+                } catch (final SQLException | InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            assertTrue(connecting.await(5, TimeUnit.SECONDS));
+
+            // the release does not spin until the borrower is done connecting
+            CompletableFuture.runAsync(() -> bag.requite(entry)).get(5, TimeUnit.SECONDS);
+
+            // once the connection attempt is over, the borrower finds the released entry
+            connected.countDown();
+            assertSame(entry, borrower.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testVirtualThreadMode()
+        throws SQLException, InterruptedException, ExecutionException, TimeoutException
+    {
+
+        final PoolConfig config = createConfig("testVirtualThreadMode").withVirtualThreads(true);
+        try (PooledDataSource dataSource = new PooledDataSource(config)) {
+
+            final Connection first = dataSource.getConnection();
+            final Connection physical = ((PooledConnection) first).getDelegate();
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+            // a waiting thread is woken up as soon as the connection is released
+            config.withConnectionTimeoutMillis(TimeUnit.SECONDS.toMillis(10));
+            final CompletableFuture<Connection> waiter = CompletableFuture.supplyAsync(() -> {
+                try (Connection second = dataSource.getConnection()) {
+                    return ((PooledConnection) second).getDelegate();
+                } catch (final SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(100);
+            first.close();
+            assertSame(physical, waiter.get(5, TimeUnit.SECONDS));
+            assertEquals(1, dataSource.getTotalConnections());
+        }
+    }
+
+    @Test
+    /* package */ void testDataSourceFactory() throws NamingException, SQLException {
+
+        final Properties properties = new Properties();
+        properties.setProperty("driverClassName", "org.h2.Driver");
+        properties.setProperty("url", "jdbc:h2:mem:testDataSourceFactory");
+        properties.setProperty("username", "sa");
+        properties.setProperty("password", "");
+        properties.setProperty("disablePool.dbcp", "true");
+        properties.setProperty("disablePool.atomikos", "true");
+        properties.setProperty("pool.maxPoolSize", "2");
+
+        final DataSource dataSource = new DataSourceFactory().getObjectInstance("testDataSourceFactory", properties);
+        assertTrue(dataSource instanceof PooledDataSource);
+
+        try (Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT 1"))
+        {
+            assertTrue(resultSet.next());
+            assertEquals(1, resultSet.getInt(1));
+        } finally {
+            ((PooledDataSource) dataSource).close();
+        }
+    }
+
+    @Test
+    /* package */ void testOnConnectScriptOncePerPhysicalConnection() throws NamingException, SQLException {
+
+        final Properties properties = new Properties();
+        properties.setProperty("driverClassName", "org.h2.Driver");
+        properties.setProperty("url", "jdbc:h2:mem:testOnConnectScript;DB_CLOSE_DELAY=-1");
+        properties.setProperty("username", "sa");
+        properties.setProperty("password", "");
+        properties.setProperty("poolOrder", "builtin");
+        properties.setProperty("pool.validationBypassMillis", "0");
+        properties.setProperty("onConnectScript", "CREATE TABLE IF NOT EXISTS ON_CONNECT (ID INT);"
+            + "INSERT INTO ON_CONNECT VALUES (1)");
+
+        final DataSource dataSource = new DataSourceFactory().getObjectInstance("testOnConnectScript", properties);
+        try {
+            for (int i = 0; i < 3; i++) {
+                dataSource.getConnection().close();
+            }
+            try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM ON_CONNECT"))
+            {
+                assertTrue(resultSet.next());
+                assertEquals(1, resultSet.getInt(1));
+            }
+        } finally {
+            ((PooledDataSource) dataSource).close();
+        }
+    }
+}
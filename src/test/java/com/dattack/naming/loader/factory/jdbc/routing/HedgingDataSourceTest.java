@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.routing;
+
+import com.dattack.jtoolbox.jdbc.SimpleDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.sql.DataSource;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+import static com.dattack.junit.AssertionsExt.assertTrue;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class HedgingDataSourceTest {
+
+    private static DataSource createReplica(final String name, final String sleepMethod) throws SQLException {
+        final DataSource dataSource = new SimpleDataSource("org.h2.Driver",
+                                                           "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement())
+        {
+            statement.executeUpdate("CREATE ALIAS SLEEP FOR '" + sleepMethod + "'");
+            statement.executeUpdate("CREATE TABLE T (V VARCHAR(20))");
+            statement.executeUpdate("INSERT INTO T VALUES ('" + name + "')");
+        }
+        return dataSource;
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testHedgeWins() throws SQLException {
+
+        // the first replica sleeps, while the second one returns immediately
+        final Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("slow", createReplica("hedgeSlow", "java.lang.Thread.sleep"));
+        replicas.put("fast", createReplica("hedgeFast", "java.lang.Long.signum"));
+        final HedgingDataSource dataSource = new HedgingDataSource("testHedgeWins", replicas, 50, 0, 100);
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(true);
+            try (PreparedStatement statement = connection.prepareStatement("SELECT V, SLEEP(?) FROM T")) {
+                statement.setLong(1, 500);
+                // the slow replica ignores the cancellation, so the primary query ends before the result is returned
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    assertTrue(resultSet.next());
+                    assertEquals("hedgeFast", resultSet.getString(1));
+                }
+            }
+            // the connection of the primary can be used again
+            try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT V FROM T"))
+            {
+                assertTrue(resultSet.next());
+            }
+        }
+
+        assertEquals(2, dataSource.getMetrics().getQueryCount());
+        assertEquals(1, dataSource.getMetrics().getHedgeCount());
+        assertEquals(1, dataSource.getMetrics().getHedgeWinCount());
+    }
+
+    @Test
+    /* package */ void testWritableConnectionNotHedged() throws SQLException {
+
+        final Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("first", createReplica("hedgeFirst", "java.lang.Long.signum"));
+        replicas.put("second", createReplica("hedgeSecond", "java.lang.Long.signum"));
+        final HedgingDataSource dataSource = new HedgingDataSource("testWritableConnectionNotHedged", replicas, 0, 0,
+                                                                   100);
+
+        try (Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT V FROM T"))
+        {
+            assertTrue(resultSet.next());
+            assertEquals("hedgeFirst", resultSet.getString(1));
+        }
+        assertEquals(0, dataSource.getMetrics().getQueryCount());
+    }
+
+    @Test
+    /* package */ void testTransactionNotHedged() throws SQLException {
+
+        final Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("first", createReplica("hedgeTxFirst", "java.lang.Long.signum"));
+        replicas.put("second", createReplica("hedgeTxSecond", "java.lang.Long.signum"));
+        final HedgingDataSource dataSource = new HedgingDataSource("testTransactionNotHedged", replicas, 0, 0, 100);
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(true);
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT V FROM T"))
+            {
+                assertTrue(resultSet.next());
+                assertEquals("hedgeTxFirst", resultSet.getString(1));
+            }
+            connection.commit();
+        }
+        assertEquals(0, dataSource.getMetrics().getQueryCount());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.routing;
+
+import com.dattack.jtoolbox.jdbc.SimpleDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import static com.dattack.junit.AssertionsExt.assertArrayEquals;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+import static com.dattack.junit.AssertionsExt.assertTrue;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class RoutingDataSourceTest {
+
+    private static final String PRIMARY_URL = "jdbc:h2:mem:routingPrimary";
+    private static final String REPLICA1_URL = "jdbc:h2:mem:routingReplica1";
+    private static final String REPLICA2_URL = "jdbc:h2:mem:routingReplica2";
+
+    private static DataSource createDataSource(final String url) {
+        return new SimpleDataSource("org.h2.Driver", url, "sa", "");
+    }
+
+    private static RoutingDataSource createRoutingDataSource() {
+        final Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica1", createDataSource(REPLICA1_URL));
+        replicas.put("replica2", createDataSource(REPLICA2_URL));
+        return new RoutingDataSource("testRouting", createDataSource(PRIMARY_URL), replicas);
+    }
+
+    @Test
+    /* package */ void testWritesToPrimary() throws SQLException {
+        final RoutingDataSource dataSource = createRoutingDataSource();
+        try (Connection connection = dataSource.getConnection()) {
+            assertEquals(PRIMARY_URL, connection.getMetaData().getURL());
+        }
+        assertArrayEquals(new int[]{ 0, 0, 0 }, dataSource.getOutstanding());
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testReadsBalancedAcrossReplicas() throws SQLException {
+        final RoutingDataSource dataSource = createRoutingDataSource();
+        try (Connection first = dataSource.getConnection()) {
+            first.setReadOnly(true);
+            assertTrue(first.isReadOnly());
+            final String firstUrl = first.getMetaData().getURL();
+            assertTrue(REPLICA1_URL.equals(firstUrl) || REPLICA2_URL.equals(firstUrl));
+
+            // the least loaded replica is chosen while the first connection is in use
+            try (Connection second = dataSource.getReadOnlyConnection()) {
+                assertEquals(REPLICA1_URL.equals(firstUrl) ? REPLICA2_URL : REPLICA1_URL,
+                             second.getMetaData().getURL());
+                assertArrayEquals(new int[]{ 0, 1, 1 }, dataSource.getOutstanding());
+            }
+        }
+        assertArrayEquals(new int[]{ 0, 0, 0 }, dataSource.getOutstanding());
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testBorrowsOnlyWhenNeeded() throws SQLException {
+        final RoutingDataSource dataSource = createRoutingDataSource();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(true);
+            assertArrayEquals(new int[]{ 0, 0, 0 }, dataSource.getOutstanding());
+
+            connection.createStatement().close();
+            final int[] outstanding = dataSource.getOutstanding();
+            assertEquals(0, outstanding[0]);
+            assertEquals(1, outstanding[1] + outstanding[2]);
+        }
+        assertArrayEquals(new int[]{ 0, 0, 0 }, dataSource.getOutstanding());
+    }
+
+    @Test
+    /* package */ void testNoRerouteOnceUsed() throws SQLException {
+        final RoutingDataSource dataSource = createRoutingDataSource();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.createStatement().close();
+            connection.setReadOnly(true);
+            assertEquals(PRIMARY_URL, connection.getMetaData().getURL());
+        }
+    }
+
+    @Test
+    /* package */ void testFailedReplicaBacksOff() throws SQLException {
+        final AtomicInteger attempts = new AtomicInteger();
+        final Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("broken", new SimpleDataSource("org.h2.Driver", REPLICA1_URL, "sa", "") {
+            @Override
+            public Connection getConnection() throws SQLException {
+                attempts.incrementAndGet();
+                throw new SQLException("Replica unavailable", "08001");
+            }
+        });
+        replicas.put("replica2", createDataSource(REPLICA2_URL));
+        final RoutingDataSource dataSource = new RoutingDataSource("testFailedReplicaBacksOff",
+            createDataSource(PRIMARY_URL), replicas);
+
+        for (int i = 0; i < 4; i++) {
+            try (Connection connection = dataSource.getReadOnlyConnection()) {
+                assertEquals(REPLICA2_URL, connection.getMetaData().getURL());
+            }
+        }
+        // the round robin tries the broken replica first in one of the first two requests, and then skips it
+        assertEquals(1, attempts.get());
+        assertArrayEquals(new int[]{ 0, 0, 0 }, dataSource.getOutstanding());
+    }
+}
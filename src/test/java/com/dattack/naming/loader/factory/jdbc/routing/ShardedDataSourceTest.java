@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.jdbc.routing;
+
+import com.dattack.jtoolbox.jdbc.SimpleDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+import static com.dattack.junit.AssertionsExt.assertFalse;
+import static com.dattack.junit.AssertionsExt.assertThrows;
+import static com.dattack.junit.AssertionsExt.assertTrue;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class ShardedDataSourceTest {
+
+    @Test
+    /* package */ void testHashShardMap() {
+        final ShardMap shardMap = ShardMap.hash(16);
+        assertEquals(3, shardMap.getShard(35L));
+        assertEquals(13, shardMap.getShard(-3));
+        assertEquals(shardMap.getShard("customer-1"), shardMap.getShard("customer-1"));
+    }
+
+    @Test
+    /* package */ void testRangeShardMap() {
+        final ShardMap shardMap = ShardMap.range(1000, 2000);
+        assertEquals(3, shardMap.getShardCount());
+        assertEquals(0, shardMap.getShard(999));
+        assertEquals(1, shardMap.getShard(1000));
+        assertEquals(2, shardMap.getShard(5000L));
+        assertThrows(IllegalArgumentException.class, () -> shardMap.getShard("1000"));
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testLazyShards() throws SQLException {
+        final List<String> located = new ArrayList<>();
+        final ShardedDataSource dataSource = new ShardedDataSource("testLazyShards", ShardMap.hash(4),
+            Arrays.asList("shard0", "shard1", "shard2", "shard3"), name -> {
+                located.add(name);
+                return new SimpleDataSource("org.h2.Driver", "jdbc:h2:mem:" + name, "sa", "");
+            });
+
+        try (Connection connection = dataSource.getConnection(6)) {
+            assertEquals("jdbc:h2:mem:shard2", connection.getMetaData().getURL());
+        }
+
+        ShardedDataSource.setShardKey(10L);
+        try (Connection connection = dataSource.getConnection()) {
+            assertEquals("jdbc:h2:mem:shard2", connection.getMetaData().getURL());
+        } finally {
+            ShardedDataSource.clearShardKey();
+        }
+
+        assertEquals(Arrays.asList("shard2"), located);
+        assertTrue(dataSource.isLocated(2));
+        assertFalse(dataSource.isLocated(0));
+        assertThrows(SQLException.class, dataSource::getConnection);
+    }
+}
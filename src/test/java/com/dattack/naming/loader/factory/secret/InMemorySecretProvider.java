@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.secret;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link SecretProvider} that keeps the secrets in memory, to be used as a stand-in for a real secret store.
+ *
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class InMemorySecretProvider implements SecretProvider {
+
+    /* package */ static final String NAME = "memory";
+
+    private final Map<String, String> secrets = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getSecret(final String name) throws IOException {
+        final String value = secrets.get(name);
+        if (Objects.isNull(value)) {
+            throw new IOException(String.format("Secret '%s' not found", name));
+        }
+        return value;
+    }
+
+    /* package */ void put(final String name, final String value) {
+        secrets.put(name, value);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2022, The Dattack team (http://www.dattack.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dattack.naming.loader.factory.secret;
+
+import com.dattack.naming.loader.factory.DataSourceFactory;
+import com.dattack.naming.loader.factory.RotatableCredentials;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import static com.dattack.junit.AssertionsExt.assertEquals;
+import static com.dattack.junit.AssertionsExt.assertThrows;
+import static com.dattack.junit.AssertionsExt.assertTrue;
+
+/**
+ * @author cvarela
+ * @since 0.5
+ */
+/* package */ final class SecretManagerTest {
+
+    private static final InMemorySecretProvider PROVIDER = new InMemorySecretProvider();
+
+    @BeforeAll
+    /* package */ static void registerProvider() {
+        SecretProviderRegistry.register(PROVIDER);
+    }
+
+    @SuppressWarnings("PMD.JUnitTestContainsTooManyAsserts")
+    @Test
+    /* package */ void testRefreshNotifiesListeners() throws Exception {
+
+        PROVIDER.put("testRefresh", "v1");
+        final Secret secret = SecretManager.getSecret("secret:memory:testRefresh", 0);
+        assertEquals("v1", secret.getValue());
+
+        final AtomicReference<String> notified = new AtomicReference<>();
+        secret.addListener(notified::set);
+
+        PROVIDER.put("testRefresh", "v2");
+        secret.refresh();
+        assertEquals("v2", secret.getValue());
+        assertEquals("v2", notified.get());
+    }
+
+    @Test
+    /* package */ void testUnknownSecret() {
+        assertThrows(NamingException.class, () -> SecretManager.getSecret("secret:memory:testUnknownSecret", 0));
+    }
+
+    @Test
+    /* package */ void testDataSourceWithSecrets() throws NamingException, SQLException {
+
+        PROVIDER.put("testDataSource.url", "jdbc:h2:mem:testDataSourceWithSecrets");
+        PROVIDER.put("testDataSource.password", "");
+
+        final Properties properties = new Properties();
+        properties.setProperty("driverClassName", "org.h2.Driver");
+        properties.setProperty("url", "secret:memory:testDataSource.url");
+        properties.setProperty("username", "sa");
+        properties.setProperty("password", "secret:memory:testDataSource.password");
+        properties.setProperty("secretRefreshSeconds", "60");
+        properties.setProperty("disablePool", "true");
+
+        final DataSource dataSource = new DataSourceFactory().getObjectInstance("testDataSourceWithSecrets",
+            properties);
+        assertTrue(dataSource instanceof RotatableCredentials);
+        try (Connection connection = dataSource.getConnection()) {
+            assertTrue(connection.isValid(1));
+        }
+    }
+}